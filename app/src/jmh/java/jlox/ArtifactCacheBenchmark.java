@@ -0,0 +1,89 @@
+package jlox;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/// Getting from a mapped file to its Ast with the ArtifactCache. uncached
+/// scans and parses, as a run without a cache does; cold does the same,
+/// plus hashing the source and writing the artifact, as the first cached
+/// run of a file does; warm hashes the source and loads the artifact.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx2g"})
+@State(Scope.Benchmark)
+public class ArtifactCacheBenchmark {
+
+    // 1 MB and 10 MB of source
+    @Param({"1048576", "10485760"})
+    public int size;
+
+    private Path directory;
+    private Source source;
+    private ArtifactCache cache;
+
+    @Setup
+    public void setup() throws IOException {
+        directory = Files.createTempDirectory("jlox-cache");
+        Path file = directory.resolve("corpus.lox");
+        Files.writeString(file, Corpus.generate(Corpus.Kind.PROGRAM, size));
+        source = Source.map(file);
+        cache = new ArtifactCache(directory);
+    }
+
+    // The artifact warm() loads
+    @Setup(Level.Iteration)
+    public void store() {
+        SymbolTable symbols = new SymbolTable();
+        TokenStream tokens = new Scanner(source, symbols).scanTokenStream();
+        cache.store(cache.key(source), tokens, new Parser(tokens, symbols).parse());
+    }
+
+    @TearDown
+    public void delete() throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public Ast uncached() {
+        SymbolTable symbols = new SymbolTable();
+        TokenStream tokens = new Scanner(source, symbols).scanTokenStream();
+        return new Parser(tokens, symbols).parse();
+    }
+
+    @Benchmark
+    public Ast cold() {
+        SymbolTable symbols = new SymbolTable();
+        String key = cache.key(source);
+        TokenStream tokens = new Scanner(source, symbols).scanTokenStream();
+        Ast ast = new Parser(tokens, symbols).parse();
+        cache.store(key, tokens, ast);
+        return ast;
+    }
+
+    @Benchmark
+    public Ast warm() {
+        return cache.load(cache.key(source), source, new SymbolTable()).ast;
+    }
+}
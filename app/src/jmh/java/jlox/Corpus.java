@@ -0,0 +1,183 @@
+package jlox;
+
+import java.util.Random;
+
+/// Generates synthetic Lox sources for the benchmarks. Every corpus is
+/// valid Lox as far as the Scanner is concerned, so no errors are reported
+/// while it is being scanned. PROGRAM corpora also parse without errors.
+class Corpus {
+    enum Kind {
+        IDENTIFIERS,
+        STRINGS,
+        NUMBERS,
+        COMMENTS,
+        PROGRAM,
+    }
+
+    // Fixed seed so that every run scans exactly the same input
+    private static final long SEED = 0x10C5L;
+
+    private static final String[] KEYWORDS = {
+        "and", "class", "else", "false", "for", "fun", "if", "nil", "or",
+        "print", "return", "super", "this", "true", "var", "while",
+    };
+
+    private static final String ALPHA =
+        "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ_";
+    private static final String ALPHA_NUMERIC = ALPHA + "0123456789";
+
+    private final Random random = new Random(SEED);
+    private final StringBuilder out;
+    private final int size;
+
+    private Corpus(int size) {
+        this.size = size;
+        this.out = new StringBuilder(size + 128);
+    }
+
+    /// Generate approximately size chars of kind-heavy source.
+    static String generate(Kind kind, int size) {
+        Corpus corpus = new Corpus(size);
+        while (corpus.out.length() < size) {
+            switch (kind) {
+            case IDENTIFIERS:
+                corpus.identifierLine();
+                break;
+            case STRINGS:
+                corpus.stringLine();
+                break;
+            case NUMBERS:
+                corpus.numberLine();
+                break;
+            case COMMENTS:
+                corpus.commentLine();
+                break;
+            case PROGRAM:
+                corpus.declaration();
+                break;
+            }
+        }
+
+        return corpus.out.toString();
+    }
+
+    // var someName = other and third or this.field;
+    private void identifierLine() {
+        out.append("var ");
+        identifier();
+        out.append(" = ");
+        identifier();
+        int n = random.nextInt(6);
+        for (int i = 0; i < n; i++) {
+            out.append(' ');
+            out.append(KEYWORDS[random.nextInt(KEYWORDS.length)]);
+            out.append(' ');
+            identifier();
+            if (random.nextBoolean()) {
+                out.append('.');
+                identifier();
+            }
+        }
+        out.append(";\n");
+    }
+
+    // print "some text ... ";
+    private void stringLine() {
+        out.append("print \"");
+        int n = 8 + random.nextInt(120);
+        for (int i = 0; i < n; i++) {
+            char c = ALPHA_NUMERIC.charAt(random.nextInt(ALPHA_NUMERIC.length()));
+            out.append(random.nextInt(8) == 0 ? ' ' : c);
+        }
+        // Occasionally continue the literal over a line break
+        if (random.nextInt(16) == 0) {
+            out.append('\n');
+        }
+        out.append("\";\n");
+    }
+
+    // var xs = 1 + 2.5 * 31415.9265 - 7;
+    private void numberLine() {
+        out.append("var ");
+        identifier();
+        out.append(" = ");
+        number();
+        int n = 1 + random.nextInt(12);
+        for (int i = 0; i < n; i++) {
+            out.append(" +-*/".charAt(1 + random.nextInt(4)));
+            out.append(' ');
+            number();
+        }
+        out.append(";\n");
+    }
+
+    // // Some commentary that the scanner throws away
+    private void commentLine() {
+        out.append("// ");
+        int n = 16 + random.nextInt(100);
+        for (int i = 0; i < n; i++) {
+            char c = ALPHA_NUMERIC.charAt(random.nextInt(ALPHA_NUMERIC.length()));
+            out.append(random.nextInt(6) == 0 ? ' ' : c);
+        }
+        out.append('\n');
+        // Keep a little code between the comments
+        if (random.nextInt(8) == 0) {
+            out.append("x = x + 1;\n");
+        }
+    }
+
+    // A function, class or loop using names that are numbered so they can
+    // never collide with a keyword
+    private void declaration() {
+        int n = random.nextInt(1000);
+        switch (random.nextInt(4)) {
+        case 0:
+            out.append("fun f").append(n).append("(a, b) {\n");
+            out.append("  var x = a + b * ").append(n).append(";\n");
+            out.append("  if (x > 10 and !(a == b)) {\n");
+            out.append("    return x - 1;\n");
+            out.append("  } else {\n");
+            out.append("    return f").append(n).append("(x, b) / 2;\n");
+            out.append("  }\n");
+            out.append("}\n");
+            break;
+        case 1:
+            out.append("class C").append(n).append(" < Base {\n");
+            out.append("  init(n) {\n");
+            out.append("    this.n = n;\n");
+            out.append("  }\n");
+            out.append("  twice() {\n");
+            out.append("    return super.twice() + this.n * 2;\n");
+            out.append("  }\n");
+            out.append("}\n");
+            break;
+        case 2:
+            out.append("for (var i = 0; i < ").append(n).append("; i = i + 1) {\n");
+            out.append("  print \"item \" + v").append(n).append(".name;\n");
+            out.append("}\n");
+            break;
+        default:
+            out.append("var v").append(n).append(" = nil;\n");
+            out.append("while (v").append(n).append(" != nil or false) {\n");
+            out.append("  v").append(n).append(" = v").append(n).append(".next(-1, 2.5);\n");
+            out.append("}\n");
+            break;
+        }
+    }
+
+    private void identifier() {
+        out.append(ALPHA.charAt(random.nextInt(ALPHA.length())));
+        int n = random.nextInt(12);
+        for (int i = 0; i < n; i++) {
+            out.append(ALPHA_NUMERIC.charAt(random.nextInt(ALPHA_NUMERIC.length())));
+        }
+    }
+
+    private void number() {
+        out.append(random.nextInt(100000));
+        if (random.nextBoolean()) {
+            out.append('.');
+            out.append(random.nextInt(100000));
+        }
+    }
+}
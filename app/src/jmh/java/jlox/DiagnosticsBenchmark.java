@@ -0,0 +1,66 @@
+package jlox;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/// Scanning 1 MB of program with a stray char at the start of every line
+/// and a run of them on every tenth, as a broken generator might write it:
+/// printing each error, against collecting them all as Diagnostics or only
+/// the first hundred.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DiagnosticsBenchmark {
+
+    private Source source;
+    private ErrorReporter printing;
+
+    @Setup
+    public void setup() {
+        String program = Corpus.generate(Corpus.Kind.PROGRAM, 1 << 20);
+        StringBuilder broken = new StringBuilder("@");
+        int lines = 0;
+        for (int i = 0; i < program.length(); i++) {
+            broken.append(program.charAt(i));
+            if (program.charAt(i) == '\n') {
+                broken.append(++lines % 10 == 0 ? "#".repeat(20) : "@");
+            }
+        }
+        source = Source.of(broken.toString());
+        printing = ErrorReporter.printingTo(new PrintStream(OutputStream.nullOutputStream()));
+    }
+
+    @Benchmark
+    public TokenStream printed() {
+        return new Scanner(source, null, printing).scanTokenStream();
+    }
+
+    @Benchmark
+    public Diagnostics collected() {
+        Diagnostics diagnostics = new Diagnostics(source);
+        new Scanner(source, null, diagnostics).scanTokenStream();
+        return diagnostics;
+    }
+
+    @Benchmark
+    public Diagnostics capped() {
+        Diagnostics diagnostics = new Diagnostics(source, 100);
+        new Scanner(source, null, diagnostics).scanTokenStream();
+        return diagnostics;
+    }
+}
@@ -0,0 +1,91 @@
+package jlox;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/// Time to run small programs on the tree-walking Interpreter and on the
+/// bytecode VM, from an already parsed Ast. The VM's time includes
+/// compiling the Ast. The gc profiler's gc.alloc.rate.norm gives the bytes
+/// allocated per run, which for the VM no longer grows with the number of
+/// loop iterations.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx2g"})
+@State(Scope.Benchmark)
+public class EngineBenchmark {
+
+    static final String FIB =
+        "fun fib(n) {\n" +
+        "  if (n < 2) return n;\n" +
+        "  return fib(n - 2) + fib(n - 1);\n" +
+        "}\n" +
+        "print fib(25);\n";
+
+    static final String LOOP =
+        "var sum = 0;\n" +
+        "for (var i = 0; i < 1000000; i = i + 1) {\n" +
+        "  sum = sum + i;\n" +
+        "}\n" +
+        "print sum;\n";
+
+    // Locals and closed over variables several scopes out
+    static final String SCOPES =
+        "fun outer() {\n" +
+        "  var a = 1;\n" +
+        "  {\n" +
+        "    var b = 2;\n" +
+        "    {\n" +
+        "      var c = 3;\n" +
+        "      fun inner() {\n" +
+        "        var sum = 0;\n" +
+        "        for (var i = 0; i < 300000; i = i + 1) {\n" +
+        "          sum = sum + a + b + c;\n" +
+        "        }\n" +
+        "        return sum;\n" +
+        "      }\n" +
+        "      return inner();\n" +
+        "    }\n" +
+        "  }\n" +
+        "}\n" +
+        "print outer();\n";
+
+    @Param({"tree", "vm"})
+    public String engine;
+
+    @Param({"fib", "loop", "scopes"})
+    public String program;
+
+    private Ast ast;
+    private Engine runner;
+
+    @Setup
+    public void setup() {
+        SymbolTable symbols = new SymbolTable();
+        Source source = Source.of(program.equals("fib") ? FIB
+                                  : program.equals("loop") ? LOOP : SCOPES);
+        ast = new Parser(new Scanner(source, symbols).scanTokenStream(), symbols).parse();
+
+        PrintStream out = new PrintStream(OutputStream.nullOutputStream());
+        runner = engine.equals("vm") ? new VM(out) : new Interpreter(out);
+    }
+
+    @Benchmark
+    public void execute() {
+        runner.execute(ast);
+    }
+}
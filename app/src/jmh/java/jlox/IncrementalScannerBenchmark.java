@@ -0,0 +1,62 @@
+package jlox;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/// Latency of re-lexing after a one char edit in the middle of a file,
+/// against a full rescan of the edited file, as the file grows. Re-lexing
+/// edits the tokens and the source in place, so its cost should stay flat
+/// from the smallest size to the largest.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx2g"})
+@State(Scope.Benchmark)
+public class IncrementalScannerBenchmark {
+
+    @Param({"65536", "1048576", "16777216"})
+    public int size;
+
+    private TokenStream tokens;
+    private Source edited;
+    private int offset;
+
+    @Setup
+    public void setup() {
+        String text = Corpus.generate(Corpus.Kind.IDENTIFIERS, size);
+        tokens = new Scanner(Source.of(text)).scanTokenStream();
+
+        // Type an extra char onto the end of an identifier halfway through
+        int middle = tokens.size() / 2;
+        while (tokens.type(middle) != TokenType.IDENTIFIER) {
+            middle++;
+        }
+        offset = tokens.start(middle) + tokens.length(middle);
+        edited = Source.of(text.substring(0, offset) + "x" + text.substring(offset));
+    }
+
+    // Type the char and take it out again, which leaves the tokens as they
+    // were for the next invocation
+    @Benchmark
+    public TokenStream relex() {
+        IncrementalScanner.relex(tokens, offset, 0, "x");
+        return IncrementalScanner.relex(tokens, offset, 1, "");
+    }
+
+    @Benchmark
+    public TokenStream rescan() {
+        return new Scanner(edited).scanTokenStream();
+    }
+}
@@ -0,0 +1,100 @@
+package jlox;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import static jlox.TokenType.*;
+
+/// Per-identifier cost of keyword recognition: the substring plus HashMap
+/// lookup Scanner.identifier() used to do, against the in-place trie.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class KeywordBenchmark {
+    private static final int WORDS = 4096;
+
+    private static final Map<String, TokenType> keywords = new HashMap<>();
+
+    static {
+        keywords.put("and",    AND);
+        keywords.put("class",  CLASS);
+        keywords.put("else",   ELSE);
+        keywords.put("false",  FALSE);
+        keywords.put("for",    FOR);
+        keywords.put("fun",    FUN);
+        keywords.put("if",     IF);
+        keywords.put("nil",    NIL);
+        keywords.put("or",     OR);
+        keywords.put("print",  PRINT);
+        keywords.put("return", RETURN);
+        keywords.put("super",  SUPER);
+        keywords.put("this",   THIS);
+        keywords.put("true",   TRUE);
+        keywords.put("var",    VAR);
+        keywords.put("while",  WHILE);
+    }
+
+    private Source source;
+    private final long[] starts = new long[WORDS];
+    private final long[] ends = new long[WORDS];
+
+    // Half keywords, half identifiers that share prefixes with them
+    @Setup
+    public void setup() {
+        String[] plain = {"a", "andy", "classy", "f", "fo", "forest", "i", "print_", "t", "thus", "x1", "whilst"};
+        String[] words = keywords.keySet().toArray(new String[0]);
+        Random random = new Random(42);
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < WORDS; i++) {
+            String word = random.nextBoolean()
+                ? words[random.nextInt(words.length)]
+                : plain[random.nextInt(plain.length)];
+            starts[i] = text.length();
+            text.append(word);
+            ends[i] = text.length();
+            text.append(' ');
+        }
+        source = Source.of(text.toString());
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(WORDS)
+    public void hashMap(Blackhole bh) {
+        for (int i = 0; i < WORDS; i++) {
+            String text = source.substring(starts[i], ends[i]);
+            TokenType type;
+            if (keywords.containsKey(text)) {
+                type = keywords.get(text);
+            } else {
+                type = IDENTIFIER;
+            }
+            bh.consume(type);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(WORDS)
+    public void trie(Blackhole bh) {
+        for (int i = 0; i < WORDS; i++) {
+            bh.consume(Scanner.identifierType(source, starts[i], ends[i]));
+        }
+    }
+}
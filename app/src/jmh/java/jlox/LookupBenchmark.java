@@ -0,0 +1,83 @@
+package jlox;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/// Cost of reading one variable declared depth scopes out: walking a chain
+/// of HashMap scopes by name, as before the Resolver, against indexing the
+/// resolved slot of a chain of Environments.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LookupBenchmark {
+
+    @Param({"0", "2", "8"})
+    public int depth;
+
+    // Each scope holds this many variables
+    private static final int WIDTH = 4;
+
+    private static class MapScope {
+        final MapScope enclosing;
+        final Map<String, Object> values = new HashMap<>();
+
+        MapScope(MapScope enclosing) {
+            this.enclosing = enclosing;
+        }
+
+        Object get(String name) {
+            for (MapScope scope = this; scope != null; scope = scope.enclosing) {
+                if (scope.values.containsKey(name)) {
+                    return scope.values.get(name);
+                }
+            }
+            return null;
+        }
+    }
+
+    private MapScope mapScope;
+    private Environment environment;
+    private String name;
+    private int slot;
+
+    @Setup
+    public void setup() {
+        for (int d = depth; d >= 0; d--) {
+            mapScope = new MapScope(mapScope);
+            environment = new Environment(environment, WIDTH);
+            for (int i = 0; i < WIDTH; i++) {
+                mapScope.values.put("v" + d + "_" + i, (double) i);
+                environment.values[i] = (double) i;
+            }
+        }
+
+        name = "v" + depth + "_2";
+        slot = 2;
+    }
+
+    @Benchmark
+    public Object mapChain() {
+        return mapScope.get(name);
+    }
+
+    @Benchmark
+    public Object resolvedSlot() {
+        return environment.ancestor(depth).values[slot];
+    }
+}
@@ -0,0 +1,82 @@
+package jlox;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/// Per-literal cost of working out a number's value: the substring plus
+/// Double.parseDouble Scanner.number() used to do, against Numbers.parse()
+/// in place. SHORT literals are like the NUMBERS corpus's, which take the
+/// fast path; LONG ones have 17 to 19 digits, which take Eisel-Lemire.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class NumberBenchmark {
+    private static final int LITERALS = 4096;
+
+    public enum Length { SHORT, LONG }
+
+    @Param({"SHORT", "LONG"})
+    public Length length;
+
+    private Source source;
+    private final long[] starts = new long[LITERALS];
+    private final long[] ends = new long[LITERALS];
+
+    @Setup
+    public void setup() {
+        Random random = new Random(0x10C5L);
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < LITERALS; i++) {
+            starts[i] = text.length();
+            if (length == Length.SHORT) {
+                text.append(random.nextInt(100000));
+                if (random.nextBoolean()) {
+                    text.append('.').append(random.nextInt(100000));
+                }
+            } else {
+                String digits = Long.toString(Math.abs(random.nextLong()) % 1000000000000000000L);
+                int dot = 1 + random.nextInt(digits.length() - 1);
+                text.append(digits, 0, dot).append('.').append(digits, dot, digits.length());
+            }
+            ends[i] = text.length();
+            text.append(" + ");
+        }
+        source = Source.of(text.toString());
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LITERALS)
+    public double parseDouble() {
+        double sum = 0;
+        for (int i = 0; i < LITERALS; i++) {
+            sum += Double.parseDouble(source.substring(starts[i], ends[i]));
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LITERALS)
+    public double parse() {
+        double sum = 0;
+        for (int i = 0; i < LITERALS; i++) {
+            sum += Numbers.parse(source, starts[i], ends[i]);
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,77 @@
+package jlox;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/// Generated-looking code full of literal arithmetic, configuration
+/// constants and if (true) scaffolding, run with and without the Optimizer.
+/// Each run resolves and optimizes a freshly parsed Ast, so the time of the
+/// pass itself is counted too.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx2g"})
+@State(Scope.Benchmark)
+public class OptimizerBenchmark {
+
+    static final String SCAFFOLDING =
+        "var DEBUG = false;\n" +
+        "var TRACE = DEBUG and true;\n" +
+        "var SECONDS = 60 * 60 * 24;\n" +
+        "var LABEL = \"total\" + \": \";\n" +
+        "fun scaled(x) {\n" +
+        "  var factor = (2 + 3) * 4 / 10;\n" +
+        "  if (true) {\n" +
+        "    return x * factor + (1 - 1);\n" +
+        "  } else {\n" +
+        "    return nil;\n" +
+        "  }\n" +
+        "}\n" +
+        "var total = 0;\n" +
+        "for (var i = 0; i < 100000; i = i + 1) {\n" +
+        "  if (DEBUG or TRACE) print i;\n" +
+        "  while (false) { total = -1; }\n" +
+        "  if (!false and i > -(1 + 1)) {\n" +
+        "    total = total + scaled(i) / SECONDS * (1 + 1);\n" +
+        "  }\n" +
+        "}\n" +
+        "print LABEL + \"computed\";\n" +
+        "print total;\n";
+
+    @Param({"tree", "vm"})
+    public String engine;
+
+    @Param({"true", "false"})
+    public boolean optimize;
+
+    private SymbolTable symbols;
+    private Engine runner;
+
+    @Setup
+    public void setup() {
+        symbols = new SymbolTable();
+        PrintStream out = new PrintStream(OutputStream.nullOutputStream());
+        runner = engine.equals("vm") ? new VM(out, true, optimize)
+            : new Interpreter(out, optimize);
+    }
+
+    @Benchmark
+    public void execute() {
+        Source source = Source.of(SCAFFOLDING);
+        runner.execute(new Parser(new Scanner(source, symbols).scanTokenStream(), symbols).parse());
+    }
+}
@@ -0,0 +1,75 @@
+package jlox;
+
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/// Dumping the tokens of 1 MB of source to /dev/null, as `--tokens` does.
+/// printStream prints each Token as it used to, through a PrintStream set
+/// up as System.out is; output encodes them into an Output instead.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class OutputBenchmark {
+
+    private Source source;
+    private PrintStream stream;
+    private FileChannel channel;
+    private Output output;
+
+    @Setup
+    public void setup() throws IOException {
+        source = Source.of(Corpus.generate(Corpus.Kind.PROGRAM, 1 << 20));
+        stream = new PrintStream(new BufferedOutputStream(new FileOutputStream("/dev/null"), 128), true);
+        channel = FileChannel.open(Paths.get("/dev/null"), StandardOpenOption.WRITE);
+        output = new Output(channel);
+    }
+
+    @TearDown
+    public void close() throws IOException {
+        stream.close();
+        channel.close();
+    }
+
+    @Benchmark
+    public void printStream() {
+        Scanner scanner = new Scanner(source, new SymbolTable());
+        Token t;
+        do {
+            t = scanner.nextToken();
+            stream.println("<\t" + t);
+        } while (t.type != TokenType.EOF);
+    }
+
+    @Benchmark
+    public void output() {
+        Scanner scanner = new Scanner(source, new SymbolTable());
+        TokenType type;
+        do {
+            output.print("<\t");
+            type = scanner.printNext(output);
+            output.println();
+        } while (type != TokenType.EOF);
+        output.flush();
+    }
+}
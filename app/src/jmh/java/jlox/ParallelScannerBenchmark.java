@@ -0,0 +1,59 @@
+package jlox;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/// Parallel scanning of a 100 MB corpus with an increasing number of
+/// workers. Speedup is the ratio of each score to the threads=1 score;
+/// sequential is the plain Scanner for reference.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g"})
+@State(Scope.Benchmark)
+public class ParallelScannerBenchmark {
+
+    @Param({"IDENTIFIERS", "STRINGS", "NUMBERS", "COMMENTS"})
+    public Corpus.Kind kind;
+
+    @Param({"1", "2", "4", "8", "16", "32", "64"})
+    public int threads;
+
+    private Source source;
+    private ForkJoinPool pool;
+
+    @Setup
+    public void setup() {
+        source = Source.of(Corpus.generate(kind, 100 * 1024 * 1024));
+        pool = new ForkJoinPool(threads);
+    }
+
+    @TearDown
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public TokenStream sequential() {
+        return new Scanner(source).scanTokenStream();
+    }
+
+    @Benchmark
+    public TokenStream parallel() {
+        return new ParallelScanner(source, pool).scanTokenStream();
+    }
+}
@@ -0,0 +1,74 @@
+package jlox;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/// Parse throughput over generated programs, from an already scanned
+/// TokenStream, and end to end from source. Nodes/s and bytes/s are
+/// reported through the counters; the gc profiler adds the allocation rate.
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx2g"})
+@State(Scope.Benchmark)
+public class ParserBenchmark {
+
+    // 1 MB and 10 MB of source
+    @Param({"1048576", "10485760"})
+    public int size;
+
+    private Source source;
+    private TokenStream tokens;
+    private SymbolTable symbols;
+
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class Counters {
+        public long nodes;
+        public long bytes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            nodes = 0;
+            bytes = 0;
+        }
+    }
+
+    @Setup
+    public void setup() {
+        source = Source.of(Corpus.generate(Corpus.Kind.PROGRAM, size));
+        symbols = new SymbolTable();
+        tokens = new Scanner(source, symbols).scanTokenStream();
+    }
+
+    @Benchmark
+    public Ast parse(Counters counters) {
+        Ast ast = new Parser(tokens, symbols).parse();
+        counters.nodes += ast.size();
+        counters.bytes += source.length();
+        return ast;
+    }
+
+    @Benchmark
+    public Ast scanAndParse(Counters counters) {
+        TokenStream scanned = new Scanner(source, symbols).scanTokenStream();
+        Ast ast = new Parser(scanned, symbols).parse();
+        counters.nodes += ast.size();
+        counters.bytes += source.length();
+        return ast;
+    }
+}
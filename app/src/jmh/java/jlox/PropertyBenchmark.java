@@ -0,0 +1,87 @@
+package jlox;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/// Class-heavy programs on the VM with its inline caches, against the same
+/// VM searching the instance's shape for every field and its class's map
+/// for every method. The monomorphic
+/// program only ever sees one shape at each site, the polymorphic one
+/// alternates between two classes whose fields are laid out differently.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx2g"})
+@State(Scope.Benchmark)
+public class PropertyBenchmark {
+
+    static final String MONOMORPHIC =
+        "class Vec {\n" +
+        "  init(x, y) { this.x = x; this.y = y; }\n" +
+        "  add(o) { return Vec(this.x + o.x, this.y + o.y); }\n" +
+        "  dot(o) { return this.x * o.x + this.y * o.y; }\n" +
+        "}\n" +
+        "var acc = Vec(0, 0);\n" +
+        "var step = Vec(1, 2);\n" +
+        "var sum = 0;\n" +
+        "for (var i = 0; i < 100000; i = i + 1) {\n" +
+        "  acc = acc.add(step);\n" +
+        "  sum = sum + acc.dot(step);\n" +
+        "}\n" +
+        "print sum;\n";
+
+    static final String POLYMORPHIC =
+        "class P {\n" +
+        "  init(x, y) { this.x = x; this.y = y; }\n" +
+        "  scale(k) { this.x = this.x * k; this.y = this.y * k; return this; }\n" +
+        "}\n" +
+        "class Q {\n" +
+        "  init(x, y) { this.tag = \"q\"; this.y = y; this.x = x; }\n" +
+        "  scale(k) { this.x = this.x * k; this.y = this.y * k; return this; }\n" +
+        "}\n" +
+        "var flip = true;\n" +
+        "var sum = 0;\n" +
+        "for (var i = 0; i < 100000; i = i + 1) {\n" +
+        "  var s;\n" +
+        "  if (flip) s = P(i, 1); else s = Q(1, i);\n" +
+        "  flip = !flip;\n" +
+        "  sum = sum + s.scale(2).x + s.y;\n" +
+        "}\n" +
+        "print sum;\n";
+
+    @Param({"monomorphic", "polymorphic"})
+    public String program;
+
+    @Param({"true", "false"})
+    public boolean inlineCaches;
+
+    private Ast ast;
+    private VM vm;
+
+    @Setup
+    public void setup() {
+        SymbolTable symbols = new SymbolTable();
+        Source source = Source.of(program.equals("monomorphic") ? MONOMORPHIC : POLYMORPHIC);
+        ast = new Parser(new Scanner(source, symbols).scanTokenStream(), symbols).parse();
+        vm = new VM(new PrintStream(OutputStream.nullOutputStream()), inlineCaches);
+    }
+
+    @Benchmark
+    public void execute() {
+        vm.execute(ast);
+    }
+}
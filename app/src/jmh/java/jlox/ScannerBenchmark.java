@@ -0,0 +1,94 @@
+package jlox;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/// Scanner throughput over generated corpora. Besides ops/s, JMH reports
+/// the tokens and bytes counters below as tokens/s and bytes/s, and the gc
+/// profiler configured in build.gradle adds the allocation rate.
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx2g"})
+@State(Scope.Benchmark)
+public class ScannerBenchmark {
+
+    @Param({"IDENTIFIERS", "STRINGS", "NUMBERS", "COMMENTS"})
+    public Corpus.Kind kind;
+
+    // 1 KB, 1 MB and 100 MB of source
+    @Param({"1024", "1048576", "104857600"})
+    public int size;
+
+    private String source;
+    private Path file;
+
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class Counters {
+        public long tokens;
+        public long bytes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            tokens = 0;
+            bytes = 0;
+        }
+    }
+
+    @Setup
+    public void setup() throws IOException {
+        source = Corpus.generate(kind, size);
+        file = Files.createTempFile("jlox-bench", ".lox");
+        Files.write(file, source.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public List<Token> scanTokens(Counters counters) {
+        List<Token> tokens = new Scanner(source).scanTokens();
+        counters.tokens += tokens.size();
+        counters.bytes += source.length();
+        return tokens;
+    }
+
+    @Benchmark
+    public TokenStream scanTable(Counters counters) {
+        TokenStream tokens = new TableScanner(Source.of(source), null, ErrorReporter.standard()).scanTokenStream();
+        counters.tokens += tokens.size();
+        counters.bytes += source.length();
+        return tokens;
+    }
+
+    @Benchmark
+    public TokenStream scanMapped(Counters counters) throws IOException {
+        TokenStream tokens = new Scanner(Source.map(file)).scanTokenStream();
+        counters.tokens += tokens.size();
+        counters.bytes += source.length();
+        return tokens;
+    }
+}
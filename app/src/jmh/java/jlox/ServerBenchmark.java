@@ -0,0 +1,81 @@
+package jlox;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/// Latency of a short script run through a warm Server, from connecting to
+/// the exit status, sampled so JMH reports p50 and p99. The Client runs in
+/// the benchmark's JVM, so its own startup is not included; compare with
+/// the time of a whole `java -jar` run of the same script.
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ServerBenchmark {
+
+    // A short script of the kind the server is for
+    static final String SCRIPT =
+        "fun fib(n) { if (n < 2) return n; return fib(n - 1) + fib(n - 2); }\n" +
+        "for (var i = 0; i < 10; i = i + 1) print fib(i);\n";
+
+    private Path directory;
+    private Path socket;
+    private String[] args;
+    private Server server;
+    private Thread serving;
+
+    @Setup
+    public void setup() throws IOException {
+        directory = Files.createTempDirectory("jlox-server");
+        socket = directory.resolve("jlox.sock");
+        Path script = directory.resolve("script.lox");
+        Files.writeString(script, SCRIPT);
+        args = new String[] {script.toString()};
+
+        server = new Server(socket, 1, System.err);
+        server.listen();
+        serving = new Thread(() -> {
+            try {
+                server.serve();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        serving.start();
+    }
+
+    @TearDown
+    public void stop() throws Exception {
+        server.close();
+        serving.join();
+        try (Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public int request() throws IOException {
+        return Client.run(socket, args, new ByteArrayInputStream(new byte[0]),
+                          new ByteArrayOutputStream(), new ByteArrayOutputStream());
+    }
+}
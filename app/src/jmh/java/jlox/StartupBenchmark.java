@@ -0,0 +1,116 @@
+package jlox;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/// Time from starting a new `jlox --tokens` JVM until it prints its first
+/// token, with and without a class data sharing archive made by Training,
+/// as the cdsArchive task makes for the installed launcher. The classes are
+/// put in a jar first, since only classes from jars can be archived.
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 40)
+@Fork(1)
+@State(Scope.Benchmark)
+public class StartupBenchmark {
+
+    @Param({"false", "true"})
+    public boolean archive;
+
+    private Path directory;
+    private List<String> command;
+    private Process process;
+
+    @Setup
+    public void setup() throws IOException, InterruptedException {
+        directory = Files.createTempDirectory("jlox-startup");
+        Path jar = jar(directory.resolve("jlox.jar"));
+        Path jsa = directory.resolve("jlox.jsa");
+        Path script = directory.resolve("script.lox");
+        Files.writeString(script, Corpus.generate(Corpus.Kind.PROGRAM, 64 * 1024));
+
+        String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        command = new ArrayList<>(List.of(java, "-cp", jar.toString()));
+        if (archive) {
+            Process training = new ProcessBuilder(java, "-XX:ArchiveClassesAtExit=" + jsa,
+                                                  "-cp", jar.toString(), "jlox.Training",
+                                                  directory.toString())
+                .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                .redirectError(ProcessBuilder.Redirect.DISCARD)
+                .start();
+            if (training.waitFor() != 0 || !Files.exists(jsa)) {
+                throw new IllegalStateException("Training run made no archive");
+            }
+            command.addAll(List.of("-XX:SharedArchiveFile=" + jsa, "-Xlog:cds=off", "-Xlog:cds+dynamic=off"));
+        }
+        command.addAll(List.of("jlox.App", "--tokens", script.toString()));
+    }
+
+    // A jar of the jlox classes, wherever they are loaded from
+    private static Path jar(Path jar) throws IOException {
+        Path classes = Paths.get(Lox.class.getProtectionDomain().getCodeSource().getLocation().getPath());
+        if (!Files.isDirectory(classes)) {
+            return classes;
+        }
+
+        try (OutputStream file = Files.newOutputStream(jar);
+             JarOutputStream out = new JarOutputStream(file);
+             Stream<Path> found = Files.walk(classes.resolve("jlox"))) {
+            for (Path path : (Iterable<Path>) found.filter(Files::isRegularFile)::iterator) {
+                out.putNextEntry(new JarEntry(classes.relativize(path).toString().replace('\\', '/')));
+                out.write(Files.readAllBytes(path));
+                out.closeEntry();
+            }
+        }
+        return jar;
+    }
+
+    @TearDown(Level.Invocation)
+    public void stopProcess() throws InterruptedException {
+        process.destroy();
+        process.waitFor();
+    }
+
+    @TearDown
+    public void delete() throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public String firstToken() throws IOException {
+        process = new ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.DISCARD).start();
+        BufferedReader out = new BufferedReader(
+            new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8));
+        return out.readLine();
+    }
+}
@@ -0,0 +1,56 @@
+package jlox;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/// Scans an identifier-heavy corpus and materializes every token, with and
+/// without interning. The gc profiler's gc.alloc.rate.norm gives the bytes
+/// allocated per scan; interned runs reuse one String per distinct name.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SymbolBenchmark {
+
+    @Param({"1048576"})
+    public int size;
+
+    @Param({"false", "true"})
+    public boolean interned;
+
+    private Source source;
+    private SymbolTable symbols;
+
+    @Setup
+    public void setup() {
+        source = Source.of(Corpus.generate(Corpus.Kind.IDENTIFIERS, size));
+        // Warm the shared table, as a long-running REPL session would
+        symbols = new SymbolTable();
+        new Scanner(source, symbols).scanTokenStream();
+    }
+
+    @Benchmark
+    public List<Token> materialize() {
+        TokenStream tokens = new Scanner(source, interned ? symbols : null).scanTokenStream();
+        List<Token> all = new ArrayList<>(tokens.size());
+        for (int i = 0; i < tokens.size(); i++) {
+            all.add(tokens.get(i));
+        }
+        return all;
+    }
+}
@@ -0,0 +1,112 @@
+package jlox;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/// Handing on the tokens of 1 MB of program: writing them in the binary
+/// format and reading them back from a buffer or a mapped file, against
+/// writing the textual dump and scanning the source again. JMH reports the
+/// tokens counter as tokens/s.
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TokenFormatBenchmark {
+
+    @Param({"false", "true"})
+    public boolean pooled;
+
+    private Source source;
+    private TokenStream tokens;
+    private ByteBuffer encoded;
+    private Path file;
+
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class Counters {
+        public long tokens;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            tokens = 0;
+        }
+    }
+
+    @Setup
+    public void setup() throws IOException {
+        source = Source.of(Corpus.generate(Corpus.Kind.PROGRAM, 1 << 20));
+        tokens = new Scanner(source, new SymbolTable()).scanTokenStream();
+        encoded = TokenWriter.write(tokens, pooled);
+        file = Files.createTempFile("jlox-bench", ".jloxt");
+        TokenWriter.write(tokens, pooled, file);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public ByteBuffer write(Counters counters) {
+        counters.tokens += tokens.size();
+        return TokenWriter.write(tokens, pooled);
+    }
+
+    @Benchmark
+    public StringBuilder writeText(Counters counters) {
+        StringBuilder dump = new StringBuilder();
+        for (int i = 0; i < tokens.size(); i++) {
+            dump.append(tokens.get(i)).append('\n');
+        }
+        counters.tokens += tokens.size();
+        return dump;
+    }
+
+    @Benchmark
+    public long read(Counters counters) {
+        return sum(new TokenReader(encoded, source), counters);
+    }
+
+    @Benchmark
+    public long readMapped(Counters counters) throws IOException {
+        return sum(TokenReader.map(file, source), counters);
+    }
+
+    @Benchmark
+    public TokenStream rescan(Counters counters) {
+        TokenStream scanned = new Scanner(source, new SymbolTable()).scanTokenStream();
+        counters.tokens += scanned.size();
+        return scanned;
+    }
+
+    // Visit every field of every token
+    private static long sum(TokenReader reader, Counters counters) {
+        long sum = 0;
+        while (reader.next()) {
+            sum += reader.type().ordinal() + reader.start() + reader.length() + reader.line()
+                + reader.poolIndex() + (long) reader.number();
+        }
+        counters.tokens += reader.size();
+        return sum;
+    }
+}
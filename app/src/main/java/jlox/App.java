@@ -6,21 +6,11 @@ package jlox;
 import java.io.IOException;
 
 public class App {
-    private static Lox instance;
-
-    private static Lox getInstance() {
-        if (instance == null) {
-            instance = new Lox();
-        }
-
-        return instance;
-    }
-
     public static void main(String[] args) throws IOException {
-        getInstance().run(args);
-    }
-
-    public static void error(int line, String msg) {
-        getInstance().error(line, msg);
+        // Only the launcher exits; Lox itself returns its status
+        int status = Lox.commandLine().run(args);
+        if (status != 0) {
+            System.exit(status);
+        }
     }
 }
@@ -0,0 +1,178 @@
+package jlox;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+
+/// On-disk cache of what scanning and parsing a source produce, in the
+/// spirit of Python's .pyc files. An artifact is named by the SHA-256 of
+/// the source it was made from, so an edited source simply misses, and is
+/// loaded through a memory mapping with bulk copies into the arrays of a
+/// TokenStream and an Ast. Artifacts of another VERSION are ignored and
+/// replaced.
+///
+/// An artifact holds the names of the symbols the source refers to, its
+/// tokens, then its Ast once the source has been parsed. Tokens and nodes
+/// refer to symbols by their index among those names, and are mapped onto
+/// the ids of the SymbolTable an artifact is loaded into.
+class ArtifactCache {
+    /// Bump whenever the layout, or what the Scanner or Parser produce,
+    /// changes.
+    static final int VERSION = 3;
+
+    private static final int MAGIC = 0x4a4c5843; // JLXC
+    private static final String SUFFIX = ".jloxc";
+
+    /// What an artifact holds. ast is null if only tokens were stored.
+    static class Entry {
+        final TokenStream tokens;
+        final Ast ast;
+
+        Entry(TokenStream tokens, Ast ast) {
+            this.tokens = tokens;
+            this.ast = ast;
+        }
+    }
+
+    private final Path directory;
+
+    ArtifactCache(Path directory) {
+        this.directory = directory;
+    }
+
+    /// Key of the artifacts made from source: the hex SHA-256 of its bytes.
+    String key(Source source) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform is required to provide SHA-256
+            throw new IllegalStateException(e);
+        }
+        source.hash(digest);
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /// Load the artifact stored under key for source, interning its
+    /// symbols into symbols, or return null if there is none that can be
+    /// used. Nothing is interned until the whole artifact has been read.
+    Entry load(String key, Source source, SymbolTable symbols) {
+        Path path = directory.resolve(key + SUFFIX);
+        if (!Files.isRegularFile(path)) {
+            return null;
+        }
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size())
+                .order(ByteOrder.LITTLE_ENDIAN);
+            if (in.getInt() != MAGIC || in.getInt() != VERSION
+                    || in.getLong() != source.length()) {
+                return null;
+            }
+            boolean hasAst = in.get() != 0;
+
+            String[] names = new String[in.getInt()];
+            for (int i = 0; i < names.length; i++) {
+                byte[] name = new byte[in.getInt()];
+                in.get(name);
+                names[i] = new String(name, StandardCharsets.UTF_8);
+            }
+            TokenStream tokens = TokenStream.read(in, source, symbols);
+            Ast ast = hasAst ? Ast.read(in, symbols) : null;
+            if (in.hasRemaining()) {
+                return null;
+            }
+            // Every symbol must be one of the names, or the tokens and
+            // nodes throw here
+            boolean[] used = new boolean[names.length];
+            tokens.markSymbols(used);
+            if (ast != null) {
+                ast.markSymbols(used);
+            }
+
+            int[] ids = new int[names.length];
+            for (int i = 0; i < names.length; i++) {
+                ids[i] = symbols.intern(names[i]);
+            }
+            tokens.mapSymbols(ids);
+            if (ast != null) {
+                ast.mapSymbols(ids);
+            }
+            return new Entry(tokens, ast);
+        } catch (IOException | RuntimeException e) {
+            // Unreadable, truncated or otherwise corrupt, so made again
+            return null;
+        }
+    }
+
+    /// Store tokens, and ast unless it is null, as the artifact under key,
+    /// returning false if it couldn't be written. ast must be as parsed,
+    /// neither resolved nor optimized.
+    boolean store(String key, TokenStream tokens, Ast ast) {
+        // Only the symbols this source refers to, indexed in id order
+        SymbolTable symbols = tokens.symbols();
+        boolean[] used = new boolean[symbols.size()];
+        tokens.markSymbols(used);
+        if (ast != null) {
+            ast.markSymbols(used);
+        }
+        int[] indexes = new int[used.length];
+        List<byte[]> names = new ArrayList<>();
+        int size = 2 * Integer.BYTES + Long.BYTES + 1 + Integer.BYTES;
+        for (int id = 0; id < used.length; id++) {
+            if (used[id]) {
+                indexes[id] = names.size();
+                names.add(symbols.name(id).getBytes(StandardCharsets.UTF_8));
+                size += Integer.BYTES + names.get(indexes[id]).length;
+            }
+        }
+        size += tokens.byteSize() + (ast == null ? 0 : ast.byteSize());
+
+        ByteBuffer out = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+        out.putInt(MAGIC);
+        out.putInt(VERSION);
+        out.putLong(tokens.source().length());
+        out.put((byte) (ast == null ? 0 : 1));
+        out.putInt(names.size());
+        for (byte[] name : names) {
+            out.putInt(name.length);
+            out.put(name);
+        }
+        tokens.write(out, indexes);
+        if (ast != null) {
+            ast.write(out, indexes);
+        }
+
+        // Written aside and moved into place, so a concurrent run never
+        // maps a partly written artifact
+        Path temp = null;
+        try {
+            Files.createDirectories(directory);
+            temp = Files.createTempFile(directory, key, ".tmp");
+            Files.write(temp, out.array());
+            Files.move(temp, directory.resolve(key + SUFFIX),
+                       StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return true;
+        } catch (IOException e) {
+            try {
+                if (temp != null) {
+                    Files.deleteIfExists(temp);
+                }
+            } catch (IOException ignored) {
+                // Nothing more to be done about it
+            }
+            return false;
+        }
+    }
+}
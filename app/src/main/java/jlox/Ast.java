@@ -0,0 +1,426 @@
+package jlox;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.function.IntUnaryOperator;
+
+/// Syntax tree stored as an arena of parallel arrays rather than one object
+/// per node. A node is an int index; its kind says how to read its three
+/// operands a, b and c:
+///
+///     NUMBER         a: index into numbers
+///     STRING         a: symbol of the value
+///     TRUE, FALSE, NIL, THIS
+///     GROUPING       a: expression
+///     NEGATE, NOT    a: operand
+///     ADD .. OR      a: left, b: right
+///     VARIABLE       a: name symbol
+///     ASSIGN         a: name symbol, b: value
+///     CALL           a: callee, b: argument list
+///     GET            a: object, b: name symbol
+///     SET            a: object, b: name symbol, c: value
+///     SUPER          a: method name symbol
+///
+///     EXPRESSION     a: expression
+///     PRINT          a: expression
+///     VAR            a: name symbol, b: initializer or NONE
+///     BLOCK          a: statement list
+///     IF             a: condition, b: then branch, c: else branch or NONE
+///     WHILE          a: condition, b: body
+///     FUNCTION       a: name symbol, b: parameter symbol list, c: body list
+///     RETURN         a: value or NONE
+///     CLASS          a: name symbol, b: superclass VARIABLE or NONE,
+///                    c: FUNCTION list
+///
+/// Lists live in their own pool, each as a count followed by its items.
+///
+/// The Resolver adds where each variable lives: VARIABLE, ASSIGN, THIS and
+/// SUPER nodes, and the VAR, FUNCTION and CLASS nodes declaring a variable,
+/// get a depth and slot. BLOCK and FUNCTION nodes get the number of locals
+/// their scope declares, or NO_SCOPE for a BLOCK that declares nothing and
+/// so has no scope, and declarations of variables that some ASSIGN writes to
+/// are marked assigned.
+///
+/// The Optimizer may then rewrite resolved nodes and lists in place.
+class Ast {
+    static final int NONE = -1;
+    // Depth of a variable that is global; its slot indexes Globals
+    static final int GLOBAL = -1;
+    // Locals of a BLOCK that declares nothing, so needs no scope at run time
+    static final int NO_SCOPE = -1;
+
+    // Expressions
+    static final byte NUMBER = 0;
+    static final byte STRING = 1;
+    static final byte TRUE = 2;
+    static final byte FALSE = 3;
+    static final byte NIL = 4;
+    static final byte GROUPING = 5;
+    static final byte NEGATE = 6;
+    static final byte NOT = 7;
+    static final byte ADD = 8;
+    static final byte SUBTRACT = 9;
+    static final byte MULTIPLY = 10;
+    static final byte DIVIDE = 11;
+    static final byte EQUAL = 12;
+    static final byte NOT_EQUAL = 13;
+    static final byte GREATER = 14;
+    static final byte GREATER_EQUAL = 15;
+    static final byte LESS = 16;
+    static final byte LESS_EQUAL = 17;
+    static final byte AND = 18;
+    static final byte OR = 19;
+    static final byte VARIABLE = 20;
+    static final byte ASSIGN = 21;
+    static final byte CALL = 22;
+    static final byte GET = 23;
+    static final byte SET = 24;
+    static final byte THIS = 25;
+    static final byte SUPER = 26;
+
+    // Statements
+    static final byte EXPRESSION = 27;
+    static final byte PRINT = 28;
+    static final byte VAR = 29;
+    static final byte BLOCK = 30;
+    static final byte IF = 31;
+    static final byte WHILE = 32;
+    static final byte FUNCTION = 33;
+    static final byte RETURN = 34;
+    static final byte CLASS = 35;
+
+    private static final int MIN_CAPACITY = 64;
+
+    final SymbolTable symbols;
+
+    // Nodes
+    private byte[] kinds = new byte[MIN_CAPACITY];
+    private int[] as = new int[MIN_CAPACITY];
+    private int[] bs = new int[MIN_CAPACITY];
+    private int[] cs = new int[MIN_CAPACITY];
+    private int[] lines = new int[MIN_CAPACITY];
+    private int size = 0;
+
+    // Lists, each stored as its count followed by the items
+    private int[] lists = new int[MIN_CAPACITY];
+    private int listsSize = 0;
+    // Items of lists still being built, see mark() and list()
+    private int[] pending = new int[MIN_CAPACITY];
+    private int pendingSize = 0;
+
+    private double[] numbers = new double[MIN_CAPACITY];
+    private int numberCount = 0;
+
+    // List of the program's top level statements
+    private int root = NONE;
+
+    // Resolution, allocated by the Resolver once all nodes exist
+    private int[] depths;
+    private int[] slots;
+    private int[] locals;
+    private boolean[] assigned;
+
+    // InlineCaches of the GET and SET nodes the Interpreter has run
+    private InlineCache[] caches;
+
+    Ast(SymbolTable symbols) {
+        this.symbols = symbols;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /// Bytes write() takes.
+    int byteSize() {
+        return 4 * Integer.BYTES + size * (1 + 4 * Integer.BYTES)
+            + listsSize * Integer.BYTES + numberCount * Double.BYTES;
+    }
+
+    /// Write the nodes, lists and numbers as parsed, for read() to load
+    /// them back, with every symbol replaced by map[symbol]. The Resolver's
+    /// results are not written, so the Ast must not have been optimized.
+    void write(ByteBuffer out, int[] map) {
+        int[] mappedAs = Arrays.copyOf(as, size);
+        int[] mappedBs = Arrays.copyOf(bs, size);
+        int[] mappedLists = Arrays.copyOf(lists, listsSize);
+        mapSymbols(mappedAs, mappedBs, mappedLists, symbol -> map[symbol]);
+
+        out.putInt(size);
+        out.putInt(listsSize);
+        out.putInt(numberCount);
+        out.putInt(root);
+        Buffers.putBytes(out, kinds, size);
+        Buffers.putInts(out, mappedAs, size);
+        Buffers.putInts(out, mappedBs, size);
+        Buffers.putInts(out, cs, size);
+        Buffers.putInts(out, lines, size);
+        Buffers.putInts(out, mappedLists, listsSize);
+        Buffers.putDoubles(out, numbers, numberCount);
+    }
+
+    /// Set used[symbol] for every symbol a node operand holds.
+    void markSymbols(boolean[] used) {
+        mapSymbols(as, bs, lists, symbol -> {
+            used[symbol] = true;
+            return symbol;
+        });
+    }
+
+    /// Replace every symbol a node operand holds by map[symbol].
+    void mapSymbols(int[] map) {
+        mapSymbols(as, bs, lists, symbol -> map[symbol]);
+    }
+
+    // Replace the symbols in the operand columns as, bs and lists, or
+    // copies of them, by what op makes of them
+    private void mapSymbols(int[] as, int[] bs, int[] lists, IntUnaryOperator op) {
+        for (int node = 0; node < size; node++) {
+            switch (kinds[node]) {
+            case STRING:
+            case VARIABLE:
+            case ASSIGN:
+            case SUPER:
+            case VAR:
+            case CLASS:
+                as[node] = op.applyAsInt(as[node]);
+                break;
+            case GET:
+            case SET:
+                bs[node] = op.applyAsInt(bs[node]);
+                break;
+            case FUNCTION:
+                as[node] = op.applyAsInt(as[node]);
+                int params = bs[node];
+                for (int i = 0; i < lists[params]; i++) {
+                    lists[params + 1 + i] = op.applyAsInt(lists[params + 1 + i]);
+                }
+                break;
+            default:
+                break;
+            }
+        }
+    }
+
+    static Ast read(ByteBuffer in, SymbolTable symbols) {
+        Ast ast = new Ast(symbols);
+        int size = in.getInt();
+        int listsSize = in.getInt();
+        int numberCount = in.getInt();
+        ast.root = in.getInt();
+        ast.kinds = Buffers.getBytes(in, size, MIN_CAPACITY);
+        ast.as = Buffers.getInts(in, size, MIN_CAPACITY);
+        ast.bs = Buffers.getInts(in, size, MIN_CAPACITY);
+        ast.cs = Buffers.getInts(in, size, MIN_CAPACITY);
+        ast.lines = Buffers.getInts(in, size, MIN_CAPACITY);
+        ast.lists = Buffers.getInts(in, listsSize, MIN_CAPACITY);
+        ast.numbers = Buffers.getDoubles(in, numberCount, MIN_CAPACITY);
+        ast.size = size;
+        ast.listsSize = listsSize;
+        ast.numberCount = numberCount;
+        return ast;
+    }
+
+    int root() {
+        return root;
+    }
+
+    void setRoot(int list) {
+        root = list;
+    }
+
+    int node(byte kind, int a, int b, int c, int line) {
+        if (size == kinds.length) {
+            int capacity = size * 2;
+            kinds = Arrays.copyOf(kinds, capacity);
+            as = Arrays.copyOf(as, capacity);
+            bs = Arrays.copyOf(bs, capacity);
+            cs = Arrays.copyOf(cs, capacity);
+            lines = Arrays.copyOf(lines, capacity);
+        }
+        kinds[size] = kind;
+        as[size] = a;
+        bs[size] = b;
+        cs[size] = c;
+        lines[size] = line;
+        return size++;
+    }
+
+    int number(double value, int line) {
+        if (numberCount == numbers.length) {
+            numbers = Arrays.copyOf(numbers, numberCount * 2);
+        }
+        numbers[numberCount] = value;
+        return node(NUMBER, numberCount++, NONE, NONE, line);
+    }
+
+    byte kind(int node) {
+        return kinds[node];
+    }
+
+    int a(int node) {
+        return as[node];
+    }
+
+    int b(int node) {
+        return bs[node];
+    }
+
+    int c(int node) {
+        return cs[node];
+    }
+
+    int line(int node) {
+        return lines[node];
+    }
+
+    /// Record that node refers to slot of the scope depth scopes out from
+    /// the innermost one, or to global slot if depth is GLOBAL.
+    void resolve(int node, int depth, int slot) {
+        ensureResolution();
+        depths[node] = depth;
+        slots[node] = slot;
+    }
+
+    int depth(int node) {
+        return depths[node];
+    }
+
+    int slot(int node) {
+        return slots[node];
+    }
+
+    /// Record how many locals the scope of a BLOCK or FUNCTION declares.
+    void setLocals(int node, int count) {
+        ensureResolution();
+        locals[node] = count;
+    }
+
+    int locals(int node) {
+        return locals[node];
+    }
+
+    /// Record that an ASSIGN writes to the variable decl declares.
+    void setAssigned(int decl) {
+        ensureResolution();
+        assigned[decl] = true;
+    }
+
+    boolean isAssigned(int decl) {
+        return assigned[decl];
+    }
+
+    /// InlineCache of the GET or SET at node, for the Interpreter.
+    InlineCache cache(int node) {
+        if (caches == null || caches.length < size) {
+            caches = caches == null ? new InlineCache[size] : Arrays.copyOf(caches, size);
+        }
+        InlineCache cache = caches[node];
+        if (cache == null) {
+            cache = new InlineCache(bs[node]);
+            caches[node] = cache;
+        }
+        return cache;
+    }
+
+    private void ensureResolution() {
+        if (depths == null || depths.length < size) {
+            depths = depths == null ? new int[size] : Arrays.copyOf(depths, size);
+            slots = slots == null ? new int[size] : Arrays.copyOf(slots, size);
+            locals = locals == null ? new int[size] : Arrays.copyOf(locals, size);
+            assigned = assigned == null ? new boolean[size] : Arrays.copyOf(assigned, size);
+        }
+    }
+
+    /// Turn node into a copy of other, resolution included.
+    void replace(int node, int other) {
+        ensureResolution();
+        kinds[node] = kinds[other];
+        as[node] = as[other];
+        bs[node] = bs[other];
+        cs[node] = cs[other];
+        lines[node] = lines[other];
+        depths[node] = depths[other];
+        slots[node] = slots[other];
+        locals[node] = locals[other];
+        assigned[node] = assigned[other];
+    }
+
+    /// Turn node into a literal of kind other than NUMBER, whose a is the
+    /// symbol of a STRING.
+    void setLiteral(int node, byte kind, int a) {
+        kinds[node] = kind;
+        as[node] = a;
+        bs[node] = NONE;
+        cs[node] = NONE;
+    }
+
+    /// Turn node into a NUMBER literal.
+    void setNumber(int node, double value) {
+        if (numberCount == numbers.length) {
+            numbers = Arrays.copyOf(numbers, numberCount * 2);
+        }
+        numbers[numberCount] = value;
+        setLiteral(node, NUMBER, numberCount++);
+    }
+
+    /// Value of a NUMBER node.
+    double numberValue(int node) {
+        return numbers[as[node]];
+    }
+
+    /// Name or value of a node operand holding a symbol.
+    String name(int symbol) {
+        return symbols.name(symbol);
+    }
+
+    // Lists are built by taking a mark, adding their items, and then
+    // closing them with list(mark). Lists can be nested as long as the inner
+    // one is closed before the outer one gets its next item.
+
+    int mark() {
+        return pendingSize;
+    }
+
+    void add(int item) {
+        if (pendingSize == pending.length) {
+            pending = Arrays.copyOf(pending, pendingSize * 2);
+        }
+        pending[pendingSize++] = item;
+    }
+
+    int list(int mark) {
+        int count = pendingSize - mark;
+        while (listsSize + count + 1 > lists.length) {
+            lists = Arrays.copyOf(lists, lists.length * 2);
+        }
+        int list = listsSize;
+        lists[listsSize++] = count;
+        System.arraycopy(pending, mark, lists, listsSize, count);
+        listsSize += count;
+        pendingSize = mark;
+        return list;
+    }
+
+    /// Abandon the items added since mark.
+    void drop(int mark) {
+        pendingSize = mark;
+    }
+
+    int count(int list) {
+        return lists[list];
+    }
+
+    int item(int list, int i) {
+        return lists[list + 1 + i];
+    }
+
+    void setItem(int list, int i, int item) {
+        lists[list + 1 + i] = item;
+    }
+
+    /// Drop the items of list from count on.
+    void truncate(int list, int count) {
+        lists[list] = count;
+    }
+}
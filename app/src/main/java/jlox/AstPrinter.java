@@ -0,0 +1,206 @@
+package jlox;
+
+/// Prints an Ast as parenthesized prefix expressions, one top level
+/// statement per line, e.g. (var b (or b (and b true))).
+class AstPrinter {
+    private final Ast ast;
+    private final StringBuilder out = new StringBuilder();
+
+    AstPrinter(Ast ast) {
+        this.ast = ast;
+    }
+
+    String print() {
+        int root = ast.root();
+        for (int i = 0; i < ast.count(root); i++) {
+            node(ast.item(root, i));
+            out.append('\n');
+        }
+
+        return out.toString();
+    }
+
+    String print(int node) {
+        node(node);
+        return out.toString();
+    }
+
+    private void node(int node) {
+        switch (ast.kind(node)) {
+        case Ast.NUMBER:
+            out.append(Values.stringify(ast.numberValue(node)));
+            break;
+        case Ast.STRING:
+            out.append('"').append(ast.name(ast.a(node))).append('"');
+            break;
+        case Ast.TRUE:
+            out.append("true");
+            break;
+        case Ast.FALSE:
+            out.append("false");
+            break;
+        case Ast.NIL:
+            out.append("nil");
+            break;
+        case Ast.THIS:
+            out.append("this");
+            break;
+        case Ast.GROUPING:
+            parenthesize("group", node, 1);
+            break;
+        case Ast.NEGATE:
+            parenthesize("-", node, 1);
+            break;
+        case Ast.NOT:
+            parenthesize("!", node, 1);
+            break;
+        case Ast.ADD:
+            parenthesize("+", node, 2);
+            break;
+        case Ast.SUBTRACT:
+            parenthesize("-", node, 2);
+            break;
+        case Ast.MULTIPLY:
+            parenthesize("*", node, 2);
+            break;
+        case Ast.DIVIDE:
+            parenthesize("/", node, 2);
+            break;
+        case Ast.EQUAL:
+            parenthesize("==", node, 2);
+            break;
+        case Ast.NOT_EQUAL:
+            parenthesize("!=", node, 2);
+            break;
+        case Ast.GREATER:
+            parenthesize(">", node, 2);
+            break;
+        case Ast.GREATER_EQUAL:
+            parenthesize(">=", node, 2);
+            break;
+        case Ast.LESS:
+            parenthesize("<", node, 2);
+            break;
+        case Ast.LESS_EQUAL:
+            parenthesize("<=", node, 2);
+            break;
+        case Ast.AND:
+            parenthesize("and", node, 2);
+            break;
+        case Ast.OR:
+            parenthesize("or", node, 2);
+            break;
+        case Ast.VARIABLE:
+            out.append(ast.name(ast.a(node)));
+            break;
+        case Ast.ASSIGN:
+            out.append("(= ").append(ast.name(ast.a(node))).append(' ');
+            node(ast.b(node));
+            out.append(')');
+            break;
+        case Ast.CALL:
+            out.append("(call ");
+            node(ast.a(node));
+            nodes(ast.b(node));
+            out.append(')');
+            break;
+        case Ast.GET:
+            out.append("(. ");
+            node(ast.a(node));
+            out.append(' ').append(ast.name(ast.b(node))).append(')');
+            break;
+        case Ast.SET:
+            out.append("(.= ");
+            node(ast.a(node));
+            out.append(' ').append(ast.name(ast.b(node))).append(' ');
+            node(ast.c(node));
+            out.append(')');
+            break;
+        case Ast.SUPER:
+            out.append("(super ").append(ast.name(ast.a(node))).append(')');
+            break;
+        case Ast.EXPRESSION:
+            parenthesize(";", node, 1);
+            break;
+        case Ast.PRINT:
+            parenthesize("print", node, 1);
+            break;
+        case Ast.VAR:
+            out.append("(var ").append(ast.name(ast.a(node)));
+            if (ast.b(node) != Ast.NONE) {
+                out.append(' ');
+                node(ast.b(node));
+            }
+            out.append(')');
+            break;
+        case Ast.BLOCK:
+            out.append("(block");
+            nodes(ast.a(node));
+            out.append(')');
+            break;
+        case Ast.IF:
+            out.append("(if ");
+            node(ast.a(node));
+            out.append(' ');
+            node(ast.b(node));
+            if (ast.c(node) != Ast.NONE) {
+                out.append(' ');
+                node(ast.c(node));
+            }
+            out.append(')');
+            break;
+        case Ast.WHILE:
+            parenthesize("while", node, 2);
+            break;
+        case Ast.FUNCTION:
+            out.append("(fun ").append(ast.name(ast.a(node))).append(" (");
+            int params = ast.b(node);
+            for (int i = 0; i < ast.count(params); i++) {
+                if (i > 0) {
+                    out.append(' ');
+                }
+                out.append(ast.name(ast.item(params, i)));
+            }
+            out.append(')');
+            nodes(ast.c(node));
+            out.append(')');
+            break;
+        case Ast.RETURN:
+            out.append("(return");
+            if (ast.a(node) != Ast.NONE) {
+                out.append(' ');
+                node(ast.a(node));
+            }
+            out.append(')');
+            break;
+        case Ast.CLASS:
+            out.append("(class ").append(ast.name(ast.a(node)));
+            if (ast.b(node) != Ast.NONE) {
+                out.append(" < ");
+                node(ast.b(node));
+            }
+            nodes(ast.c(node));
+            out.append(')');
+            break;
+        }
+    }
+
+    // (name a) or (name a b) for nodes whose operands are child nodes
+    private void parenthesize(String name, int node, int arity) {
+        out.append('(').append(name).append(' ');
+        node(ast.a(node));
+        if (arity > 1) {
+            out.append(' ');
+            node(ast.b(node));
+        }
+        out.append(')');
+    }
+
+    // Each node of list, preceded by a space
+    private void nodes(int list) {
+        for (int i = 0; i < ast.count(list); i++) {
+            out.append(' ');
+            node(ast.item(list, i));
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package jlox;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+/// Batch mode: runs many files on one JVM, on a fixed pool of threads that
+/// each run one file at a time. Every file gets a Lox of its own, so its
+/// globals, output and errors are kept apart from the other files'. What
+/// each file printed is written out in the order the files were given,
+/// followed by a summary of how each file ended and how long it took.
+class Batch {
+    // How running one file went
+    private static class Result {
+        final Path path;
+        final int status;
+        final long nanos;
+        final ByteArrayOutputStream output;
+        final ByteArrayOutputStream errors;
+
+        Result(Path path, int status, long nanos,
+               ByteArrayOutputStream output, ByteArrayOutputStream errors) {
+            this.path = path;
+            this.status = status;
+            this.nanos = nanos;
+            this.output = output;
+            this.errors = errors;
+        }
+    }
+
+    private final Lox options;
+    private final int jobs;
+    private final PrintStream out;
+    private final PrintStream err;
+
+    /// Batch running each file on a copy of options, at most jobs at once.
+    Batch(Lox options, int jobs, PrintStream out, PrintStream err) {
+        this.options = options;
+        this.jobs = jobs;
+        this.out = out;
+        this.err = err;
+    }
+
+    /// The files named by paths, with each directory standing for the .lox
+    /// files anywhere under it, in name order.
+    List<Path> files(String[] paths) throws IOException {
+        List<Path> files = new ArrayList<>();
+        for (String name : paths) {
+            Path path = options.path(name);
+            if (!Files.isDirectory(path)) {
+                files.add(path);
+                continue;
+            }
+            try (Stream<Path> found = Files.walk(path)) {
+                found.filter(file -> Files.isRegularFile(file) && file.toString().endsWith(".lox"))
+                    .sorted()
+                    .forEach(files::add);
+            }
+        }
+        return files;
+    }
+
+    /// Run the files named by paths, returning 0 if all of them ran
+    /// without errors, or else the highest status one of them ended with.
+    int run(String[] paths) throws IOException {
+        List<Path> files = files(paths);
+        int threads = Math.max(1, Math.min(jobs, files.size()));
+        long start = System.nanoTime();
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Result> results = new ArrayList<>();
+        try {
+            List<Future<Result>> running = new ArrayList<>();
+            for (Path file : files) {
+                running.add(pool.submit(() -> run(file)));
+            }
+            for (Future<Result> result : running) {
+                results.add(print(result.get()));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while running files", e);
+        } catch (ExecutionException e) {
+            // run() reports whatever a file throws as its error
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+        long nanos = System.nanoTime() - start;
+
+        int status = 0;
+        int failed = 0;
+        for (Result result : results) {
+            out.printf("%-7s %9.1f ms  %s%n", result.status == 0 ? "ok" : "exit " + result.status,
+                       result.nanos / 1e6, result.path);
+            if (result.status != 0) {
+                failed++;
+                status = Math.max(status, result.status);
+            }
+        }
+        out.printf("%d files, %d failed, in %.1f ms on %d threads%n",
+                   results.size(), failed, nanos / 1e6, threads);
+        return status;
+    }
+
+    private Result run(Path file) {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        ByteArrayOutputStream errors = new ByteArrayOutputStream();
+        PrintStream fileErr = new PrintStream(errors, true);
+        Lox lox = options.copy(new PrintStream(output, true), fileErr);
+
+        long start = System.nanoTime();
+        int status;
+        try {
+            status = lox.runFile(file);
+        } catch (IOException e) {
+            fileErr.println("Can't read " + file + ": " + e);
+            status = Lox.EX_NOINPUT;
+        } catch (RuntimeException | StackOverflowError e) {
+            // A bug rather than an error in the file, but only this file's
+            fileErr.println("Internal error: " + e);
+            status = Lox.EX_SOFTWARE;
+        }
+        return new Result(file, status, System.nanoTime() - start, output, errors);
+    }
+
+    private Result print(Result result) {
+        out.println("==> " + result.path + " <==");
+        out.write(result.output.toByteArray(), 0, result.output.size());
+        out.flush();
+        err.write(result.errors.toByteArray(), 0, result.errors.size());
+        err.flush();
+        return result;
+    }
+}
@@ -0,0 +1,22 @@
+package jlox;
+
+/// Method of the VM read off an instance, remembering the instance as this.
+class BoundMethod implements LoxCallable {
+    final Object receiver;
+    final Closure method;
+
+    BoundMethod(Object receiver, Closure method) {
+        this.receiver = receiver;
+        this.method = method;
+    }
+
+    @Override
+    public int arity() {
+        return method.arity();
+    }
+
+    @Override
+    public String toString() {
+        return method.toString();
+    }
+}
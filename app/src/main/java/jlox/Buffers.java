@@ -0,0 +1,45 @@
+package jlox;
+
+import java.nio.ByteBuffer;
+
+/// Bulk copies of primitive arrays into and out of ByteBuffers, leaving the
+/// buffer positioned just past the values. In a buffer of native byte order
+/// these are plain memory copies.
+final class Buffers {
+    private Buffers() {}
+
+    static void putBytes(ByteBuffer out, byte[] values, int count) {
+        out.put(values, 0, count);
+    }
+
+    static void putInts(ByteBuffer out, int[] values, int count) {
+        out.asIntBuffer().put(values, 0, count);
+        out.position(out.position() + count * Integer.BYTES);
+    }
+
+    static void putDoubles(ByteBuffer out, double[] values, int count) {
+        out.asDoubleBuffer().put(values, 0, count);
+        out.position(out.position() + count * Double.BYTES);
+    }
+
+    /// Read count values into a new array of at least capacity.
+    static byte[] getBytes(ByteBuffer in, int count, int capacity) {
+        byte[] values = new byte[Math.max(count, capacity)];
+        in.get(values, 0, count);
+        return values;
+    }
+
+    static int[] getInts(ByteBuffer in, int count, int capacity) {
+        int[] values = new int[Math.max(count, capacity)];
+        in.asIntBuffer().get(values, 0, count);
+        in.position(in.position() + count * Integer.BYTES);
+        return values;
+    }
+
+    static double[] getDoubles(ByteBuffer in, int count, int capacity) {
+        double[] values = new double[Math.max(count, capacity)];
+        in.asDoubleBuffer().get(values, 0, count);
+        in.position(in.position() + count * Double.BYTES);
+        return values;
+    }
+}
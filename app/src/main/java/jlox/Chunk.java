@@ -0,0 +1,82 @@
+package jlox;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/// Bytecode of one function with its constants and the source line of
+/// every byte.
+class Chunk {
+    static final int MAX_CONSTANTS = 1 << 16;
+
+    private static final int MIN_CAPACITY = 64;
+
+    byte[] code = new byte[MIN_CAPACITY];
+    int[] lines = new int[MIN_CAPACITY];
+    int count = 0;
+
+    Object[] constants = new Object[8];
+    // Number constants again, unboxed, at the same index
+    double[] numbers = new double[8];
+    int constantCount = 0;
+    // One per property access site, see InlineCache
+    InlineCache[] caches = new InlineCache[0];
+    int cacheCount = 0;
+
+    // Numbers and strings are stored once however often they are used
+    private final Map<Object, Integer> constantIndex = new HashMap<>();
+
+    void write(int b, int line) {
+        if (count == code.length) {
+            code = Arrays.copyOf(code, count * 2);
+            lines = Arrays.copyOf(lines, count * 2);
+        }
+        code[count] = (byte) b;
+        lines[count] = line;
+        count++;
+    }
+
+    /// Index of value in the constants, or -1 if there are too many.
+    int addConstant(Object value) {
+        boolean shared = value instanceof Double || value instanceof String;
+        if (shared) {
+            Integer index = constantIndex.get(value);
+            if (index != null) {
+                return index;
+            }
+        }
+        if (constantCount == MAX_CONSTANTS) {
+            return -1;
+        }
+
+        if (constantCount == constants.length) {
+            constants = Arrays.copyOf(constants, constantCount * 2);
+            numbers = Arrays.copyOf(numbers, constantCount * 2);
+        }
+        constants[constantCount] = value;
+        if (value instanceof Double) {
+            numbers[constantCount] = (double) value;
+        }
+        if (shared) {
+            constantIndex.put(value, constantCount);
+        }
+        return constantCount++;
+    }
+
+    /// Index of a new InlineCache for the property with symbol id name, or
+    /// -1 if there are too many.
+    int addCache(int name) {
+        if (cacheCount == MAX_CONSTANTS) {
+            return -1;
+        }
+        if (cacheCount == caches.length) {
+            caches = Arrays.copyOf(caches, Math.max(4, cacheCount * 2));
+        }
+        caches[cacheCount] = new InlineCache(name);
+        return cacheCount++;
+    }
+
+    int readShort(int offset) {
+        return ((code[offset] & 0xff) << 8) | (code[offset + 1] & 0xff);
+    }
+}
@@ -0,0 +1,128 @@
+package jlox;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+/// Thin client of a Server: runs jlox there with the arguments and working
+/// directory it was given, passing on its standard input and writing out
+/// what the run prints as it comes, then exits with the status of the run.
+/// It uses no other class of jlox, so it starts about as fast as a JVM can.
+///
+/// A request is VERSION, the working directory and the arguments, after
+/// which the rest of what the client sends is the run's standard input. The
+/// response is a series of frames, each a kind and a length followed by
+/// that many bytes for OUT and ERR. An EXIT frame ends it, with the status
+/// in place of the length. While a run goes on, the Server also sends empty
+/// OUT frames, to find out whether the client is still there.
+public class Client {
+    static final int VERSION = 1;
+
+    // Kinds of frames
+    static final byte OUT = 1;
+    static final byte ERR = 2;
+    static final byte EXIT = 3;
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.err.println("Usage: jlox-client socket [jlox arguments]");
+            System.exit(64);
+        }
+
+        int status = run(Paths.get(args[0]), Arrays.copyOfRange(args, 1, args.length),
+                         System.in, System.out, System.err);
+        // Also ends the thread that may still be waiting on standard input
+        System.exit(status);
+    }
+
+    /// Run jlox with args on the Server listening at socket, returning the
+    /// status it ended with.
+    static int run(Path socket, String[] args, InputStream in,
+                   OutputStream out, OutputStream err) throws IOException {
+        try (SocketChannel channel = SocketChannel.open(UnixDomainSocketAddress.of(socket))) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream request = new DataOutputStream(bytes);
+            request.writeInt(VERSION);
+            writeString(request, Paths.get("").toAbsolutePath().toString());
+            request.writeInt(args.length);
+            for (String arg : args) {
+                writeString(request, arg);
+            }
+            write(channel, bytes.toByteArray(), bytes.size());
+
+            // Only a run of the REPL reads its input, but the client can't
+            // tell which runs will, so input is passed on as it arrives
+            Thread input = new Thread(() -> copyInput(in, channel), "jlox-client-input");
+            input.setDaemon(true);
+            input.start();
+
+            DataInputStream response = new DataInputStream(
+                new BufferedInputStream(Channels.newInputStream(channel)));
+            byte[] buffer = new byte[8192];
+            for (;;) {
+                byte kind = response.readByte();
+                int length = response.readInt();
+                if (kind == EXIT) {
+                    return length;
+                }
+
+                OutputStream to = kind == ERR ? err : out;
+                while (length > 0) {
+                    int n = response.read(buffer, 0, Math.min(length, buffer.length));
+                    if (n < 0) {
+                        throw new IOException("Server closed the connection mid-frame");
+                    }
+                    to.write(buffer, 0, n);
+                    length -= n;
+                }
+                to.flush();
+            }
+        }
+    }
+
+    static void writeString(DataOutputStream out, String s) throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // Written straight to the channel: a stream from Channels would wait
+    // for the response reader to let go of the channel's blocking lock
+    private static void write(SocketChannel channel, byte[] bytes, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes, 0, length);
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private static void copyInput(InputStream in, SocketChannel channel) {
+        byte[] buffer = new byte[8192];
+        try {
+            int n;
+            while ((n = in.read(buffer)) > 0) {
+                write(channel, buffer, n);
+            }
+            channel.shutdownOutput();
+        } catch (IOException e) {
+            // The run ended and closed the channel, so the rest isn't wanted
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package jlox;
+
+/// CompiledFunction together with the variables it captured.
+class Closure implements LoxCallable {
+    final CompiledFunction function;
+    final Upvalue[] upvalues;
+
+    Closure(CompiledFunction function) {
+        this.function = function;
+        this.upvalues = new Upvalue[function.upvalueCount];
+    }
+
+    @Override
+    public int arity() {
+        return function.arity;
+    }
+
+    @Override
+    public String toString() {
+        return function.toString();
+    }
+}
@@ -0,0 +1,19 @@
+package jlox;
+
+/// Function compiled to bytecode by the Compiler, before it is wrapped in a
+/// Closure at run time.
+class CompiledFunction {
+    final String name;
+    final Chunk chunk = new Chunk();
+    int arity = 0;
+    int upvalueCount = 0;
+
+    CompiledFunction(String name) {
+        this.name = name;
+    }
+
+    @Override
+    public String toString() {
+        return name == null ? "<script>" : "<fn " + name + ">";
+    }
+}
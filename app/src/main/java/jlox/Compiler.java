@@ -0,0 +1,531 @@
+package jlox;
+
+/// Compiles a resolved Ast to bytecode for the VM. Local variables live in
+/// stack slots assigned here, variables captured by closures become
+/// upvalues, and globals use the index the Resolver gave them.
+class Compiler {
+    private static final int MAX_LOCALS = 256;
+    private static final int MAX_UPVALUES = 256;
+    private static final int MAX_JUMP = 0xffff;
+
+    private enum FunctionType {
+        FUNCTION,
+        INITIALIZER,
+        METHOD,
+        SCRIPT,
+    }
+
+    // Compiler state of the function being compiled, one per nesting level
+    private static class State {
+        final State enclosing;
+        final CompiledFunction function;
+        final FunctionType type;
+
+        // Symbol of each local, in stack slot order
+        final int[] localNames = new int[MAX_LOCALS];
+        final int[] localDepths = new int[MAX_LOCALS];
+        final boolean[] localCaptured = new boolean[MAX_LOCALS];
+        int localCount = 0;
+
+        // Where each upvalue is captured from: a local slot of the
+        // enclosing function, or one of its upvalues
+        final int[] upvalueIndexes = new int[MAX_UPVALUES];
+        final boolean[] upvalueIsLocal = new boolean[MAX_UPVALUES];
+
+        int scopeDepth = 0;
+
+        State(State enclosing, CompiledFunction function, FunctionType type) {
+            this.enclosing = enclosing;
+            this.function = function;
+            this.type = type;
+        }
+    }
+
+    private final Ast ast;
+    private final ErrorReporter errors;
+    private final int thisSymbol;
+    private final int superSymbol;
+    private final int initSymbol;
+    private State current;
+    private boolean hadError = false;
+
+    Compiler(Ast ast) {
+        this(ast, ErrorReporter.standard());
+    }
+
+    Compiler(Ast ast, ErrorReporter errors) {
+        this.ast = ast;
+        this.errors = errors;
+        this.thisSymbol = ast.symbols.intern("this");
+        this.superSymbol = ast.symbols.intern("super");
+        this.initSymbol = ast.symbols.intern("init");
+    }
+
+    /// Compile the top level statements as a script function, or return
+    /// null after reporting the errors if the Ast can't be compiled.
+    CompiledFunction compile() {
+        current = new State(null, new CompiledFunction(null), FunctionType.SCRIPT);
+        // Slot zero holds the function being called
+        addLocal(Ast.NONE, 0);
+
+        int root = ast.root();
+        int line = 1;
+        for (int i = 0; i < ast.count(root); i++) {
+            int stmt = ast.item(root, i);
+            statement(stmt);
+            line = ast.line(stmt);
+        }
+        emitReturn(line);
+
+        return hadError ? null : current.function;
+    }
+
+    private void statement(int stmt) {
+        int line = ast.line(stmt);
+        switch (ast.kind(stmt)) {
+        case Ast.EXPRESSION:
+            expression(ast.a(stmt));
+            emit(OpCode.POP, line);
+            break;
+        case Ast.PRINT:
+            expression(ast.a(stmt));
+            emit(OpCode.PRINT, line);
+            break;
+        case Ast.VAR:
+            if (ast.b(stmt) != Ast.NONE) {
+                expression(ast.b(stmt));
+            } else {
+                emit(OpCode.NIL, line);
+            }
+            defineVariable(stmt, line);
+            break;
+        case Ast.BLOCK:
+            beginScope();
+            statements(ast.a(stmt));
+            endScope(line);
+            break;
+        case Ast.IF: {
+            expression(ast.a(stmt));
+            int thenJump = emitJump(OpCode.JUMP_IF_FALSE, line);
+            emit(OpCode.POP, line);
+            statement(ast.b(stmt));
+            int elseJump = emitJump(OpCode.JUMP, line);
+            patchJump(thenJump, line);
+            emit(OpCode.POP, line);
+            if (ast.c(stmt) != Ast.NONE) {
+                statement(ast.c(stmt));
+            }
+            patchJump(elseJump, line);
+            break;
+        }
+        case Ast.WHILE: {
+            int loopStart = chunk().count;
+            if (ast.kind(ast.a(stmt)) == Ast.TRUE) {
+                // Nothing to test in a loop that can only end by returning
+                statement(ast.b(stmt));
+                emitLoop(loopStart, line);
+                break;
+            }
+            expression(ast.a(stmt));
+            int exitJump = emitJump(OpCode.JUMP_IF_FALSE, line);
+            emit(OpCode.POP, line);
+            statement(ast.b(stmt));
+            emitLoop(loopStart, line);
+            patchJump(exitJump, line);
+            emit(OpCode.POP, line);
+            break;
+        }
+        case Ast.FUNCTION:
+            if (current.scopeDepth > 0) {
+                // Declared before the body so the function can call itself
+                addLocal(ast.a(stmt), line);
+                function(stmt, FunctionType.FUNCTION);
+            } else {
+                function(stmt, FunctionType.FUNCTION);
+                defineVariable(stmt, line);
+            }
+            break;
+        case Ast.RETURN:
+            if (ast.a(stmt) == Ast.NONE) {
+                emitReturn(line);
+            } else {
+                expression(ast.a(stmt));
+                emit(OpCode.RETURN, line);
+            }
+            break;
+        case Ast.CLASS:
+            classDeclaration(stmt);
+            break;
+        default:
+            throw new IllegalStateException("Not a statement: " + ast.kind(stmt));
+        }
+    }
+
+    private void statements(int list) {
+        for (int i = 0; i < ast.count(list); i++) {
+            statement(ast.item(list, i));
+        }
+    }
+
+    private void classDeclaration(int stmt) {
+        int line = ast.line(stmt);
+        int name = ast.a(stmt);
+        boolean hasSuperclass = ast.b(stmt) != Ast.NONE;
+        if (hasSuperclass) {
+            expression(ast.b(stmt));
+            line = ast.line(ast.b(stmt));
+        }
+        emitConstantOp(OpCode.CLASS, ast.name(name), line);
+        emit(hasSuperclass ? 1 : 0, line);
+        defineVariable(stmt, line);
+
+        // super is a local holding the class, whose superclass the methods
+        // look up when they call super
+        if (hasSuperclass) {
+            beginScope();
+            namedVariable(name, stmt, false, line);
+            addLocal(superSymbol, line);
+        }
+
+        namedVariable(name, stmt, false, line);
+        int methods = ast.c(stmt);
+        for (int i = 0; i < ast.count(methods); i++) {
+            int method = ast.item(methods, i);
+            boolean isInitializer = ast.a(method) == initSymbol;
+            function(method, isInitializer ? FunctionType.INITIALIZER : FunctionType.METHOD);
+            emitConstantOp(OpCode.METHOD, ast.name(ast.a(method)), ast.line(method));
+        }
+        emit(OpCode.POP, line);
+
+        if (hasSuperclass) {
+            endScope(line);
+        }
+    }
+
+    private void function(int decl, FunctionType type) {
+        int line = ast.line(decl);
+        State state = new State(current, new CompiledFunction(ast.name(ast.a(decl))), type);
+        current = state;
+        addLocal(type == FunctionType.FUNCTION ? Ast.NONE : thisSymbol, line);
+
+        beginScope();
+        int params = ast.b(decl);
+        state.function.arity = ast.count(params);
+        for (int i = 0; i < ast.count(params); i++) {
+            addLocal(ast.item(params, i), line);
+        }
+        statements(ast.c(decl));
+        emitReturn(line);
+        current = state.enclosing;
+
+        emitConstantOp(OpCode.CLOSURE, state.function, line);
+        for (int i = 0; i < state.function.upvalueCount; i++) {
+            emit(state.upvalueIsLocal[i] ? 1 : 0, line);
+            emit(state.upvalueIndexes[i], line);
+        }
+    }
+
+    private void expression(int expr) {
+        int line = ast.line(expr);
+        switch (ast.kind(expr)) {
+        case Ast.NUMBER:
+            emitConstantOp(OpCode.NUMBER, ast.numberValue(expr), line);
+            break;
+        case Ast.STRING:
+            emitConstantOp(OpCode.CONSTANT, ast.name(ast.a(expr)), line);
+            break;
+        case Ast.TRUE:
+            emit(OpCode.TRUE, line);
+            break;
+        case Ast.FALSE:
+            emit(OpCode.FALSE, line);
+            break;
+        case Ast.NIL:
+            emit(OpCode.NIL, line);
+            break;
+        case Ast.GROUPING:
+            expression(ast.a(expr));
+            break;
+        case Ast.NEGATE:
+            expression(ast.a(expr));
+            emit(OpCode.NEGATE, line);
+            break;
+        case Ast.NOT:
+            expression(ast.a(expr));
+            emit(OpCode.NOT, line);
+            break;
+        case Ast.ADD:
+            binary(expr, OpCode.ADD);
+            break;
+        case Ast.SUBTRACT:
+            binary(expr, OpCode.SUBTRACT);
+            break;
+        case Ast.MULTIPLY:
+            binary(expr, OpCode.MULTIPLY);
+            break;
+        case Ast.DIVIDE:
+            binary(expr, OpCode.DIVIDE);
+            break;
+        case Ast.EQUAL:
+            binary(expr, OpCode.EQUAL);
+            break;
+        case Ast.NOT_EQUAL:
+            binary(expr, OpCode.NOT_EQUAL);
+            break;
+        case Ast.GREATER:
+            binary(expr, OpCode.GREATER);
+            break;
+        case Ast.GREATER_EQUAL:
+            binary(expr, OpCode.GREATER_EQUAL);
+            break;
+        case Ast.LESS:
+            binary(expr, OpCode.LESS);
+            break;
+        case Ast.LESS_EQUAL:
+            binary(expr, OpCode.LESS_EQUAL);
+            break;
+        case Ast.AND: {
+            expression(ast.a(expr));
+            int endJump = emitJump(OpCode.JUMP_IF_FALSE, line);
+            emit(OpCode.POP, line);
+            expression(ast.b(expr));
+            patchJump(endJump, line);
+            break;
+        }
+        case Ast.OR: {
+            expression(ast.a(expr));
+            int elseJump = emitJump(OpCode.JUMP_IF_FALSE, line);
+            int endJump = emitJump(OpCode.JUMP, line);
+            patchJump(elseJump, line);
+            emit(OpCode.POP, line);
+            expression(ast.b(expr));
+            patchJump(endJump, line);
+            break;
+        }
+        case Ast.VARIABLE:
+            namedVariable(ast.a(expr), expr, false, line);
+            break;
+        case Ast.ASSIGN:
+            expression(ast.b(expr));
+            namedVariable(ast.a(expr), expr, true, line);
+            break;
+        case Ast.CALL: {
+            int callee = ast.a(expr);
+            boolean invoke = ast.kind(callee) == Ast.GET;
+            if (invoke) {
+                // Call methods without binding them
+                expression(ast.a(callee));
+                emitPropertyOp(OpCode.GET_METHOD, ast.b(callee), ast.line(callee));
+            } else {
+                expression(callee);
+            }
+            int args = ast.b(expr);
+            for (int i = 0; i < ast.count(args); i++) {
+                expression(ast.item(args, i));
+            }
+            emit(invoke ? OpCode.INVOKE : OpCode.CALL, line);
+            emit(ast.count(args), line);
+            break;
+        }
+        case Ast.GET:
+            expression(ast.a(expr));
+            emitPropertyOp(OpCode.GET_PROPERTY, ast.b(expr), line);
+            break;
+        case Ast.SET:
+            expression(ast.a(expr));
+            expression(ast.c(expr));
+            emitPropertyOp(OpCode.SET_PROPERTY, ast.b(expr), line);
+            break;
+        case Ast.THIS:
+            namedVariable(thisSymbol, expr, false, line);
+            break;
+        case Ast.SUPER:
+            namedVariable(superSymbol, expr, false, line);
+            namedVariable(thisSymbol, expr, false, line);
+            emitConstantOp(OpCode.GET_SUPER, ast.name(ast.a(expr)), line);
+            break;
+        default:
+            throw new IllegalStateException("Not an expression: " + ast.kind(expr));
+        }
+    }
+
+    private void binary(int expr, byte op) {
+        expression(ast.a(expr));
+        expression(ast.b(expr));
+        emit(op, ast.line(expr));
+    }
+
+    // Load or store symbol, which node resolved if it is a global
+    private void namedVariable(int symbol, int node, boolean assign, int line) {
+        int arg = resolveLocal(current, symbol);
+        if (arg != -1) {
+            emit(assign ? OpCode.SET_LOCAL : OpCode.GET_LOCAL, line);
+            emit(arg, line);
+        } else if ((arg = resolveUpvalue(current, symbol, line)) != -1) {
+            emit(assign ? OpCode.SET_UPVALUE : OpCode.GET_UPVALUE, line);
+            emit(arg, line);
+        } else {
+            emit(assign ? OpCode.SET_GLOBAL : OpCode.GET_GLOBAL, line);
+            emitShort(ast.slot(node), line);
+        }
+    }
+
+    // Bind the value on top of the stack to the variable a VAR, FUNCTION or
+    // CLASS node declares
+    private void defineVariable(int stmt, int line) {
+        if (current.scopeDepth > 0) {
+            addLocal(ast.a(stmt), line);
+        } else {
+            emit(OpCode.DEFINE_GLOBAL, line);
+            emitShort(ast.slot(stmt), line);
+        }
+    }
+
+    private void addLocal(int name, int line) {
+        if (current.localCount == MAX_LOCALS) {
+            error(line, "Too many local variables in function.");
+            return;
+        }
+        current.localNames[current.localCount] = name;
+        current.localDepths[current.localCount] = current.scopeDepth;
+        current.localCaptured[current.localCount] = false;
+        current.localCount++;
+    }
+
+    private static int resolveLocal(State state, int symbol) {
+        for (int i = state.localCount - 1; i >= 0; i--) {
+            if (state.localNames[i] == symbol) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private int resolveUpvalue(State state, int symbol, int line) {
+        if (state.enclosing == null) {
+            return -1;
+        }
+
+        int local = resolveLocal(state.enclosing, symbol);
+        if (local != -1) {
+            state.enclosing.localCaptured[local] = true;
+            return addUpvalue(state, local, true, line);
+        }
+
+        int upvalue = resolveUpvalue(state.enclosing, symbol, line);
+        if (upvalue != -1) {
+            return addUpvalue(state, upvalue, false, line);
+        }
+
+        return -1;
+    }
+
+    private int addUpvalue(State state, int index, boolean isLocal, int line) {
+        int count = state.function.upvalueCount;
+        for (int i = 0; i < count; i++) {
+            if (state.upvalueIndexes[i] == index && state.upvalueIsLocal[i] == isLocal) {
+                return i;
+            }
+        }
+
+        if (count == MAX_UPVALUES) {
+            error(line, "Too many closure variables in function.");
+            return 0;
+        }
+        state.upvalueIndexes[count] = index;
+        state.upvalueIsLocal[count] = isLocal;
+        return state.function.upvalueCount++;
+    }
+
+    private void beginScope() {
+        current.scopeDepth++;
+    }
+
+    private void endScope(int line) {
+        current.scopeDepth--;
+        while (current.localCount > 0 &&
+               current.localDepths[current.localCount - 1] > current.scopeDepth) {
+            if (current.localCaptured[current.localCount - 1]) {
+                emit(OpCode.CLOSE_UPVALUE, line);
+            } else {
+                emit(OpCode.POP, line);
+            }
+            current.localCount--;
+        }
+    }
+
+    private Chunk chunk() {
+        return current.function.chunk;
+    }
+
+    private void emit(int b, int line) {
+        chunk().write(b, line);
+    }
+
+    private void emitConstantOp(byte op, Object value, int line) {
+        int constant = chunk().addConstant(value);
+        if (constant == -1) {
+            error(line, "Too many constants in one chunk.");
+            constant = 0;
+        }
+        emit(op, line);
+        emitShort(constant, line);
+    }
+
+    // Property access with its own InlineCache
+    private void emitPropertyOp(byte op, int name, int line) {
+        emitConstantOp(op, ast.name(name), line);
+        int cache = chunk().addCache(name);
+        if (cache == -1) {
+            error(line, "Too many property accesses in one chunk.");
+            cache = 0;
+        }
+        emitShort(cache, line);
+    }
+
+    private void emitShort(int value, int line) {
+        emit(value >> 8, line);
+        emit(value, line);
+    }
+
+    private void emitReturn(int line) {
+        if (current.type == FunctionType.INITIALIZER) {
+            emit(OpCode.GET_LOCAL, line);
+            emit(0, line);
+        } else {
+            emit(OpCode.NIL, line);
+        }
+        emit(OpCode.RETURN, line);
+    }
+
+    private int emitJump(byte op, int line) {
+        emit(op, line);
+        emit(0xff, line);
+        emit(0xff, line);
+        return chunk().count - 2;
+    }
+
+    private void patchJump(int offset, int line) {
+        int jump = chunk().count - offset - 2;
+        if (jump > MAX_JUMP) {
+            error(line, "Too much code to jump over.");
+        }
+        chunk().code[offset] = (byte) (jump >> 8);
+        chunk().code[offset + 1] = (byte) jump;
+    }
+
+    private void emitLoop(int loopStart, int line) {
+        emit(OpCode.LOOP, line);
+        int offset = chunk().count - loopStart + 2;
+        if (offset > MAX_JUMP) {
+            error(line, "Loop body too large.");
+        }
+        emit(offset >> 8, line);
+        emit(offset, line);
+    }
+
+    private void error(int line, String msg) {
+        errors.error(line, msg);
+        hadError = true;
+    }
+}
@@ -0,0 +1,139 @@
+package jlox;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/// An ErrorReporter that collects errors as data instead of printing them,
+/// for tools that want every lexical error of a source in one pass. A
+/// scanner reporting to one keeps what it could not scan as ERROR tokens,
+/// so its stream still covers the whole source.
+///
+/// An error repeated on the line of the last ones collected is only
+/// counted again, and once limit errors are collected the scanner stops
+/// and later errors are dropped, so a machine-generated file full of bad
+/// chars costs no more than its first few. Errors the Parser or Resolver
+/// report are collected as well, without an offset.
+class Diagnostics implements ErrorReporter {
+    /// One error, and how many times it was reported on its line.
+    static class Diagnostic {
+        final int line;
+        // Column of offset on the line offset is on, from 1, or 0 without
+        // an offset. An unterminated string is reported on its last line
+        // but found at its opening quote.
+        final int column;
+        // Span in the source, or -1 and 0 if it was not found by a scanner
+        final long offset;
+        final int length;
+        final String where;
+        final String message;
+        private int count = 1;
+
+        Diagnostic(int line, int column, long offset, int length, String where, String message) {
+            this.line = line;
+            this.column = column;
+            this.offset = offset;
+            this.length = length;
+            this.where = where;
+            this.message = message;
+        }
+
+        int count() {
+            return count;
+        }
+
+        @Override
+        public String toString() {
+            String at = column > 0 ? "[line: " + line + ", column: " + column + "]" : "[line: " + line + "]";
+            String times = count > 1 ? " (" + count + " times)" : "";
+            return at + " Error" + where + ": " + message + times;
+        }
+    }
+
+    private final Source source;
+    private final int limit;
+    private final List<Diagnostic> diagnostics = new ArrayList<>();
+    // Offset of the last lexical error and where its line starts, so that
+    // finding the column of the next one only goes back as far as it
+    private long lastOffset = 0;
+    private long lastLineStart = 0;
+
+    /// Diagnostics for the errors in source, taking up to limit of them.
+    Diagnostics(Source source, int limit) {
+        this.source = source;
+        this.limit = limit;
+    }
+
+    /// Diagnostics taking every error in source.
+    Diagnostics(Source source) {
+        this(source, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public synchronized boolean lexicalError(int line, long offset, int length, String msg) {
+        if (!repeated(line, "", msg) && diagnostics.size() < limit) {
+            diagnostics.add(new Diagnostic(line, column(offset), offset, length, "", msg));
+        }
+        return true;
+    }
+
+    @Override
+    public synchronized void error(int line, String where, String msg) {
+        if (!repeated(line, where, msg) && diagnostics.size() < limit) {
+            diagnostics.add(new Diagnostic(line, 0, -1, 0, where, msg));
+        }
+    }
+
+    @Override
+    public void runtimeError(int line, String msg) {
+        error(line, "", msg);
+    }
+
+    @Override
+    public synchronized boolean tooManyErrors() {
+        return diagnostics.size() >= limit;
+    }
+
+    /// What was collected, in the order it was first reported.
+    synchronized List<Diagnostic> list() {
+        return Collections.unmodifiableList(new ArrayList<>(diagnostics));
+    }
+
+    synchronized int size() {
+        return diagnostics.size();
+    }
+
+    // Count the error again if it is the same as one already collected for
+    // its line. Scanners report in line order, so only the last few are
+    // looked at.
+    private boolean repeated(int line, String where, String msg) {
+        for (int i = diagnostics.size() - 1; i >= 0 && diagnostics.get(i).line == line; i--) {
+            Diagnostic diagnostic = diagnostics.get(i);
+            if (diagnostic.message.equals(msg) && diagnostic.where.equals(where)) {
+                diagnostic.count++;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private int column(long offset) {
+        long floor = 0;
+        long floorLineStart = 0;
+        if (offset >= lastOffset) {
+            floor = lastOffset;
+            floorLineStart = lastLineStart;
+        }
+        long lineStart = offset;
+        while (lineStart > floor && source.charAt(lineStart - 1) != '\n') {
+            lineStart--;
+        }
+        if (lineStart == floor) {
+            lineStart = floorLineStart;
+        }
+
+        lastOffset = offset;
+        lastLineStart = lineStart;
+        return (int) Math.min(Integer.MAX_VALUE, offset - lineStart + 1);
+    }
+}
@@ -0,0 +1,134 @@
+package jlox;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Arrays;
+
+/// Source that IncrementalScanner edits in place. The text is kept in a gap
+/// buffer: the chars before the last edit at the front of the array and
+/// those after it at the end, so an edit only moves the chars between it
+/// and the previous edit, instead of copying the whole text.
+///
+/// A copy of a byte-oriented source stays byte-oriented, so that the
+/// offsets of the tokens scanned from it remain valid, and inserted text is
+/// stored as the bytes of its UTF-8 encoding.
+class EditableSource extends Source {
+    private static final int MIN_GAP = 64;
+
+    private final boolean bytes;
+    private char[] chars;
+    private int gapStart;
+    private int gapEnd;
+
+    EditableSource(Source source) {
+        int length = (int) source.length();
+        bytes = source.isBytes();
+        chars = new char[length + MIN_GAP];
+        source.getChars(0, length, chars, 0);
+        gapStart = length;
+        gapEnd = chars.length;
+    }
+
+    @Override
+    long length() {
+        return chars.length - (gapEnd - gapStart);
+    }
+
+    @Override
+    boolean isBytes() {
+        return bytes;
+    }
+
+    @Override
+    char charAt(long pos) {
+        return pos < gapStart ? chars[(int) pos] : chars[(int) pos + gapEnd - gapStart];
+    }
+
+    @Override
+    void getChars(long start, long end, char[] dst, int offset) {
+        int from = (int) start;
+        int to = (int) end;
+        if (from < gapStart) {
+            int count = Math.min(to, gapStart) - from;
+            System.arraycopy(chars, from, dst, offset, count);
+            offset += count;
+            from += count;
+        }
+        if (from < to) {
+            System.arraycopy(chars, from + gapEnd - gapStart, dst, offset, to - from);
+        }
+    }
+
+    @Override
+    String substring(long start, long end) {
+        char[] text = new char[(int) (end - start)];
+        getChars(start, end, text, 0);
+        if (!bytes) {
+            return new String(text);
+        }
+        byte[] utf8 = new byte[text.length];
+        for (int i = 0; i < text.length; i++) {
+            utf8[i] = (byte) text[i];
+        }
+        return new String(utf8, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    void hash(MessageDigest digest) {
+        char[] text = new char[(int) length()];
+        getChars(0, text.length, text, 0);
+        if (bytes) {
+            for (char c : text) {
+                digest.update((byte) c);
+            }
+        } else {
+            digest.update(new String(text).getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    /// Replace the deleted chars at offset with inserted, and return by how
+    /// many chars that changed the length.
+    int replace(int offset, int deleted, String inserted) {
+        char[] text = inserted.toCharArray();
+        if (bytes) {
+            byte[] utf8 = inserted.getBytes(StandardCharsets.UTF_8);
+            text = new char[utf8.length];
+            for (int i = 0; i < utf8.length; i++) {
+                text[i] = (char) (utf8[i] & 0xff);
+            }
+        }
+
+        moveGap(offset);
+        gapEnd += deleted;
+        if (gapEnd - gapStart < text.length) {
+            grow(text.length);
+        }
+        System.arraycopy(text, 0, chars, gapStart, text.length);
+        gapStart += text.length;
+        return text.length - deleted;
+    }
+
+    private void moveGap(int offset) {
+        if (offset < gapStart) {
+            int count = gapStart - offset;
+            System.arraycopy(chars, offset, chars, gapEnd - count, count);
+            gapStart -= count;
+            gapEnd -= count;
+        } else if (offset > gapStart) {
+            int count = offset - gapStart;
+            System.arraycopy(chars, gapEnd, chars, gapStart, count);
+            gapStart += count;
+            gapEnd += count;
+        }
+    }
+
+    // Make room in the gap for at least needed chars
+    private void grow(int needed) {
+        int tail = chars.length - gapEnd;
+        int capacity = Math.max(chars.length + (chars.length >> 1), (int) length() + needed + MIN_GAP);
+        char[] grown = Arrays.copyOf(chars, capacity);
+        System.arraycopy(chars, gapEnd, grown, capacity - tail, tail);
+        chars = grown;
+        gapEnd = capacity - tail;
+    }
+}
@@ -0,0 +1,14 @@
+package jlox;
+
+/// Something that can execute a parsed program. State such as globals is
+/// kept between calls, so a REPL can run one line after another.
+interface Engine {
+    /// Run the top level statements of ast, throwing RuntimeError if the
+    /// program fails.
+    void execute(Ast ast);
+
+    /// Make the program running, and every one run after it, fail with a
+    /// RuntimeError of message at its next loop iteration or call. May be
+    /// called from any thread.
+    void cancel(String message);
+}
@@ -0,0 +1,24 @@
+package jlox;
+
+/// Variables of one scope, in the slots the Resolver gave them, chained to
+/// the scope enclosing it. A slot holding Values.NUMBER has its number at
+/// the same index of numbers.
+class Environment {
+    final Environment enclosing;
+    final Object[] values;
+    final double[] numbers;
+
+    Environment(Environment enclosing, int size) {
+        this.enclosing = enclosing;
+        this.values = new Object[size];
+        this.numbers = new double[size];
+    }
+
+    Environment ancestor(int depth) {
+        Environment environment = this;
+        for (int i = 0; i < depth; i++) {
+            environment = environment.enclosing;
+        }
+        return environment;
+    }
+}
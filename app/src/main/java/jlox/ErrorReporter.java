@@ -0,0 +1,67 @@
+package jlox;
+
+import java.io.PrintStream;
+
+/// Where errors in Lox code are reported: the Scanner, Parser, Resolver and
+/// Compiler report what they find in the code they are given, and Lox
+/// reports the runtime errors of the programs it runs. Each is handed its
+/// own, so scans and runs on different threads never share one unless the
+/// caller makes them. A ParallelScanner calls its reporter from its worker
+/// threads, so that one must be safe to call concurrently.
+public interface ErrorReporter {
+    /// Report an error in the code at line. where is empty, or says where
+    /// on the line the error is, as in " at 'x'".
+    void error(int line, String where, String msg);
+
+    /// Report the error a program stopped with at line.
+    void runtimeError(int line, String msg);
+
+    default void error(int line, String msg) {
+        error(line, "", msg);
+    }
+
+    /// Report a lexical error: [offset, offset + length) of the source,
+    /// found on line, is no token. Returns whether the scanner should keep
+    /// the span in its stream as an ERROR token, which only a reporter
+    /// collecting errors for a tool wants.
+    default boolean lexicalError(int line, long offset, int length, String msg) {
+        error(line, msg);
+        return false;
+    }
+
+    /// Whether this reporter takes no more errors, so that a scanner can
+    /// stop at the one it just reported.
+    default boolean tooManyErrors() {
+        return false;
+    }
+
+    default void error(Token token, String msg) {
+        if (token.type == TokenType.EOF) {
+            error(token.line, " at end", msg);
+        } else {
+            error(token.line, " at '" + token.lexeme + "'", msg);
+        }
+    }
+
+    /// Reporter printing each error to err as one println, so that it can
+    /// be called from several threads at once.
+    static ErrorReporter printingTo(PrintStream err) {
+        return new ErrorReporter() {
+            @Override
+            public void error(int line, String where, String msg) {
+                err.println("[line: " + line + "] Error" + where + ": " + msg);
+            }
+
+            @Override
+            public void runtimeError(int line, String msg) {
+                err.println(msg + "\n[line " + line + "]");
+            }
+        };
+    }
+
+    /// Reporter printing to System.err as it is when this is called, used
+    /// by whatever is made without a reporter of its own.
+    static ErrorReporter standard() {
+        return printingTo(System.err);
+    }
+}
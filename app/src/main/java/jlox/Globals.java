@@ -0,0 +1,102 @@
+package jlox;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/// Global variables of an engine in a dense table. The Resolver gives each
+/// global name an index once, so running code reads and writes them by
+/// index. Indexes are kept for the life of the engine, so later programs
+/// run by a REPL see the same globals.
+class Globals {
+    /// Most globals that bytecode can address with its u16 operands.
+    static final int MAX_GLOBALS = 1 << 16;
+
+    /// Value of a global that has been referred to but not yet defined.
+    static final Object UNDEFINED = new Object();
+
+    private final Map<String, Integer> indexes = new HashMap<>();
+    private String[] names = new String[16];
+    private Object[] values = new Object[16];
+    // Values of globals that hold Values.NUMBER
+    private double[] numbers = new double[16];
+    // Globals some code run so far assigns to, rather than only defines
+    private boolean[] assigned = new boolean[16];
+    private int count = 0;
+
+    Globals() {
+        define(index("clock"), LoxNative.CLOCK);
+    }
+
+    /// Index of the global called name, adding it if it is new.
+    int index(String name) {
+        Integer index = indexes.get(name);
+        if (index != null) {
+            return index;
+        }
+
+        if (count == names.length) {
+            names = Arrays.copyOf(names, count * 2);
+            values = Arrays.copyOf(values, count * 2);
+            numbers = Arrays.copyOf(numbers, count * 2);
+            assigned = Arrays.copyOf(assigned, count * 2);
+        }
+        names[count] = name;
+        values[count] = UNDEFINED;
+        indexes.put(name, count);
+        return count++;
+    }
+
+    int size() {
+        return count;
+    }
+
+    String name(int index) {
+        return names[index];
+    }
+
+    /// The value table itself, for the VM to index directly. It is replaced
+    /// when new globals are added, so must be fetched again after resolving.
+    Object[] values() {
+        return values;
+    }
+
+    /// Unboxed numbers of the values that are Values.NUMBER, replaced along
+    /// with values().
+    double[] numbers() {
+        return numbers;
+    }
+
+    Object get(int index, int line) {
+        Object value = values[index];
+        if (value == UNDEFINED) {
+            throw undefined(index, line);
+        }
+        return value == Values.NUMBER ? (Object) numbers[index] : value;
+    }
+
+    void define(int index, Object value) {
+        values[index] = value;
+    }
+
+    void assign(int index, Object value, int line) {
+        if (values[index] == UNDEFINED) {
+            throw undefined(index, line);
+        }
+        values[index] = value;
+    }
+
+    /// Record that an ASSIGN resolved to the global at index, so later
+    /// programs can't treat its value as constant either.
+    void setAssigned(int index) {
+        assigned[index] = true;
+    }
+
+    boolean isAssigned(int index) {
+        return assigned[index];
+    }
+
+    RuntimeError undefined(int index, int line) {
+        return new RuntimeError(line, "Undefined variable '" + names[index] + "'.");
+    }
+}
@@ -0,0 +1,114 @@
+package jlox;
+
+/// Re-lexes a source after an edit by rescanning only the damaged region.
+///
+/// Between tokens the Scanner carries no state but the line number, so once
+/// rescanning produces a token that lies past the edit and matches an old
+/// token at the same (shifted) position, every later token is unchanged
+/// apart from its offset and line. Those are kept where they are, and only
+/// the pending delta that TokenStream applies to them is moved.
+///
+/// The tokens are edited in place: the rescanned ones are spliced in at the
+/// insertion point of the stream and the source is an EditableSource, so an
+/// edit costs the same whatever the size of the file.
+class IncrementalScanner {
+
+    /// Apply the edit that replaces deleted chars at offset with inserted to
+    /// the source of previous, and return previous, now holding the tokens
+    /// of the edited source.
+    static TokenStream relex(TokenStream previous, int offset, int deleted, String inserted) {
+        return relex(previous, offset, deleted, inserted, ErrorReporter.standard());
+    }
+
+    /// relex, reporting the errors in what is rescanned to errors.
+    static TokenStream relex(TokenStream previous, int offset, int deleted, String inserted,
+                             ErrorReporter errors) {
+        // Copied once, on the first edit
+        EditableSource edited = previous.source() instanceof EditableSource
+            ? (EditableSource) previous.source()
+            : new EditableSource(previous.source());
+        int delta = edited.replace(offset, deleted, inserted);
+
+        return relex(previous, edited, offset, deleted, deleted + delta, errors);
+    }
+
+    static TokenStream relex(TokenStream previous, Source edited,
+                             int offset, int deleted, int inserted) {
+        return relex(previous, edited, offset, deleted, inserted, ErrorReporter.standard());
+    }
+
+    /// Edit previous in place into the tokens of edited, which is its source
+    /// with deleted chars at offset replaced by inserted chars, and return
+    /// it. Only the errors in the region that is rescanned are reported to
+    /// errors; those in the tokens kept were reported when they were first
+    /// scanned.
+    static TokenStream relex(TokenStream previous, Source edited,
+                             int offset, int deleted, int inserted, ErrorReporter errors) {
+        int delta = inserted - deleted;
+        int editEnd = offset + inserted;
+
+        // Tokens are unaffected if the scanner never looked at the edit while
+        // producing them. It can peek up to two chars past a token (a number
+        // checks for '.' and then a digit), so a token ending within one char
+        // of the edit is damaged as well.
+        int damaged = firstEndingAfter(previous, offset - 2);
+        long from = 0;
+        int line = 1;
+        if (damaged > 0) {
+            from = previous.start(damaged - 1) + previous.length(damaged - 1);
+            line = previous.line(damaged - 1);
+        }
+
+        // New tokens go in before the old ones from damaged on, which are
+        // removed as the rescan passes them
+        previous.setSource(edited);
+        previous.moveInsertionPoint(damaged);
+
+        Scanner scanner = new Scanner(edited, previous.symbols(), errors,
+                                      from, edited.length(), line);
+        for (;;) {
+            TokenType type = scanner.scanNext(previous);
+            if (type == TokenType.EOF) {
+                previous.removeAfterInsertionPoint(previous.size() - previous.insertionPoint());
+                return previous;
+            }
+
+            int last = previous.insertionPoint() - 1;
+            int start = previous.start(last);
+            if (start < editEnd) {
+                continue;
+            }
+
+            // Past the edit: look for an old token at the same place
+            int old = last + 1;
+            while (old < previous.size() && previous.start(old) + delta < start) {
+                previous.removeAfterInsertionPoint(1);
+            }
+            if (old < previous.size()
+                && previous.start(old) + delta == start
+                && previous.type(old) == type
+                && previous.length(old) == previous.length(last)) {
+                int lineDelta = previous.line(last) - previous.line(old);
+                previous.removeAfterInsertionPoint(1);
+                previous.shiftAfterInsertionPoint(delta, lineDelta);
+                return previous;
+            }
+        }
+    }
+
+    // Index of the first token whose end is beyond pos
+    private static int firstEndingAfter(TokenStream tokens, long pos) {
+        int lo = 0;
+        int hi = tokens.size() - 1;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (tokens.start(mid) + tokens.length(mid) > pos) {
+                hi = mid;
+            } else {
+                lo = mid + 1;
+            }
+        }
+
+        return lo;
+    }
+}
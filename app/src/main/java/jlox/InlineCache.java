@@ -0,0 +1,46 @@
+package jlox;
+
+/// What a property access at one site of a program resolved to, for each
+/// of the last few instance Shapes seen there. A site that sees one
+/// shape is monomorphic and one that sees up to MAX_ENTRIES polymorphic.
+/// Beyond that it is megamorphic and stops caching.
+///
+/// Gets record the field slot, or the method when there is no such field.
+/// Sets record the field slot and the shape after the set, which differs
+/// when the set adds the field.
+class InlineCache {
+    static final int MAX_ENTRIES = 4;
+
+    // Symbol id of the property the site accesses
+    final int name;
+    final Shape[] shapes = new Shape[MAX_ENTRIES];
+    final int[] slots = new int[MAX_ENTRIES];
+    final Object[] methods = new Object[MAX_ENTRIES];
+    final Shape[] targets = new Shape[MAX_ENTRIES];
+    int count = 0;
+
+    InlineCache(int name) {
+        this.name = name;
+    }
+
+    /// Entry for shape, or -1 on a miss.
+    int find(Shape shape) {
+        for (int i = 0; i < count; i++) {
+            if (shapes[i] == shape) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    void add(Shape shape, int slot, Object method, Shape target) {
+        if (count == MAX_ENTRIES) {
+            return;
+        }
+        shapes[count] = shape;
+        slots[count] = slot;
+        methods[count] = method;
+        targets[count] = target;
+        count++;
+    }
+}
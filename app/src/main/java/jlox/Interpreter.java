@@ -0,0 +1,600 @@
+package jlox;
+
+import java.io.PrintStream;
+
+/// Tree-walking Engine that evaluates the Ast directly. Locals are held in
+/// chains of Environments and globals in Globals, both indexed by the slots
+/// the Resolver assigns.
+///
+/// Property gets and sets go through an InlineCache for their node, as
+/// they go through one for their site on the VM.
+///
+/// Numbers are kept unboxed, as on the VM: evaluate() returns Values.NUMBER
+/// for a number and leaves its value in a field, and variables hold it in
+/// the double[] alongside their values. Numbers are boxed only as they leave
+/// the Interpreter, as instance fields or arguments of natives.
+///
+/// Lox calls nest as Java calls, so programs run on a thread of their own
+/// with a stack deep enough for as many calls as the VM has frames, and
+/// overflow at the same depth as on the VM.
+class Interpreter implements Engine {
+    // Enough for VM.FRAMES_MAX calls of functions with deeply nested bodies
+    private static final long STACK_SIZE = 64L << 20;
+
+    private final Output out;
+    private final ErrorReporter errors;
+    private final boolean optimize;
+    private final Globals globals = new Globals();
+    // Innermost scope, or null at top level
+    private Environment environment;
+    // Ast of the code currently running; functions remember their own, so
+    // functions declared by earlier REPL lines keep working
+    private Ast ast;
+    // Set by cancel(), from another thread
+    private volatile String cancelled;
+    // Lox functions running, which the script itself is not
+    private int depth = 0;
+    // Number the last evaluate() returning Values.NUMBER stands for
+    private double number;
+    // SymbolTable of the programs run so far, whose ids shapes are keyed by
+    private SymbolTable symbols;
+
+    // Unwinds the Java stack from a return statement to its call
+    private static class Return extends RuntimeException {
+        final Object value;
+
+        Return(Object value) {
+            super(null, null, false, false);
+            this.value = value;
+        }
+    }
+
+    Interpreter(PrintStream out) {
+        this(new Output(out), ErrorReporter.standard(), true);
+    }
+
+    /// Interpreter that can run programs as written, without the
+    /// Optimizer, to check and measure what it does.
+    Interpreter(PrintStream out, boolean optimize) {
+        this(new Output(out), ErrorReporter.standard(), optimize);
+    }
+
+    /// Interpreter reporting the errors the Resolver finds to errors. What
+    /// programs print is flushed to out as each execute() ends.
+    Interpreter(Output out, ErrorReporter errors, boolean optimize) {
+        this.out = out;
+        this.errors = errors;
+        this.optimize = optimize;
+    }
+
+    @Override
+    public void execute(Ast ast) {
+        if (symbols == null) {
+            symbols = ast.symbols;
+        } else if (ast.symbols != symbols) {
+            throw new IllegalArgumentException("Programs run by one engine must share a SymbolTable.");
+        }
+        if (!new Resolver(ast, globals, errors).resolve()) {
+            return;
+        }
+        if (optimize) {
+            new Optimizer(ast, globals).optimize();
+        }
+
+        this.ast = ast;
+        environment = null;
+        depth = 0;
+        try {
+            runDeep(() -> executeList(ast.root()));
+        } finally {
+            out.flush();
+        }
+    }
+
+    // Run program on a thread with a stack of STACK_SIZE, passing on what
+    // it throws
+    private static void runDeep(Runnable program) {
+        Throwable[] thrown = new Throwable[1];
+        Thread thread = new Thread(null, () -> {
+            try {
+                program.run();
+            } catch (Throwable t) {
+                thrown[0] = t;
+            }
+        }, "jlox-interpreter", STACK_SIZE);
+        thread.start();
+
+        boolean interrupted = false;
+        while (thread.isAlive()) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                // The program still has to stop before this returns
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+
+        if (thrown[0] instanceof RuntimeException) {
+            throw (RuntimeException) thrown[0];
+        } else if (thrown[0] instanceof Error) {
+            throw (Error) thrown[0];
+        }
+    }
+
+    @Override
+    public void cancel(String message) {
+        cancelled = message;
+    }
+
+    /// Execute the statements of list in environment, returning the value
+    /// of a return statement, or null if the list runs to its end.
+    Object executeBody(Ast body, int list, Environment environment) {
+        Ast previousAst = this.ast;
+        Environment previous = this.environment;
+        depth++;
+        try {
+            this.ast = body;
+            this.environment = environment;
+            executeList(list);
+            return null;
+        } catch (Return r) {
+            return r.value;
+        } finally {
+            this.ast = previousAst;
+            this.environment = previous;
+            depth--;
+        }
+    }
+
+    private void executeList(int list) {
+        for (int i = 0; i < ast.count(list); i++) {
+            execute(ast.item(list, i));
+        }
+    }
+
+    private void executeBlock(int list, Environment environment) {
+        Environment previous = this.environment;
+        try {
+            this.environment = environment;
+            executeList(list);
+        } finally {
+            this.environment = previous;
+        }
+    }
+
+    private void execute(int stmt) {
+        switch (ast.kind(stmt)) {
+        case Ast.EXPRESSION:
+            evaluate(ast.a(stmt));
+            break;
+        case Ast.PRINT: {
+            Object value = evaluate(ast.a(stmt));
+            if (value == Values.NUMBER) {
+                out.printNumber(number).println();
+            } else {
+                out.print(Values.stringify(value)).println();
+            }
+            break;
+        }
+        case Ast.VAR: {
+            Object value = null;
+            if (ast.b(stmt) != Ast.NONE) {
+                value = evaluate(ast.b(stmt));
+            }
+            declare(stmt, value);
+            break;
+        }
+        case Ast.BLOCK:
+            if (ast.locals(stmt) == Ast.NO_SCOPE) {
+                executeList(ast.a(stmt));
+            } else {
+                executeBlock(ast.a(stmt), new Environment(environment, ast.locals(stmt)));
+            }
+            break;
+        case Ast.IF:
+            if (Values.isTruthy(evaluate(ast.a(stmt)))) {
+                execute(ast.b(stmt));
+            } else if (ast.c(stmt) != Ast.NONE) {
+                execute(ast.c(stmt));
+            }
+            break;
+        case Ast.WHILE:
+            while (Values.isTruthy(evaluate(ast.a(stmt)))) {
+                execute(ast.b(stmt));
+                checkCancelled(stmt);
+            }
+            break;
+        case Ast.FUNCTION:
+            declare(stmt, new LoxFunction(ast, stmt, environment, false));
+            break;
+        case Ast.RETURN: {
+            Object value = null;
+            if (ast.a(stmt) != Ast.NONE) {
+                value = evaluate(ast.a(stmt));
+            }
+            throw new Return(value);
+        }
+        case Ast.CLASS:
+            classDeclaration(stmt);
+            break;
+        default:
+            throw new IllegalStateException("Not a statement: " + ast.kind(stmt));
+        }
+    }
+
+    private void classDeclaration(int stmt) {
+        String name = ast.name(ast.a(stmt));
+        Object superclass = null;
+        if (ast.b(stmt) != Ast.NONE) {
+            superclass = evaluate(ast.b(stmt));
+            if (!(superclass instanceof LoxClass)) {
+                throw new RuntimeError(ast.line(ast.b(stmt)),
+                                       "Superclass must be a class.");
+            }
+        }
+
+        declare(stmt, null);
+        if (superclass != null) {
+            environment = new Environment(environment, 1);
+            environment.values[0] = superclass;
+        }
+
+        LoxClass klass = new LoxClass(name, (LoxClass) superclass);
+        int methods = ast.c(stmt);
+        for (int i = 0; i < ast.count(methods); i++) {
+            int method = ast.item(methods, i);
+            String methodName = ast.name(ast.a(method));
+            klass.defineMethod(methodName, new LoxFunction(ast, method, environment,
+                                                           methodName.equals("init")));
+        }
+
+        if (superclass != null) {
+            environment = environment.enclosing;
+        }
+        declare(stmt, klass);
+    }
+
+    // Set the variable a VAR, FUNCTION or CLASS node declares
+    private void declare(int stmt, Object value) {
+        int slot = ast.slot(stmt);
+        if (ast.depth(stmt) == Ast.GLOBAL) {
+            globals.define(slot, value);
+            if (value == Values.NUMBER) {
+                globals.numbers()[slot] = number;
+            }
+        } else {
+            store(environment, slot, value);
+        }
+    }
+
+    private Object lookUp(int expr) {
+        int depth = ast.depth(expr);
+        int slot = ast.slot(expr);
+        if (depth == Ast.GLOBAL) {
+            Object value = globals.values()[slot];
+            if (value == Globals.UNDEFINED) {
+                throw globals.undefined(slot, ast.line(expr));
+            }
+            if (value == Values.NUMBER) {
+                number = globals.numbers()[slot];
+            }
+            return value;
+        }
+
+        Environment scope = environment.ancestor(depth);
+        Object value = scope.values[slot];
+        if (value == Values.NUMBER) {
+            number = scope.numbers[slot];
+        }
+        return value;
+    }
+
+    // Set slot of scope to value, as returned by evaluate()
+    private void store(Environment scope, int slot, Object value) {
+        scope.values[slot] = value;
+        if (value == Values.NUMBER) {
+            scope.numbers[slot] = number;
+        }
+    }
+
+    // value as it is kept outside the Interpreter
+    private Object box(Object value) {
+        return value == Values.NUMBER ? (Object) number : value;
+    }
+
+    // value from outside the Interpreter, as evaluate() returns it
+    private Object unbox(Object value) {
+        if (value instanceof Double) {
+            number = (double) value;
+            return Values.NUMBER;
+        }
+        return value;
+    }
+
+    /// Value of expr. Numbers come back as Values.NUMBER, with the number
+    /// itself left in the number field until the next evaluate().
+    private Object evaluate(int expr) {
+        switch (ast.kind(expr)) {
+        case Ast.NUMBER:
+            number = ast.numberValue(expr);
+            return Values.NUMBER;
+        case Ast.STRING:
+            return ast.name(ast.a(expr));
+        case Ast.TRUE:
+            return true;
+        case Ast.FALSE:
+            return false;
+        case Ast.NIL:
+            return null;
+        case Ast.GROUPING:
+            return evaluate(ast.a(expr));
+        case Ast.NEGATE: {
+            Object right = evaluate(ast.a(expr));
+            checkNumberOperand(expr, right);
+            number = -number;
+            return Values.NUMBER;
+        }
+        case Ast.NOT:
+            return !Values.isTruthy(evaluate(ast.a(expr)));
+        case Ast.AND: {
+            Object left = evaluate(ast.a(expr));
+            return Values.isTruthy(left) ? evaluate(ast.b(expr)) : left;
+        }
+        case Ast.OR: {
+            Object left = evaluate(ast.a(expr));
+            return Values.isTruthy(left) ? left : evaluate(ast.b(expr));
+        }
+        case Ast.VARIABLE:
+            return lookUp(expr);
+        case Ast.ASSIGN: {
+            Object value = evaluate(ast.b(expr));
+            int depth = ast.depth(expr);
+            int slot = ast.slot(expr);
+            if (depth == Ast.GLOBAL) {
+                globals.assign(slot, value, ast.line(expr));
+                if (value == Values.NUMBER) {
+                    globals.numbers()[slot] = number;
+                }
+            } else {
+                store(environment.ancestor(depth), slot, value);
+            }
+            return value;
+        }
+        case Ast.CALL:
+            return call(expr);
+        case Ast.GET: {
+            Object object = evaluate(ast.a(expr));
+            if (!(object instanceof LoxInstance)) {
+                throw new RuntimeError(ast.line(expr), "Only instances have properties.");
+            }
+            return unbox(getProperty((LoxInstance) object, expr));
+        }
+        case Ast.SET: {
+            Object object = evaluate(ast.a(expr));
+            if (!(object instanceof LoxInstance)) {
+                throw new RuntimeError(ast.line(expr), "Only instances have fields.");
+            }
+            Object value = evaluate(ast.c(expr));
+            setProperty((LoxInstance) object, expr, box(value));
+            return value;
+        }
+        case Ast.THIS:
+            return lookUp(expr);
+        case Ast.SUPER: {
+            // this is bound in the scope just inside the one holding super
+            int depth = ast.depth(expr);
+            LoxClass superclass = (LoxClass) environment.ancestor(depth).values[ast.slot(expr)];
+            LoxInstance object = (LoxInstance) environment.ancestor(depth - 1).values[0];
+            String name = ast.name(ast.a(expr));
+            LoxCallable method = superclass.findMethod(name);
+            if (method == null) {
+                throw new RuntimeError(ast.line(expr), "Undefined property '" + name + "'.");
+            }
+            return ((LoxFunction) method).bind(object);
+        }
+        default:
+            return binary(expr);
+        }
+    }
+
+    private Object binary(int expr) {
+        Object left = evaluate(ast.a(expr));
+        double a = number;
+        Object right = evaluate(ast.b(expr));
+        double b = number;
+
+        switch (ast.kind(expr)) {
+        case Ast.EQUAL:
+            return isEqual(left, a, right, b);
+        case Ast.NOT_EQUAL:
+            return !isEqual(left, a, right, b);
+        case Ast.ADD:
+            if (left == Values.NUMBER && right == Values.NUMBER) {
+                number = a + b;
+                return Values.NUMBER;
+            }
+            if (left instanceof String && right instanceof String) {
+                return (String) left + (String) right;
+            }
+            throw new RuntimeError(ast.line(expr),
+                                   "Operands must be two numbers or two strings.");
+        default:
+            break;
+        }
+
+        checkNumberOperands(expr, left, right);
+        switch (ast.kind(expr)) {
+        case Ast.SUBTRACT:
+            number = a - b;
+            return Values.NUMBER;
+        case Ast.MULTIPLY:
+            number = a * b;
+            return Values.NUMBER;
+        case Ast.DIVIDE:
+            number = a / b;
+            return Values.NUMBER;
+        case Ast.GREATER:
+            return a > b;
+        case Ast.GREATER_EQUAL:
+            return a >= b;
+        case Ast.LESS:
+            return a < b;
+        case Ast.LESS_EQUAL:
+            return a <= b;
+        default:
+            throw new IllegalStateException("Not an expression: " + ast.kind(expr));
+        }
+    }
+
+    private Object call(int expr) {
+        Object callee = evaluate(ast.a(expr));
+        int list = ast.b(expr);
+        int count = ast.count(list);
+
+        // A function or initializer gets the arguments evaluated straight
+        // into its scope, numbers unboxed; only natives see them boxed
+        LoxFunction function = null;
+        LoxInstance instance = null;
+        if (callee instanceof LoxFunction) {
+            function = (LoxFunction) callee;
+        } else if (callee instanceof LoxClass) {
+            instance = new LoxInstance((LoxClass) callee);
+            LoxCallable initializer = instance.klass.findMethod("init");
+            if (initializer != null) {
+                function = ((LoxFunction) initializer).bind(instance);
+            }
+        }
+        Environment scope = null;
+        Object[] arguments = null;
+        if (function != null && function.arity() == count) {
+            scope = function.scope();
+        } else {
+            arguments = new Object[count];
+        }
+        for (int i = 0; i < count; i++) {
+            Object argument = evaluate(ast.item(list, i));
+            if (scope != null) {
+                store(scope, i, argument);
+            } else {
+                arguments[i] = box(argument);
+            }
+        }
+
+        int line = ast.line(expr);
+        checkCancelled(expr);
+        if (!(callee instanceof LoxCallable)) {
+            throw new RuntimeError(line, "Can only call functions and classes.");
+        }
+        LoxCallable callable = (LoxCallable) callee;
+        if (count != callable.arity()) {
+            throw new RuntimeError(line, "Expected " + callable.arity() +
+                                   " arguments but got " + count + ".");
+        }
+
+        try {
+            if (function != null) {
+                checkDepth(line);
+                // An initializer returns its instance
+                return function.call(this, scope);
+            } else if (instance != null) {
+                return instance;
+            } else {
+                return unbox(((LoxNative) callee).call(arguments));
+            }
+        } catch (StackOverflowError e) {
+            // Only bodies nested deeper than STACK_SIZE allows get here
+            throw new RuntimeError(line, "Stack overflow.");
+        }
+    }
+
+    // Fail a call the VM would have no frame left for, the script taking
+    // one of them
+    private void checkDepth(int line) {
+        if (depth == VM.FRAMES_MAX - 1) {
+            throw new RuntimeError(line, "Stack overflow.");
+        }
+    }
+
+    // Value of the property that the GET expr reads from instance: a field,
+    // or else a method bound to instance
+    private Object getProperty(LoxInstance instance, int expr) {
+        InlineCache cache = ast.cache(expr);
+        Shape shape = instance.shape;
+        int entry = cache.find(shape);
+        if (entry >= 0) {
+            int slot = cache.slots[entry];
+            return slot >= 0 ? instance.fields[slot] : ((LoxFunction) cache.methods[entry]).bind(instance);
+        }
+
+        int slot = shape.slot(cache.name);
+        if (slot >= 0) {
+            cache.add(shape, slot, null, shape);
+            return instance.fields[slot];
+        }
+        String name = ast.name(cache.name);
+        LoxCallable method = instance.klass.findMethod(name);
+        if (method == null) {
+            throw new RuntimeError(ast.line(expr), "Undefined property '" + name + "'.");
+        }
+        cache.add(shape, -1, method, shape);
+        return ((LoxFunction) method).bind(instance);
+    }
+
+    // Set the field of instance that the SET expr writes to value, adding
+    // it if the instance has no such field yet
+    private void setProperty(LoxInstance instance, int expr, Object value) {
+        InlineCache cache = ast.cache(expr);
+        Shape shape = instance.shape;
+        int entry = cache.find(shape);
+        int slot;
+        Shape target;
+        if (entry >= 0) {
+            slot = cache.slots[entry];
+            target = cache.targets[entry];
+        } else {
+            slot = shape.slot(cache.name);
+            target = shape;
+            if (slot < 0) {
+                slot = shape.size();
+                target = shape.with(cache.name);
+            }
+            cache.add(shape, slot, null, target);
+        }
+
+        if (target != shape) {
+            instance.transition(target, slot);
+        }
+        instance.fields[slot] = value;
+    }
+
+    private void checkCancelled(int node) {
+        String message = cancelled;
+        if (message != null) {
+            throw new RuntimeError(ast.line(node), message);
+        }
+    }
+
+    // Values.isEqual of two values evaluate() returned, with the numbers
+    // they stand for
+    private static boolean isEqual(Object left, double a, Object right, double b) {
+        if (left == Values.NUMBER && right == Values.NUMBER) {
+            return Double.doubleToLongBits(a) == Double.doubleToLongBits(b);
+        }
+        return Values.isEqual(left, right);
+    }
+
+    private void checkNumberOperand(int expr, Object operand) {
+        if (operand != Values.NUMBER) {
+            throw new RuntimeError(ast.line(expr), "Operand must be a number.");
+        }
+    }
+
+    private void checkNumberOperands(int expr, Object left, Object right) {
+        if (left != Values.NUMBER || right != Values.NUMBER) {
+            throw new RuntimeError(ast.line(expr), "Operands must be numbers.");
+        }
+    }
+}
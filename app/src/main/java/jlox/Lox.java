@@ -2,45 +2,274 @@ package jlox;
 
 import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.nio.charset.Charset;
-import java.nio.file.Files;
+import java.io.PrintStream;
+import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.List;
+import java.time.Duration;
+import java.util.Arrays;
 
-public class Lox {
+/// Runs Lox programs from files, the REPL or strings. A Lox keeps its
+/// options, its globals and whether its last run failed to itself, and
+/// reports errors only to its own ErrorReporter, so Lox instances on
+/// different threads are independent. One instance runs one program at a
+/// time.
+public class Lox implements ErrorReporter {
     static final int EX_USAGE = 64;
     static final int EX_DATAERR = 65;
+    static final int EX_NOINPUT = 66;
+    static final int EX_SOFTWARE = 70;
+
+    /// How to run one program, the only use a Server's clients may make.
+    static final String USAGE = "Usage: jlox [--tokens | --ast] [--vm] [--dfa] [--cache dir] [file]";
 
     private boolean hadError;
+    private boolean hadRuntimeError = false;
+    // Print the tokens of each source instead of running it
+    private boolean dumpTokens = false;
+    // Print the syntax tree of each source instead of running it
+    private boolean dumpAst = false;
+    // Run on the bytecode VM rather than the tree-walking Interpreter
+    private boolean useVm = false;
+    // Scan with the TableScanner rather than the Scanner
+    private boolean useDfa = false;
+    // Where scanned and parsed files are cached, if anywhere
+    private ArtifactCache cache;
+    // Run every file given, on this many threads at once
+    private boolean batch = false;
+    private int jobs = Runtime.getRuntime().availableProcessors();
+    // Serve requests on this socket instead of running anything
+    private Path socket;
+    // How long the Server lets each of its runs take
+    private Duration limit = Server.LIMIT;
+    // Kept between runs so the REPL remembers earlier definitions
+    private volatile Engine engine;
+    // Why runs are to fail, once cancel() is called
+    private volatile String cancelled;
+    // Shared by every run so names keep their ids across REPL lines
+    private final SymbolTable symbols = new SymbolTable();
+    private final PrintStream out;
+    // What programs and dumps print, buffered on its way to out
+    private final Output output;
+    private final ErrorReporter errors;
+    // Where batch mode passes on the errors of the files it runs
+    private final PrintStream err;
+    // What relative paths given as arguments are relative to
+    private final Path directory;
 
+    /// Lox printing to System.out and System.err as they are when it is
+    /// made, redirected or not.
     public Lox() {
+        this(System.out, System.err);
+    }
+
+    /// Lox for the launcher, which writes what programs print to the
+    /// process's standard output through its channel, past System.out, and
+    /// errors to System.err.
+    static Lox commandLine() {
+        return new Lox(System.out, Output.stdout(), ErrorReporter.printingTo(System.err), System.err,
+                       Paths.get(""));
+    }
+
+    /// Lox that prints what programs print to out, and errors to err.
+    Lox(PrintStream out, PrintStream err) {
+        this(out, err, Paths.get(""));
+    }
+
+    /// Lox that also takes relative paths in arguments to be relative to
+    /// directory, as the Server does for its clients.
+    Lox(PrintStream out, PrintStream err, Path directory) {
+        this(out, ErrorReporter.printingTo(err), err, directory);
+    }
+
+    /// Lox that prints what programs print to out, and reports errors to
+    /// errors.
+    public Lox(PrintStream out, ErrorReporter errors) {
+        this(out, errors, System.err, Paths.get(""));
+    }
+
+    private Lox(PrintStream out, ErrorReporter errors, PrintStream err, Path directory) {
+        this(out, new Output(out), errors, err, directory);
+    }
+
+    private Lox(PrintStream out, Output output, ErrorReporter errors, PrintStream err, Path directory) {
+        this.out = out;
+        this.output = output;
+        this.errors = errors;
+        this.err = err;
+        this.directory = directory;
         hadError = false;
     }
 
-    public void run(String [] args) throws IOException {
-        if (args.length > 1) {
-            System.out.println("Usage: jlox <file>");
-            System.exit(EX_USAGE);
-        } else if (args.length == 1) {
-            runFile(args[0]);
+    /// New Lox with the same options as this one, for batch mode to run
+    /// one file with.
+    Lox copy(PrintStream out, PrintStream err) {
+        Lox copy = new Lox(out, err, directory);
+        copy.dumpTokens = dumpTokens;
+        copy.dumpAst = dumpAst;
+        copy.useVm = useVm;
+        copy.useDfa = useDfa;
+        copy.cache = cache;
+        return copy;
+    }
+
+    /// Whether sources are scanned with the TableScanner, as --dfa asks.
+    boolean usesDfa() {
+        return useDfa;
+    }
+
+    /// Run as the command line args ask, returning the status to exit
+    /// with.
+    public int run(String [] args) throws IOException {
+        return run(args, System.in);
+    }
+
+    /// Run as args ask, with the REPL reading its lines from in.
+    int run(String [] args, InputStream in) throws IOException {
+        try {
+            return runArgs(args, in);
+        } finally {
+            output.flush();
+        }
+    }
+
+    private int runArgs(String [] args, InputStream in) throws IOException {
+        int first = 0;
+        boolean badOption = false;
+        for (; first < args.length && args[first].startsWith("--"); first++) {
+            switch (args[first]) {
+            case "--tokens":
+                dumpTokens = true;
+                break;
+            case "--ast":
+                dumpAst = true;
+                break;
+            case "--vm":
+                useVm = true;
+                break;
+            case "--dfa":
+                useDfa = true;
+                break;
+            case "--cache":
+                if (first + 1 < args.length) {
+                    cache = new ArtifactCache(path(args[++first]));
+                } else {
+                    badOption = true;
+                }
+                break;
+            case "--batch":
+                batch = true;
+                break;
+            case "--jobs":
+                if (first + 1 < args.length && args[first + 1].matches("[1-9][0-9]{0,3}")) {
+                    jobs = Integer.parseInt(args[++first]);
+                } else {
+                    badOption = true;
+                }
+                break;
+            case "--serve":
+                if (first + 1 < args.length) {
+                    socket = path(args[++first]);
+                } else {
+                    badOption = true;
+                }
+                break;
+            case "--limit":
+                if (first + 1 < args.length && args[first + 1].matches("[1-9][0-9]{0,6}")) {
+                    limit = Duration.ofSeconds(Integer.parseInt(args[++first]));
+                } else {
+                    badOption = true;
+                }
+                break;
+            default:
+                badOption = true;
+                break;
+            }
+        }
+
+        int files = args.length - first;
+        if (badOption || (batch ? files == 0 : files > 1) || (socket != null && files > 0)) {
+            output.print(USAGE).println();
+            output.print("       jlox --batch [--jobs n] [options] file-or-directory...").println();
+            output.print("       jlox --serve socket [--jobs n] [--limit seconds]").println();
+            return EX_USAGE;
+        }
+
+        int status = 0;
+        if (socket != null) {
+            Server server = new Server(socket, jobs, limit, err);
+            // Remove the socket when stopped by a signal as well
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    server.close();
+                } catch (IOException e) {
+                    // Nothing more to be done about it
+                }
+            }));
+            status = server.serve();
+        } else if (batch) {
+            status = new Batch(this, jobs, out, err).run(Arrays.copyOfRange(args, first, args.length));
+        } else if (files == 1) {
+            status = runFile(path(args[first]));
         } else {
-            runPrompt();
+            runPrompt(in);
         }
+        return status;
     }
 
+    /// Run the file at path, returning the status to exit with: 0, or
+    /// EX_DATAERR or EX_SOFTWARE after reporting its errors.
+    int runFile(Path path) throws IOException {
+        // Scan straight from the mapped file rather than copying it to the heap
+        return run(Source.map(path));
+    }
+
+    /// Run source as a program, returning 0, or EX_DATAERR or EX_SOFTWARE
+    /// after reporting its errors. What it defines is kept for the next
+    /// program run.
+    public int run(String source) {
+        return run(Source.of(source));
+    }
+
+    private int run(Source source) {
+        hadError = false;
+        hadRuntimeError = false;
+        run(source, cache);
+        output.flush();
+
+        if (hadError) {
+            return EX_DATAERR;
+        } else if (hadRuntimeError) {
+            return EX_SOFTWARE;
+        }
+        return 0;
+    }
 
-    private void runFile(String path) throws IOException {
-        byte[] bytes = Files.readAllBytes(Paths.get(path));
-        run(new String (bytes, Charset.defaultCharset()));
+    /// Make the program running, if any, and every one run after it fail
+    /// with a runtime error of message at its next loop iteration or call.
+    /// May be called from any thread, as the Server does when a run's
+    /// client goes away or the run takes too long.
+    void cancel(String message) {
+        cancelled = message;
+        Engine running = engine;
+        if (running != null) {
+            running.cancel(message);
+        }
+    }
+
+    /// Path named by an argument.
+    Path path(String name) {
+        return directory.resolve(name);
     }
 
-    private void runPrompt() throws IOException {
-        InputStreamReader input = new InputStreamReader(System.in);
+    private void runPrompt(InputStream in) throws IOException {
+        InputStreamReader input = new InputStreamReader(in);
         BufferedReader reader = new BufferedReader(input);
 
         for(;;) {
-            System.out.print("> ");
+            output.print("> ");
+            output.flush();
             String line = reader.readLine();
 
             // Respond to Ctrl-D as request to quit
@@ -48,32 +277,120 @@ public class Lox {
                 break;
             }
 
-            run(line);
+            run(Source.of(line), null);
 
-            // Reset error condition to prevent system exit in run()
+            // An error only ends the line it is on
             hadError = false;
         }
     }
 
-    private void run(String source) throws IOException {
-        Scanner scanner = new Scanner(source);
-        List<Token> tokens = scanner.scanTokens();
+    // Run source, reusing what cache holds of it and caching what is
+    // scanned or parsed of it here, unless cache is null
+    private void run(Source source, ArtifactCache cache) {
+        String key = null;
+        ArtifactCache.Entry cached = null;
+        if (cache != null) {
+            key = cache.key(source);
+            cached = cache.load(key, source, symbols);
+        }
+
+        if (dumpTokens && cache == null && !useDfa) {
+            printTokens(source);
+        } else if (dumpTokens) {
+            TokenStream tokens = cached != null ? cached.tokens : scan(source);
+            printTokens(tokens);
+            if (cache != null && cached == null && !hadError) {
+                cache.store(key, tokens, null);
+            }
+        } else {
+            Ast ast = cached != null ? cached.ast : null;
+            if (ast == null) {
+                TokenStream tokens = cached != null ? cached.tokens : scan(source);
+                ast = new Parser(tokens, symbols, this).parse();
+                if (cache != null && !hadError) {
+                    cache.store(key, tokens, ast);
+                }
+            }
+            if (hadError) {
+                // Don't run code with syntax errors
+            } else if (dumpAst) {
+                output.print(new AstPrinter(ast).print());
+            } else {
+                execute(ast);
+            }
+        }
+    }
+
+    private TokenStream scan(Source source) {
+        if (useDfa) {
+            return new TableScanner(source, symbols, this).scanTokenStream();
+        }
+        return new Scanner(source, symbols, this).scanTokenStream();
+    }
 
-        for (Token t : tokens) {
-            System.out.println("<\t" + t);
+    private void execute(Ast ast) {
+        if (engine == null) {
+            engine = useVm ? new VM(output, this, true, true) : new Interpreter(output, this, true);
+            // Seen here if cancel() didn't see the engine
+            if (cancelled != null) {
+                engine.cancel(cancelled);
+            }
         }
 
-        if (hadError) {
-            System.exit(EX_DATAERR);
+        try {
+            engine.execute(ast);
+        } catch (RuntimeError error) {
+            runtimeError(error.line, error.getMessage());
+        }
+    }
+
+    private void printTokens(Source source) {
+        Scanner scanner = new Scanner(source, symbols, this);
+
+        // Pull tokens one at a time so output starts before the whole
+        // source has been scanned, printing them without making Tokens
+        TokenType type;
+        do {
+            output.print("<\t");
+            type = scanner.printNext(output);
+            output.println();
+        } while (type != TokenType.EOF);
+    }
+
+    private void printTokens(TokenStream tokens) {
+        for (int i = 0; i < tokens.size(); i++) {
+            TokenType type = tokens.type(i);
+            output.print("<\t")
+                .printToken(type, tokens.source(), tokens.start(i), tokens.start(i) + tokens.length(i),
+                            type == TokenType.NUMBER ? tokens.number(i) : 0)
+                .println();
         }
     }
 
-    public void error(int line, String msg) {
-        report(line, "", msg);
+    @Override
+    public void error(int line, String where, String msg) {
+        // After what was printed before it
+        output.flush();
+        errors.error(line, where, msg);
+        hadError = true;
     }
 
-    private void report(int line, String where, String msg) {
-        System.err.println("[line: " + line + "] Error" + where + ": " + msg);
+    @Override
+    public boolean lexicalError(int line, long offset, int length, String msg) {
+        output.flush();
         hadError = true;
+        return errors.lexicalError(line, offset, length, msg);
+    }
+
+    @Override
+    public boolean tooManyErrors() {
+        return errors.tooManyErrors();
+    }
+
+    @Override
+    public void runtimeError(int line, String msg) {
+        output.flush();
+        errors.runtimeError(line, msg);
+        hadRuntimeError = true;
     }
 }
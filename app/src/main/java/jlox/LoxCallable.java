@@ -0,0 +1,6 @@
+package jlox;
+
+/// A value that can be called: functions, classes and natives.
+interface LoxCallable {
+    int arity();
+}
@@ -0,0 +1,48 @@
+package jlox;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/// Runtime class. Methods are whatever callable the engine that created
+/// the class uses for functions.
+class LoxClass implements LoxCallable {
+    final String name;
+    final LoxClass superclass;
+    private final Map<String, LoxCallable> methods = new HashMap<>();
+    // Root of the shapes of this class's instances
+    final Shape shape = new Shape();
+    // Most fields an instance has had, to size the fields of new ones
+    int fieldCount = 0;
+
+    LoxClass(String name, LoxClass superclass) {
+        this.name = name;
+        this.superclass = superclass;
+    }
+
+    void defineMethod(String name, LoxCallable method) {
+        methods.put(name, method);
+    }
+
+    /// Method called name, looking through the superclasses, or null.
+    LoxCallable findMethod(String name) {
+        for (LoxClass klass = this; klass != null; klass = klass.superclass) {
+            LoxCallable method = klass.methods.get(name);
+            if (method != null) {
+                return method;
+            }
+        }
+
+        return null;
+    }
+
+    @Override
+    public int arity() {
+        LoxCallable initializer = findMethod("init");
+        return initializer == null ? 0 : initializer.arity();
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
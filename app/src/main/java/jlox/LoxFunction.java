@@ -0,0 +1,51 @@
+package jlox;
+
+/// Function or method for the tree-walking Interpreter: a FUNCTION node of
+/// an Ast and the environment it closes over.
+class LoxFunction implements LoxCallable {
+    private final Ast ast;
+    private final int declaration;
+    private final Environment closure;
+    private final boolean isInitializer;
+
+    LoxFunction(Ast ast, int declaration, Environment closure, boolean isInitializer) {
+        this.ast = ast;
+        this.declaration = declaration;
+        this.closure = closure;
+        this.isInitializer = isInitializer;
+    }
+
+    LoxFunction bind(LoxInstance instance) {
+        Environment environment = new Environment(closure, 1);
+        environment.values[0] = instance;
+        return new LoxFunction(ast, declaration, environment, isInitializer);
+    }
+
+    @Override
+    public int arity() {
+        return ast.count(ast.b(declaration));
+    }
+
+    /// Scope for a call, for the interpreter to put the arguments in. The
+    /// parameters take its first slots.
+    Environment scope() {
+        return new Environment(closure, ast.locals(declaration));
+    }
+
+    /// Run the body in scope, returning what the Interpreter's evaluate()
+    /// would: Values.NUMBER for a number left in the interpreter.
+    Object call(Interpreter interpreter, Environment scope) {
+        Object value = interpreter.executeBody(ast, ast.c(declaration), scope);
+
+        // Initializers always return the instance, even from a bare return
+        if (isInitializer) {
+            return closure.values[0];
+        }
+        return value;
+    }
+
+    @Override
+    public String toString() {
+        return "<fn " + ast.name(ast.a(declaration)) + ">";
+    }
+}
@@ -0,0 +1,34 @@
+package jlox;
+
+import java.util.Arrays;
+
+/// Instance of a LoxClass. Fields are kept in an array laid out by the
+/// instance's Shape, which changes as fields are added.
+class LoxInstance {
+    final LoxClass klass;
+    Shape shape;
+    Object[] fields;
+
+    LoxInstance(LoxClass klass) {
+        this.klass = klass;
+        this.shape = klass.shape;
+        this.fields = new Object[klass.fieldCount];
+    }
+
+    /// Move to target, a shape adding a field at slot to the current one.
+    void transition(Shape target, int slot) {
+        shape = target;
+        if (slot >= fields.length) {
+            fields = Arrays.copyOf(fields, Math.max(4, slot * 2));
+        }
+        // Later instances start out with room for as many fields
+        if (slot >= klass.fieldCount) {
+            klass.fieldCount = slot + 1;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return klass.name + " instance";
+    }
+}
@@ -0,0 +1,24 @@
+package jlox;
+
+/// Function implemented in Java, shared by every engine.
+abstract class LoxNative implements LoxCallable {
+    abstract Object call(Object[] arguments);
+
+    @Override
+    public String toString() {
+        return "<native fn>";
+    }
+
+    /// Seconds since the epoch, for timing programs.
+    static final LoxNative CLOCK = new LoxNative() {
+        @Override
+        public int arity() {
+            return 0;
+        }
+
+        @Override
+        Object call(Object[] arguments) {
+            return (double) System.currentTimeMillis() / 1000.0;
+        }
+    };
+}
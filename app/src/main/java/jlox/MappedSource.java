@@ -0,0 +1,145 @@
+package jlox;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+
+/// Source over a memory-mapped file. The file is never copied onto the
+/// heap; only the lexemes that are asked for are decoded, as UTF-8.
+///
+/// A single MappedByteBuffer is limited to 2 GB, so the file is mapped as a
+/// series of fixed-size segments and positions are split into a segment
+/// index and an offset within it.
+class MappedSource extends Source {
+    private static final int SEGMENT_SHIFT = 30;
+    private static final long SEGMENT_SIZE = 1L << SEGMENT_SHIFT;
+    private static final long SEGMENT_MASK = SEGMENT_SIZE - 1;
+
+    private final MappedByteBuffer[] segments;
+    private final long length;
+
+    MappedSource(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            length = channel.size();
+            int count = (int) ((length + SEGMENT_SIZE - 1) >>> SEGMENT_SHIFT);
+            segments = new MappedByteBuffer[count];
+            for (int i = 0; i < count; i++) {
+                long offset = (long) i << SEGMENT_SHIFT;
+                long size = Math.min(SEGMENT_SIZE, length - offset);
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, offset, size);
+            }
+        }
+        // The mappings stay valid after the channel is closed
+    }
+
+    @Override
+    long length() {
+        return length;
+    }
+
+    @Override
+    boolean isBytes() {
+        return true;
+    }
+
+    @Override
+    char charAt(long pos) {
+        return (char) (byteAt(pos) & 0xff);
+    }
+
+    private byte byteAt(long pos) {
+        return segments[(int) (pos >>> SEGMENT_SHIFT)].get((int) (pos & SEGMENT_MASK));
+    }
+
+    @Override
+    void getChars(long start, long end, char[] dst, int offset) {
+        while (start < end) {
+            MappedByteBuffer segment = segments[(int) (start >>> SEGMENT_SHIFT)];
+            int from = (int) (start & SEGMENT_MASK);
+            int n = (int) Math.min(segment.limit() - from, end - start);
+            for (int i = 0; i < n; i++) {
+                dst[offset + i] = (char) (segment.get(from + i) & 0xff);
+            }
+            start += n;
+            offset += n;
+        }
+    }
+
+    // The searches run segment by segment, through Swar
+
+    @Override
+    long indexOf(char c, long from, long to) {
+        if (c > 0xff) {
+            return to;
+        }
+        while (from < to) {
+            MappedByteBuffer segment = segments[(int) (from >>> SEGMENT_SHIFT)];
+            int offset = (int) (from & SEGMENT_MASK);
+            int limit = (int) Math.min(segment.limit(), offset + (to - from));
+            int found = Swar.indexOf(segment, (byte) c, offset, limit);
+            from += found - offset;
+            if (found < limit) {
+                break;
+            }
+        }
+        return from;
+    }
+
+    @Override
+    int count(char c, long from, long to) {
+        if (c > 0xff) {
+            return 0;
+        }
+        int n = 0;
+        while (from < to) {
+            MappedByteBuffer segment = segments[(int) (from >>> SEGMENT_SHIFT)];
+            int offset = (int) (from & SEGMENT_MASK);
+            int limit = (int) Math.min(segment.limit(), offset + (to - from));
+            n += Swar.count(segment, (byte) c, offset, limit);
+            from += limit - offset;
+        }
+        return n;
+    }
+
+    @Override
+    long skipBlanks(long from, long to) {
+        while (from < to) {
+            MappedByteBuffer segment = segments[(int) (from >>> SEGMENT_SHIFT)];
+            int offset = (int) (from & SEGMENT_MASK);
+            int limit = (int) Math.min(segment.limit(), offset + (to - from));
+            int found = Swar.skipBlanks(segment, offset, limit);
+            from += found - offset;
+            if (found < limit) {
+                break;
+            }
+        }
+        return from;
+    }
+
+    @Override
+    String substring(long start, long end) {
+        byte[] bytes = new byte[(int) (end - start)];
+        int copied = 0;
+        while (copied < bytes.length) {
+            long pos = start + copied;
+            MappedByteBuffer segment = segments[(int) (pos >>> SEGMENT_SHIFT)];
+            int offset = (int) (pos & SEGMENT_MASK);
+            int n = Math.min(bytes.length - copied, segment.limit() - offset);
+            segment.get(offset, bytes, copied, n);
+            copied += n;
+        }
+
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    void hash(MessageDigest digest) {
+        for (MappedByteBuffer segment : segments) {
+            digest.update(segment.duplicate());
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package jlox;
+
+import java.math.BigInteger;
+
+/// Parses number literals in place in their Source, without a substring.
+/// A literal is digits, optionally followed by a dot and more digits, so
+/// its value is w * 10^q for the integer w of all its digits and q minus
+/// the number of digits after the dot. Then:
+///
+/// - a whole number is w, converted from the long it was accumulated in;
+/// - if w < 2^53 and -22 <= q, w and 10^-q are exact doubles, so one
+///   division is correctly rounded (Clinger's fast path);
+/// - otherwise, if w has at most 19 significant digits, the Eisel-Lemire
+///   algorithm multiplies it by a 128-bit approximation of 5^q, which
+///   almost always settles the rounding;
+/// - and what is left goes to Double.parseDouble.
+///
+/// Every path gives exactly what Double.parseDouble gives.
+final class Numbers {
+    private static final long MAX_EXACT = 1L << 53;
+    // Powers of ten a double holds exactly
+    private static final double[] POWERS_OF_TEN = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+        1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22,
+    };
+    private static final int MAX_DIGITS = 19;
+
+    private Numbers() {}
+
+    /// Value of the number literal in [start, end) of source.
+    static double parse(Source source, long start, long end) {
+        long w = 0;
+        int digits = 0;
+        int q = 0;
+        boolean fraction = false;
+        for (long i = start; i < end; i++) {
+            char c = source.charAt(i);
+            if (c == '.') {
+                fraction = true;
+                continue;
+            }
+            if (fraction) {
+                q--;
+            }
+            // Leading zeros are not significant
+            if (digits > 0 || c != '0') {
+                if (++digits > MAX_DIGITS) {
+                    return Double.parseDouble(source.substring(start, end));
+                }
+                w = w * 10 + (c - '0');
+            }
+        }
+
+        // Past Long.MAX_VALUE, w is unsigned
+        if (w >= 0 && q == 0) {
+            // Converting a long rounds correctly
+            return w;
+        } else if (w >= 0 && w < MAX_EXACT && q >= -22) {
+            return w / POWERS_OF_TEN[-q];
+        }
+        double value = eiselLemire(w, q);
+        if (Double.isNaN(value)) {
+            return Double.parseDouble(source.substring(start, end));
+        }
+        return value;
+    }
+
+    /// w * 10^q correctly rounded, for w of at most 19 digits and q <= 0,
+    /// or NaN if it cannot be settled here.
+    static double eiselLemire(long w, int q) {
+        if (w == 0) {
+            return 0;
+        }
+        if (q < Powers.SMALLEST) {
+            return Double.NaN;
+        }
+
+        int lz = Long.numberOfLeadingZeros(w);
+        w <<= lz;
+        int index = 2 * (q - Powers.SMALLEST);
+        long high = Powers.TABLE[index];
+        long low = Powers.TABLE[index + 1];
+
+        // The top 128 bits of w times the power of five, widening to the
+        // second word only if the bits that decide rounding are all ones
+        long productHigh = unsignedMultiplyHigh(w, high);
+        long productLow = w * high;
+        if ((productHigh & 0x1ff) == 0x1ff) {
+            long secondHigh = unsignedMultiplyHigh(w, low);
+            long sum = productLow + secondHigh;
+            if (Long.compareUnsigned(sum, productLow) < 0) {
+                productHigh++;
+            }
+            productLow = sum;
+        }
+        // The approximation may be too far off only outside this range
+        if (productLow == -1L && q < -27) {
+            return Double.NaN;
+        }
+
+        int upperBit = (int) (productHigh >>> 63);
+        long mantissa = productHigh >>> (upperBit + 9);
+        int power2 = (((152170 + 65536) * q) >> 16) + 63 + upperBit - lz + 1023;
+        if (power2 <= 0) {
+            // Subnormal
+            return Double.NaN;
+        }
+
+        // A tie between two doubles rounds to the even one
+        if (Long.compareUnsigned(productLow, 1) <= 0 && q >= -4 && (mantissa & 3) == 1
+                && mantissa << (upperBit + 9) == productHigh) {
+            mantissa &= ~1L;
+        }
+        mantissa += mantissa & 1;
+        mantissa >>>= 1;
+        if (mantissa >= 1L << 53) {
+            mantissa = 1L << 52;
+            power2++;
+        }
+        mantissa &= ~(1L << 52);
+        if (power2 >= 0x7ff) {
+            return Double.POSITIVE_INFINITY;
+        }
+        return Double.longBitsToDouble(mantissa | (long) power2 << 52);
+    }
+
+    // High 64 bits of the unsigned 128-bit product of a and b
+    private static long unsignedMultiplyHigh(long a, long b) {
+        return Math.multiplyHigh(a, b) + ((a >> 63) & b) + ((b >> 63) & a);
+    }
+
+    // 128-bit approximations of 5^q for SMALLEST <= q <= 0, as pairs of
+    // high and low words. Only made the first time a number misses the
+    // fast path.
+    private static class Powers {
+        static final int SMALLEST = -342;
+        static final long[] TABLE = new long[2 * (1 - SMALLEST)];
+
+        static {
+            BigInteger mask = BigInteger.ONE.shiftLeft(64).subtract(BigInteger.ONE);
+            for (int q = SMALLEST; q <= 0; q++) {
+                BigInteger power = BigInteger.valueOf(5).pow(-q);
+                BigInteger c;
+                if (q == 0) {
+                    c = BigInteger.ONE.shiftLeft(127);
+                } else {
+                    // The reciprocal, rounded up, to 128 significant bits
+                    int z = power.bitLength();
+                    int b = q >= -27 ? z + 127 : 2 * z + 128;
+                    c = BigInteger.ONE.shiftLeft(b).divide(power).add(BigInteger.ONE);
+                    c = c.shiftRight(Math.max(0, c.bitLength() - 128));
+                }
+                TABLE[2 * (q - SMALLEST)] = c.shiftRight(64).longValue();
+                TABLE[2 * (q - SMALLEST) + 1] = c.and(mask).longValue();
+            }
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package jlox;
+
+/// Instructions of the bytecode VM. Operands follow the opcode: a u16
+/// constant or Globals index, u8 slot, u8 argument count or u16 jump offset
+/// as noted.
+final class OpCode {
+    private OpCode() {}
+
+    static final byte CONSTANT = 0;         // u16 constant
+    static final byte NUMBER = 1;           // u16 number constant
+    static final byte NIL = 2;
+    static final byte TRUE = 3;
+    static final byte FALSE = 4;
+    static final byte POP = 5;
+    static final byte GET_LOCAL = 6;        // u8 slot
+    static final byte SET_LOCAL = 7;        // u8 slot
+    static final byte GET_GLOBAL = 8;       // u16 global
+    static final byte DEFINE_GLOBAL = 9;    // u16 global
+    static final byte SET_GLOBAL = 10;      // u16 global
+    static final byte GET_UPVALUE = 11;     // u8 upvalue
+    static final byte SET_UPVALUE = 12;     // u8 upvalue
+    static final byte GET_PROPERTY = 13;    // u16 name constant, u16 cache
+    static final byte SET_PROPERTY = 14;    // u16 name constant, u16 cache
+    static final byte GET_SUPER = 15;       // u16 name constant
+    static final byte EQUAL = 16;
+    static final byte NOT_EQUAL = 17;
+    static final byte GREATER = 18;
+    static final byte GREATER_EQUAL = 19;
+    static final byte LESS = 20;
+    static final byte LESS_EQUAL = 21;
+    static final byte ADD = 22;
+    static final byte SUBTRACT = 23;
+    static final byte MULTIPLY = 24;
+    static final byte DIVIDE = 25;
+    static final byte NOT = 26;
+    static final byte NEGATE = 27;
+    static final byte PRINT = 28;
+    static final byte JUMP = 29;            // u16 forward offset
+    static final byte JUMP_IF_FALSE = 30;   // u16 forward offset
+    static final byte LOOP = 31;            // u16 backward offset
+    static final byte CALL = 32;            // u8 argument count
+    static final byte CLOSURE = 33;         // u16 function constant, then
+                                            // u8 isLocal, u8 index per upvalue
+    static final byte CLOSE_UPVALUE = 34;
+    static final byte RETURN = 35;
+    static final byte CLASS = 36;           // u16 name constant, u8 hasSuperclass
+    static final byte METHOD = 37;          // u16 name constant
+    // obj.name(args): GET_METHOD leaves the method and obj, or the value of
+    // a field and VM.NO_RECEIVER, below the arguments INVOKE calls it with
+    static final byte GET_METHOD = 38;      // u16 name constant, u16 cache
+    static final byte INVOKE = 39;          // u8 argument count
+}
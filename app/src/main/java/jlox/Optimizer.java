@@ -0,0 +1,425 @@
+package jlox;
+
+import java.util.Arrays;
+
+/// Pass between the Resolver and an engine that folds constant expressions
+/// and drops code that can never run, rewriting the Ast in place:
+///
+/// - operators whose operands are literals become the literal they
+///   evaluate to, unless evaluating them would be a runtime error
+/// - and and or with a literal left operand become one of their operands
+/// - if statements with a literal condition become the branch taken, and
+///   while loops whose condition is falsey are removed, as are expression
+///   statements that are only a literal and statements after a return
+/// - variables that are never assigned and whose initializer is a literal
+///   are replaced by it where they are read
+///
+/// A global is only replaced in top level code after its declaration, and
+/// only if no program run so far assigns it. Functions could be called
+/// before the declaration runs, so they still read the global itself.
+class Optimizer {
+    // What fold() returns when the operands can't be folded
+    private static final Object NOT_CONSTANT = new Object();
+
+    private final Ast ast;
+    private final Globals globals;
+
+    // Literal each local of the open scopes is known to hold, or NONE,
+    // with each scope starting at its entry in scopes
+    private int[] constants = new int[64];
+    private int constantCount = 0;
+    private int[] scopes = new int[16];
+    private int scopeCount = 0;
+    // Literal each global holds, or NONE, by Globals index
+    private int[] globalConstants = new int[0];
+    private int functionDepth = 0;
+
+    // Shared nil and empty block nodes, made when first needed
+    private int nil = Ast.NONE;
+    private int empty = Ast.NONE;
+
+    Optimizer(Ast ast, Globals globals) {
+        this.ast = ast;
+        this.globals = globals;
+    }
+
+    void optimize() {
+        statements(ast.root());
+    }
+
+    // Optimize the statements of list, dropping those that do nothing and
+    // those after a return
+    private void statements(int list) {
+        int count = 0;
+        for (int i = 0; i < ast.count(list); i++) {
+            int stmt = ast.item(list, i);
+            if (!statement(stmt)) {
+                ast.setItem(list, count++, stmt);
+            }
+            if (ast.kind(stmt) == Ast.RETURN) {
+                break;
+            }
+        }
+        ast.truncate(list, count);
+    }
+
+    // Optimize stmt, returning true if it now does nothing
+    private boolean statement(int stmt) {
+        switch (ast.kind(stmt)) {
+        case Ast.EXPRESSION:
+            expression(ast.a(stmt));
+            return isLiteral(ast.a(stmt));
+        case Ast.PRINT:
+            expression(ast.a(stmt));
+            return false;
+        case Ast.VAR: {
+            int value = ast.b(stmt);
+            if (value != Ast.NONE) {
+                expression(value);
+            } else {
+                value = nil();
+            }
+            boolean constant = isLiteral(value) && !ast.isAssigned(stmt);
+            declare(stmt, constant ? value : Ast.NONE);
+            return false;
+        }
+        case Ast.BLOCK:
+            if (ast.locals(stmt) == Ast.NO_SCOPE) {
+                statements(ast.a(stmt));
+            } else {
+                beginScope();
+                statements(ast.a(stmt));
+                endScope();
+            }
+            return ast.count(ast.a(stmt)) == 0;
+        case Ast.IF: {
+            int condition = ast.a(stmt);
+            expression(condition);
+            if (!isLiteral(condition)) {
+                statement(ast.b(stmt));
+                if (ast.c(stmt) != Ast.NONE) {
+                    statement(ast.c(stmt));
+                }
+                return false;
+            }
+
+            int branch = Values.isTruthy(value(condition)) ? ast.b(stmt) : ast.c(stmt);
+            if (branch == Ast.NONE || statement(branch)) {
+                ast.replace(stmt, empty());
+                return true;
+            }
+            ast.replace(stmt, branch);
+            return false;
+        }
+        case Ast.WHILE: {
+            int condition = ast.a(stmt);
+            expression(condition);
+            if (isLiteral(condition) && !Values.isTruthy(value(condition))) {
+                ast.replace(stmt, empty());
+                return true;
+            }
+            statement(ast.b(stmt));
+            return false;
+        }
+        case Ast.FUNCTION:
+            declare(stmt, Ast.NONE);
+            function(stmt);
+            return false;
+        case Ast.RETURN:
+            if (ast.a(stmt) != Ast.NONE) {
+                expression(ast.a(stmt));
+            }
+            return false;
+        case Ast.CLASS:
+            classDeclaration(stmt);
+            return false;
+        default:
+            throw new IllegalStateException("Not a statement: " + ast.kind(stmt));
+        }
+    }
+
+    // Scopes are opened just as the Resolver opens them, so the depth and
+    // slot of a variable find its entry in constants
+    private void classDeclaration(int stmt) {
+        declare(stmt, Ast.NONE);
+        // The superclass is left as the VARIABLE the engines expect
+        boolean hasSuperclass = ast.b(stmt) != Ast.NONE;
+        if (hasSuperclass) {
+            beginScope();
+            define(0, Ast.NONE);
+        }
+
+        beginScope();
+        define(0, Ast.NONE);
+        int methods = ast.c(stmt);
+        for (int i = 0; i < ast.count(methods); i++) {
+            function(ast.item(methods, i));
+        }
+        endScope();
+
+        if (hasSuperclass) {
+            endScope();
+        }
+    }
+
+    private void function(int decl) {
+        functionDepth++;
+        beginScope();
+        int params = ast.count(ast.b(decl));
+        for (int i = 0; i < params; i++) {
+            define(i, Ast.NONE);
+        }
+        statements(ast.c(decl));
+        endScope();
+        functionDepth--;
+    }
+
+    private void expression(int expr) {
+        switch (ast.kind(expr)) {
+        case Ast.NUMBER:
+        case Ast.STRING:
+        case Ast.TRUE:
+        case Ast.FALSE:
+        case Ast.NIL:
+        case Ast.THIS:
+        case Ast.SUPER:
+            break;
+        case Ast.GROUPING:
+            expression(ast.a(expr));
+            ast.replace(expr, ast.a(expr));
+            break;
+        case Ast.NEGATE:
+            expression(ast.a(expr));
+            if (ast.kind(ast.a(expr)) == Ast.NUMBER) {
+                ast.setNumber(expr, -ast.numberValue(ast.a(expr)));
+            }
+            break;
+        case Ast.NOT:
+            expression(ast.a(expr));
+            if (isLiteral(ast.a(expr))) {
+                setValue(expr, !Values.isTruthy(value(ast.a(expr))));
+            }
+            break;
+        case Ast.AND:
+        case Ast.OR: {
+            int left = ast.a(expr);
+            expression(left);
+            if (!isLiteral(left)) {
+                expression(ast.b(expr));
+            } else if (Values.isTruthy(value(left)) == (ast.kind(expr) == Ast.OR)) {
+                // true or x, false and x
+                ast.replace(expr, left);
+            } else {
+                int right = ast.b(expr);
+                expression(right);
+                ast.replace(expr, right);
+            }
+            break;
+        }
+        case Ast.VARIABLE: {
+            int constant = constant(expr);
+            if (constant != Ast.NONE) {
+                ast.replace(expr, constant);
+            }
+            break;
+        }
+        case Ast.ASSIGN:
+            expression(ast.b(expr));
+            break;
+        case Ast.CALL: {
+            expression(ast.a(expr));
+            int args = ast.b(expr);
+            for (int i = 0; i < ast.count(args); i++) {
+                expression(ast.item(args, i));
+            }
+            break;
+        }
+        case Ast.GET:
+            expression(ast.a(expr));
+            break;
+        case Ast.SET:
+            expression(ast.a(expr));
+            expression(ast.c(expr));
+            break;
+        default: {
+            // Binary operators other than and and or
+            int left = ast.a(expr);
+            int right = ast.b(expr);
+            expression(left);
+            expression(right);
+            if (isLiteral(left) && isLiteral(right)) {
+                Object value = fold(ast.kind(expr), value(left), value(right));
+                if (value != NOT_CONSTANT) {
+                    setValue(expr, value);
+                }
+            }
+            break;
+        }
+        }
+    }
+
+    // Evaluate a binary operator as the engines do, or return NOT_CONSTANT
+    // for operands that are a runtime error
+    private static Object fold(byte kind, Object left, Object right) {
+        switch (kind) {
+        case Ast.EQUAL:
+            return Values.isEqual(left, right);
+        case Ast.NOT_EQUAL:
+            return !Values.isEqual(left, right);
+        case Ast.ADD:
+            if (left instanceof String && right instanceof String) {
+                return (String) left + (String) right;
+            }
+            break;
+        default:
+            break;
+        }
+
+        if (!(left instanceof Double && right instanceof Double)) {
+            return NOT_CONSTANT;
+        }
+        double a = (double) left;
+        double b = (double) right;
+        switch (kind) {
+        case Ast.ADD:
+            return a + b;
+        case Ast.SUBTRACT:
+            return a - b;
+        case Ast.MULTIPLY:
+            return a * b;
+        case Ast.DIVIDE:
+            return a / b;
+        case Ast.GREATER:
+            return a > b;
+        case Ast.GREATER_EQUAL:
+            return a >= b;
+        case Ast.LESS:
+            return a < b;
+        case Ast.LESS_EQUAL:
+            return a <= b;
+        default:
+            throw new IllegalStateException("Not a binary operator: " + kind);
+        }
+    }
+
+    private boolean isLiteral(int expr) {
+        switch (ast.kind(expr)) {
+        case Ast.NUMBER:
+        case Ast.STRING:
+        case Ast.TRUE:
+        case Ast.FALSE:
+        case Ast.NIL:
+            return true;
+        default:
+            return false;
+        }
+    }
+
+    // Value of a literal, as the Interpreter represents it
+    private Object value(int literal) {
+        switch (ast.kind(literal)) {
+        case Ast.NUMBER:
+            return ast.numberValue(literal);
+        case Ast.STRING:
+            return ast.name(ast.a(literal));
+        case Ast.TRUE:
+            return true;
+        case Ast.FALSE:
+            return false;
+        default:
+            return null;
+        }
+    }
+
+    private void setValue(int node, Object value) {
+        if (value instanceof Double) {
+            ast.setNumber(node, (double) value);
+        } else if (value instanceof String) {
+            ast.setLiteral(node, Ast.STRING, ast.symbols.intern((String) value));
+        } else if (value instanceof Boolean) {
+            ast.setLiteral(node, (boolean) value ? Ast.TRUE : Ast.FALSE, Ast.NONE);
+        } else {
+            ast.setLiteral(node, Ast.NIL, Ast.NONE);
+        }
+    }
+
+    // Literal the variable expr reads is known to hold, or NONE
+    private int constant(int expr) {
+        int depth = ast.depth(expr);
+        if (depth != Ast.GLOBAL) {
+            return constants[scopes[scopeCount - 1 - depth] + ast.slot(expr)];
+        }
+
+        int index = ast.slot(expr);
+        if (functionDepth > 0 || index >= globalConstants.length) {
+            return Ast.NONE;
+        }
+        return globalConstants[index];
+    }
+
+    // Record the literal the variable a VAR, FUNCTION or CLASS declares
+    // holds, or NONE
+    private void declare(int decl, int literal) {
+        if (ast.depth(decl) == Ast.GLOBAL) {
+            declareGlobal(ast.slot(decl), literal);
+        } else {
+            define(ast.slot(decl), literal);
+        }
+    }
+
+    // Record the literal slot of the innermost scope holds, or NONE
+    private void define(int slot, int literal) {
+        int index = scopes[scopeCount - 1] + slot;
+        if (index >= constants.length) {
+            constants = Arrays.copyOf(constants, Math.max(index + 1, constants.length * 2));
+        }
+        // Slots between the last one defined and this one are never read
+        for (int i = constantCount; i < index; i++) {
+            constants[i] = Ast.NONE;
+        }
+        constants[index] = literal;
+        constantCount = Math.max(constantCount, index + 1);
+    }
+
+    private void declareGlobal(int index, int literal) {
+        if (literal != Ast.NONE && globals.isAssigned(index)) {
+            literal = Ast.NONE;
+        }
+        if (index >= globalConstants.length) {
+            if (literal == Ast.NONE) {
+                return;
+            }
+            int length = globalConstants.length;
+            globalConstants = Arrays.copyOf(globalConstants, Math.max(index + 1, length * 2));
+            Arrays.fill(globalConstants, length, globalConstants.length, Ast.NONE);
+        }
+        globalConstants[index] = literal;
+    }
+
+    private void beginScope() {
+        if (scopeCount == scopes.length) {
+            scopes = Arrays.copyOf(scopes, scopeCount * 2);
+        }
+        scopes[scopeCount++] = constantCount;
+    }
+
+    private void endScope() {
+        constantCount = scopes[--scopeCount];
+    }
+
+    private int nil() {
+        if (nil == Ast.NONE) {
+            nil = ast.node(Ast.NIL, Ast.NONE, Ast.NONE, Ast.NONE, 0);
+        }
+        return nil;
+    }
+
+    // An empty BLOCK to put in place of a statement that does nothing
+    private int empty() {
+        if (empty == Ast.NONE) {
+            empty = ast.node(Ast.BLOCK, ast.list(ast.mark()), Ast.NONE, Ast.NONE, 0);
+            ast.setLocals(empty, 0);
+        }
+        return empty;
+    }
+}
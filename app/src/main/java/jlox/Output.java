@@ -0,0 +1,202 @@
+package jlox;
+
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+
+/// Buffered output for what programs print and what Lox dumps. Text is
+/// encoded as UTF-8 straight into a reused buffer, which is written to a
+/// channel when it fills and on flush(), so printing a line is a few array
+/// stores rather than a String concatenation and a synchronized, flushing
+/// PrintStream call. Nothing reaches the channel until flush(), so whoever
+/// owns an Output flushes it before anything else is written to where it
+/// goes, and before waiting for input.
+///
+/// Like a PrintStream, an Output never throws: once a write fails, further
+/// output is dropped and checkError() returns true. It is not thread safe.
+class Output implements Flushable {
+    static final int CAPACITY = 64 * 1024;
+
+    private final WritableByteChannel channel;
+    // Flushed after the channel is written, when writing to a stream
+    private final Flushable stream;
+    private final byte[] bytes = new byte[CAPACITY];
+    private final ByteBuffer buffer = ByteBuffer.wrap(bytes);
+    // Bytes of buffer printed so far
+    private int count = 0;
+    // Room for the digits of a long
+    private final byte[] digits = new byte[20];
+    private boolean trouble = false;
+
+    Output(WritableByteChannel channel) {
+        this.channel = channel;
+        this.stream = null;
+    }
+
+    Output(OutputStream out) {
+        this.channel = Channels.newChannel(out);
+        this.stream = out;
+    }
+
+    /// Output to the process's standard output, bypassing System.out.
+    static Output stdout() {
+        return new Output(new FileOutputStream(FileDescriptor.out).getChannel());
+    }
+
+    Output print(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (Character.isHighSurrogate(c) && i + 1 < s.length()
+                    && Character.isLowSurrogate(s.charAt(i + 1))) {
+                printSupplementary(Character.toCodePoint(c, s.charAt(++i)));
+            } else {
+                print(c);
+            }
+        }
+        return this;
+    }
+
+    /// Print [start, end) of source. The bytes of a byte-backed source are
+    /// already UTF-8, so they are copied as they are.
+    Output print(Source source, long start, long end) {
+        if (source.isBytes()) {
+            for (long i = start; i < end; i++) {
+                put((byte) source.charAt(i));
+            }
+            return this;
+        }
+
+        for (long i = start; i < end; i++) {
+            char c = source.charAt(i);
+            if (Character.isHighSurrogate(c) && i + 1 < end
+                    && Character.isLowSurrogate(source.charAt(i + 1))) {
+                printSupplementary(Character.toCodePoint(c, source.charAt(++i)));
+            } else {
+                print(c);
+            }
+        }
+        return this;
+    }
+
+    // The four bytes of a code point past the Basic Multilingual Plane
+    private void printSupplementary(int codePoint) {
+        put((byte) (0xf0 | codePoint >> 18));
+        put((byte) (0x80 | codePoint >> 12 & 0x3f));
+        put((byte) (0x80 | codePoint >> 6 & 0x3f));
+        put((byte) (0x80 | codePoint & 0x3f));
+    }
+
+    Output print(char c) {
+        if (c < 0x80) {
+            put((byte) c);
+        } else if (c < 0x800) {
+            put((byte) (0xc0 | c >> 6));
+            put((byte) (0x80 | c & 0x3f));
+        } else if (Character.isSurrogate(c)) {
+            // Only pairs printed at once are encoded
+            put((byte) '?');
+        } else {
+            put((byte) (0xe0 | c >> 12));
+            put((byte) (0x80 | c >> 6 & 0x3f));
+            put((byte) (0x80 | c & 0x3f));
+        }
+        return this;
+    }
+
+    Output print(long value) {
+        if (value < 0) {
+            put((byte) '-');
+            if (value == Long.MIN_VALUE) {
+                return print("9223372036854775808");
+            }
+            value = -value;
+        }
+
+        int n = 0;
+        do {
+            digits[n++] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value > 0);
+        while (n > 0) {
+            put(digits[--n]);
+        }
+        return this;
+    }
+
+    /// Print value as Lox does, with no fraction if it is a whole number.
+    Output printNumber(double value) {
+        if (isSmallInteger(value)) {
+            return print((long) value);
+        }
+        return print(Values.stringify(value));
+    }
+
+    /// Print value as Double.toString() does.
+    Output printDouble(double value) {
+        if (isSmallInteger(value)) {
+            return print((long) value).print(".0");
+        }
+        return print(Double.toString(value));
+    }
+
+    /// Print a token as Token.toString() does, from the source it was
+    /// scanned from: its type, its lexeme at [start, end) of source, and the
+    /// value of a STRING or NUMBER or else null.
+    Output printToken(TokenType type, Source source, long start, long end, double number) {
+        print(type.name()).print(' ').print(source, start, end).print(' ');
+        switch (type) {
+        case STRING:
+            return print(source, start + 1, end - 1);
+        case NUMBER:
+            return printDouble(number);
+        default:
+            return print("null");
+        }
+    }
+
+    Output println() {
+        put((byte) '\n');
+        return this;
+    }
+
+    /// Write out everything printed so far.
+    @Override
+    public void flush() {
+        buffer.limit(count).position(0);
+        try {
+            while (buffer.hasRemaining() && !trouble) {
+                channel.write(buffer);
+            }
+            if (stream != null && !trouble) {
+                stream.flush();
+            }
+        } catch (IOException e) {
+            trouble = true;
+        }
+        buffer.clear();
+        count = 0;
+    }
+
+    /// Whether output has been dropped because a write failed.
+    boolean checkError() {
+        return trouble;
+    }
+
+    // Whole numbers that Double.toString() prints in full, with ".0"
+    private static boolean isSmallInteger(double value) {
+        return value == (long) value && Math.abs(value) < 1e7
+            && Double.doubleToRawLongBits(value) != Long.MIN_VALUE;
+    }
+
+    private void put(byte b) {
+        if (count == CAPACITY) {
+            flush();
+        }
+        bytes[count++] = b;
+    }
+}
@@ -0,0 +1,220 @@
+package jlox;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/// Scans a large source on a ForkJoinPool by splitting it into chunks that
+/// are scanned independently and then joined. The result is identical to
+/// scanning the whole source with a single Scanner, except that errors are
+/// reported from the worker threads and so may arrive out of order.
+class ParallelScanner {
+    // Chunks smaller than this are not worth a task of their own
+    static final long MIN_CHUNK_SIZE = 64 * 1024;
+    // Aim for a few chunks per worker so that uneven chunks balance out
+    private static final int CHUNKS_PER_THREAD = 4;
+    // States of the pre-pass that finds where chunks can start
+    private static final int CODE = 0;
+    private static final int STRING = 1;
+    private static final int COMMENT = 2;
+
+    private final Source source;
+    private final ForkJoinPool pool;
+    private final long chunkSize;
+    private final ErrorReporter errors;
+
+    ParallelScanner(Source source, ForkJoinPool pool) {
+        this(source, pool, Math.max(MIN_CHUNK_SIZE,
+                source.length() / ((long) pool.getParallelism() * CHUNKS_PER_THREAD)));
+    }
+
+    ParallelScanner(Source source, ForkJoinPool pool, long chunkSize) {
+        this(source, pool, chunkSize, ErrorReporter.standard());
+    }
+
+    /// ParallelScanner reporting errors to errors, which is called from the
+    /// worker threads of pool.
+    ParallelScanner(Source source, ForkJoinPool pool, long chunkSize, ErrorReporter errors) {
+        this.source = source;
+        this.pool = pool;
+        this.chunkSize = chunkSize;
+        this.errors = errors;
+    }
+
+    List<Token> scanTokens() {
+        return scanTokenStream().asList();
+    }
+
+    TokenStream scanTokenStream() {
+        List<Chunk> chunks = split();
+        if (chunks.size() == 1) {
+            return new Scanner(source, null, errors).scanTokenStream();
+        }
+
+        TokenStream[] parts = new TokenStream[chunks.size()];
+        pool.invoke(new ScanTask(chunks, parts, 0, chunks.size()));
+
+        return TokenStream.concat(parts);
+    }
+
+    /// A range of the source that begins on a fresh line outside of any
+    /// string or comment, so it can be scanned on its own.
+    private static class Chunk {
+        final long from;
+        final long to;
+        final int line;
+
+        Chunk(long from, long to, int line) {
+            this.from = from;
+            this.to = to;
+            this.line = line;
+        }
+    }
+
+    // Cuts are made after the first newline past each multiple of chunkSize
+    // that is outside of any string. Whether a newline is can only be told
+    // from everything before it, so each window of chunkSize is followed on
+    // its own, in parallel, from both ways of entering it, and then the
+    // windows are put together in order, which takes a step per window.
+    private List<Chunk> split() {
+        List<Chunk> chunks = new ArrayList<>();
+        long length = source.length();
+        if (length <= chunkSize) {
+            chunks.add(new Chunk(0, length, 1));
+            return chunks;
+        }
+
+        List<Window> windows = new ArrayList<>();
+        for (long nominal = 0; nominal < length; nominal += chunkSize) {
+            windows.add(new Window(nominal));
+        }
+        pool.invoke(ForkJoinTask.adapt(() -> {
+            ForkJoinTask.invokeAll(windows);
+        }));
+
+        long chunkStart = 0;
+        int chunkLine = 1;
+        int line = 1;
+        boolean inString = false;
+        for (Window window : windows) {
+            if (window.from < 0) {
+                continue;
+            }
+            int entry = inString ? 1 : 0;
+            long cut = window.cuts[entry];
+            if (cut > chunkStart) {
+                chunks.add(new Chunk(chunkStart, cut, chunkLine));
+                chunkStart = cut;
+                chunkLine = line + window.linesBefore[entry];
+            }
+            line += window.lines;
+            inString = window.leftInString[entry];
+        }
+        chunks.add(new Chunk(chunkStart, length, chunkLine));
+
+        return chunks;
+    }
+
+    /// The lines that start in one chunkSize of the source, followed by a
+    /// pre-pass that only tracks whether it is inside a string or a
+    /// comment. Lines start outside of comments, but whether the first is
+    /// inside a string depends on the windows before, so the window is
+    /// followed both ways at once.
+    private class Window extends RecursiveAction {
+        private final long nominal;
+        // Where the lines start and end, or from -1 if no line starts here
+        long from = -1;
+        long to;
+        int lines;
+        // By whether the window is entered inside a string: the first line
+        // start outside of one before to (or -1), the lines before it, and
+        // whether the window is left inside a string
+        final long[] cuts = {-1, -1};
+        final int[] linesBefore = new int[2];
+        final boolean[] leftInString = new boolean[2];
+
+        Window(long nominal) {
+            this.nominal = nominal;
+        }
+
+        @Override
+        protected void compute() {
+            long length = source.length();
+            long end = Math.min(nominal + chunkSize, length);
+            if (nominal > 0) {
+                long newline = source.indexOf('\n', nominal, end);
+                if (newline == end || newline + 1 == length) {
+                    return;
+                }
+                from = newline + 1;
+            } else {
+                from = 0;
+            }
+            to = Math.min(source.indexOf('\n', end, length) + 1, length);
+
+            cuts[0] = from;
+            int outside = CODE;
+            int inside = STRING;
+            for (long i = from; i < to; i++) {
+                char c = source.charAt(i);
+                if (c == '\n') {
+                    lines++;
+                    if (inside != STRING && cuts[1] < 0 && i + 1 < to) {
+                        cuts[1] = i + 1;
+                        linesBefore[1] = lines;
+                    }
+                }
+                outside = step(outside, c, i);
+                inside = step(inside, c, i);
+            }
+            leftInString[0] = outside == STRING;
+            leftInString[1] = inside == STRING;
+        }
+
+        // State of the pre-pass after c at i
+        private int step(int state, char c, long i) {
+            switch (state) {
+            case STRING:
+                return c == '"' ? CODE : STRING;
+            case COMMENT:
+                return c == '\n' ? CODE : COMMENT;
+            default:
+                if (c == '"') {
+                    return STRING;
+                } else if (c == '/' && i + 1 < source.length() && source.charAt(i + 1) == '/') {
+                    return COMMENT;
+                }
+                return CODE;
+            }
+        }
+    }
+
+    private class ScanTask extends RecursiveAction {
+        private final List<Chunk> chunks;
+        private final TokenStream[] parts;
+        private final int lo;
+        private final int hi;
+
+        ScanTask(List<Chunk> chunks, TokenStream[] parts, int lo, int hi) {
+            this.chunks = chunks;
+            this.parts = parts;
+            this.lo = lo;
+            this.hi = hi;
+        }
+
+        @Override
+        protected void compute() {
+            if (hi - lo == 1) {
+                Chunk chunk = chunks.get(lo);
+                Scanner scanner = new Scanner(source, null, errors, chunk.from, chunk.to, chunk.line);
+                parts[lo] = scanner.scanTokenStream();
+            } else {
+                int mid = (lo + hi) >>> 1;
+                invokeAll(new ScanTask(chunks, parts, lo, mid),
+                          new ScanTask(chunks, parts, mid, hi));
+            }
+        }
+    }
+}
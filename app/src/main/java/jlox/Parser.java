@@ -0,0 +1,525 @@
+package jlox;
+
+import static jlox.TokenType.*;
+
+/// Recursive descent parser from a TokenStream into an Ast arena. Names and
+/// string values are stored as symbols; tokens that were not interned while
+/// scanning are interned here.
+class Parser {
+    private static class ParseError extends RuntimeException {}
+
+    private static final int MAX_ARGUMENTS = 255;
+
+    private final TokenStream tokens;
+    private final SymbolTable symbols;
+    private final ErrorReporter errors;
+    private final Ast ast;
+    private int current = 0;
+
+    Parser(TokenStream tokens, SymbolTable symbols) {
+        this(tokens, symbols, ErrorReporter.standard());
+    }
+
+    /// Parser over tokens, skipping any ERROR tokens in them, whose errors
+    /// were reported as they were scanned. Tokens interned while scanning
+    /// must have been interned into symbols.
+    Parser(TokenStream tokens, SymbolTable symbols, ErrorReporter errors) {
+        if (tokens.symbols() != null && tokens.symbols() != symbols) {
+            throw new IllegalArgumentException("Tokens were interned into another SymbolTable.");
+        }
+        this.tokens = tokens.withoutErrors();
+        this.symbols = symbols;
+        this.errors = errors;
+        this.ast = new Ast(symbols);
+    }
+
+    /// Parse the whole program. Syntax errors are reported and skipped, so
+    /// the tree is only complete if none were reported.
+    Ast parse() {
+        int mark = ast.mark();
+        while (!isAtEnd()) {
+            int statement = declaration();
+            if (statement != Ast.NONE) {
+                ast.add(statement);
+            }
+        }
+        ast.setRoot(ast.list(mark));
+
+        return ast;
+    }
+
+    private int declaration() {
+        int mark = ast.mark();
+        try {
+            if (match(CLASS)) {
+                return classDeclaration();
+            } else if (match(FUN)) {
+                return function("function");
+            } else if (match(VAR)) {
+                return varDeclaration();
+            } else {
+                return statement();
+            }
+        } catch (ParseError error) {
+            // Drop the items of any list left open by the error
+            ast.drop(mark);
+            synchronize();
+            return Ast.NONE;
+        }
+    }
+
+    private int classDeclaration() {
+        int line = line();
+        int name = symbol(consume(IDENTIFIER, "Expect class name."));
+
+        int superclass = Ast.NONE;
+        if (match(LESS)) {
+            int superName = consume(IDENTIFIER, "Expect superclass name.");
+            superclass = ast.node(Ast.VARIABLE, symbol(superName), Ast.NONE, Ast.NONE, line);
+        }
+
+        consume(LEFT_BRACE, "Expect '{' before class body.");
+        int mark = ast.mark();
+        while (!check(RIGHT_BRACE) && !isAtEnd()) {
+            ast.add(function("method"));
+        }
+        int methods = ast.list(mark);
+        consume(RIGHT_BRACE, "Expect '}' after class body.");
+
+        return ast.node(Ast.CLASS, name, superclass, methods, line);
+    }
+
+    private int function(String kind) {
+        int line = line();
+        int name = symbol(consume(IDENTIFIER, "Expect " + kind + " name."));
+
+        consume(LEFT_PAREN, "Expect '(' after " + kind + " name.");
+        int mark = ast.mark();
+        if (!check(RIGHT_PAREN)) {
+            do {
+                if (ast.mark() - mark >= MAX_ARGUMENTS) {
+                    error(current, "Can't have more than " + MAX_ARGUMENTS + " parameters.");
+                }
+                ast.add(symbol(consume(IDENTIFIER, "Expect parameter name.")));
+            } while (match(COMMA));
+        }
+        int params = ast.list(mark);
+        consume(RIGHT_PAREN, "Expect ')' after parameters.");
+
+        consume(LEFT_BRACE, "Expect '{' before " + kind + " body.");
+        int body = block();
+
+        return ast.node(Ast.FUNCTION, name, params, body, line);
+    }
+
+    private int varDeclaration() {
+        int line = line();
+        int name = symbol(consume(IDENTIFIER, "Expect variable name."));
+
+        int initializer = Ast.NONE;
+        if (match(EQUAL)) {
+            initializer = expression();
+        }
+
+        consume(SEMICOLON, "Expect ';' after variable declaration.");
+        return ast.node(Ast.VAR, name, initializer, Ast.NONE, line);
+    }
+
+    private int statement() {
+        int line = tokens.line(current);
+        if (match(FOR)) {
+            return forStatement();
+        } else if (match(IF)) {
+            return ifStatement();
+        } else if (match(PRINT)) {
+            int value = expression();
+            consume(SEMICOLON, "Expect ';' after value.");
+            return ast.node(Ast.PRINT, value, Ast.NONE, Ast.NONE, line);
+        } else if (match(RETURN)) {
+            int value = Ast.NONE;
+            if (!check(SEMICOLON)) {
+                value = expression();
+            }
+            consume(SEMICOLON, "Expect ';' after return value.");
+            return ast.node(Ast.RETURN, value, Ast.NONE, Ast.NONE, line);
+        } else if (match(WHILE)) {
+            consume(LEFT_PAREN, "Expect '(' after 'while'.");
+            int condition = expression();
+            consume(RIGHT_PAREN, "Expect ')' after condition.");
+            int body = statement();
+            return ast.node(Ast.WHILE, condition, body, Ast.NONE, line);
+        } else if (match(LEFT_BRACE)) {
+            return ast.node(Ast.BLOCK, block(), Ast.NONE, Ast.NONE, line);
+        } else {
+            int expr = expression();
+            consume(SEMICOLON, "Expect ';' after expression.");
+            return ast.node(Ast.EXPRESSION, expr, Ast.NONE, Ast.NONE, line);
+        }
+    }
+
+    // A for loop is desugared into a while loop:
+    //     { initializer; while (condition) { body; increment; } }
+    private int forStatement() {
+        int line = line();
+        consume(LEFT_PAREN, "Expect '(' after 'for'.");
+
+        int initializer;
+        if (match(SEMICOLON)) {
+            initializer = Ast.NONE;
+        } else if (match(VAR)) {
+            initializer = varDeclaration();
+        } else {
+            int expr = expression();
+            consume(SEMICOLON, "Expect ';' after loop initializer.");
+            initializer = ast.node(Ast.EXPRESSION, expr, Ast.NONE, Ast.NONE, line);
+        }
+
+        int condition;
+        if (check(SEMICOLON)) {
+            condition = ast.node(Ast.TRUE, Ast.NONE, Ast.NONE, Ast.NONE, line);
+        } else {
+            condition = expression();
+        }
+        consume(SEMICOLON, "Expect ';' after loop condition.");
+
+        int increment = Ast.NONE;
+        if (!check(RIGHT_PAREN)) {
+            increment = expression();
+        }
+        consume(RIGHT_PAREN, "Expect ')' after for clauses.");
+
+        int body = statement();
+
+        if (increment != Ast.NONE) {
+            int mark = ast.mark();
+            ast.add(body);
+            ast.add(ast.node(Ast.EXPRESSION, increment, Ast.NONE, Ast.NONE, line));
+            body = ast.node(Ast.BLOCK, ast.list(mark), Ast.NONE, Ast.NONE, line);
+        }
+
+        int loop = ast.node(Ast.WHILE, condition, body, Ast.NONE, line);
+
+        if (initializer != Ast.NONE) {
+            int mark = ast.mark();
+            ast.add(initializer);
+            ast.add(loop);
+            loop = ast.node(Ast.BLOCK, ast.list(mark), Ast.NONE, Ast.NONE, line);
+        }
+
+        return loop;
+    }
+
+    private int ifStatement() {
+        int line = line();
+        consume(LEFT_PAREN, "Expect '(' after 'if'.");
+        int condition = expression();
+        consume(RIGHT_PAREN, "Expect ')' after if condition.");
+
+        int thenBranch = statement();
+        int elseBranch = Ast.NONE;
+        if (match(ELSE)) {
+            elseBranch = statement();
+        }
+
+        return ast.node(Ast.IF, condition, thenBranch, elseBranch, line);
+    }
+
+    // Statements up to the closing '}', whose '{' has been consumed
+    private int block() {
+        int mark = ast.mark();
+        while (!check(RIGHT_BRACE) && !isAtEnd()) {
+            int statement = declaration();
+            if (statement != Ast.NONE) {
+                ast.add(statement);
+            }
+        }
+        int list = ast.list(mark);
+
+        consume(RIGHT_BRACE, "Expect '}' after block.");
+        return list;
+    }
+
+    private int expression() {
+        return assignment();
+    }
+
+    private int assignment() {
+        int expr = or();
+
+        if (match(EQUAL)) {
+            int equals = current - 1;
+            int value = assignment();
+
+            if (ast.kind(expr) == Ast.VARIABLE) {
+                return ast.node(Ast.ASSIGN, ast.a(expr), value, Ast.NONE, ast.line(expr));
+            } else if (ast.kind(expr) == Ast.GET) {
+                return ast.node(Ast.SET, ast.a(expr), ast.b(expr), value, ast.line(expr));
+            }
+
+            // Report without throwing; the parser is not confused
+            error(equals, "Invalid assignment target.");
+        }
+
+        return expr;
+    }
+
+    private int or() {
+        int expr = and();
+
+        while (match(TokenType.OR)) {
+            int line = line();
+            int right = and();
+            expr = ast.node(Ast.OR, expr, right, Ast.NONE, line);
+        }
+
+        return expr;
+    }
+
+    private int and() {
+        int expr = equality();
+
+        while (match(TokenType.AND)) {
+            int line = line();
+            int right = equality();
+            expr = ast.node(Ast.AND, expr, right, Ast.NONE, line);
+        }
+
+        return expr;
+    }
+
+    private int equality() {
+        int expr = comparison();
+
+        while (match(BANG_EQUAL, EQUAL_EQUAL)) {
+            byte kind = previousType() == BANG_EQUAL ? Ast.NOT_EQUAL : Ast.EQUAL;
+            int line = line();
+            int right = comparison();
+            expr = ast.node(kind, expr, right, Ast.NONE, line);
+        }
+
+        return expr;
+    }
+
+    private int comparison() {
+        int expr = term();
+
+        while (match(GREATER, GREATER_EQUAL, LESS, LESS_EQUAL)) {
+            byte kind;
+            switch (previousType()) {
+            case GREATER:
+                kind = Ast.GREATER;
+                break;
+            case GREATER_EQUAL:
+                kind = Ast.GREATER_EQUAL;
+                break;
+            case LESS:
+                kind = Ast.LESS;
+                break;
+            default:
+                kind = Ast.LESS_EQUAL;
+                break;
+            }
+            int line = line();
+            int right = term();
+            expr = ast.node(kind, expr, right, Ast.NONE, line);
+        }
+
+        return expr;
+    }
+
+    private int term() {
+        int expr = factor();
+
+        while (match(MINUS, PLUS)) {
+            byte kind = previousType() == MINUS ? Ast.SUBTRACT : Ast.ADD;
+            int line = line();
+            int right = factor();
+            expr = ast.node(kind, expr, right, Ast.NONE, line);
+        }
+
+        return expr;
+    }
+
+    private int factor() {
+        int expr = unary();
+
+        while (match(SLASH, STAR)) {
+            byte kind = previousType() == SLASH ? Ast.DIVIDE : Ast.MULTIPLY;
+            int line = line();
+            int right = unary();
+            expr = ast.node(kind, expr, right, Ast.NONE, line);
+        }
+
+        return expr;
+    }
+
+    private int unary() {
+        if (match(BANG, MINUS)) {
+            byte kind = previousType() == BANG ? Ast.NOT : Ast.NEGATE;
+            int line = line();
+            int right = unary();
+            return ast.node(kind, right, Ast.NONE, Ast.NONE, line);
+        }
+
+        return call();
+    }
+
+    private int call() {
+        int expr = primary();
+
+        for (;;) {
+            if (match(LEFT_PAREN)) {
+                expr = finishCall(expr);
+            } else if (match(DOT)) {
+                int line = line();
+                int name = symbol(consume(IDENTIFIER, "Expect property name after '.'."));
+                expr = ast.node(Ast.GET, expr, name, Ast.NONE, line);
+            } else {
+                break;
+            }
+        }
+
+        return expr;
+    }
+
+    private int finishCall(int callee) {
+        int line = line();
+        int mark = ast.mark();
+        if (!check(RIGHT_PAREN)) {
+            do {
+                if (ast.mark() - mark >= MAX_ARGUMENTS) {
+                    error(current, "Can't have more than " + MAX_ARGUMENTS + " arguments.");
+                }
+                ast.add(expression());
+            } while (match(COMMA));
+        }
+        int arguments = ast.list(mark);
+
+        consume(RIGHT_PAREN, "Expect ')' after arguments.");
+        return ast.node(Ast.CALL, callee, arguments, Ast.NONE, line);
+    }
+
+    private int primary() {
+        int line = tokens.line(current);
+        if (match(FALSE)) {
+            return ast.node(Ast.FALSE, Ast.NONE, Ast.NONE, Ast.NONE, line);
+        } else if (match(TRUE)) {
+            return ast.node(Ast.TRUE, Ast.NONE, Ast.NONE, Ast.NONE, line);
+        } else if (match(NIL)) {
+            return ast.node(Ast.NIL, Ast.NONE, Ast.NONE, Ast.NONE, line);
+        } else if (match(NUMBER)) {
+            return ast.number(tokens.number(current - 1), line);
+        } else if (match(TokenType.STRING)) {
+            return ast.node(Ast.STRING, symbol(current - 1), Ast.NONE, Ast.NONE, line);
+        } else if (match(TokenType.SUPER)) {
+            consume(DOT, "Expect '.' after 'super'.");
+            int method = symbol(consume(IDENTIFIER, "Expect superclass method name."));
+            return ast.node(Ast.SUPER, method, Ast.NONE, Ast.NONE, line);
+        } else if (match(TokenType.THIS)) {
+            return ast.node(Ast.THIS, Ast.NONE, Ast.NONE, Ast.NONE, line);
+        } else if (match(IDENTIFIER)) {
+            return ast.node(Ast.VARIABLE, symbol(current - 1), Ast.NONE, Ast.NONE, line);
+        } else if (match(LEFT_PAREN)) {
+            int expr = expression();
+            consume(RIGHT_PAREN, "Expect ')' after expression.");
+            return ast.node(Ast.GROUPING, expr, Ast.NONE, Ast.NONE, line);
+        }
+
+        throw error(current, "Expect expression.");
+    }
+
+    // Symbol of an IDENTIFIER or the value of a STRING token, interned from
+    // its lexeme unless it was while scanning
+    private int symbol(int token) {
+        if (tokens.symbols() != null) {
+            int symbol = tokens.symbol(token);
+            if (symbol >= 0) {
+                return symbol;
+            }
+        }
+
+        Source source = tokens.source();
+        long start = tokens.start(token);
+        long end = start + tokens.length(token);
+        if (tokens.type(token) == TokenType.STRING) {
+            return symbols.intern(source, start + 1, end - 1);
+        }
+        return symbols.intern(source, start, end);
+    }
+
+    private boolean match(TokenType type) {
+        if (check(type)) {
+            current++;
+            return true;
+        }
+
+        return false;
+    }
+
+    private boolean match(TokenType a, TokenType b) {
+        return match(a) || match(b);
+    }
+
+    private boolean match(TokenType a, TokenType b, TokenType c, TokenType d) {
+        return match(a) || match(b) || match(c) || match(d);
+    }
+
+    private int consume(TokenType type, String msg) {
+        if (check(type)) {
+            return current++;
+        }
+
+        throw error(current, msg);
+    }
+
+    private boolean check(TokenType type) {
+        return tokens.type(current) == type;
+    }
+
+    private boolean isAtEnd() {
+        return tokens.type(current) == EOF;
+    }
+
+    private TokenType previousType() {
+        return tokens.type(current - 1);
+    }
+
+    // Line of the token just consumed
+    private int line() {
+        return tokens.line(current - 1);
+    }
+
+    private ParseError error(int token, String msg) {
+        errors.error(tokens.get(token), msg);
+        return new ParseError();
+    }
+
+    // Discard tokens until the start of what is probably the next statement
+    private void synchronize() {
+        if (!isAtEnd()) {
+            current++;
+        }
+
+        while (!isAtEnd()) {
+            if (previousType() == SEMICOLON) {
+                return;
+            }
+
+            switch (tokens.type(current)) {
+            case CLASS:
+            case FUN:
+            case VAR:
+            case FOR:
+            case IF:
+            case WHILE:
+            case PRINT:
+            case RETURN:
+                return;
+            default:
+                break;
+            }
+
+            current++;
+        }
+    }
+}
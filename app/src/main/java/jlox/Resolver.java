@@ -0,0 +1,378 @@
+package jlox;
+
+import java.util.Arrays;
+
+/// Static pass between parsing and execution that works out where every
+/// variable lives and records it in the Ast. A local gets the number of
+/// scopes out it was declared and its slot in that scope, so engines can
+/// keep scopes in fixed size arrays. Names not declared by any enclosing
+/// scope are globals, which get an index into the engine's Globals.
+class Resolver {
+    private enum FunctionType {
+        NONE,
+        FUNCTION,
+        INITIALIZER,
+        METHOD,
+    }
+
+    private enum ClassType {
+        NONE,
+        CLASS,
+        SUBCLASS,
+    }
+
+    private final Ast ast;
+    private final Globals globals;
+    private final ErrorReporter errors;
+    private final int thisSymbol;
+    private final int superSymbol;
+    private final int initSymbol;
+
+    // Names declared by the open scopes, innermost scope last, whether
+    // their initializer has been resolved, and the node declaring them
+    private int[] names = new int[64];
+    private boolean[] defined = new boolean[64];
+    private int[] declarations = new int[64];
+    private int nameCount = 0;
+    // Where each open scope starts in names
+    private int[] scopes = new int[16];
+    private int scopeCount = 0;
+
+    private FunctionType currentFunction = FunctionType.NONE;
+    private ClassType currentClass = ClassType.NONE;
+    private boolean hadError = false;
+
+    Resolver(Ast ast, Globals globals) {
+        this(ast, globals, ErrorReporter.standard());
+    }
+
+    Resolver(Ast ast, Globals globals, ErrorReporter errors) {
+        this.ast = ast;
+        this.globals = globals;
+        this.errors = errors;
+        this.thisSymbol = ast.symbols.intern("this");
+        this.superSymbol = ast.symbols.intern("super");
+        this.initSymbol = ast.symbols.intern("init");
+    }
+
+    /// Resolve the whole program, returning false after reporting the
+    /// errors if it uses variables in ways that are never valid.
+    boolean resolve() {
+        statements(ast.root());
+        return !hadError;
+    }
+
+    private void statements(int list) {
+        for (int i = 0; i < ast.count(list); i++) {
+            statement(ast.item(list, i));
+        }
+    }
+
+    private void statement(int stmt) {
+        switch (ast.kind(stmt)) {
+        case Ast.EXPRESSION:
+        case Ast.PRINT:
+            expression(ast.a(stmt));
+            break;
+        case Ast.VAR:
+            declare(stmt, ast.a(stmt));
+            if (ast.b(stmt) != Ast.NONE) {
+                expression(ast.b(stmt));
+            }
+            define();
+            break;
+        case Ast.BLOCK:
+            if (!declares(ast.a(stmt))) {
+                // Such as most loop bodies, which then run without
+                // allocating a scope each time around
+                statements(ast.a(stmt));
+                ast.setLocals(stmt, Ast.NO_SCOPE);
+                break;
+            }
+            beginScope();
+            statements(ast.a(stmt));
+            ast.setLocals(stmt, endScope());
+            break;
+        case Ast.IF:
+            expression(ast.a(stmt));
+            statement(ast.b(stmt));
+            if (ast.c(stmt) != Ast.NONE) {
+                statement(ast.c(stmt));
+            }
+            break;
+        case Ast.WHILE:
+            expression(ast.a(stmt));
+            statement(ast.b(stmt));
+            break;
+        case Ast.FUNCTION:
+            // Defined straight away so the function can call itself
+            declare(stmt, ast.a(stmt));
+            define();
+            function(stmt, FunctionType.FUNCTION);
+            break;
+        case Ast.RETURN:
+            if (currentFunction == FunctionType.NONE) {
+                error(stmt, "return", "Can't return from top-level code.");
+            }
+            if (ast.a(stmt) != Ast.NONE) {
+                if (currentFunction == FunctionType.INITIALIZER) {
+                    error(stmt, "return", "Can't return a value from an initializer.");
+                }
+                expression(ast.a(stmt));
+            }
+            break;
+        case Ast.CLASS:
+            classDeclaration(stmt);
+            break;
+        default:
+            throw new IllegalStateException("Not a statement: " + ast.kind(stmt));
+        }
+    }
+
+    private void classDeclaration(int stmt) {
+        ClassType enclosingClass = currentClass;
+        currentClass = ClassType.CLASS;
+        declare(stmt, ast.a(stmt));
+        define();
+
+        int superclass = ast.b(stmt);
+        if (superclass != Ast.NONE) {
+            if (ast.a(superclass) == ast.a(stmt)) {
+                error(superclass, ast.name(ast.a(superclass)), "A class can't inherit from itself.");
+            }
+            currentClass = ClassType.SUBCLASS;
+            expression(superclass);
+
+            beginScope();
+            add(superSymbol);
+        }
+
+        // Methods are bound in a scope of their own holding this
+        beginScope();
+        add(thisSymbol);
+        int methods = ast.c(stmt);
+        for (int i = 0; i < ast.count(methods); i++) {
+            int method = ast.item(methods, i);
+            boolean isInitializer = ast.a(method) == initSymbol;
+            function(method, isInitializer ? FunctionType.INITIALIZER : FunctionType.METHOD);
+        }
+        endScope();
+
+        if (superclass != Ast.NONE) {
+            endScope();
+        }
+        currentClass = enclosingClass;
+    }
+
+    private void function(int decl, FunctionType type) {
+        FunctionType enclosingFunction = currentFunction;
+        currentFunction = type;
+
+        beginScope();
+        int params = ast.b(decl);
+        for (int i = 0; i < ast.count(params); i++) {
+            int param = ast.item(params, i);
+            if (isDeclared(param)) {
+                error(decl, ast.name(param), "Already a variable with this name in this scope.");
+            }
+            add(param);
+        }
+        statements(ast.c(decl));
+        ast.setLocals(decl, endScope());
+
+        currentFunction = enclosingFunction;
+    }
+
+    private void expression(int expr) {
+        switch (ast.kind(expr)) {
+        case Ast.NUMBER:
+        case Ast.STRING:
+        case Ast.TRUE:
+        case Ast.FALSE:
+        case Ast.NIL:
+            break;
+        case Ast.GROUPING:
+        case Ast.NEGATE:
+        case Ast.NOT:
+            expression(ast.a(expr));
+            break;
+        case Ast.VARIABLE:
+            if (scopeCount > 0 && isDeclared(ast.a(expr)) && !isDefined(ast.a(expr))) {
+                error(expr, ast.name(ast.a(expr)), "Can't read local variable in its own initializer.");
+            }
+            resolveLocal(expr, ast.a(expr));
+            break;
+        case Ast.ASSIGN: {
+            expression(ast.b(expr));
+            int name = resolveLocal(expr, ast.a(expr));
+            if (name < 0) {
+                globals.setAssigned(ast.slot(expr));
+            } else if (declarations[name] != Ast.NONE) {
+                ast.setAssigned(declarations[name]);
+            }
+            break;
+        }
+        case Ast.CALL: {
+            expression(ast.a(expr));
+            int args = ast.b(expr);
+            for (int i = 0; i < ast.count(args); i++) {
+                expression(ast.item(args, i));
+            }
+            break;
+        }
+        case Ast.GET:
+            expression(ast.a(expr));
+            break;
+        case Ast.SET:
+            expression(ast.a(expr));
+            expression(ast.c(expr));
+            break;
+        case Ast.THIS:
+            if (currentClass == ClassType.NONE) {
+                error(expr, "this", "Can't use 'this' outside of a class.");
+                break;
+            }
+            resolveLocal(expr, thisSymbol);
+            break;
+        case Ast.SUPER:
+            if (currentClass == ClassType.NONE) {
+                error(expr, "super", "Can't use 'super' outside of a class.");
+                break;
+            } else if (currentClass != ClassType.SUBCLASS) {
+                error(expr, "super", "Can't use 'super' in a class with no superclass.");
+                break;
+            }
+            resolveLocal(expr, superSymbol);
+            break;
+        default:
+            // Binary operators, including and and or
+            expression(ast.a(expr));
+            expression(ast.b(expr));
+            break;
+        }
+    }
+
+    // Resolve node, returning the index in names it refers to, or -1 for a
+    // global
+    private int resolveLocal(int node, int symbol) {
+        for (int scope = scopeCount - 1; scope >= 0; scope--) {
+            int start = scopes[scope];
+            int end = scope + 1 < scopeCount ? scopes[scope + 1] : nameCount;
+            for (int i = end - 1; i >= start; i--) {
+                if (names[i] == symbol) {
+                    ast.resolve(node, scopeCount - 1 - scope, i - start);
+                    return i;
+                }
+            }
+        }
+
+        ast.resolve(node, Ast.GLOBAL, global(node, symbol));
+        return -1;
+    }
+
+    // Declare symbol in the innermost scope, or as a global at top level
+    private void declare(int node, int symbol) {
+        if (scopeCount == 0) {
+            ast.resolve(node, Ast.GLOBAL, global(node, symbol));
+            return;
+        }
+
+        if (isDeclared(symbol)) {
+            error(node, ast.name(symbol), "Already a variable with this name in this scope.");
+        }
+        ast.resolve(node, 0, nameCount - scopes[scopeCount - 1]);
+        names = ensure(names, nameCount);
+        defined = ensure(defined, nameCount);
+        declarations = ensure(declarations, nameCount);
+        names[nameCount] = symbol;
+        defined[nameCount] = false;
+        declarations[nameCount] = node;
+        nameCount++;
+    }
+
+    // Mark the variable declared last as ready for use
+    private void define() {
+        if (scopeCount > 0) {
+            defined[nameCount - 1] = true;
+        }
+    }
+
+    // Declare and define a name no user code declares itself
+    private void add(int symbol) {
+        names = ensure(names, nameCount);
+        defined = ensure(defined, nameCount);
+        declarations = ensure(declarations, nameCount);
+        names[nameCount] = symbol;
+        defined[nameCount] = true;
+        declarations[nameCount] = Ast.NONE;
+        nameCount++;
+    }
+
+    private int global(int node, int symbol) {
+        int index = globals.index(ast.name(symbol));
+        if (index >= Globals.MAX_GLOBALS) {
+            error(node, ast.name(symbol), "Too many global variables.");
+        }
+        return index;
+    }
+
+    // Is symbol declared in the innermost scope
+    private boolean isDeclared(int symbol) {
+        return find(symbol) >= 0;
+    }
+
+    private boolean isDefined(int symbol) {
+        return defined[find(symbol)];
+    }
+
+    // Index in names of symbol in the innermost scope, or -1
+    private int find(int symbol) {
+        for (int i = nameCount - 1; i >= scopes[scopeCount - 1]; i--) {
+            if (names[i] == symbol) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // Whether a statement of list declares a variable
+    private boolean declares(int list) {
+        for (int i = 0; i < ast.count(list); i++) {
+            byte kind = ast.kind(ast.item(list, i));
+            if (kind == Ast.VAR || kind == Ast.FUNCTION || kind == Ast.CLASS) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void beginScope() {
+        if (scopeCount == scopes.length) {
+            scopes = Arrays.copyOf(scopes, scopeCount * 2);
+        }
+        scopes[scopeCount++] = nameCount;
+    }
+
+    // Close the innermost scope, returning how many names it declared
+    private int endScope() {
+        int start = scopes[--scopeCount];
+        int count = nameCount - start;
+        nameCount = start;
+        return count;
+    }
+
+    private static int[] ensure(int[] array, int index) {
+        return index < array.length ? array : Arrays.copyOf(array, array.length * 2);
+    }
+
+    private static boolean[] ensure(boolean[] array, int index) {
+        return index < array.length ? array : Arrays.copyOf(array, array.length * 2);
+    }
+
+    // Report msg on the line of node, at the token name, as the Parser
+    // reports errors at tokens
+    private void error(int node, String name, String msg) {
+        errors.error(ast.line(node), " at '" + name + "'", msg);
+        hadError = true;
+    }
+}
@@ -0,0 +1,11 @@
+package jlox;
+
+/// Error raised while a program runs, reported with the line it occurred on.
+class RuntimeError extends RuntimeException {
+    final int line;
+
+    RuntimeError(int line, String msg) {
+        super(msg);
+        this.line = line;
+    }
+}
@@ -1,45 +1,55 @@
 package jlox;
 
-import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
 import static jlox.TokenType.*;
 
 public class Scanner {
-    private final String source;
-    private final List<Token> tokens = new ArrayList<>();
+    private final Source source;
+    // Interns identifiers and string values when set
+    private final SymbolTable symbols;
+    private final ErrorReporter errors;
+    // Scanning stops at end, which is the end of the source unless only a
+    // range of it is being scanned, or errors took no more errors
+    private long end;
     // Offsets start and current indicate the position
-    // of the current token in the source string
-    private int start = 0;
-    private int current = 0;
+    // of the current token in the source
+    private long start = 0;
+    private long current = 0;
     private int line = 1;
+    // Type, NUMBER value and symbol id of the token scanToken() produced,
+    // if any
+    private TokenType scanned = null;
+    private double number = 0;
+    private int symbol = -1;
 
-    private static final Map<String, TokenType> keywords;
-
-    static {
-        keywords = new HashMap<>();
-        keywords.put("and",    AND);
-        keywords.put("class",  CLASS);
-        keywords.put("else",   ELSE);
-        keywords.put("false",  FALSE);
-        keywords.put("for",    FOR);
-        keywords.put("fun",    FUN);
-        keywords.put("if",     IF);
-        keywords.put("nil",    NIL);
-        keywords.put("or",     OR);
-        keywords.put("print",  PRINT);
-        keywords.put("return", RETURN);
-        keywords.put("super",  SUPER);
-        keywords.put("this",   THIS);
-        keywords.put("true",   TRUE);
-        keywords.put("var",    VAR);
-        keywords.put("while",  WHILE);
+    Scanner(String source) {
+        this(Source.of(source));
     }
 
-    Scanner(String source) {
+    Scanner(Source source) {
+        this(source, null);
+    }
+
+    Scanner(Source source, SymbolTable symbols) {
+        this(source, symbols, ErrorReporter.standard());
+    }
+
+    Scanner(Source source, SymbolTable symbols, ErrorReporter errors) {
+        this(source, symbols, errors, 0, source.length(), 1);
+    }
+
+    /// Scanner over [from, to) of source, with from being on line. The range
+    /// must not start or end inside a token, string or comment.
+    Scanner(Source source, SymbolTable symbols, ErrorReporter errors,
+            long from, long to, int line) {
         this.source =  source;
+        this.symbols = symbols;
+        this.errors = errors;
+        this.end = to;
+        this.start = from;
+        this.current = from;
+        this.line = line;
     }
 
     private boolean isDigit(char c) {
@@ -57,20 +67,90 @@ public class Scanner {
     }
 
     private boolean isAtEnd() {
-        return current >= source.length();
+        return current >= end;
     }
 
     List<Token> scanTokens() {
-        while(!isAtEnd()) {
-            start = current;
-            scanToken();
+        return scanTokenStream().asList();
+    }
+
+    /// Scan the whole source into a TokenStream. Token offsets are stored as
+    /// ints, so larger sources can only be pulled through nextToken().
+    TokenStream scanTokenStream() {
+        if (end > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Source too large for a TokenStream.");
         }
 
-        tokens.add(new Token(EOF, "", null, line));
+        TokenStream tokens = new TokenStream(source, symbols, (int) ((end - current) / 4));
+        TokenType type;
+        do {
+            type = scanNext(tokens);
+        } while (type != EOF);
 
         return tokens;
     }
 
+    /// Scan the next token and append it to tokens.
+    TokenType scanNext(TokenStream tokens) {
+        TokenType type = next();
+        int offset = (int) start;
+        int length = (int) (current - start);
+        if (type == NUMBER) {
+            tokens.addNumber(offset, length, line, number);
+        } else if (symbol >= 0) {
+            tokens.addSymbol(type, offset, length, line, symbol);
+        } else {
+            tokens.add(type, offset, length, line);
+        }
+
+        return type;
+    }
+
+    /// Pull the next token from the source, scanning only as far as needed.
+    /// Returns EOF, repeatedly, once the source is exhausted.
+    Token nextToken() {
+        TokenType type = next();
+        String lexeme = null;
+        Object literal = null;
+        if (type == STRING) {
+            literal = symbol >= 0 ? symbols.name(symbol) : source.substring(start + 1, current - 1);
+        } else if (type == NUMBER) {
+            literal = number;
+        } else if (type == IDENTIFIER && symbol >= 0) {
+            lexeme = symbols.name(symbol);
+        }
+        if (lexeme == null) {
+            lexeme = source.substring(start, current);
+        }
+
+        return new Token(type, lexeme, literal, line);
+    }
+
+    /// Scan the next token and print it to out as nextToken().toString()
+    /// would, without making a Token or any Strings.
+    TokenType printNext(Output out) {
+        TokenType type = next();
+        out.printToken(type, source, start, current, number);
+        return type;
+    }
+
+    /// Advance past the next token, leaving it between start and current.
+    private TokenType next() {
+        symbol = -1;
+        while (!isAtEnd()) {
+            start = current;
+            scanToken();
+            if (scanned != null) {
+                TokenType type = scanned;
+                scanned = null;
+                return type;
+            }
+        }
+
+        start = current;
+        return EOF;
+    }
+
     private void scanToken() {
         char c = advance();
         switch (c) {
@@ -119,9 +199,7 @@ public class Scanner {
         case '/':
             if (match('/')) {
                 // ignore chars until newline
-                while (peek() != '\n' && !isAtEnd()) {
-                    advance();
-                }
+                current = source.indexOf('\n', current, end);
             } else {
                 addToken(SLASH);
             }
@@ -129,9 +207,11 @@ public class Scanner {
         case ' ':
         case '\t':
         case '\r':
+            skipBlanks();
             break;
         case '\n':
             line++;
+            skipBlanks();
             break;
         case '"':
             string();
@@ -152,7 +232,7 @@ public class Scanner {
             if (isAlpha(c)) {
                 identifier();
             } else {
-                App.error(line, "Unexpected character.");
+                error("Unexpected character.");
             }
             break;
         }
@@ -178,31 +258,39 @@ public class Scanner {
     }
 
     /// Look ahead of current by specified amount.
-    private char lookAhead(int offset) {
-        if (current + offset >= source.length()) {
+    private char lookAhead(long offset) {
+        if (current + offset >= end) {
             return '\0';
         } else {
             return source.charAt(current + offset);
         }
     }
 
+    // Skip the rest of a run of blanks, such as an indentation, at once.
+    // Most runs are a single space, which costs no more than the peek().
+    private void skipBlanks() {
+        if (Source.isBlank(peek())) {
+            current = source.skipBlanks(current + 1, end);
+        }
+    }
+
     private void string() {
         // Advance current token marker until end of string
-        while (peek() != '"' && !isAtEnd()) {
-            if (peek() == '\n') {
-                line++;
-            }
-            advance();
-        }
+        long close = source.indexOf('"', current, end);
+        line += source.count('\n', current, close);
+        current = close;
 
         if (isAtEnd()) {
-            App.error(line, "Unterminated string.");
+            error("Unterminated string.");
         } else {
             // consume the closing string termination char '"'
             advance();
 
-            String value = source.substring(start + 1, current - 1);
-            addToken(STRING, value);
+            // The unquoted value is materialized on demand
+            if (symbols != null) {
+                symbol = symbols.intern(source, start + 1, current - 1);
+            }
+            addToken(STRING);
         }
     }
 
@@ -220,8 +308,8 @@ public class Scanner {
             advance();
         }
 
-        Double value = Double.parseDouble(source.substring(start, current));
-        addToken(NUMBER, value);
+        number = Numbers.parse(source, start, current);
+        addToken(NUMBER);
     }
 
     private void identifier() {
@@ -229,23 +317,96 @@ public class Scanner {
             advance();
         }
 
-        String text = source.substring(start, current);
-        TokenType type;
-        if (keywords.containsKey(text)) {
-            type = keywords.get(text);
-        } else {
-            type = IDENTIFIER;
+        TokenType type = identifierType(source, start, current);
+        if (type == IDENTIFIER && symbols != null) {
+            symbol = symbols.intern(source, start, current);
         }
         addToken(type);
     }
 
+    /// Classify the identifier in [start, end) of source as a keyword or
+    /// IDENTIFIER. This is a switch-based trie over the keywords that works
+    /// on the source in place, so no lexeme is allocated.
+    static TokenType identifierType(Source source, long start, long end) {
+        switch (source.charAt(start)) {
+        case 'a':
+            return checkKeyword(source, start, end, 1, "nd", AND);
+        case 'c':
+            return checkKeyword(source, start, end, 1, "lass", CLASS);
+        case 'e':
+            return checkKeyword(source, start, end, 1, "lse", ELSE);
+        case 'f':
+            if (end - start > 1) {
+                switch (source.charAt(start + 1)) {
+                case 'a':
+                    return checkKeyword(source, start, end, 2, "lse", FALSE);
+                case 'o':
+                    return checkKeyword(source, start, end, 2, "r", FOR);
+                case 'u':
+                    return checkKeyword(source, start, end, 2, "n", FUN);
+                }
+            }
+            break;
+        case 'i':
+            return checkKeyword(source, start, end, 1, "f", IF);
+        case 'n':
+            return checkKeyword(source, start, end, 1, "il", NIL);
+        case 'o':
+            return checkKeyword(source, start, end, 1, "r", OR);
+        case 'p':
+            return checkKeyword(source, start, end, 1, "rint", PRINT);
+        case 'r':
+            return checkKeyword(source, start, end, 1, "eturn", RETURN);
+        case 's':
+            return checkKeyword(source, start, end, 1, "uper", SUPER);
+        case 't':
+            if (end - start > 1) {
+                switch (source.charAt(start + 1)) {
+                case 'h':
+                    return checkKeyword(source, start, end, 2, "is", THIS);
+                case 'r':
+                    return checkKeyword(source, start, end, 2, "ue", TRUE);
+                }
+            }
+            break;
+        case 'v':
+            return checkKeyword(source, start, end, 1, "ar", VAR);
+        case 'w':
+            return checkKeyword(source, start, end, 1, "hile", WHILE);
+        }
+
+        return IDENTIFIER;
+    }
+
+    /// Matches if the identifier is exactly offset chars already checked by
+    /// the trie followed by rest.
+    private static TokenType checkKeyword(Source source, long start, long end,
+                                          int offset, String rest, TokenType type) {
+        if (end - start != offset + rest.length()) {
+            return IDENTIFIER;
+        }
+        for (int i = 0; i < rest.length(); i++) {
+            if (source.charAt(start + offset + i) != rest.charAt(i)) {
+                return IDENTIFIER;
+            }
+        }
+
+        return type;
+    }
+
     private void addToken(TokenType type) {
-        addToken(type, null);
+        scanned = type;
     }
 
-    private void addToken(TokenType type, Object literal) {
-        String text = source.substring(start, current);
-        tokens.add(new Token(type, text, literal, line));
+    // Report [start, current) as a lexical error, keeping it as an ERROR
+    // token if errors asks for that, and stopping if errors is full
+    private void error(String msg) {
+        if (errors.lexicalError(line, start, (int) (current - start), msg)) {
+            addToken(ERROR);
+        }
+        if (errors.tooManyErrors()) {
+            end = current;
+        }
     }
 
 }
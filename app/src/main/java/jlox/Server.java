@@ -0,0 +1,249 @@
+package jlox;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/// Daemon running jlox for Clients that connect to a Unix domain socket, so
+/// that a run skips starting a JVM and finds the interpreter already loaded
+/// and compiled by the JIT. Each connection is one run, with the arguments,
+/// working directory and standard input of its Client, on a Lox of its own.
+/// Runs are handled on a fixed pool of threads; see Client for the
+/// protocol.
+///
+/// A run must not keep its thread once nobody waits for it, so each is
+/// watched while it runs: every WATCH_MILLIS an empty OUT frame is sent to
+/// its Client. When that or anything the run prints fails to be sent, the
+/// Client has gone, and the run is cancelled with Lox.cancel(), which stops
+/// it at its next loop iteration or call. A run still going after the
+/// server's limit is cancelled the same way and ends with a runtime error.
+class Server implements Closeable {
+    /// How long a run may take unless the server is given a limit.
+    static final Duration LIMIT = Duration.ofMinutes(10);
+    // How often runs are checked on
+    static final long WATCH_MILLIS = 200;
+
+    private final Path socket;
+    private final int jobs;
+    private final Duration limit;
+    // Where problems with the server itself, rather than a run, are logged
+    private final PrintStream log;
+    private volatile ServerSocketChannel listener;
+
+    Server(Path socket, int jobs, PrintStream log) {
+        this(socket, jobs, LIMIT, log);
+    }
+
+    /// Server cancelling runs that take longer than limit.
+    Server(Path socket, int jobs, Duration limit, PrintStream log) {
+        this.socket = socket;
+        this.jobs = jobs;
+        this.limit = limit;
+        this.log = log;
+    }
+
+    /// Listen on the socket, replacing the file of any earlier server that
+    /// didn't remove its own.
+    void listen() throws IOException {
+        Files.deleteIfExists(socket);
+        ServerSocketChannel channel = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+        channel.bind(UnixDomainSocketAddress.of(socket));
+        listener = channel;
+    }
+
+    /// Listen unless already listening, and serve Clients until closed,
+    /// returning the status to exit with.
+    int serve() throws IOException {
+        if (listener == null) {
+            listen();
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(jobs);
+        ScheduledExecutorService watcher = Executors.newSingleThreadScheduledExecutor();
+        try {
+            for (;;) {
+                SocketChannel client = listener.accept();
+                pool.execute(() -> handle(client, watcher));
+            }
+        } catch (ClosedChannelException e) {
+            // Closed, so stop accepting and let the runs under way finish
+        } finally {
+            pool.shutdown();
+        }
+
+        try {
+            pool.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        watcher.shutdownNow();
+        return 0;
+    }
+
+    /// Stop accepting Clients and remove the socket.
+    @Override
+    public void close() throws IOException {
+        if (listener != null) {
+            listener.close();
+        }
+        Files.deleteIfExists(socket);
+    }
+
+    // Whether the options in args are all ones a client may give
+    private static boolean forClients(String[] args) {
+        for (String arg : args) {
+            if (!arg.startsWith("--")) {
+                break;
+            }
+            switch (arg) {
+            case "--serve":
+            case "--batch":
+            case "--jobs":
+            case "--limit":
+                return false;
+            default:
+                break;
+            }
+        }
+        return true;
+    }
+
+    // Run what the client on channel asks and send back what it prints
+    private void handle(SocketChannel channel, ScheduledExecutorService watcher) {
+        try (channel) {
+            DataInputStream request = new DataInputStream(
+                new BufferedInputStream(Channels.newInputStream(channel)));
+            if (request.readInt() != Client.VERSION) {
+                log.println("Dropped a client with another protocol version.");
+                return;
+            }
+            Path directory = Paths.get(Client.readString(request));
+            String[] args = new String[request.readInt()];
+            for (int i = 0; i < args.length; i++) {
+                args[i] = Client.readString(request);
+            }
+
+            DataOutputStream response = new DataOutputStream(
+                new BufferedOutputStream(Channels.newOutputStream(channel)));
+            PrintStream out = new PrintStream(
+                new BufferedOutputStream(new Frames(response, Client.OUT, null), 8192));
+            PrintStream err = new PrintStream(
+                new BufferedOutputStream(new Frames(response, Client.ERR, out), 1024), true);
+
+            Lox lox = new Lox(out, err, directory);
+            long deadline = System.nanoTime() + limit.toNanos();
+            ScheduledFuture<?> watch = watcher.scheduleWithFixedDelay(
+                () -> watch(lox, response, out, deadline), WATCH_MILLIS, WATCH_MILLIS, TimeUnit.MILLISECONDS);
+            int status;
+            try {
+                if (!forClients(args)) {
+                    // A client can't start servers or pools of its own
+                    out.println(Lox.USAGE);
+                    status = Lox.EX_USAGE;
+                } else {
+                    // What is left of the request is the REPL's input
+                    status = lox.run(args, request);
+                }
+            } catch (IOException e) {
+                err.println("Can't read: " + e);
+                status = Lox.EX_NOINPUT;
+            } catch (RuntimeException | StackOverflowError e) {
+                // A bug rather than an error in the code, but only this run's
+                err.println("Internal error: " + e);
+                status = Lox.EX_SOFTWARE;
+            } finally {
+                watch.cancel(false);
+            }
+
+            out.flush();
+            err.flush();
+            // A check that was under way may still be sending its frame
+            synchronized (response) {
+                response.writeByte(Client.EXIT);
+                response.writeInt(status);
+                response.flush();
+            }
+        } catch (IOException e) {
+            log.println("Lost a client: " + e);
+        }
+    }
+
+    // Cancel the run of lox if it is past deadline, or if its client has
+    // gone, which shows as a failure to send what the run printed or an
+    // empty frame
+    private void watch(Lox lox, DataOutputStream response, PrintStream out, long deadline) {
+        if (System.nanoTime() - deadline > 0) {
+            lox.cancel("Run took longer than the server's time limit.");
+            return;
+        }
+
+        boolean gone = out.checkError();
+        if (!gone) {
+            try {
+                synchronized (response) {
+                    response.writeByte(Client.OUT);
+                    response.writeInt(0);
+                    response.flush();
+                }
+            } catch (IOException e) {
+                gone = true;
+            }
+        }
+        if (gone) {
+            lox.cancel("Client went away.");
+        }
+    }
+
+    // Sends what is written to it as frames of kind, each written out at
+    // once, after flushing before so that errors come after what was
+    // printed before them
+    private static class Frames extends OutputStream {
+        private final DataOutputStream to;
+        private final byte kind;
+        private final PrintStream before;
+
+        Frames(DataOutputStream to, byte kind, PrintStream before) {
+            this.to = to;
+            this.kind = kind;
+            this.before = before;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (before != null) {
+                before.flush();
+            }
+            synchronized (to) {
+                to.writeByte(kind);
+                to.writeInt(len);
+                to.write(b, off, len);
+                to.flush();
+            }
+        }
+    }
+}
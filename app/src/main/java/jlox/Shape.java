@@ -0,0 +1,70 @@
+package jlox;
+
+import java.util.Arrays;
+
+/// Hidden class of a LoxInstance: which slot of its fields array holds
+/// each field, by the symbol id of the field's name. Instances that add the
+/// same fields in the same order share a Shape, found through the
+/// transitions from the shape of their class. Every class has its own empty
+/// root shape, so a shape also identifies the class and its methods.
+///
+/// A shape made by a transition shares the names array of its parent when
+/// it is the first to extend it, so that building up a chain of shapes
+/// copies nothing but what runs out of room.
+class Shape {
+    // Symbol ids of the fields, by slot, in the first size entries. Entries
+    // past size belong to the shape that extended this one first, if any
+    private int[] names;
+    private final int size;
+    private boolean extended = false;
+    // Shapes with one more field, and the symbol id of that field
+    private Shape[] transitions = new Shape[0];
+    private int[] transitionNames = new int[0];
+
+    Shape() {
+        this.names = new int[4];
+        this.size = 0;
+    }
+
+    private Shape(Shape parent, int name) {
+        int[] names = parent.names;
+        if (parent.extended || parent.size == names.length) {
+            names = Arrays.copyOf(names, Math.max(4, parent.size * 2));
+        }
+        parent.extended = true;
+        names[parent.size] = name;
+        this.names = names;
+        this.size = parent.size + 1;
+    }
+
+    /// Slot of the field whose name has symbol id name, or -1 if there is
+    /// none. Inline caches spare the hot sites this search.
+    int slot(int name) {
+        for (int i = size - 1; i >= 0; i--) {
+            if (names[i] == name) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /// Shape of an instance of this shape after adding the field name.
+    Shape with(int name) {
+        for (int i = 0; i < transitions.length; i++) {
+            if (transitionNames[i] == name) {
+                return transitions[i];
+            }
+        }
+
+        Shape shape = new Shape(this, name);
+        transitions = Arrays.copyOf(transitions, transitions.length + 1);
+        transitionNames = Arrays.copyOf(transitionNames, transitionNames.length + 1);
+        transitions[transitions.length - 1] = shape;
+        transitionNames[transitionNames.length - 1] = name;
+        return shape;
+    }
+}
@@ -0,0 +1,73 @@
+package jlox;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+
+/// Text the Scanner reads from. Positions are long so that sources larger
+/// than a String can hold (such as mapped files) can still be scanned.
+abstract class Source {
+    static Source of(String text) {
+        return new StringSource(text);
+    }
+
+    static Source map(Path path) throws IOException {
+        return new MappedSource(path);
+    }
+
+    abstract long length();
+
+    /// Char at pos. Byte-oriented sources return each byte as a char, which
+    /// is exact for the ASCII that makes up everything outside of strings.
+    abstract char charAt(long pos);
+
+    /// Whether charAt returns the bytes of UTF-8 text rather than chars.
+    boolean isBytes() {
+        return false;
+    }
+
+    /// Decoded text in [start, end).
+    abstract String substring(long start, long end);
+
+    /// Copy the chars in [start, end) into dst from offset on.
+    void getChars(long start, long end, char[] dst, int offset) {
+        for (long i = start; i < end; i++) {
+            dst[offset++] = charAt(i);
+        }
+    }
+
+    /// Position of the first c in [from, to), or to if there is none.
+    long indexOf(char c, long from, long to) {
+        while (from < to && charAt(from) != c) {
+            from++;
+        }
+        return from;
+    }
+
+    /// Number of times c occurs in [from, to).
+    int count(char c, long from, long to) {
+        int n = 0;
+        for (long i = from; i < to; i++) {
+            if (charAt(i) == c) {
+                n++;
+            }
+        }
+        return n;
+    }
+
+    /// Position of the first char in [from, to) that is not a space, tab
+    /// or carriage return, or to if there is none.
+    long skipBlanks(long from, long to) {
+        while (from < to && isBlank(charAt(from))) {
+            from++;
+        }
+        return from;
+    }
+
+    static boolean isBlank(char c) {
+        return c == ' ' || c == '\t' || c == '\r';
+    }
+
+    /// Feed the whole source to digest, as the bytes of its UTF-8 encoding.
+    abstract void hash(MessageDigest digest);
+}
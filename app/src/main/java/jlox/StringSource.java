@@ -0,0 +1,46 @@
+package jlox;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+/// Source backed by a String already on the heap.
+class StringSource extends Source {
+    private final String text;
+
+    StringSource(String text) {
+        this.text = text;
+    }
+
+    @Override
+    long length() {
+        return text.length();
+    }
+
+    @Override
+    char charAt(long pos) {
+        return text.charAt((int) pos);
+    }
+
+    @Override
+    String substring(long start, long end) {
+        return text.substring((int) start, (int) end);
+    }
+
+    @Override
+    void getChars(long start, long end, char[] dst, int offset) {
+        text.getChars((int) start, (int) end, dst, offset);
+    }
+
+    // String.indexOf is a vectorized intrinsic. It may look on past to,
+    // which only costs time when c is missing from [from, to)
+    @Override
+    long indexOf(char c, long from, long to) {
+        int found = text.indexOf(c, (int) from);
+        return found < 0 || found > to ? to : found;
+    }
+
+    @Override
+    void hash(MessageDigest digest) {
+        digest.update(text.getBytes(StandardCharsets.UTF_8));
+    }
+}
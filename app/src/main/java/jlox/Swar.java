@@ -0,0 +1,72 @@
+package jlox;
+
+import java.nio.ByteBuffer;
+
+/// Byte searches over a big-endian ByteBuffer eight bytes at a time, using
+/// the bits of a long as eight lanes ("SIMD within a register"). A lane's
+/// high bit is set exactly where a byte matches, so a match is found with
+/// one numberOfLeadingZeros and counted with one bitCount. The few bytes
+/// before a range's end that do not fill a long are done one at a time.
+final class Swar {
+    private static final long ONES = 0x0101010101010101L;
+    private static final long LOW7 = 0x7f7f7f7f7f7f7f7fL;
+    private static final long SPACES = ONES * ' ';
+    private static final long TABS = ONES * '\t';
+    private static final long RETURNS = ONES * '\r';
+
+    private Swar() {}
+
+    /// 0x80 in each byte of word equal to the byte in every lane of
+    /// pattern, and 0 in the others.
+    static long matches(long word, long pattern) {
+        long x = word ^ pattern;
+        // The high bit of a lane is left clear only where x is 0
+        return ~(((x & LOW7) + LOW7) | x | LOW7);
+    }
+
+    /// Offset of the first b in [from, to) of buffer, or to.
+    static int indexOf(ByteBuffer buffer, byte b, int from, int to) {
+        long pattern = ONES * (b & 0xff);
+        for (; from + Long.BYTES <= to; from += Long.BYTES) {
+            long found = matches(buffer.getLong(from), pattern);
+            if (found != 0) {
+                return from + (Long.numberOfLeadingZeros(found) >>> 3);
+            }
+        }
+        while (from < to && buffer.get(from) != b) {
+            from++;
+        }
+        return from;
+    }
+
+    /// Number of b in [from, to) of buffer.
+    static int count(ByteBuffer buffer, byte b, int from, int to) {
+        long pattern = ONES * (b & 0xff);
+        int n = 0;
+        for (; from + Long.BYTES <= to; from += Long.BYTES) {
+            n += Long.bitCount(matches(buffer.getLong(from), pattern));
+        }
+        for (; from < to; from++) {
+            if (buffer.get(from) == b) {
+                n++;
+            }
+        }
+        return n;
+    }
+
+    /// Offset of the first byte in [from, to) of buffer that is not a
+    /// space, tab or carriage return, or to.
+    static int skipBlanks(ByteBuffer buffer, int from, int to) {
+        for (; from + Long.BYTES <= to; from += Long.BYTES) {
+            long word = buffer.getLong(from);
+            long blank = matches(word, SPACES) | matches(word, TABS) | matches(word, RETURNS);
+            if (blank != 0x8080808080808080L) {
+                return from + (Long.numberOfLeadingZeros(~blank & 0x8080808080808080L) >>> 3);
+            }
+        }
+        while (from < to && Source.isBlank((char) (buffer.get(from) & 0xff))) {
+            from++;
+        }
+        return from;
+    }
+}
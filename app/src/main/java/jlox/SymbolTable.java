@@ -0,0 +1,107 @@
+package jlox;
+
+import java.util.Arrays;
+
+/// Interns identifier names and string values into dense int ids, starting
+/// at 0. Lookups hash and compare the source range in place, so a name is
+/// only allocated the first time it is seen. One table can be shared by
+/// any number of Scanners, one at a time; it is not thread-safe.
+class SymbolTable {
+    private static final int MIN_CAPACITY = 64;
+
+    // Names and hashes, indexed by id
+    private String[] names = new String[MIN_CAPACITY];
+    private int[] hashes = new int[MIN_CAPACITY];
+    private int count = 0;
+
+    // Open addressing table of id + 1, with 0 for an empty slot
+    private int[] slots = new int[MIN_CAPACITY * 2];
+
+    int size() {
+        return count;
+    }
+
+    String name(int id) {
+        return names[id];
+    }
+
+    int intern(String name) {
+        return intern(Source.of(name), 0, name.length());
+    }
+
+    /// Id of the text in [start, end) of source, adding it if it is new.
+    /// The bytes of a byte-backed source are only its chars where they are
+    /// ASCII, so other text in one is decoded before it is looked up.
+    int intern(Source source, long start, long end) {
+        int length = (int) (end - start);
+        int hash = 0;
+        int bits = 0;
+        for (long i = start; i < end; i++) {
+            char c = source.charAt(i);
+            hash = 31 * hash + c;
+            bits |= c;
+        }
+        if (bits >= 0x80 && source.isBytes()) {
+            return intern(source.substring(start, end));
+        }
+
+        int mask = slots.length - 1;
+        for (int slot = mix(hash) & mask; ; slot = (slot + 1) & mask) {
+            int id = slots[slot] - 1;
+            if (id < 0) {
+                return add(source.substring(start, end), hash, slot);
+            } else if (hashes[id] == hash && matches(names[id], source, start, length)) {
+                return id;
+            }
+        }
+    }
+
+    private static boolean matches(String name, Source source, long start, int length) {
+        if (name.length() != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (name.charAt(i) != source.charAt(start + i)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private int add(String name, int hash, int slot) {
+        if (count == names.length) {
+            names = Arrays.copyOf(names, count * 2);
+            hashes = Arrays.copyOf(hashes, count * 2);
+        }
+        int id = count++;
+        names[id] = name;
+        hashes[id] = hash;
+        slots[slot] = id + 1;
+
+        // Keep the table at most half full
+        if (count * 2 > slots.length) {
+            rehash();
+        }
+
+        return id;
+    }
+
+    private void rehash() {
+        slots = new int[slots.length * 2];
+        int mask = slots.length - 1;
+        for (int id = 0; id < count; id++) {
+            int slot = mix(hashes[id]) & mask;
+            while (slots[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            slots[slot] = id + 1;
+        }
+    }
+
+    // Spread String-style hashes, which cluster for short names
+    private static int mix(int hash) {
+        hash *= 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+}
@@ -0,0 +1,370 @@
+package jlox;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static jlox.TokenType.*;
+
+/// A Scanner driven by tables instead of a switch: a byte-class table maps
+/// each char to one of a few dozen classes, and a transition table maps a
+/// state and a class to the next state of a DFA that recognizes every
+/// token, blank run and comment. The DFA is built once from the text of
+/// the fixed tokens in TokenType, so a new operator or keyword only needs
+/// its entry there.
+///
+/// Each token is the longest match, found by running the DFA until it
+/// stops and going back to the last state that accepted. Chars are read
+/// in windows copied out of the source, so the inner loop only indexes
+/// arrays. It produces exactly the tokens, lines and errors Scanner does,
+/// ERROR tokens included.
+class TableScanner {
+    private static final TokenType[] TYPES = TokenType.values();
+    private static final int WINDOW = 4096;
+
+    // Classes every char falls into unless it is part of a fixed token's
+    // text, in which case it gets a class of its own
+    private static final int OTHER = 0;
+    private static final int BLANK = 1;
+    private static final int NEWLINE = 2;
+    private static final int QUOTE = 3;
+    private static final int DIGIT = 4;
+    private static final int LETTER = 5;
+
+    // Accepted by states that end no token, and by blanks and comments
+    private static final int NONE = -1;
+    private static final int SKIP = TYPES.length;
+
+    // States are named by their row in the tables, which is the state's
+    // number times CLASS_COUNT, so that a step needs no multiplication
+    private static final int DEAD = 0;
+    private static final int START;
+    // The state inside a string, which loops on every char but a quote.
+    // Only the state inside a comment, which loops on every char but a
+    // newline, comes after it.
+    private static final int IN_STRING;
+
+    // Class of each ASCII char; the rest are OTHER
+    private static final byte[] CLASSES = new byte[128];
+    private static final int CLASS_COUNT;
+    // Next state, indexed by state + class
+    private static final short[] TRANSITIONS;
+    // Type ordinal, SKIP or NONE, indexed by state
+    private static final byte[] ACCEPTS;
+
+    static {
+        for (char c = 'a'; c <= 'z'; c++) {
+            CLASSES[c] = LETTER;
+            CLASSES[Character.toUpperCase(c)] = LETTER;
+        }
+        CLASSES['_'] = LETTER;
+        for (char c = '0'; c <= '9'; c++) {
+            CLASSES[c] = DIGIT;
+        }
+        CLASSES[' '] = BLANK;
+        CLASSES['\t'] = BLANK;
+        CLASSES['\r'] = BLANK;
+        CLASSES['\n'] = NEWLINE;
+        CLASSES['"'] = QUOTE;
+
+        int classes = LETTER + 1;
+        List<Integer> letters = new ArrayList<>(List.of(LETTER));
+        for (TokenType type : TYPES) {
+            for (int i = 0; type.text != null && i < type.text.length(); i++) {
+                char c = type.text.charAt(i);
+                if (CLASSES[c] == OTHER || CLASSES[c] == LETTER) {
+                    if (CLASSES[c] == LETTER) {
+                        letters.add(classes);
+                    }
+                    CLASSES[c] = (byte) classes++;
+                } else if (CLASSES[c] < LETTER) {
+                    throw new IllegalStateException("Token text " + type.text + " overlaps a literal.");
+                }
+            }
+        }
+        CLASS_COUNT = classes;
+
+        Dfa dfa = new Dfa();
+        dfa.add(NONE);
+        int initial = dfa.add(NONE);
+        int identifier = dfa.add(IDENTIFIER.ordinal());
+
+        // A trie of the fixed tokens, whose keyword states also carry on as
+        // identifiers
+        List<Integer> words = new ArrayList<>();
+        for (TokenType type : TYPES) {
+            if (type.text == null) {
+                continue;
+            }
+            int state = initial;
+            for (int i = 0; i < type.text.length(); i++) {
+                int cls = CLASSES[type.text.charAt(i)];
+                if (dfa.next(state, cls) == DEAD) {
+                    dfa.set(state, cls, dfa.add(NONE));
+                    if (letters.contains(cls)) {
+                        words.add(dfa.next(state, cls));
+                    }
+                }
+                state = dfa.next(state, cls);
+            }
+            dfa.accepts.set(state, type.ordinal());
+        }
+        words.add(identifier);
+        for (int state : words) {
+            if (dfa.accepts.get(state) == NONE) {
+                dfa.accepts.set(state, IDENTIFIER.ordinal());
+            }
+            dfa.fill(state, DIGIT, identifier);
+            for (int cls : letters) {
+                dfa.fill(state, cls, identifier);
+            }
+        }
+        for (int cls : letters) {
+            dfa.fill(initial, cls, identifier);
+        }
+
+        // Numbers, with a fraction only if a digit follows the dot
+        int whole = dfa.add(NUMBER.ordinal());
+        int dot = dfa.add(NONE);
+        int fraction = dfa.add(NUMBER.ordinal());
+        dfa.set(initial, DIGIT, whole);
+        dfa.set(whole, DIGIT, whole);
+        dfa.set(whole, CLASSES['.'], dot);
+        dfa.set(dot, DIGIT, fraction);
+        dfa.set(fraction, DIGIT, fraction);
+
+        int blanks = dfa.add(SKIP);
+        for (int state : new int[] {initial, blanks}) {
+            dfa.set(state, BLANK, blanks);
+            dfa.set(state, NEWLINE, blanks);
+        }
+
+        int closed = dfa.add(STRING.ordinal());
+        int inString = dfa.add(NONE);
+        dfa.set(initial, QUOTE, inString);
+        for (int cls = 0; cls < CLASS_COUNT; cls++) {
+            dfa.set(inString, cls, cls == QUOTE ? closed : inString);
+        }
+
+        int comment = dfa.add(SKIP);
+        dfa.set(dfa.next(initial, CLASSES['/']), CLASSES['/'], comment);
+        for (int cls = 0; cls < CLASS_COUNT; cls++) {
+            dfa.set(comment, cls, cls == NEWLINE ? DEAD : comment);
+        }
+
+        if (dfa.rows.size() * CLASS_COUNT > Short.MAX_VALUE) {
+            throw new IllegalStateException("Too many states for a short table.");
+        }
+        START = initial * CLASS_COUNT;
+        IN_STRING = inString * CLASS_COUNT;
+        TRANSITIONS = new short[dfa.rows.size() * CLASS_COUNT];
+        ACCEPTS = new byte[dfa.rows.size() * CLASS_COUNT];
+        for (int state = 0; state < dfa.rows.size(); state++) {
+            ACCEPTS[state * CLASS_COUNT] = (byte) (int) dfa.accepts.get(state);
+            for (int cls = 0; cls < CLASS_COUNT; cls++) {
+                TRANSITIONS[state * CLASS_COUNT + cls] = (short) (dfa.next(state, cls) * CLASS_COUNT);
+            }
+        }
+    }
+
+    // The DFA as it is built, before it is packed into the tables
+    private static class Dfa {
+        final List<int[]> rows = new ArrayList<>();
+        final List<Integer> accepts = new ArrayList<>();
+
+        int add(int accept) {
+            rows.add(new int[CLASS_COUNT]);
+            accepts.add(accept);
+            return rows.size() - 1;
+        }
+
+        int next(int state, int cls) {
+            return rows.get(state)[cls];
+        }
+
+        void set(int state, int cls, int next) {
+            rows.get(state)[cls] = next;
+        }
+
+        // Set the transition unless it is already set
+        void fill(int state, int cls, int next) {
+            if (next(state, cls) == DEAD) {
+                set(state, cls, next);
+            }
+        }
+    }
+
+    private final Source source;
+    private final SymbolTable symbols;
+    private final ErrorReporter errors;
+    // Lowered to where scanning stopped if errors took no more errors
+    private long end;
+    private long start;
+    private long current;
+    private int line;
+    private double number = 0;
+    private int symbol = -1;
+
+    // The chars of [windowStart, windowEnd) of source
+    private final char[] window = new char[WINDOW];
+    private long windowStart = 0;
+    private long windowEnd = 0;
+
+    TableScanner(Source source, SymbolTable symbols, ErrorReporter errors) {
+        this(source, symbols, errors, 0, source.length(), 1);
+    }
+
+    /// TableScanner over [from, to) of source, with from being on line, as
+    /// for a Scanner.
+    TableScanner(Source source, SymbolTable symbols, ErrorReporter errors,
+                 long from, long to, int line) {
+        this.source = source;
+        this.symbols = symbols;
+        this.errors = errors;
+        this.end = to;
+        this.start = from;
+        this.current = from;
+        this.line = line;
+    }
+
+    /// Scan the whole source into a TokenStream, as Scanner does.
+    TokenStream scanTokenStream() {
+        if (end > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Source too large for a TokenStream.");
+        }
+
+        TokenStream tokens = new TokenStream(source, symbols, (int) ((end - current) / 4));
+        TokenType type;
+        do {
+            type = scanNext(tokens);
+        } while (type != EOF);
+
+        return tokens;
+    }
+
+    /// Scan the next token and append it to tokens.
+    TokenType scanNext(TokenStream tokens) {
+        TokenType type = next();
+        int offset = (int) start;
+        int length = (int) (current - start);
+        if (type == NUMBER) {
+            tokens.addNumber(offset, length, line, number);
+        } else if (symbol >= 0) {
+            tokens.addSymbol(type, offset, length, line, symbol);
+        } else {
+            tokens.add(type, offset, length, line);
+        }
+
+        return type;
+    }
+
+    // Advance past the next token, leaving it between start and current
+    private TokenType next() {
+        symbol = -1;
+        while (current < end) {
+            start = current;
+            if (current < windowStart || current >= windowEnd) {
+                fill(current);
+            }
+
+            char[] chars = window;
+            int i = (int) (current - windowStart);
+            int limit = (int) (windowEnd - windowStart);
+            int state = START;
+            int lines = 0;
+            int accept = NONE;
+            long accepted = current;
+            int acceptedLines = 0;
+            while (true) {
+                if (i == limit) {
+                    if (windowEnd == end) {
+                        break;
+                    }
+                    fill(windowEnd);
+                    i = 0;
+                    limit = (int) (windowEnd - windowStart);
+                }
+                char c = chars[i];
+                int next = TRANSITIONS[state + (c < 128 ? CLASSES[c] : OTHER)];
+                if (next == DEAD) {
+                    break;
+                }
+                state = next;
+                i++;
+                if (c == '\n') {
+                    lines++;
+                }
+                // Go through the rest of a string or comment in this window
+                // without the tables
+                if (state >= IN_STRING) {
+                    char stop = state == IN_STRING ? '"' : '\n';
+                    for (; i < limit && chars[i] != stop; i++) {
+                        if (chars[i] == '\n') {
+                            lines++;
+                        }
+                    }
+                }
+                if (ACCEPTS[state] != NONE) {
+                    accept = ACCEPTS[state];
+                    accepted = windowStart + i;
+                    acceptedLines = lines;
+                }
+            }
+
+            if (accept == NONE) {
+                String msg = "Unexpected character.";
+                if (state == IN_STRING) {
+                    line += lines;
+                    current = end;
+                    msg = "Unterminated string.";
+                } else {
+                    current++;
+                }
+                boolean keep = errors.lexicalError(line, start, (int) (current - start), msg);
+                if (errors.tooManyErrors()) {
+                    end = current;
+                }
+                if (keep) {
+                    return ERROR;
+                }
+                continue;
+            }
+
+            current = accepted;
+            line += acceptedLines;
+            if (accept != SKIP) {
+                return token(TYPES[accept]);
+            }
+        }
+
+        start = current;
+        return EOF;
+    }
+
+    // Work out the literal of the token just matched
+    private TokenType token(TokenType type) {
+        switch (type) {
+        case NUMBER:
+            number = Numbers.parse(source, start, current);
+            break;
+        case STRING:
+            if (symbols != null) {
+                symbol = symbols.intern(source, start + 1, current - 1);
+            }
+            break;
+        case IDENTIFIER:
+            if (symbols != null) {
+                symbol = symbols.intern(source, start, current);
+            }
+            break;
+        default:
+            break;
+        }
+        return type;
+    }
+
+    private void fill(long from) {
+        windowStart = from;
+        windowEnd = Math.min(end, from + WINDOW);
+        source.getChars(windowStart, windowEnd, window, 0);
+    }
+}
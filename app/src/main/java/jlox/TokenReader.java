@@ -0,0 +1,207 @@
+package jlox;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+/// Reads tokens in the format TokenWriter writes, straight from a buffer
+/// or a mapped file. The reader is a cursor: next() decodes one token into
+/// its fields, and only lexeme(), literal() and token() allocate. Pooled
+/// strings are decoded the first time they are asked for.
+class TokenReader {
+    private static final TokenType[] TYPES = TokenType.values();
+    private final ByteBuffer in;
+    // What the tokens were scanned from, if the reader was given it
+    private final Source source;
+    private final int size;
+    private int read = 0;
+
+    // Byte offset and length of each pooled string, and the strings decoded
+    // so far
+    private final int[] poolStarts;
+    private final int[] poolLengths;
+    private final String[] pool;
+
+    // The current token
+    private TokenType type;
+    private int start;
+    private int length;
+    private int line = 1;
+    private double number;
+    // Pool index of its text, or -1
+    private int index;
+    // Value of a NUMBER whose lexeme is its digits, or -1
+    private long whole;
+
+    /// A reader of the tokens in the remaining bytes of buffer, which
+    /// lexeme() and literal() take the text of from source if they are not
+    /// pooled. source may be null for a pooled stream.
+    TokenReader(ByteBuffer buffer, Source source) {
+        this.in = buffer.duplicate();
+        this.source = source;
+        if (in.getInt() != TokenWriter.MAGIC || getVarint() != TokenWriter.VERSION) {
+            throw new IllegalArgumentException("Not a token stream of version " + TokenWriter.VERSION + ".");
+        }
+        in.order(ByteOrder.LITTLE_ENDIAN);
+        boolean pooled = (getVarint() & TokenWriter.POOLED) != 0;
+        size = getVarint();
+
+        int strings = pooled ? getVarint() : 0;
+        poolStarts = new int[strings];
+        poolLengths = new int[strings];
+        pool = new String[strings];
+        for (int i = 0; i < strings; i++) {
+            poolLengths[i] = getVarint();
+            poolStarts[i] = in.position();
+            in.position(in.position() + poolLengths[i]);
+        }
+    }
+
+    /// A reader of the token file at path, mapped rather than read in.
+    static TokenReader map(Path path, Source source) throws IOException {
+        try (FileChannel channel = FileChannel.open(path)) {
+            return new TokenReader(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()), source);
+        }
+    }
+
+    /// Number of tokens in the stream, including the EOF.
+    int size() {
+        return size;
+    }
+
+    /// Move to the next token, returning false once there are no more.
+    boolean next() {
+        if (read == size) {
+            return false;
+        }
+        read++;
+
+        type = TYPES[getVarint()];
+        start += length + getVarint();
+        length = getVarint();
+        line += getVarint();
+        index = -1;
+        whole = -1;
+        switch (type) {
+        case NUMBER:
+            long value = getVarlong();
+            if ((value & 1) == 0) {
+                whole = value >>> 1;
+                number = whole;
+            } else {
+                index = pool.length > 0 ? (int) (value >>> 1) : -1;
+                number = Double.longBitsToDouble(in.getLong());
+            }
+            break;
+        case IDENTIFIER:
+        case STRING:
+            if (pool.length > 0) {
+                index = getVarint();
+            }
+            break;
+        default:
+            break;
+        }
+        return true;
+    }
+
+    TokenType type() {
+        return type;
+    }
+
+    /// Offset of the token in its source.
+    int start() {
+        return start;
+    }
+
+    int length() {
+        return length;
+    }
+
+    int line() {
+        return line;
+    }
+
+    /// Value of a NUMBER, without boxing.
+    double number() {
+        return number;
+    }
+
+    /// Pool index of an IDENTIFIER's name, a STRING's contents or a
+    /// NUMBER's lexeme, or -1 if they are not pooled.
+    int poolIndex() {
+        return index;
+    }
+
+    String pooled(int i) {
+        if (pool[i] == null) {
+            byte[] text = new byte[poolLengths[i]];
+            in.get(poolStarts[i], text);
+            pool[i] = new String(text, StandardCharsets.UTF_8);
+        }
+        return pool[i];
+    }
+
+    String lexeme() {
+        switch (type) {
+        case IDENTIFIER:
+            return index >= 0 ? pooled(index) : text(start, start + length);
+        case STRING:
+            return index >= 0 ? "\"" + pooled(index) + "\"" : text(start, start + length);
+        case NUMBER:
+            if (index >= 0) {
+                return pooled(index);
+            }
+            return source == null && whole >= 0 ? Long.toString(whole) : text(start, start + length);
+        case ERROR:
+            return text(start, start + length);
+        case EOF:
+            return "";
+        default:
+            return type.text;
+        }
+    }
+
+    /// Literal as it would be stored on a Token: the unquoted contents of a
+    /// STRING, the Double value of a NUMBER and null for everything else.
+    Object literal() {
+        switch (type) {
+        case STRING:
+            return index >= 0 ? pooled(index) : text(start + 1, start + length - 1);
+        case NUMBER:
+            return number;
+        default:
+            return null;
+        }
+    }
+
+    Token token() {
+        return new Token(type, lexeme(), literal(), line);
+    }
+
+    private String text(int from, int to) {
+        if (source == null) {
+            throw new IllegalStateException("Tokens were written without a pool; their text needs the source.");
+        }
+        return source.substring(from, to);
+    }
+
+    private int getVarint() {
+        return (int) getVarlong();
+    }
+
+    private long getVarlong() {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.get();
+            value |= (long) (b & 0x7f) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Malformed varint in token stream.");
+    }
+}
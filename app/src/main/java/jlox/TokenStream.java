@@ -0,0 +1,437 @@
+package jlox;
+
+import java.nio.ByteBuffer;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.function.IntUnaryOperator;
+
+/// Compact storage for the tokens of one source. Tokens are kept
+/// as parallel primitive arrays instead of one Token object per token;
+/// lexemes and literals are only materialized when asked for.
+///
+/// Tokens are added at an insertion point, which is the end of the stream
+/// unless IncrementalScanner is editing it in place. The tokens after the
+/// insertion point are kept at the end of the columns, behind a gap of
+/// unused entries, and moving their starts and lines after an edit only
+/// changes a delta that is applied as they leave the gap's tail, so an edit
+/// costs what it replaces rather than what follows it.
+class TokenStream {
+    private static final TokenType[] TYPES = TokenType.values();
+    private static final int MIN_CAPACITY = 16;
+
+    private Source source;
+    // Table that IDENTIFIER and STRING symbol ids refer to, if interned
+    private final SymbolTable symbols;
+
+    // Columns, one entry per token
+    private byte[] types;
+    private int[] starts;
+    private int[] lengths;
+    private int[] lines;
+    // Index of a NUMBER's value in numbers, the symbol id of an interned
+    // IDENTIFIER or STRING, or -1
+    private int[] literals;
+    private int size = 0;
+    // Insertion point: tokens from here on sit at the end of the columns,
+    // with their starts and lines off by the tail deltas
+    private int gap = 0;
+    private int tailStartDelta = 0;
+    private int tailLineDelta = 0;
+
+    // Side table of NUMBER literals, in token order unless the stream has
+    // been edited, with entries that tokens removed by edits left free
+    private double[] numbers;
+    private int numberCount = 0;
+    private int[] freeNumbers = new int[0];
+    private int freeCount = 0;
+
+    TokenStream(Source source, SymbolTable symbols, int capacity) {
+        capacity = Math.max(capacity, MIN_CAPACITY);
+        this.source = source;
+        this.symbols = symbols;
+        this.types = new byte[capacity];
+        this.starts = new int[capacity];
+        this.lengths = new int[capacity];
+        this.lines = new int[capacity];
+        this.literals = new int[capacity];
+        this.numbers = new double[MIN_CAPACITY];
+    }
+
+    /// Join streams scanned from consecutive ranges of the same source into
+    /// one, dropping the EOF that ends every part but the last.
+    static TokenStream concat(TokenStream[] parts) {
+        int capacity = 0;
+        for (TokenStream part : parts) {
+            capacity += part.size;
+        }
+
+        TokenStream joined = new TokenStream(parts[0].source, parts[0].symbols, capacity);
+        for (int p = 0; p < parts.length; p++) {
+            TokenStream part = parts[p];
+            int count = p == parts.length - 1 ? part.size : part.size - 1;
+            joined.append(part, 0, count, 0, 0);
+        }
+
+        return joined;
+    }
+
+    /// Append tokens [from, to) of other, moving their start offsets and
+    /// lines by the given deltas. Both streams must share a SymbolTable.
+    void append(TokenStream other, int from, int to, int startDelta, int lineDelta) {
+        other.closeGap();
+        closeGap();
+        int count = to - from;
+        while (size + count > types.length) {
+            grow();
+        }
+        System.arraycopy(other.types, from, types, size, count);
+        System.arraycopy(other.lengths, from, lengths, size, count);
+        for (int i = 0; i < count; i++) {
+            starts[size + i] = other.starts[from + i] + startDelta;
+            lines[size + i] = other.lines[from + i] + lineDelta;
+        }
+
+        // Copy over the NUMBER values, re-pointing the tokens into our own
+        // side table
+        byte number = (byte) TokenType.NUMBER.ordinal();
+        for (int i = 0; i < count; i++) {
+            int literal = other.literals[from + i];
+            if (other.types[from + i] == number) {
+                if (numberCount == numbers.length) {
+                    numbers = Arrays.copyOf(numbers, numbers.length + (numbers.length >> 1));
+                }
+                numbers[numberCount] = other.numbers[literal];
+                literal = numberCount++;
+            }
+            literals[size + i] = literal;
+        }
+        size += count;
+        gap = size;
+    }
+
+    /// This stream without its ERROR tokens, or itself if it has none.
+    /// Only a scanner reporting to a collector such as Diagnostics keeps
+    /// them, and what they stand for has been reported already.
+    TokenStream withoutErrors() {
+        closeGap();
+        byte error = (byte) TokenType.ERROR.ordinal();
+        int first = 0;
+        while (first < size && types[first] != error) {
+            first++;
+        }
+        if (first == size) {
+            return this;
+        }
+
+        TokenStream kept = new TokenStream(source, symbols, size);
+        int from = 0;
+        for (int i = first; i < size; i++) {
+            if (types[i] == error) {
+                kept.append(this, from, i, 0, 0);
+                from = i + 1;
+            }
+        }
+        kept.append(this, from, size, 0, 0);
+        return kept;
+    }
+
+    /// Bytes write() takes.
+    int byteSize() {
+        return 2 * Integer.BYTES + size * (1 + 4 * Integer.BYTES) + numberCount * Double.BYTES;
+    }
+
+    /// Write the columns to out, for read() to load them back over the same
+    /// source, with every symbol id replaced by map[id].
+    void write(ByteBuffer out, int[] map) {
+        closeGap();
+        int[] mapped = Arrays.copyOf(literals, size);
+        mapSymbols(mapped, id -> map[id]);
+
+        out.putInt(size);
+        out.putInt(numberCount);
+        Buffers.putBytes(out, types, size);
+        Buffers.putInts(out, starts, size);
+        Buffers.putInts(out, lengths, size);
+        Buffers.putInts(out, lines, size);
+        Buffers.putInts(out, mapped, size);
+        Buffers.putDoubles(out, numbers, numberCount);
+    }
+
+    /// Set used[id] for every symbol id the tokens hold.
+    void markSymbols(boolean[] used) {
+        closeGap();
+        mapSymbols(literals, id -> {
+            used[id] = true;
+            return id;
+        });
+    }
+
+    /// Replace every symbol id the tokens hold by map[id].
+    void mapSymbols(int[] map) {
+        closeGap();
+        mapSymbols(literals, id -> map[id]);
+    }
+
+    // Replace the symbol ids in literals, the literals column or a copy of
+    // it, by what op makes of them
+    private void mapSymbols(int[] literals, IntUnaryOperator op) {
+        byte identifier = (byte) TokenType.IDENTIFIER.ordinal();
+        byte string = (byte) TokenType.STRING.ordinal();
+        for (int i = 0; i < size; i++) {
+            if (literals[i] >= 0 && (types[i] == identifier || types[i] == string)) {
+                literals[i] = op.applyAsInt(literals[i]);
+            }
+        }
+    }
+
+    static TokenStream read(ByteBuffer in, Source source, SymbolTable symbols) {
+        TokenStream stream = new TokenStream(source, symbols, 0);
+        int size = in.getInt();
+        int numberCount = in.getInt();
+        stream.types = Buffers.getBytes(in, size, MIN_CAPACITY);
+        stream.starts = Buffers.getInts(in, size, MIN_CAPACITY);
+        stream.lengths = Buffers.getInts(in, size, MIN_CAPACITY);
+        stream.lines = Buffers.getInts(in, size, MIN_CAPACITY);
+        stream.literals = Buffers.getInts(in, size, MIN_CAPACITY);
+        stream.numbers = Buffers.getDoubles(in, numberCount, MIN_CAPACITY);
+        stream.size = size;
+        stream.gap = size;
+        stream.numberCount = numberCount;
+        return stream;
+    }
+
+    SymbolTable symbols() {
+        return symbols;
+    }
+
+    Source source() {
+        return source;
+    }
+
+    /// Make edited the source, for IncrementalScanner editing the stream
+    /// in place to match it.
+    void setSource(Source edited) {
+        source = edited;
+    }
+
+    int size() {
+        return size;
+    }
+
+    void add(TokenType type, int start, int length, int line) {
+        add(type, start, length, line, -1);
+    }
+
+    void addSymbol(TokenType type, int start, int length, int line, int symbol) {
+        add(type, start, length, line, symbol);
+    }
+
+    void addNumber(int start, int length, int line, double value) {
+        int index;
+        if (freeCount > 0) {
+            index = freeNumbers[--freeCount];
+        } else {
+            if (numberCount == numbers.length) {
+                numbers = Arrays.copyOf(numbers, numbers.length + (numbers.length >> 1));
+            }
+            index = numberCount++;
+        }
+        numbers[index] = value;
+        add(TokenType.NUMBER, start, length, line, index);
+    }
+
+    private void add(TokenType type, int start, int length, int line, int literal) {
+        if (size == types.length) {
+            grow();
+        }
+        types[gap] = (byte) type.ordinal();
+        starts[gap] = start;
+        lengths[gap] = length;
+        lines[gap] = line;
+        literals[gap] = literal;
+        gap++;
+        size++;
+    }
+
+    private void grow() {
+        int capacity = types.length + (types.length >> 1);
+        int tail = size - gap;
+        types = grow(types, capacity, tail);
+        starts = grow(starts, capacity, tail);
+        lengths = grow(lengths, capacity, tail);
+        lines = grow(lines, capacity, tail);
+        literals = grow(literals, capacity, tail);
+    }
+
+    // column with room for capacity tokens, its last tail of them moved to
+    // the end
+    private static byte[] grow(byte[] column, int capacity, int tail) {
+        byte[] grown = Arrays.copyOf(column, capacity);
+        System.arraycopy(column, column.length - tail, grown, capacity - tail, tail);
+        return grown;
+    }
+
+    private static int[] grow(int[] column, int capacity, int tail) {
+        int[] grown = Arrays.copyOf(column, capacity);
+        System.arraycopy(column, column.length - tail, grown, capacity - tail, tail);
+        return grown;
+    }
+
+    /// Where tokens are added, which is size() unless the stream is being
+    /// edited in place.
+    int insertionPoint() {
+        return gap;
+    }
+
+    /// Make tokens be added before the token now at index, which takes as
+    /// long as there are tokens between index and the insertion point.
+    void moveInsertionPoint(int index) {
+        int width = types.length - size;
+        if (index < gap) {
+            // Into the tail, behind its deltas
+            for (int i = index; i < gap; i++) {
+                starts[i] -= tailStartDelta;
+                lines[i] -= tailLineDelta;
+            }
+            move(index, index + width, gap - index);
+        } else if (index > gap) {
+            move(gap + width, gap, index - gap);
+            for (int i = gap; i < index; i++) {
+                starts[i] += tailStartDelta;
+                lines[i] += tailLineDelta;
+            }
+        }
+        gap = index;
+        if (gap == size) {
+            tailStartDelta = 0;
+            tailLineDelta = 0;
+        }
+    }
+
+    // Move count tokens of every column from from to to
+    private void move(int from, int to, int count) {
+        System.arraycopy(types, from, types, to, count);
+        System.arraycopy(starts, from, starts, to, count);
+        System.arraycopy(lengths, from, lengths, to, count);
+        System.arraycopy(lines, from, lines, to, count);
+        System.arraycopy(literals, from, literals, to, count);
+    }
+
+    /// Remove the count tokens after the insertion point.
+    void removeAfterInsertionPoint(int count) {
+        byte number = (byte) TokenType.NUMBER.ordinal();
+        int first = gap + types.length - size;
+        for (int i = first; i < first + count; i++) {
+            if (types[i] == number) {
+                if (freeCount == freeNumbers.length) {
+                    freeNumbers = Arrays.copyOf(freeNumbers, Math.max(MIN_CAPACITY, 2 * freeCount));
+                }
+                freeNumbers[freeCount++] = literals[i];
+            }
+        }
+        size -= count;
+        if (gap == size) {
+            tailStartDelta = 0;
+            tailLineDelta = 0;
+        }
+    }
+
+    /// Move the starts and lines of the tokens after the insertion point
+    /// by these deltas. They are only applied as the tokens are moved.
+    void shiftAfterInsertionPoint(int startDelta, int lineDelta) {
+        if (gap < size) {
+            tailStartDelta += startDelta;
+            tailLineDelta += lineDelta;
+        }
+    }
+
+    // Put the insertion point back at the end, so the columns hold the
+    // tokens in order from 0
+    private void closeGap() {
+        moveInsertionPoint(size);
+    }
+
+    // Where token i is in the columns
+    private int at(int i) {
+        return i < gap ? i : i + types.length - size;
+    }
+
+    TokenType type(int i) {
+        return TYPES[types[at(i)]];
+    }
+
+    int start(int i) {
+        return i < gap ? starts[i] : starts[i + types.length - size] + tailStartDelta;
+    }
+
+    int length(int i) {
+        return lengths[at(i)];
+    }
+
+    int line(int i) {
+        return i < gap ? lines[i] : lines[i + types.length - size] + tailLineDelta;
+    }
+
+    /// Value of the NUMBER token at i, without boxing.
+    double number(int i) {
+        return numbers[literals[at(i)]];
+    }
+
+    /// Symbol id of an interned IDENTIFIER or STRING, otherwise -1.
+    int symbol(int i) {
+        TokenType type = type(i);
+        return type == TokenType.IDENTIFIER || type == TokenType.STRING ? literals[at(i)] : -1;
+    }
+
+    String lexeme(int i) {
+        int literal = literals[at(i)];
+        if (literal >= 0 && type(i) == TokenType.IDENTIFIER) {
+            return symbols.name(literal);
+        }
+        return source.substring(start(i), start(i) + length(i));
+    }
+
+    /// Literal as it would be stored on a Token: the unquoted contents of a
+    /// STRING, the Double value of a NUMBER and null for everything else.
+    Object literal(int i) {
+        switch (type(i)) {
+        case STRING: {
+            int literal = literals[at(i)];
+            if (literal >= 0) {
+                return symbols.name(literal);
+            }
+            return source.substring(start(i) + 1, start(i) + length(i) - 1);
+        }
+        case NUMBER:
+            return number(i);
+        default:
+            return null;
+        }
+    }
+
+    Token get(int i) {
+        return new Token(type(i), lexeme(i), literal(i), line(i));
+    }
+
+    /// Read-only List view, materializing a Token on every get().
+    List<Token> asList() {
+        return new View();
+    }
+
+    private class View extends AbstractList<Token> implements RandomAccess {
+        @Override
+        public Token get(int i) {
+            if (i < 0 || i >= size) {
+                throw new IndexOutOfBoundsException("Index: " + i + ", Size: " + size);
+            }
+            return TokenStream.this.get(i);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+}
@@ -2,21 +2,38 @@ package jlox;
 
 enum TokenType {
     // Single-character tokens.
-    LEFT_PAREN, RIGHT_PAREN, LEFT_BRACE, RIGHT_BRACE,
-    COMMA, DOT, MINUS, PLUS, SEMICOLON, SLASH, STAR,
+    LEFT_PAREN("("), RIGHT_PAREN(")"), LEFT_BRACE("{"), RIGHT_BRACE("}"),
+    COMMA(","), DOT("."), MINUS("-"), PLUS("+"), SEMICOLON(";"), SLASH("/"), STAR("*"),
 
     // One or two character tokens.
-    BANG, BANG_EQUAL,
-    EQUAL, EQUAL_EQUAL,
-    GREATER, GREATER_EQUAL,
-    LESS, LESS_EQUAL,
+    BANG("!"), BANG_EQUAL("!="),
+    EQUAL("="), EQUAL_EQUAL("=="),
+    GREATER(">"), GREATER_EQUAL(">="),
+    LESS("<"), LESS_EQUAL("<="),
 
     // Literals.
     IDENTIFIER, STRING, NUMBER,
 
     // Keywords.
-    AND, CLASS, ELSE, FALSE, FUN, FOR, IF, NIL, OR,
-    PRINT, RETURN, SUPER, THIS, TRUE, VAR, WHILE,
+    AND("and"), CLASS("class"), ELSE("else"), FALSE("false"), FUN("fun"), FOR("for"),
+    IF("if"), NIL("nil"), OR("or"), PRINT("print"), RETURN("return"), SUPER("super"),
+    THIS("this"), TRUE("true"), VAR("var"), WHILE("while"),
 
-    EOF
+    // What a scanner could make no token of, kept only for a reporter
+    // that asks for it.
+    ERROR,
+
+    EOF;
+
+    /// The lexeme of every token of this type, or null for the literals,
+    /// ERROR and EOF, whose text varies or is empty.
+    final String text;
+
+    TokenType() {
+        this(null);
+    }
+
+    TokenType(String text) {
+        this.text = text;
+    }
 }
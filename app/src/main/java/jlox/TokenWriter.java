@@ -0,0 +1,189 @@
+package jlox;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/// Writes a TokenStream in a compact binary format for handing tokens on
+/// to another process, which TokenReader reads back. Unlike the --tokens
+/// dump it keeps every token's offset, length and line.
+///
+/// Every integer is an unsigned LEB128 varint, so most take one byte:
+///
+///     header  "JLXT", VERSION, flags, token count
+///     pool    if flags has POOLED: string count, then per string its
+///             UTF-8 length and bytes
+///     token   type ordinal, gap from the end of the previous token to its
+///             start, length, lines since the previous token, then
+///             NUMBER  v << 1 if the lexeme is the digits of a whole v
+///                     without leading zeros, otherwise 1 | index << 1 and
+///                     the value's 8 bytes, little endian
+///             IDENTIFIER, STRING  index, if POOLED
+///
+/// where index is the pool index of an identifier's name, a string's
+/// contents or a number's lexeme, and 0 without a pool. A pooled stream
+/// can be read without its source, but for ERROR tokens; otherwise the
+/// text of identifiers, strings and numbers comes from the source.
+class TokenWriter {
+    static final int MAGIC = 0x4a4c5854; // JLXT
+    static final int VERSION = 2;
+    static final int POOLED = 1;
+
+    // Whole numbers of up to this many digits are stored as their value,
+    // which then fits a long
+    static final int MAX_DIGITS = 18;
+
+    private byte[] bytes;
+    private int count = 0;
+
+    private TokenWriter(int capacity) {
+        bytes = new byte[capacity];
+    }
+
+    /// Encode tokens, with a string pool if pooled.
+    static ByteBuffer write(TokenStream tokens, boolean pooled) {
+        TokenWriter out = new TokenWriter(64 + 5 * tokens.size());
+        out.putInt(MAGIC);
+        out.putVarint(VERSION);
+        out.putVarint(pooled ? POOLED : 0);
+        out.putVarint(tokens.size());
+        int[] indexes = pooled ? out.putPool(tokens) : null;
+
+        Source source = tokens.source();
+        int end = 0;
+        int line = 1;
+        for (int i = 0; i < tokens.size(); i++) {
+            TokenType type = tokens.type(i);
+            int start = tokens.start(i);
+            out.putVarint(type.ordinal());
+            out.putVarint(start - end);
+            out.putVarint(tokens.length(i));
+            out.putVarint(tokens.line(i) - line);
+            end = start + tokens.length(i);
+            line = tokens.line(i);
+
+            int index = indexes == null ? 0 : indexes[i];
+            switch (type) {
+            case NUMBER:
+                long whole = wholeDigits(source, start, end);
+                if (whole >= 0) {
+                    out.putVarint(whole << 1);
+                } else {
+                    out.putVarint(1 | (long) index << 1);
+                    out.putLong(Double.doubleToRawLongBits(tokens.number(i)));
+                }
+                break;
+            case IDENTIFIER:
+            case STRING:
+                if (indexes != null) {
+                    out.putVarint(index);
+                }
+                break;
+            default:
+                break;
+            }
+        }
+
+        return ByteBuffer.wrap(out.bytes, 0, out.count);
+    }
+
+    /// Encode tokens into a new file at path.
+    static void write(TokenStream tokens, boolean pooled, Path path) throws IOException {
+        ByteBuffer buffer = write(tokens, pooled);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                                                    StandardOpenOption.TRUNCATE_EXISTING,
+                                                    StandardOpenOption.WRITE)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }
+
+    /// The value of [start, end) of source if it is a whole number of at
+    /// most MAX_DIGITS digits without leading zeros, otherwise -1.
+    static long wholeDigits(Source source, long start, long end) {
+        long length = end - start;
+        if (length > MAX_DIGITS || length > 1 && source.charAt(start) == '0') {
+            return -1;
+        }
+        long value = 0;
+        for (long i = start; i < end; i++) {
+            char c = source.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    // Write the pool of the texts tokens need, returning each token's index
+    // into it. Identical texts share an index.
+    private int[] putPool(TokenStream tokens) {
+        Source source = tokens.source();
+        SymbolTable pool = new SymbolTable();
+        int[] indexes = new int[tokens.size()];
+        for (int i = 0; i < tokens.size(); i++) {
+            long start = tokens.start(i);
+            long end = start + tokens.length(i);
+            switch (tokens.type(i)) {
+            case IDENTIFIER:
+                indexes[i] = pool.intern(source, start, end);
+                break;
+            case STRING:
+                indexes[i] = pool.intern(source, start + 1, end - 1);
+                break;
+            case NUMBER:
+                if (wholeDigits(source, start, end) < 0) {
+                    indexes[i] = pool.intern(source, start, end);
+                }
+                break;
+            default:
+                break;
+            }
+        }
+
+        putVarint(pool.size());
+        for (int id = 0; id < pool.size(); id++) {
+            byte[] text = pool.name(id).getBytes(StandardCharsets.UTF_8);
+            putVarint(text.length);
+            reserve(text.length);
+            System.arraycopy(text, 0, bytes, count, text.length);
+            count += text.length;
+        }
+        return indexes;
+    }
+
+    private void putVarint(long value) {
+        reserve(10);
+        while ((value & ~0x7fL) != 0) {
+            bytes[count++] = (byte) (value | 0x80);
+            value >>>= 7;
+        }
+        bytes[count++] = (byte) value;
+    }
+
+    private void putInt(int value) {
+        reserve(Integer.BYTES);
+        for (int shift = 24; shift >= 0; shift -= 8) {
+            bytes[count++] = (byte) (value >>> shift);
+        }
+    }
+
+    private void putLong(long value) {
+        reserve(Long.BYTES);
+        for (int shift = 0; shift < 64; shift += 8) {
+            bytes[count++] = (byte) (value >>> shift);
+        }
+    }
+
+    private void reserve(int n) {
+        if (count + n > bytes.length) {
+            bytes = Arrays.copyOf(bytes, Math.max(count + n, bytes.length + (bytes.length >> 1)));
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package jlox;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/// Training workload for the class data sharing archive the build makes:
+/// runs the .lox files under the directories it is given, and programs it
+/// generates, in every mode and through a Server, so that the classes a
+/// run of any kind loads get archived. Runs go through Lox.commandLine(),
+/// as the launcher's do, so they print to standard output and error;
+/// whoever runs the training drops them.
+class Training {
+    private static final String[][] MODES = {
+        {"--tokens"}, {"--ast"}, {}, {"--vm"},
+    };
+
+    // Programs using every kind of statement and expression, and a few
+    // errors of each kind, as templates taking a number
+    private static final String[] PROGRAMS = {
+        "var total = 0;\n" +
+        "for (var i = 0; i < %d; i = i + 1) { if (i / 2 == 0 or i < 3) total = total + i; }\n" +
+        "while (total > 10) total = total - 10;\n" +
+        "print total; print -total; print !(total >= 1) and total <= 2;",
+
+        "fun counter(n) { var c = n; fun next() { c = c + 1; return c; } return next; }\n" +
+        "var next = counter(%d);\n" +
+        "print next(); print next() * 2.5; print clock() > 0;",
+
+        "class Shape { init(name) { this.name = name; } area() { return 0; }\n" +
+        "  describe() { return this.name + \" \" + \"of area\"; } }\n" +
+        "class Square < Shape { init(side) { super.init(\"square\"); this.side = side; }\n" +
+        "  area() { return this.side * this.side; } describe() { return super.describe(); } }\n" +
+        "var s = Square(%d); print s.describe(); print s.area(); print s; print Square; print nil;",
+
+        "// A comment\n" +
+        "var s = \"multi\nline\"; var n = %d.5;\n" +
+        "print s != \"x\"; print n == n; print \"a\" + \"b\";",
+
+        "print %d + ;\nvar = 1;\nclass A < A {}\nreturn 1;",
+
+        "var x = %d; print x + \"string\";",
+
+        "print undefined;\n\"unterminated",
+    };
+
+    public static void main(String[] args) throws IOException {
+        Path generated = Files.createTempDirectory("jlox-training");
+        try {
+            List<Path> files = new ArrayList<>();
+            for (String name : args) {
+                try (Stream<Path> found = Files.walk(Paths.get(name))) {
+                    found.filter(file -> file.toString().endsWith(".lox")).sorted().forEach(files::add);
+                }
+            }
+            for (int i = 0; i < PROGRAMS.length; i++) {
+                files.add(Files.writeString(generated.resolve("generated" + i + ".lox"),
+                                            String.format(PROGRAMS[i], i + 10)));
+            }
+
+            for (String[] mode : MODES) {
+                for (Path file : files) {
+                    String[] run = new String[mode.length + 1];
+                    System.arraycopy(mode, 0, run, 0, mode.length);
+                    run[mode.length] = file.toString();
+                    Lox.commandLine().run(run);
+                }
+            }
+            Lox.commandLine().run(new String[] {"--batch", "--jobs", "2", generated.toString()});
+            Lox.commandLine().run(new String[] {"--cache", generated.resolve("cache").toString(),
+                                                files.get(0).toString()});
+
+            // The server, and the client of it, which print to the streams
+            // they are given
+            PrintStream dropped = new PrintStream(OutputStream.nullOutputStream());
+            Server server = new Server(generated.resolve("jlox.sock"), 1, dropped);
+            server.listen();
+            Thread serving = new Thread(() -> {
+                try {
+                    server.serve();
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            });
+            serving.start();
+            for (Path file : files) {
+                Client.run(generated.resolve("jlox.sock"), new String[] {file.toString()},
+                           new ByteArrayInputStream(new byte[0]), dropped, dropped);
+            }
+            server.close();
+            serving.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            try (Stream<Path> paths = Files.walk(generated)) {
+                paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+            }
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package jlox;
+
+/// Variable captured by a Closure. While open it refers to a slot of the VM
+/// stack; once that slot is popped the value moves into the upvalue.
+class Upvalue {
+    // Stack slot while open, -1 once closed
+    int slot;
+    // Value once closed, a number being held unboxed as for the VM stack
+    Object closed;
+    double closedNumber;
+    // Next open upvalue, further down the stack
+    Upvalue next;
+
+    Upvalue(int slot, Upvalue next) {
+        this.slot = slot;
+        this.next = next;
+    }
+}
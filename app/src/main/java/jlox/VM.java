@@ -0,0 +1,668 @@
+package jlox;
+
+import java.io.PrintStream;
+import java.util.Arrays;
+
+/// Engine that compiles the Ast to bytecode and runs it on a value stack.
+/// Call frames are kept in parallel arrays rather than as objects.
+///
+/// Numbers are never boxed while they stay on the stack, in globals or in
+/// upvalues: their slot holds Values.NUMBER and the value itself sits at the
+/// same index of a parallel double[]. They are boxed only when they leave
+/// the VM, as fields, native arguments or printed values.
+///
+/// Property gets, sets and method calls go through the InlineCache of their
+/// site, so an access to an instance of a shape seen there before is a
+/// shape check and an array load.
+class VM implements Engine {
+    static final int FRAMES_MAX = 1024;
+    static final int STACK_MAX = FRAMES_MAX * 256;
+
+    /// Left by GET_METHOD in place of the receiver when the callee is the
+    /// value of a field rather than a method.
+    static final Object NO_RECEIVER = new Object();
+
+    private final Output out;
+    private final ErrorReporter errors;
+    private final Globals globals = new Globals();
+    private final boolean useCaches;
+    private final boolean optimize;
+    // SymbolTable of the programs run so far, whose ids shapes are keyed by
+    private SymbolTable symbols;
+    // Holds the lookup of a site that doesn't cache it
+    private final InlineCache uncached = new InlineCache(-1);
+
+    private final Object[] stack = new Object[STACK_MAX];
+    private final double[] numbers = new double[STACK_MAX];
+    private int stackTop = 0;
+
+    // Call frames: the closure running, where it will resume, the stack
+    // slot holding its slot zero, and the slot its result goes to
+    private final Closure[] frameClosures = new Closure[FRAMES_MAX];
+    private final int[] frameIps = new int[FRAMES_MAX];
+    private final int[] frameBases = new int[FRAMES_MAX];
+    private final int[] frameResults = new int[FRAMES_MAX];
+    private int frameCount = 0;
+    // Set by cancel(), from another thread
+    private volatile String cancelled;
+
+    // Upvalues still pointing into the stack, highest slot first
+    private Upvalue openUpvalues;
+
+    VM(PrintStream out) {
+        this(new Output(out), ErrorReporter.standard(), true, true);
+    }
+
+    /// VM that can run without inline caches, looking up every property
+    /// access by name, to measure what the caches save.
+    VM(PrintStream out, boolean useCaches) {
+        this(new Output(out), ErrorReporter.standard(), useCaches, true);
+    }
+
+    /// VM that can also compile programs as written, without the Optimizer.
+    VM(PrintStream out, boolean useCaches, boolean optimize) {
+        this(new Output(out), ErrorReporter.standard(), useCaches, optimize);
+    }
+
+    /// VM reporting the errors the Resolver and Compiler find to errors.
+    /// What programs print is flushed to out as each execute() ends.
+    VM(Output out, ErrorReporter errors, boolean useCaches, boolean optimize) {
+        this.out = out;
+        this.errors = errors;
+        this.useCaches = useCaches;
+        this.optimize = optimize;
+    }
+
+    @Override
+    public void execute(Ast ast) {
+        if (symbols == null) {
+            symbols = ast.symbols;
+        } else if (ast.symbols != symbols) {
+            throw new IllegalArgumentException("Programs run by one engine must share a SymbolTable.");
+        }
+        if (!new Resolver(ast, globals, errors).resolve()) {
+            return;
+        }
+        if (optimize) {
+            new Optimizer(ast, globals).optimize();
+        }
+        CompiledFunction script = new Compiler(ast, errors).compile();
+        if (script == null) {
+            return;
+        }
+
+        Closure closure = new Closure(script);
+        stack[stackTop++] = closure;
+        call(closure, 0, 0);
+        try {
+            run();
+        } catch (ArrayIndexOutOfBoundsException e) {
+            // Ran out of stack slots before running out of frames
+            if (stackTop < STACK_MAX) {
+                throw e;
+            }
+            throw new RuntimeError(frameLine(), "Stack overflow.");
+        } finally {
+            out.flush();
+            Arrays.fill(stack, 0, Math.min(stackTop, STACK_MAX), null);
+            stackTop = 0;
+            frameCount = 0;
+            openUpvalues = null;
+        }
+    }
+
+    @Override
+    public void cancel(String message) {
+        cancelled = message;
+    }
+
+    private void run() {
+        Object[] stack = this.stack;
+        double[] numbers = this.numbers;
+        Object[] globalValues = globals.values();
+        double[] globalNumbers = globals.numbers();
+        Closure closure = frameClosures[frameCount - 1];
+        byte[] code = closure.function.chunk.code;
+        Object[] constants = closure.function.chunk.constants;
+        InlineCache[] caches = closure.function.chunk.caches;
+        int ip = frameIps[frameCount - 1];
+        int base = frameBases[frameCount - 1];
+
+        for (;;) {
+            byte instruction = code[ip++];
+            switch (instruction) {
+            case OpCode.CONSTANT:
+                stack[stackTop++] = constants[((code[ip] & 0xff) << 8) | (code[ip + 1] & 0xff)];
+                ip += 2;
+                break;
+            case OpCode.NUMBER:
+                stack[stackTop] = Values.NUMBER;
+                numbers[stackTop++] =
+                    closure.function.chunk.numbers[((code[ip] & 0xff) << 8) | (code[ip + 1] & 0xff)];
+                ip += 2;
+                break;
+            case OpCode.NIL:
+                stack[stackTop++] = null;
+                break;
+            case OpCode.TRUE:
+                stack[stackTop++] = true;
+                break;
+            case OpCode.FALSE:
+                stack[stackTop++] = false;
+                break;
+            case OpCode.POP:
+                stackTop--;
+                break;
+            case OpCode.GET_LOCAL: {
+                int slot = base + (code[ip++] & 0xff);
+                stack[stackTop] = stack[slot];
+                numbers[stackTop++] = numbers[slot];
+                break;
+            }
+            case OpCode.SET_LOCAL: {
+                int slot = base + (code[ip++] & 0xff);
+                stack[slot] = stack[stackTop - 1];
+                numbers[slot] = numbers[stackTop - 1];
+                break;
+            }
+            case OpCode.GET_GLOBAL: {
+                int index = ((code[ip] & 0xff) << 8) | (code[ip + 1] & 0xff);
+                ip += 2;
+                Object value = globalValues[index];
+                if (value == Globals.UNDEFINED) {
+                    throw globals.undefined(index, closure.function.chunk.lines[ip - 1]);
+                }
+                stack[stackTop] = value;
+                numbers[stackTop++] = globalNumbers[index];
+                break;
+            }
+            case OpCode.DEFINE_GLOBAL: {
+                int index = ((code[ip] & 0xff) << 8) | (code[ip + 1] & 0xff);
+                ip += 2;
+                stackTop--;
+                globalValues[index] = stack[stackTop];
+                globalNumbers[index] = numbers[stackTop];
+                break;
+            }
+            case OpCode.SET_GLOBAL: {
+                int index = ((code[ip] & 0xff) << 8) | (code[ip + 1] & 0xff);
+                ip += 2;
+                if (globalValues[index] == Globals.UNDEFINED) {
+                    throw globals.undefined(index, closure.function.chunk.lines[ip - 1]);
+                }
+                globalValues[index] = stack[stackTop - 1];
+                globalNumbers[index] = numbers[stackTop - 1];
+                break;
+            }
+            case OpCode.GET_UPVALUE: {
+                Upvalue upvalue = closure.upvalues[code[ip++] & 0xff];
+                if (upvalue.slot >= 0) {
+                    stack[stackTop] = stack[upvalue.slot];
+                    numbers[stackTop++] = numbers[upvalue.slot];
+                } else {
+                    stack[stackTop] = upvalue.closed;
+                    numbers[stackTop++] = upvalue.closedNumber;
+                }
+                break;
+            }
+            case OpCode.SET_UPVALUE: {
+                Upvalue upvalue = closure.upvalues[code[ip++] & 0xff];
+                if (upvalue.slot >= 0) {
+                    stack[upvalue.slot] = stack[stackTop - 1];
+                    numbers[upvalue.slot] = numbers[stackTop - 1];
+                } else {
+                    upvalue.closed = stack[stackTop - 1];
+                    upvalue.closedNumber = numbers[stackTop - 1];
+                }
+                break;
+            }
+            case OpCode.GET_PROPERTY: {
+                String name = (String) constants[((code[ip] & 0xff) << 8) | (code[ip + 1] & 0xff)];
+                InlineCache cache = caches[((code[ip + 2] & 0xff) << 8) | (code[ip + 3] & 0xff)];
+                ip += 4;
+                if (!(stack[stackTop - 1] instanceof LoxInstance)) {
+                    throw error(closure, ip, "Only instances have properties.");
+                }
+                LoxInstance instance = (LoxInstance) stack[stackTop - 1];
+                int entry = cache.find(instance.shape);
+                if (entry < 0) {
+                    cache = lookUp(cache, instance, name);
+                    if (cache == null) {
+                        throw error(closure, ip, "Undefined property '" + name + "'.");
+                    }
+                    entry = cache.count - 1;
+                }
+
+                int slot = cache.slots[entry];
+                if (slot >= 0) {
+                    store(stackTop - 1, instance.fields[slot]);
+                } else {
+                    stack[stackTop - 1] = new BoundMethod(instance, (Closure) cache.methods[entry]);
+                }
+                break;
+            }
+            case OpCode.SET_PROPERTY: {
+                String name = (String) constants[((code[ip] & 0xff) << 8) | (code[ip + 1] & 0xff)];
+                InlineCache cache = caches[((code[ip + 2] & 0xff) << 8) | (code[ip + 3] & 0xff)];
+                ip += 4;
+                if (!(stack[stackTop - 2] instanceof LoxInstance)) {
+                    throw error(closure, ip, "Only instances have fields.");
+                }
+                LoxInstance instance = (LoxInstance) stack[stackTop - 2];
+                Shape shape = instance.shape;
+                int entry = cache.find(shape);
+                int slot;
+                Shape target;
+                if (entry >= 0) {
+                    slot = cache.slots[entry];
+                    target = cache.targets[entry];
+                } else {
+                    slot = shape.slot(cache.name);
+                    target = shape;
+                    if (slot < 0) {
+                        slot = shape.size();
+                        target = shape.with(cache.name);
+                    }
+                    if (useCaches) {
+                        cache.add(shape, slot, null, target);
+                    }
+                }
+
+                if (target != shape) {
+                    instance.transition(target, slot);
+                }
+                instance.fields[slot] = load(stackTop - 1);
+                stackTop--;
+                stack[stackTop - 1] = stack[stackTop];
+                numbers[stackTop - 1] = numbers[stackTop];
+                break;
+            }
+            case OpCode.GET_METHOD: {
+                String name = (String) constants[((code[ip] & 0xff) << 8) | (code[ip + 1] & 0xff)];
+                InlineCache cache = caches[((code[ip + 2] & 0xff) << 8) | (code[ip + 3] & 0xff)];
+                ip += 4;
+                if (!(stack[stackTop - 1] instanceof LoxInstance)) {
+                    throw error(closure, ip, "Only instances have properties.");
+                }
+                LoxInstance instance = (LoxInstance) stack[stackTop - 1];
+                int entry = cache.find(instance.shape);
+                if (entry < 0) {
+                    cache = lookUp(cache, instance, name);
+                    if (cache == null) {
+                        throw error(closure, ip, "Undefined property '" + name + "'.");
+                    }
+                    entry = cache.count - 1;
+                }
+
+                int slot = cache.slots[entry];
+                if (slot >= 0) {
+                    store(stackTop - 1, instance.fields[slot]);
+                    stack[stackTop++] = NO_RECEIVER;
+                } else {
+                    stack[stackTop - 1] = cache.methods[entry];
+                    stack[stackTop++] = instance;
+                }
+                break;
+            }
+            case OpCode.INVOKE: {
+                int argCount = code[ip++] & 0xff;
+                frameIps[frameCount - 1] = ip;
+                int callee = stackTop - argCount - 2;
+                if (stack[callee + 1] != NO_RECEIVER) {
+                    // The receiver becomes slot zero, the result replaces the method
+                    call((Closure) stack[callee], argCount, callee);
+                } else {
+                    // Close the gap to call the field's value as usual
+                    System.arraycopy(stack, callee + 2, stack, callee + 1, argCount);
+                    System.arraycopy(numbers, callee + 2, numbers, callee + 1, argCount);
+                    stackTop--;
+                    callValue(stack[callee], argCount);
+                }
+
+                closure = frameClosures[frameCount - 1];
+                code = closure.function.chunk.code;
+                constants = closure.function.chunk.constants;
+                caches = closure.function.chunk.caches;
+                ip = frameIps[frameCount - 1];
+                base = frameBases[frameCount - 1];
+                break;
+            }
+            case OpCode.GET_SUPER: {
+                String name = (String) constants[((code[ip] & 0xff) << 8) | (code[ip + 1] & 0xff)];
+                ip += 2;
+                Object receiver = stack[--stackTop];
+                LoxClass klass = (LoxClass) stack[stackTop - 1];
+                LoxCallable method = klass.superclass.findMethod(name);
+                if (method == null) {
+                    throw error(closure, ip, "Undefined property '" + name + "'.");
+                }
+                stack[stackTop - 1] = new BoundMethod(receiver, (Closure) method);
+                break;
+            }
+            case OpCode.EQUAL:
+                stackTop--;
+                stack[stackTop - 1] = isEqual(stackTop - 1, stackTop);
+                break;
+            case OpCode.NOT_EQUAL:
+                stackTop--;
+                stack[stackTop - 1] = !isEqual(stackTop - 1, stackTop);
+                break;
+            case OpCode.GREATER:
+            case OpCode.GREATER_EQUAL:
+            case OpCode.LESS:
+            case OpCode.LESS_EQUAL: {
+                stackTop--;
+                if (stack[stackTop - 1] != Values.NUMBER || stack[stackTop] != Values.NUMBER) {
+                    throw error(closure, ip, "Operands must be numbers.");
+                }
+                stack[stackTop - 1] = compare(instruction, numbers[stackTop - 1], numbers[stackTop]);
+                break;
+            }
+            case OpCode.SUBTRACT:
+            case OpCode.MULTIPLY:
+            case OpCode.DIVIDE: {
+                stackTop--;
+                if (stack[stackTop - 1] != Values.NUMBER || stack[stackTop] != Values.NUMBER) {
+                    throw error(closure, ip, "Operands must be numbers.");
+                }
+                numbers[stackTop - 1] = arithmetic(instruction, numbers[stackTop - 1], numbers[stackTop]);
+                break;
+            }
+            case OpCode.ADD: {
+                stackTop--;
+                Object left = stack[stackTop - 1];
+                Object right = stack[stackTop];
+                if (left == Values.NUMBER && right == Values.NUMBER) {
+                    numbers[stackTop - 1] += numbers[stackTop];
+                } else if (left instanceof String && right instanceof String) {
+                    stack[stackTop - 1] = (String) left + (String) right;
+                } else {
+                    throw error(closure, ip, "Operands must be two numbers or two strings.");
+                }
+                break;
+            }
+            case OpCode.NOT:
+                stack[stackTop - 1] = !Values.isTruthy(stack[stackTop - 1]);
+                break;
+            case OpCode.NEGATE:
+                if (stack[stackTop - 1] != Values.NUMBER) {
+                    throw error(closure, ip, "Operand must be a number.");
+                }
+                numbers[stackTop - 1] = -numbers[stackTop - 1];
+                break;
+            case OpCode.PRINT:
+                stackTop--;
+                if (stack[stackTop] == Values.NUMBER) {
+                    out.printNumber(numbers[stackTop]).println();
+                } else {
+                    out.print(Values.stringify(stack[stackTop])).println();
+                }
+                break;
+            case OpCode.JUMP:
+                ip += 2 + (((code[ip] & 0xff) << 8) | (code[ip + 1] & 0xff));
+                break;
+            case OpCode.JUMP_IF_FALSE:
+                if (Values.isTruthy(stack[stackTop - 1])) {
+                    ip += 2;
+                } else {
+                    ip += 2 + (((code[ip] & 0xff) << 8) | (code[ip + 1] & 0xff));
+                }
+                break;
+            case OpCode.LOOP:
+                if (cancelled != null) {
+                    throw error(closure, ip, cancelled);
+                }
+                ip -= (((code[ip] & 0xff) << 8) | (code[ip + 1] & 0xff)) - 2;
+                break;
+            case OpCode.CALL: {
+                int argCount = code[ip++] & 0xff;
+                frameIps[frameCount - 1] = ip;
+                callValue(stack[stackTop - argCount - 1], argCount);
+
+                closure = frameClosures[frameCount - 1];
+                code = closure.function.chunk.code;
+                constants = closure.function.chunk.constants;
+                caches = closure.function.chunk.caches;
+                ip = frameIps[frameCount - 1];
+                base = frameBases[frameCount - 1];
+                break;
+            }
+            case OpCode.CLOSURE: {
+                CompiledFunction function =
+                    (CompiledFunction) constants[((code[ip] & 0xff) << 8) | (code[ip + 1] & 0xff)];
+                ip += 2;
+                Closure created = new Closure(function);
+                for (int i = 0; i < created.upvalues.length; i++) {
+                    boolean isLocal = code[ip++] != 0;
+                    int index = code[ip++] & 0xff;
+                    created.upvalues[i] = isLocal ? captureUpvalue(base + index)
+                                                  : closure.upvalues[index];
+                }
+                stack[stackTop++] = created;
+                break;
+            }
+            case OpCode.CLOSE_UPVALUE:
+                closeUpvalues(stackTop - 1);
+                stackTop--;
+                break;
+            case OpCode.RETURN: {
+                stackTop--;
+                Object result = stack[stackTop];
+                double resultNumber = numbers[stackTop];
+                int resultSlot = frameResults[frameCount - 1];
+                closeUpvalues(base);
+                frameCount--;
+                if (frameCount == 0) {
+                    return;
+                }
+
+                stack[resultSlot] = result;
+                numbers[resultSlot] = resultNumber;
+                stackTop = resultSlot + 1;
+                closure = frameClosures[frameCount - 1];
+                code = closure.function.chunk.code;
+                constants = closure.function.chunk.constants;
+                caches = closure.function.chunk.caches;
+                ip = frameIps[frameCount - 1];
+                base = frameBases[frameCount - 1];
+                break;
+            }
+            case OpCode.CLASS: {
+                String name = (String) constants[((code[ip] & 0xff) << 8) | (code[ip + 1] & 0xff)];
+                boolean hasSuperclass = code[ip + 2] != 0;
+                ip += 3;
+                Object superclass = null;
+                if (hasSuperclass) {
+                    superclass = stack[--stackTop];
+                    if (!(superclass instanceof LoxClass)) {
+                        throw error(closure, ip, "Superclass must be a class.");
+                    }
+                }
+                stack[stackTop++] = new LoxClass(name, (LoxClass) superclass);
+                break;
+            }
+            case OpCode.METHOD: {
+                String name = (String) constants[((code[ip] & 0xff) << 8) | (code[ip + 1] & 0xff)];
+                ip += 2;
+                LoxClass klass = (LoxClass) stack[stackTop - 2];
+                klass.defineMethod(name, (Closure) stack[--stackTop]);
+                break;
+            }
+            default:
+                throw new IllegalStateException("Unknown opcode " + instruction);
+            }
+        }
+    }
+
+    private static boolean compare(byte instruction, double a, double b) {
+        switch (instruction) {
+        case OpCode.GREATER:
+            return a > b;
+        case OpCode.GREATER_EQUAL:
+            return a >= b;
+        case OpCode.LESS:
+            return a < b;
+        default:
+            return a <= b;
+        }
+    }
+
+    private static double arithmetic(byte instruction, double a, double b) {
+        switch (instruction) {
+        case OpCode.SUBTRACT:
+            return a - b;
+        case OpCode.MULTIPLY:
+            return a * b;
+        default:
+            return a / b;
+        }
+    }
+
+    // Values.isEqual of two stack slots, without boxing numbers
+    private boolean isEqual(int a, int b) {
+        if (stack[a] == Values.NUMBER && stack[b] == Values.NUMBER) {
+            // Double.equals, so NaN equals itself and 0 differs from -0
+            return Double.doubleToLongBits(numbers[a]) == Double.doubleToLongBits(numbers[b]);
+        }
+        return Values.isEqual(stack[a], stack[b]);
+    }
+
+    // Look up name on instance after a miss in cache, returning the cache
+    // holding the result as its last entry, or null if there is no such
+    // property. Sites that can't cache any more use a scratch cache.
+    private InlineCache lookUp(InlineCache cache, LoxInstance instance, String name) {
+        Shape shape = instance.shape;
+        int slot = shape.slot(cache.name);
+        LoxCallable method = null;
+        if (slot < 0) {
+            method = instance.klass.findMethod(name);
+            if (method == null) {
+                return null;
+            }
+        }
+
+        if (!useCaches || cache.count == InlineCache.MAX_ENTRIES) {
+            cache = uncached;
+            cache.count = 0;
+        }
+        cache.add(shape, slot, method, shape);
+        return cache;
+    }
+
+    // Value of a stack slot as the rest of the runtime sees it
+    private Object load(int slot) {
+        return stack[slot] == Values.NUMBER ? (Object) numbers[slot] : stack[slot];
+    }
+
+    // Put a value from outside the stack into slot, unboxing numbers
+    private void store(int slot, Object value) {
+        if (value instanceof Double) {
+            stack[slot] = Values.NUMBER;
+            numbers[slot] = (double) value;
+        } else {
+            stack[slot] = value;
+        }
+    }
+
+    private void callValue(Object callee, int argCount) {
+        int slot = stackTop - argCount - 1;
+        if (callee instanceof Closure) {
+            call((Closure) callee, argCount, slot);
+        } else if (callee instanceof BoundMethod) {
+            BoundMethod bound = (BoundMethod) callee;
+            stack[slot] = bound.receiver;
+            call(bound.method, argCount, slot);
+        } else if (callee instanceof LoxClass) {
+            LoxClass klass = (LoxClass) callee;
+            LoxCallable initializer = klass.findMethod("init");
+            if (initializer == null && argCount != 0) {
+                throw frameError("Expected 0 arguments but got " + argCount + ".");
+            }
+            stack[slot] = new LoxInstance(klass);
+            if (initializer != null) {
+                call((Closure) initializer, argCount, slot);
+            }
+        } else if (callee instanceof LoxNative) {
+            LoxNative function = (LoxNative) callee;
+            checkArity(function.arity(), argCount);
+            Object[] arguments = new Object[argCount];
+            for (int i = 0; i < argCount; i++) {
+                arguments[i] = load(stackTop - argCount + i);
+            }
+            Object result = function.call(arguments);
+            stackTop -= argCount + 1;
+            store(stackTop++, result);
+        } else {
+            throw frameError("Can only call functions and classes.");
+        }
+    }
+
+    // Push a frame for closure, whose arguments are on top of the stack,
+    // that will return its result to slot result
+    private void call(Closure closure, int argCount, int result) {
+        checkArity(closure.function.arity, argCount);
+        if (cancelled != null && frameCount > 0) {
+            throw frameError(cancelled);
+        }
+        if (frameCount == FRAMES_MAX) {
+            throw frameError("Stack overflow.");
+        }
+
+        frameClosures[frameCount] = closure;
+        frameIps[frameCount] = 0;
+        frameBases[frameCount] = stackTop - argCount - 1;
+        frameResults[frameCount] = result;
+        frameCount++;
+    }
+
+    private void checkArity(int arity, int argCount) {
+        if (argCount != arity) {
+            throw frameError("Expected " + arity + " arguments but got " + argCount + ".");
+        }
+    }
+
+    private Upvalue captureUpvalue(int slot) {
+        Upvalue previous = null;
+        Upvalue upvalue = openUpvalues;
+        while (upvalue != null && upvalue.slot > slot) {
+            previous = upvalue;
+            upvalue = upvalue.next;
+        }
+        if (upvalue != null && upvalue.slot == slot) {
+            return upvalue;
+        }
+
+        Upvalue created = new Upvalue(slot, upvalue);
+        if (previous == null) {
+            openUpvalues = created;
+        } else {
+            previous.next = created;
+        }
+        return created;
+    }
+
+    // Move the values of open upvalues at or above last off the stack
+    private void closeUpvalues(int last) {
+        while (openUpvalues != null && openUpvalues.slot >= last) {
+            Upvalue upvalue = openUpvalues;
+            upvalue.closed = stack[upvalue.slot];
+            upvalue.closedNumber = numbers[upvalue.slot];
+            upvalue.slot = -1;
+            openUpvalues = upvalue.next;
+        }
+    }
+
+    private static RuntimeError error(Closure closure, int ip, String msg) {
+        return new RuntimeError(closure.function.chunk.lines[ip - 1], msg);
+    }
+
+    // Error at the instruction the innermost frame last saved
+    private RuntimeError frameError(String msg) {
+        return new RuntimeError(frameLine(), msg);
+    }
+
+    private int frameLine() {
+        int ip = frameIps[frameCount - 1];
+        return frameClosures[frameCount - 1].function.chunk.lines[Math.max(ip - 1, 0)];
+    }
+}
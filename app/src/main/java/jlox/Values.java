@@ -0,0 +1,56 @@
+package jlox;
+
+/// Semantics of Lox values shared by every engine. Numbers are Doubles,
+/// strings Strings, booleans Booleans and nil is null.
+class Values {
+    private Values() {}
+
+    /// Stands in for a number held unboxed in a double[] alongside the
+    /// Object[] of values, as the VM keeps its stack and globals. Like any
+    /// number it is truthy.
+    static final Object NUMBER = new Object() {
+        @Override
+        public String toString() {
+            return "<number>";
+        }
+    };
+
+    /// false and nil are falsey, everything else is truthy.
+    static boolean isTruthy(Object value) {
+        if (value == null) {
+            return false;
+        } else if (value instanceof Boolean) {
+            return (boolean) value;
+        } else {
+            return true;
+        }
+    }
+
+    static boolean isEqual(Object a, Object b) {
+        if (a == null && b == null) {
+            return true;
+        } else if (a == null) {
+            return false;
+        } else {
+            return a.equals(b);
+        }
+    }
+
+    static String stringify(Object value) {
+        if (value == null) {
+            return "nil";
+        } else if (value instanceof Double) {
+            return stringify((double) value);
+        } else {
+            return value.toString();
+        }
+    }
+
+    static String stringify(double value) {
+        String text = Double.toString(value);
+        if (text.endsWith(".0")) {
+            text = text.substring(0, text.length() - 2);
+        }
+        return text;
+    }
+}
@@ -0,0 +1,149 @@
+package jlox;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+class ArtifactCacheTest {
+
+    private Path directory;
+    private ArtifactCache cache;
+
+    @BeforeEach void createDirectory() throws IOException {
+        directory = Files.createTempDirectory("jlox-cache");
+        cache = new ArtifactCache(directory);
+    }
+
+    @AfterEach void deleteDirectory() throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    // Scan and parse source, store it, and load it back into
+    // a new table, checking it comes back as it went in
+    ArtifactCache.Entry roundTrip(Source source) {
+        SymbolTable symbols = new SymbolTable();
+        TokenStream tokens = new Scanner(source, symbols).scanTokenStream();
+        Ast ast = new Parser(tokens, symbols).parse();
+        String key = cache.key(source);
+        assertTrue(cache.store(key, tokens, ast));
+
+        ArtifactCache.Entry entry = cache.load(key, source, new SymbolTable());
+        assertNotNull(entry);
+        assertEquals(tokens.asList(), entry.tokens.asList());
+        for (int i = 0; i < tokens.size(); i++) {
+            assertEquals(tokens.start(i), entry.tokens.start(i), "start of token " + i);
+            assertEquals(tokens.line(i), entry.tokens.line(i), "line of token " + i);
+            assertEquals(tokens.symbol(i), entry.tokens.symbol(i), "symbol of token " + i);
+        }
+        assertEquals(new AstPrinter(ast).print(), new AstPrinter(entry.ast).print());
+        return entry;
+    }
+
+    @Test void roundTripFiles() throws IOException {
+        for (String name : Fixtures.FILES) {
+            roundTrip(Source.map(Paths.get(Fixtures.path(name))));
+        }
+    }
+
+    @Test void roundTripRunnable() throws IOException {
+        ArtifactCache.Entry entry = roundTrip(Source.of(
+            "class A { init(n) { this.n = n; } get() { return this.n * 2.5; } }\n" +
+            "var s = \"str\" + \"ing\";\n" +
+            "print A(4).get();\n" +
+            "print s;"));
+
+        // The loaded Ast runs, and can be resolved and optimized in place
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new VM(new PrintStream(out, true)).execute(entry.ast);
+        assertEquals("10\nstring\n", out.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test void storeTokensOnly() throws IOException {
+        Source source = Source.of("print 1 + x;");
+        SymbolTable symbols = new SymbolTable();
+        TokenStream tokens = new Scanner(source, symbols).scanTokenStream();
+        String key = cache.key(source);
+        assertTrue(cache.store(key, tokens, null));
+
+        ArtifactCache.Entry entry = cache.load(key, source, new SymbolTable());
+        assertEquals(tokens.asList(), entry.tokens.asList());
+        assertNull(entry.ast);
+    }
+
+    @Test void missUnusableArtifacts() throws IOException {
+        Source source = Source.of("var a = \"x\";");
+        SymbolTable symbols = new SymbolTable();
+        TokenStream tokens = new Scanner(source, symbols).scanTokenStream();
+        String key = cache.key(source);
+        assertNotEquals(key, cache.key(Source.of("var a = \"y\";")));
+        assertNull(cache.load(key, source, new SymbolTable()));
+        assertTrue(cache.store(key, tokens, new Parser(tokens, symbols).parse()));
+
+        // Another version of the format, a truncated artifact and one with
+        // a token naming a symbol it doesn't have, none of which leave
+        // anything in the table
+        SymbolTable untouched = new SymbolTable();
+        Path path = directory.resolve(key + ".jloxc");
+        byte[] bytes = Files.readAllBytes(path);
+        bytes[4]++;
+        Files.write(path, bytes);
+        assertNull(cache.load(key, source, untouched));
+        bytes[4]--;
+        Files.write(path, Arrays.copyOf(bytes, bytes.length - 3));
+        assertNull(cache.load(key, source, untouched));
+        byte[] corrupt = bytes.clone();
+        // The literal of the string token "x", which is name 1: after the
+        // header, the names "a" and "x", the counts, and the types, starts,
+        // lengths and lines of all 6 tokens
+        int literal = 17 + 4 + 2 * (4 + 1) + 8 + 6 + 3 * 4 * 6 + 4 * 3;
+        assertEquals(1, corrupt[literal]);
+        corrupt[literal] = 7;
+        Files.write(path, corrupt);
+        assertNull(cache.load(key, source, untouched));
+        assertEquals(0, untouched.size());
+
+        Files.write(path, bytes);
+        assertNotNull(cache.load(key, source, untouched));
+        assertEquals(2, untouched.size());
+    }
+
+    @Test void storeOnlyTheSymbolsUsed() throws IOException {
+        Source source = Source.of("var a = \"x\"; print a;");
+        String key = cache.key(source);
+        SymbolTable symbols = new SymbolTable();
+        for (int i = 0; i < 1000; i++) {
+            symbols.intern("earlier" + i);
+        }
+        TokenStream tokens = new Scanner(source, symbols).scanTokenStream();
+        assertTrue(cache.store(key, tokens, new Parser(tokens, symbols).parse()));
+        assertTrue(Files.size(directory.resolve(key + ".jloxc")) < 400);
+
+        // And load into a table that gives them other ids
+        SymbolTable other = new SymbolTable();
+        other.intern("x");
+        other.intern("unrelated");
+        ArtifactCache.Entry entry = cache.load(key, source, other);
+        assertEquals(tokens.asList(), entry.tokens.asList());
+        assertEquals(0, entry.tokens.symbol(3));
+        assertEquals(2, entry.tokens.symbol(1));
+        assertEquals(3, other.size());
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new Interpreter(new PrintStream(out, true)).execute(entry.ast);
+        assertEquals("x\n", out.toString(StandardCharsets.UTF_8));
+    }
+}
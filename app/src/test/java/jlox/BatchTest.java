@@ -0,0 +1,111 @@
+package jlox;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+class BatchTest {
+
+    private Path directory;
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    private final ByteArrayOutputStream err = new ByteArrayOutputStream();
+
+    @BeforeEach void createDirectory() throws IOException {
+        directory = Files.createTempDirectory("jlox-batch");
+    }
+
+    @AfterEach void deleteDirectory() throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    Path write(String name, String src) throws IOException {
+        Path file = directory.resolve(name);
+        Files.createDirectories(file.getParent());
+        return Files.writeString(file, src);
+    }
+
+    int run(int jobs, String... paths) throws IOException {
+        Batch batch = new Batch(new Lox(), jobs, new PrintStream(out, true), new PrintStream(err, true));
+        return batch.run(paths);
+    }
+
+    String output() {
+        // Drop the times, which change from run to run
+        return out.toString(StandardCharsets.UTF_8).replaceAll(" +[0-9.]+ ms", " t ms")
+            .replace(directory + "/", "");
+    }
+
+    @Test void runDirectory() throws IOException {
+        write("a.lox", "var x = 1; print x + 1;");
+        write("b/c.lox", "print \"nested\";");
+        write("b/skipped.txt", "not lox");
+        write("d.lox", "fun f() { return missing; }\nprint \"before\";\nprint f();");
+
+        assertEquals(Lox.EX_SOFTWARE, run(2, directory.toString()));
+        assertEquals("==> a.lox <==\n2\n" +
+                     "==> b/c.lox <==\nnested\n" +
+                     "==> d.lox <==\nbefore\n" +
+                     "ok t ms  a.lox\n" +
+                     "ok t ms  b/c.lox\n" +
+                     "exit 70 t ms  d.lox\n" +
+                     "3 files, 1 failed, in t ms on 2 threads\n",
+                     output());
+        assertEquals("Undefined variable 'missing'.\n[line 1]\n",
+                     err.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test void keepFilesApart() throws IOException {
+        // Every file defines the same global and half of them have syntax
+        // errors, which must only stop the file they are in
+        int count = 40;
+        String[] paths = new String[count];
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            String src = i % 2 == 0 ? "var x = " + i + ";\nprint x;" : "var x = " + i + ";\nprint x +;";
+            paths[i] = write("f" + i + ".lox", src).toString();
+            expected.append("==> f").append(i).append(".lox <==\n");
+            if (i % 2 == 0) {
+                expected.append(i).append('\n');
+            }
+        }
+
+        assertEquals(Lox.EX_DATAERR, run(4, paths));
+        assertTrue(output().startsWith(expected.toString()), output());
+        assertTrue(output().endsWith("40 files, 20 failed, in t ms on 4 threads\n"), output());
+        assertEquals("[line: 2] Error at ';': Expect expression.\n".repeat(count / 2),
+                     err.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test void runWithTableScanner() throws IOException {
+        write("a.lox", "var x = 1; print x + 1;");
+        write("b.lox", "print \"s\" @ ;");
+
+        // Every file runs on a copy that scans with the TableScanner too
+        Lox options = new Lox(new PrintStream(out, true), new PrintStream(err, true));
+        assertEquals(Lox.EX_DATAERR, options.run(new String[] {"--dfa", "--batch", directory.toString()}));
+        assertTrue(options.usesDfa());
+        assertTrue(options.copy(System.out, System.err).usesDfa());
+        assertTrue(output().startsWith("==> a.lox <==\n2\n==> b.lox <==\nok"), output());
+        assertEquals("[line: 1] Error: Unexpected character.\n", err.toString(StandardCharsets.UTF_8));
+        assertFalse(new Lox().copy(System.out, System.err).usesDfa());
+    }
+
+    @Test void reportMissingFiles() throws IOException {
+        assertEquals(Lox.EX_NOINPUT, run(1, directory.resolve("missing.lox").toString()));
+        assertTrue(output().endsWith("exit 66 t ms  missing.lox\n" +
+                                     "1 files, 1 failed, in t ms on 1 threads\n"), output());
+        assertTrue(err.toString(StandardCharsets.UTF_8).startsWith("Can't read "));
+    }
+}
@@ -0,0 +1,164 @@
+package jlox;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+class DiagnosticsTest {
+
+    // Types of the tokens in tokens
+    static List<TokenType> types(TokenStream tokens) {
+        List<TokenType> types = new ArrayList<>();
+        for (int i = 0; i < tokens.size(); i++) {
+            types.add(tokens.type(i));
+        }
+        return types;
+    }
+
+    @Test void keepErrorTokens() {
+        Source source = Source.of("a @ b\n  \"open\nline");
+        Diagnostics diagnostics = new Diagnostics(source);
+        TokenStream tokens = new Scanner(source, null, diagnostics).scanTokenStream();
+
+        assertEquals(List.of(TokenType.IDENTIFIER, TokenType.ERROR, TokenType.IDENTIFIER,
+                             TokenType.ERROR, TokenType.EOF),
+                     types(tokens));
+        assertEquals("@", tokens.get(1).lexeme);
+        assertEquals("\"open\nline", tokens.get(3).lexeme);
+        assertEquals(3, tokens.line(3));
+
+        List<Diagnostics.Diagnostic> list = diagnostics.list();
+        assertEquals(2, list.size());
+        assertEquals(1, list.get(0).line);
+        assertEquals(3, list.get(0).column);
+        assertEquals(2, list.get(0).offset);
+        assertEquals(1, list.get(0).length);
+        assertEquals("[line: 1, column: 3] Error: Unexpected character.", list.get(0).toString());
+        // Found at its quote, on the line before the one it is reported on
+        assertEquals(3, list.get(1).column);
+        assertEquals(8, list.get(1).offset);
+        assertEquals(10, list.get(1).length);
+        assertEquals("[line: 3, column: 3] Error: Unterminated string.", list.get(1).toString());
+
+        // They survive the binary format
+        TokenReader reader = new TokenReader(TokenWriter.write(tokens, true), source);
+        for (int i = 0; reader.next(); i++) {
+            assertEquals(tokens.get(i), reader.token());
+        }
+    }
+
+    @Test void printingKeepsNoErrorTokens() {
+        List<String> errors = new ArrayList<>();
+        Source source = Source.of("a @ b \"open");
+        TokenStream tokens = new Scanner(source, null, Fixtures.recording(errors)).scanTokenStream();
+        assertEquals(List.of(TokenType.IDENTIFIER, TokenType.IDENTIFIER, TokenType.EOF), types(tokens));
+        assertEquals(List.of("1: Unexpected character.", "1: Unterminated string."), errors);
+    }
+
+    @Test void countRepeatsOnALine() {
+        Source source = Source.of("@@@ x #\n@ # @\n\n@");
+        Diagnostics diagnostics = new Diagnostics(source);
+        TokenStream tokens = new Scanner(source, null, diagnostics).scanTokenStream();
+        assertEquals(10, tokens.size());
+
+        List<Diagnostics.Diagnostic> list = diagnostics.list();
+        assertEquals(3, list.size());
+        assertEquals(4, list.get(0).count());
+        assertEquals("[line: 1, column: 1] Error: Unexpected character. (4 times)", list.get(0).toString());
+        assertEquals(3, list.get(1).count());
+        assertEquals(1, list.get(1).column);
+        assertEquals(1, list.get(2).count());
+        assertEquals(4, list.get(2).line);
+    }
+
+    @Test void stopAtTheLimit() {
+        Source source = Source.of("x @\n".repeat(1000));
+        for (int limit : new int[] {1, 10, 999}) {
+            Diagnostics diagnostics = new Diagnostics(source, limit);
+            TokenStream tokens = new Scanner(source, null, diagnostics).scanTokenStream();
+            assertEquals(limit, diagnostics.size());
+            assertTrue(diagnostics.tooManyErrors());
+            // Up to and including the last error kept, then EOF
+            assertEquals(2 * limit + 1, tokens.size());
+            assertEquals(TokenType.ERROR, tokens.type(tokens.size() - 2));
+            assertEquals(TokenType.EOF, tokens.type(tokens.size() - 1));
+
+            Diagnostics tableDiagnostics = new Diagnostics(source, limit);
+            TableScannerTest.assertSameTokens(tokens,
+                new TableScanner(source, null, tableDiagnostics).scanTokenStream());
+            assertEquals(diagnostics.list().toString(), tableDiagnostics.list().toString());
+        }
+
+        Diagnostics diagnostics = new Diagnostics(source, 1000);
+        new Scanner(source, null, diagnostics).scanTokenStream();
+        assertEquals(1000, diagnostics.size());
+    }
+
+    @Test void columnsMatchTheirOffsets() {
+        Random random = new Random(0x10C5L);
+        String[] pieces = {" ", "\n", "x", "12", "@", "#", "// c\n", "\"s\"", "\"s\nt\""};
+        for (int n = 0; n < 500; n++) {
+            StringBuilder text = new StringBuilder();
+            int count = random.nextInt(60);
+            for (int i = 0; i < count; i++) {
+                text.append(pieces[random.nextInt(pieces.length)]);
+            }
+            if (random.nextBoolean()) {
+                text.append("\"\nopen");
+            }
+            String string = text.toString();
+            Diagnostics diagnostics = new Diagnostics(Source.of(string));
+            new Scanner(Source.of(string), null, diagnostics).scanTokenStream();
+            for (Diagnostics.Diagnostic diagnostic : diagnostics.list()) {
+                int offset = (int) diagnostic.offset;
+                assertEquals(offset - string.lastIndexOf('\n', offset - 1), diagnostic.column);
+            }
+        }
+    }
+
+    @Test void collectThroughLox() {
+        String program = "var a = 1;\nvar b = @ # 2;\nprint a;";
+        PrintStream out = new PrintStream(OutputStream.nullOutputStream());
+        Diagnostics diagnostics = new Diagnostics(Source.of(program));
+        assertEquals(Lox.EX_DATAERR, new Lox(out, diagnostics).run(program));
+        // The ERROR tokens are no expressions to the Parser
+        assertEquals("[[line: 2, column: 9] Error: Unexpected character. (2 times)]",
+                     diagnostics.list().toString());
+        assertEquals(19, diagnostics.list().get(0).offset);
+
+        Diagnostics capped = new Diagnostics(Source.of(program), 1);
+        assertEquals(Lox.EX_DATAERR, new Lox(out, capped).run("@\n" + program));
+        assertEquals(1, capped.size());
+        assertTrue(capped.tooManyErrors());
+    }
+
+    @Test void parseWithoutErrorTokens() {
+        Source source = Source.of("print 1 @ + # 2;");
+        SymbolTable symbols = new SymbolTable();
+        Diagnostics diagnostics = new Diagnostics(source);
+        TokenStream tokens = new Scanner(source, symbols, diagnostics).scanTokenStream();
+        assertEquals(2, tokens.size() - tokens.withoutErrors().size());
+        Ast ast = new Parser(tokens, symbols, diagnostics).parse();
+        assertEquals("[[line: 1, column: 9] Error: Unexpected character. (2 times)]",
+                     diagnostics.list().toString());
+        assertEquals("(print (+ 1 2))", new AstPrinter(ast).print().trim());
+    }
+
+    @Test void collectParseErrors() {
+        Source source = Source.of("print ;\nvar = 1;");
+        Diagnostics diagnostics = new Diagnostics(source);
+        SymbolTable symbols = new SymbolTable();
+        new Parser(new Scanner(source, symbols, diagnostics).scanTokenStream(), symbols, diagnostics).parse();
+
+        List<Diagnostics.Diagnostic> list = diagnostics.list();
+        assertEquals(2, list.size());
+        assertEquals("[line: 1] Error at ';': Expect expression.", list.get(0).toString());
+        assertEquals(-1, list.get(0).offset);
+        assertEquals(2, list.get(1).line);
+    }
+}
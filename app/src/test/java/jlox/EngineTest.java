@@ -0,0 +1,383 @@
+package jlox;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/// Runs each program on the Interpreter as written, which is what it is
+/// expected to print, and after the Optimizer on the Interpreter and on the
+/// VM, with and without its inline caches, which must all print the same.
+class EngineTest {
+
+    // What a program printed, followed by its runtime error if it failed
+    String run(Engine engine, ByteArrayOutputStream out, SymbolTable symbols, Source... srcs) {
+        try {
+            for (Source src : srcs) {
+                TokenStream tokens = new Scanner(src, symbols).scanTokenStream();
+                engine.execute(new Parser(tokens, symbols).parse());
+            }
+        } catch (RuntimeError error) {
+            return out.toString(StandardCharsets.UTF_8) +
+                "error: " + error.getMessage() + " [line " + error.line + "]\n";
+        }
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
+    String run(Source... srcs) {
+        ByteArrayOutputStream plainOut = new ByteArrayOutputStream();
+        String plain = run(new Interpreter(new PrintStream(plainOut, true), false), plainOut,
+                           new SymbolTable(), srcs);
+        ByteArrayOutputStream treeOut = new ByteArrayOutputStream();
+        String tree = run(new Interpreter(new PrintStream(treeOut, true)), treeOut,
+                          new SymbolTable(), srcs);
+        assertEquals(plain, tree);
+        ByteArrayOutputStream vmOut = new ByteArrayOutputStream();
+        String vm = run(new VM(new PrintStream(vmOut, true)), vmOut,
+                        new SymbolTable(), srcs);
+        assertEquals(tree, vm);
+        ByteArrayOutputStream uncachedOut = new ByteArrayOutputStream();
+        String uncached = run(new VM(new PrintStream(uncachedOut, true), false), uncachedOut,
+                              new SymbolTable(), srcs);
+        assertEquals(tree, uncached);
+        return tree;
+    }
+
+    String run(String... srcs) {
+        Source[] sources = new Source[srcs.length];
+        for (int i = 0; i < srcs.length; i++) {
+            sources[i] = Source.of(srcs[i]);
+        }
+        return run(sources);
+    }
+
+    @Test void runExpressions() throws IOException {
+        assertEquals("7\n2.5\ntrue\nfalse\nnil\nab\n-3\ntrue\n",
+                     run("print 1 + 2 * 3;\n" +
+                         "print 5 / 2;\n" +
+                         "print 1 < 2 and 2 <= 2;\n" +
+                         "print !(3 >= 3) or 1 == 2;\n" +
+                         "print nil;\n" +
+                         "print \"a\" + \"b\";\n" +
+                         "print -(1 + 2);\n" +
+                         "print \"x\" != nil;"));
+    }
+
+    @Test void runScopes() throws IOException {
+        assertEquals("outer inner\nouter\n1\n",
+                     run("var a = \"outer\";\n" +
+                         "{ var b = a + \" inner\"; var a = b; print a; }\n" +
+                         "print a;\n" +
+                         "{ var b = 1; { b = b; print b; } }"));
+    }
+
+    @Test void runStaticScopes() throws IOException {
+        // A closure keeps the variable it resolved to, even once a later
+        // declaration shadows it
+        assertEquals("global\nglobal\n",
+                     run("var a = \"global\";\n" +
+                         "{\n" +
+                         "  fun showA() { print a; }\n" +
+                         "  showA();\n" +
+                         "  var a = \"block\";\n" +
+                         "  showA();\n" +
+                         "}"));
+    }
+
+    @Test void runLoops() throws IOException {
+        assertEquals("0\n1\n2\n45\n",
+                     run("for (var i = 0; i < 3; i = i + 1) print i;\n" +
+                         "var sum = 0;\n" +
+                         "var n = 0;\n" +
+                         "while (n < 10) { sum = sum + n; n = n + 1; }\n" +
+                         "print sum;"));
+    }
+
+    @Test void runFunctions() throws IOException {
+        assertEquals("55\n<fn fib>\n<native fn>\nnil\n",
+                     run("fun fib(n) { if (n < 2) return n; return fib(n - 2) + fib(n - 1); }\n" +
+                         "print fib(10);\n" +
+                         "print fib;\n" +
+                         "print clock;\n" +
+                         "fun nothing() {}\n" +
+                         "print nothing();"));
+    }
+
+    @Test void runClosures() throws IOException {
+        assertEquals("1\n2\n1\nupdated\n",
+                     run("fun counter() { var n = 0; fun inc() { n = n + 1; return n; } return inc; }\n" +
+                         "var a = counter();\n" +
+                         "print a();\n" +
+                         "print a();\n" +
+                         "print counter()();\n" +
+                         "var get;\n" +
+                         "var set;\n" +
+                         "{\n" +
+                         "  var shared = \"initial\";\n" +
+                         "  fun g() { return shared; }\n" +
+                         "  fun s(v) { shared = v; }\n" +
+                         "  get = g;\n" +
+                         "  set = s;\n" +
+                         "}\n" +
+                         "set(\"updated\");\n" +
+                         "print get();"));
+    }
+
+    @Test void runClasses() throws IOException {
+        assertEquals("Point\nPoint instance\n3\n4\n7\nfield\n",
+                     run("class Point {\n" +
+                         "  init(x, y) { this.x = x; this.y = y; }\n" +
+                         "  sum() { return this.x + this.y; }\n" +
+                         "}\n" +
+                         "print Point;\n" +
+                         "var p = Point(3, 4);\n" +
+                         "print p;\n" +
+                         "print p.x;\n" +
+                         "print p.y;\n" +
+                         "var sum = p.sum;\n" +
+                         "print sum();\n" +
+                         "p.sum = \"field\";\n" +
+                         "print p.sum;"));
+    }
+
+    @Test void runInheritance() throws IOException {
+        assertEquals("A\nB then A\ntrue\n",
+                     run("class A { name() { return \"A\"; } }\n" +
+                         "class B < A {\n" +
+                         "  init() { return; }\n" +
+                         "  name() { return \"B then \" + super.name(); }\n" +
+                         "}\n" +
+                         "print A().name();\n" +
+                         "var b = B();\n" +
+                         "print b.name();\n" +
+                         "print b.init() == b;"));
+    }
+
+    @Test void runPropertySites() throws IOException {
+        // One get site sees instances of every shape, first monomorphic,
+        // then polymorphic and finally megamorphic
+        assertEquals("0\n1\n2\n3\n4\n5\n6\n0\n1\n2\n3\n4\n5\n6\n",
+                     run("class A { init(v) { this.v = v; } }\n" +
+                         "class B { init(v) { this.w = 0; this.v = v; } }\n" +
+                         "class C { v() { return 2; } }\n" +
+                         "fun make(i) {\n" +
+                         "  if (i == 0) return A(0);\n" +
+                         "  if (i == 1) { var b = B(1); return b; }\n" +
+                         "  if (i == 2) return C();\n" +
+                         "  var a = A(i);\n" +
+                         "  if (i > 3) a.x = 1;\n" +
+                         "  if (i > 4) { a.y = 1; a.v = i; }\n" +
+                         "  if (i > 5) { var b = B(0); b.v = i; return b; }\n" +
+                         "  return a;\n" +
+                         "}\n" +
+                         "for (var round = 0; round < 2; round = round + 1) {\n" +
+                         "  for (var i = 0; i < 7; i = i + 1) {\n" +
+                         "    var o = make(i);\n" +
+                         "    if (i == 2) print o.v(); else print o.v;\n" +
+                         "  }\n" +
+                         "}"));
+    }
+
+    @Test void runBranchingShapes() throws IOException {
+        // b and c leave the path of shapes that a took, and must not write
+        // into the field names a's shapes share
+        assertEquals("3\n2\n7\n11\n2\n",
+                     run("class P {}\n" +
+                         "var a = P(); a.x = 1; a.y = 2;\n" +
+                         "var b = P(); b.x = 3; b.z = 4;\n" +
+                         "var c = P(); c.y = 5; c.x = 6;\n" +
+                         "print a.x + a.y;\n" +
+                         "print a.y;\n" +
+                         "print b.x + b.z;\n" +
+                         "print c.y + c.x;\n" +
+                         "var d = P(); d.x = 0; d.y = 2; print d.y;"));
+    }
+
+    @Test void runMethodCalls() throws IOException {
+        assertEquals("method\nfield\n<fn m>\n3\n",
+                     run("class A { m(x) { return \"method\"; } }\n" +
+                         "fun f() { return \"field\"; }\n" +
+                         "var a = A();\n" +
+                         // The method is looked up before the argument
+                         // replaces it with a field
+                         "print a.m(a.m = f);\n" +
+                         "print a.m();\n" +
+                         "var b = A();\n" +
+                         "print b.m;\n" +
+                         "class Adder { init(n) { this.n = n; } add(x) { return this.n + x; } }\n" +
+                         "print Adder(1).add(2);"));
+        assertEquals("error: Undefined property 'missing'. [line 2]\n",
+                     run("class A {}\nA().missing(1);"));
+        assertEquals("error: Expected 1 arguments but got 0. [line 2]\n",
+                     run("class A { m(x) {} }\nA().m();"));
+    }
+
+    @Test void runStatefulEngine() throws IOException {
+        assertEquals("1\n2\n",
+                     run("var a = 1;",
+                         "fun f() { return a; }",
+                         "print f();",
+                         "a = 2;",
+                         "print f();"));
+    }
+
+    @Test void runOneSymbolTablePerEngine() {
+        SymbolTable symbols = new SymbolTable();
+        Engine[] engines = {new Interpreter(System.out), new VM(System.out)};
+        for (Engine engine : engines) {
+            engine.execute(new Parser(new Scanner(Source.of("1;"), symbols).scanTokenStream(), symbols).parse());
+            SymbolTable other = new SymbolTable();
+            Ast ast = new Parser(new Scanner(Source.of("2;"), other).scanTokenStream(), other).parse();
+            assertThrows(IllegalArgumentException.class, () -> engine.execute(ast));
+        }
+    }
+
+    @Test void runErrors() throws IOException {
+        assertEquals("error: Undefined variable 'x'. [line 1]\n",
+                     run("print x;"));
+        assertEquals("before\nerror: Operands must be two numbers or two strings. [line 2]\n",
+                     run("print \"before\";\nprint 1 + \"a\";"));
+        assertEquals("error: Operand must be a number. [line 1]\n",
+                     run("-nil;"));
+        assertEquals("error: Can only call functions and classes. [line 1]\n",
+                     run("\"str\"();"));
+        assertEquals("error: Expected 2 arguments but got 1. [line 2]\n",
+                     run("fun f(a, b) {}\nf(1);"));
+        assertEquals("error: Only instances have properties. [line 1]\n",
+                     run("print 1.x;"));
+        assertEquals("error: Undefined property 'y'. [line 2]\n",
+                     run("class C {}\nprint C().y;"));
+        assertEquals("error: Superclass must be a class. [line 1]\n",
+                     run("var A = 1; class B < A {}"));
+    }
+
+    @Test void runConstants() throws IOException {
+        assertEquals("7\nab\ntrue\ntrue\n0\n-0\n3\nnil\nInfinity\n",
+                     run("print (1 + 2) * 3 - 2;\n" +
+                         "print \"a\" + \"b\";\n" +
+                         "print !(1 < 2) == (nil != nil);\n" +
+                         "print 0.1 + 0.2 != 0.3;\n" +
+                         "print nil or 0;\n" +
+                         "print -0;\n" +
+                         "print true and 3;\n" +
+                         "print false or nil;\n" +
+                         "print 1 / 0;"));
+        // Operands that are errors are left for the engines to report
+        assertEquals("error: Operands must be two numbers or two strings. [line 2]\n",
+                     run("1 + 2;\nprint 1 + \"a\";"));
+        assertEquals("error: Operand must be a number. [line 1]\n",
+                     run("if (true) print -\"a\";"));
+        assertEquals("then\nelse\nafter\ndone\n",
+                     run("if (1) print \"then\"; else print \"else\";\n" +
+                         "if (nil) print \"then\"; else { print \"else\"; }\n" +
+                         "while (false) print \"never\";\n" +
+                         "if (false) print \"never\";\n" +
+                         "fun f() { return \"after\"; print \"never\"; }\n" +
+                         "print f();\n" +
+                         "fun g() { while (true) { print \"done\"; return; } }\n" +
+                         "g();"));
+    }
+
+    @Test void runConstantVariables() throws IOException {
+        assertEquals("12\non\nnil\n1\n2\n",
+                     run("var n = 4;\n" +
+                         "{ var m = n * 3; print m; }\n" +
+                         "var debug = true;\n" +
+                         "if (debug) print \"on\";\n" +
+                         "{ var unset; print unset; }\n" +
+                         "var a = 1;\n" +
+                         "print a;\n" +
+                         "var a = 2;\n" +
+                         "print a;"));
+        // Variables that are assigned anywhere are read as they run
+        assertEquals("1\n2\n3\n",
+                     run("var a = 1;\n" +
+                         "fun set() { a = 3; }\n" +
+                         "print a;\n" +
+                         "{ var b = 1; while (b < 2) { b = b + 1; } print b; }\n" +
+                         "set();\n" +
+                         "print a;"));
+        // Functions can run before the global they read is declared, and a
+        // function from an earlier program can assign it
+        assertEquals("error: Undefined variable 'late'. [line 1]\n",
+                     run("fun f() { return late; }\nprint f();\nvar late = 1;"));
+        assertEquals("2\n",
+                     run("fun set() { a = 2; }",
+                         "var a = 1; set(); print a;"));
+    }
+
+    @Test void runArithmeticWithoutBoxing() throws IOException {
+        String src = "var sum = 0;\n" +
+            "for (var i = 0; i < 100000; i = i + 1) {\n" +
+            "  sum = sum + i * 2 - 1;\n" +
+            "  if (sum == -1 or !(i <= 1000000000)) print sum;\n" +
+            "}\n" +
+            "print sum;";
+        SymbolTable symbols = new SymbolTable();
+        Ast ast = new Parser(new Scanner(Source.of(src), symbols).scanTokenStream(), symbols).parse();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        VM vm = new VM(new PrintStream(out, true));
+        com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+        vm.execute(ast);
+        long before = threads.getCurrentThreadAllocatedBytes();
+        vm.execute(ast);
+        long allocated = threads.getCurrentThreadAllocatedBytes() - before;
+
+        assertEquals("-1\n9.9998E9\n-1\n9.9998E9\n", out.toString(StandardCharsets.UTF_8));
+        // Boxing the numbers of each iteration would take megabytes; what
+        // is left is resolving and compiling the program
+        assertTrue(allocated < 100_000, allocated + " bytes allocated");
+    }
+
+    @Test void interpretArithmeticWithoutBoxing() throws IOException {
+        String src = "var sum = 0;\n" +
+            "for (var i = 0; i < 100000; i = i + 1) {\n" +
+            "  sum = sum + i * 2 - 1;\n" +
+            "  if (sum == -1 or !(i <= 1000000000)) print sum;\n" +
+            "}\n" +
+            "print sum;";
+        SymbolTable symbols = new SymbolTable();
+        Ast ast = new Parser(new Scanner(Source.of(src), symbols).scanTokenStream(), symbols).parse();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Interpreter interpreter = new Interpreter(new PrintStream(out, true));
+        com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+        interpreter.execute(ast);
+        // Run it again as resolved, on this thread rather than the one
+        // execute() starts, so that its allocations are counted
+        long before = threads.getCurrentThreadAllocatedBytes();
+        interpreter.executeBody(ast, ast.root(), null);
+        long allocated = threads.getCurrentThreadAllocatedBytes() - before;
+
+        assertEquals("-1\n9.9998E9\n", out.toString(StandardCharsets.UTF_8));
+        // Boxing the numbers of each iteration would take megabytes
+        assertTrue(allocated < 100_000, allocated + " bytes allocated");
+    }
+
+    @Test void run_cond() throws IOException {
+        assertEquals("true\n", run(Source.map(Paths.get("build/resources/test/cond.lox"))));
+    }
+
+    @Test void run_loop() throws IOException {
+        assertEquals("while-loop\ndone!\n", run(Source.map(Paths.get("build/resources/test/loop.lox"))));
+    }
+
+    @Test void overflowAtTheSameDepth() {
+        // The script takes a frame of the VM's, leaving FRAMES_MAX - 1
+        String d = "fun d(n) { if (n == 1) return 1; return d(n - 1) + 1; }\n";
+        assertEquals((VM.FRAMES_MAX - 1) + "\n", run(d + "print d(" + (VM.FRAMES_MAX - 1) + ");"));
+        assertEquals("error: Stack overflow. [line 1]\n", run(d + "print d(" + VM.FRAMES_MAX + ");"));
+
+        String a = "class A { init(n) { if (n > 1) A(n - 1); } }\n";
+        assertEquals("A instance\n", run(a + "print A(" + (VM.FRAMES_MAX - 1) + ");"));
+        assertEquals("error: Stack overflow. [line 1]\n", run(a + "print A(" + VM.FRAMES_MAX + ");"));
+    }
+}
@@ -0,0 +1,52 @@
+package jlox;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.List;
+
+/// Sources and reporters that several tests share, so that each scanner is
+/// checked against the same inputs ScannerTest checks the Scanner with.
+class Fixtures {
+    private Fixtures() {}
+
+    // One source for each kind of token
+    static final String SINGLE_CHARS = "(){},.-+;/*";
+    static final String ONE_OR_TWO_CHARS = "! != = == > >= < <=";
+    static final String IDENTIFIERS = "happy_sad poTat0 sh0rtbr3ad_";
+    static final String STRINGS = "\"happy_sad\" \"poTat0\" \"sh0rtbr3ad_\"";
+    static final String NUMBERS = "1 2.0 3.1415926";
+    static final String KEYWORDS =
+        "and class else false fun for if nil or print return super this true var while";
+    static final String KEYWORD_PREFIXES = "an andy f fa fo forr fun_ t th thisx tru v whil classes";
+
+    static final String[] SOURCES = {
+        SINGLE_CHARS, ONE_OR_TWO_CHARS, IDENTIFIERS, STRINGS, NUMBERS, KEYWORDS, KEYWORD_PREFIXES,
+    };
+
+    // Names of the programs in build/resources/test
+    static final String[] FILES = {"cond", "loop", "mt", "var"};
+
+    static String path(String name) {
+        return "build/resources/test/" + name + ".lox";
+    }
+
+    static String read(String name) throws IOException {
+        return Files.readString(Paths.get(path(name)));
+    }
+
+    // Errors as they were reported, one string each
+    static ErrorReporter recording(List<String> errors) {
+        return new ErrorReporter() {
+            @Override
+            public void error(int line, String where, String message) {
+                errors.add(line + where + ": " + message);
+            }
+
+            @Override
+            public void runtimeError(int line, String message) {
+                errors.add(line + ": " + message);
+            }
+        };
+    }
+}
@@ -0,0 +1,150 @@
+package jlox;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+class IncrementalScannerTest {
+
+    // Everything the scanner treats specially, but nothing it rejects
+    private static final String ALPHABET = "ab1.9 \n\t/\"(){};=!<>+-*,_ordfun";
+
+    // Token.equals ignores positions, so compare the columns directly
+    void assertSameStream(TokenStream expected, TokenStream actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i), actual.get(i));
+            assertEquals(expected.start(i), actual.start(i), "start of token " + i);
+            assertEquals(expected.length(i), actual.length(i), "length of token " + i);
+            assertEquals(expected.line(i), actual.line(i), "line of token " + i);
+        }
+    }
+
+    String randomText(Random random, int length) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            text.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+        }
+        return text.toString();
+    }
+
+    // Errors are reported through the shared App instance, so keep to
+    // sources without unterminated strings
+    boolean terminated(String src) {
+        boolean inString = false;
+        boolean inComment = false;
+        for (int i = 0; i < src.length(); i++) {
+            char c = src.charAt(i);
+            if (c == '\n') {
+                inComment = false;
+            } else if (inString) {
+                inString = c != '"';
+            } else if (!inComment) {
+                inString = c == '"';
+                inComment = c == '/' && i + 1 < src.length() && src.charAt(i + 1) == '/';
+            }
+        }
+        return !inString;
+    }
+
+    // Apply random edits one after the other, checking every intermediate
+    // stream against a full rescan of the same text
+    void assertRelexMatches(String src, long seed) {
+        Random random = new Random(seed);
+        SymbolTable symbols = new SymbolTable();
+        TokenStream tokens = new Scanner(Source.of(src), symbols).scanTokenStream();
+        for (int edit = 0; edit < 200; edit++) {
+            int offset = random.nextInt(src.length() + 1);
+            int deleted = random.nextInt(Math.min(4, src.length() - offset) + 1);
+            String inserted = randomText(random, random.nextInt(4));
+            String edited = src.substring(0, offset) + inserted + src.substring(offset + deleted);
+            if (!terminated(edited)) {
+                continue;
+            }
+
+            src = edited;
+            tokens = IncrementalScanner.relex(tokens, offset, deleted, inserted);
+
+            assertSameStream(new Scanner(Source.of(src), symbols).scanTokenStream(), tokens);
+        }
+    }
+
+    @Test void relex_cond() throws IOException {
+        assertRelexMatches(Fixtures.read("cond"), 1);
+    }
+
+    @Test void relex_loop() throws IOException {
+        assertRelexMatches(Fixtures.read("loop"), 2);
+    }
+
+    @Test void relexRandomText() throws IOException {
+        for (long seed = 0; seed < 20; seed++) {
+            String src = randomText(new Random(seed), 120);
+            if (terminated(src)) {
+                assertRelexMatches(src, seed);
+            }
+        }
+    }
+
+    @Test void relexNumberLookahead() throws IOException {
+        // "1.x" scans as 1 . x, and turning x into a digit makes it 1.5
+        TokenStream tokens = new Scanner("var a = 1.x;").scanTokenStream();
+        TokenStream edited = IncrementalScanner.relex(tokens, 10, 1, "5");
+
+        assertSameStream(new Scanner("var a = 1.5;").scanTokenStream(), edited);
+    }
+
+    @Test void relexResyncsAfterEdit() throws IOException {
+        String src = "var a = 1;\nprint a;\nprint \"b\";\n";
+        TokenStream tokens = new Scanner(src).scanTokenStream();
+        // Add a line at the top, moving everything after it down a line
+        TokenStream edited = IncrementalScanner.relex(tokens, 0, 0, "var z;\n");
+
+        assertSameStream(new Scanner("var z;\n" + src).scanTokenStream(), edited);
+    }
+
+    @Test void relexReportsToItsReporter() throws IOException {
+        String src = "var a = 1;\nprint a;\n";
+        TokenStream tokens = new Scanner(src).scanTokenStream();
+        List<String> errors = new ArrayList<>();
+        TokenStream edited = IncrementalScanner.relex(tokens, 12, 0, "@", Fixtures.recording(errors));
+
+        assertSameStream(new Scanner(Source.of("var a = 1;\np@rint a;\n"), null,
+                                     Fixtures.recording(new ArrayList<>())).scanTokenStream(),
+                         edited);
+        assertEquals(List.of("2: Unexpected character."), errors);
+    }
+
+    @Test void relexMappedSourceInPlace() throws IOException {
+        // Offsets into a mapped file are byte offsets, and stay so after edits
+        String src = "print \"h\u00e9\";\nvar a = 1;\n";
+        Path file = Files.createTempFile("jlox-relex", ".lox");
+        try {
+            Files.write(file, src.getBytes(StandardCharsets.UTF_8));
+            TokenStream tokens = new Scanner(Source.map(file)).scanTokenStream();
+
+            assertSame(tokens, IncrementalScanner.relex(tokens, 8, 0, "\u00e9\u00e9"));
+            // The a at byte 17 is now 4 bytes further on
+            assertSame(tokens, IncrementalScanner.relex(tokens, 21, 1, "b2"));
+            assertSame(tokens, IncrementalScanner.relex(tokens, 0, 0, "\n"));
+
+            String edited = "\nprint \"h\u00e9\u00e9\u00e9\";\nvar b2 = 1;\n";
+            TokenStream expected = new Scanner(edited).scanTokenStream();
+            assertEquals(expected.asList(), tokens.asList());
+            for (int i = 0; i < expected.size(); i++) {
+                assertEquals(expected.line(i), tokens.line(i), "line of token " + i);
+            }
+            assertEquals(edited, tokens.source().substring(0, tokens.source().length()));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+}
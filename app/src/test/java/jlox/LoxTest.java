@@ -0,0 +1,129 @@
+package jlox;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+class LoxTest {
+
+    private static final int THREADS = 16;
+    private static final int ROUNDS = 200;
+
+    // Run task on THREADS threads at once, ROUNDS times each
+    void onManyThreads(Callable<Void> task) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<Void>> running = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                running.add(pool.submit(() -> {
+                    start.await();
+                    for (int round = 0; round < ROUNDS; round++) {
+                        task.call();
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<Void> result : running) {
+                result.get();
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test void runReturnsStatus() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+        Lox lox = new Lox(new PrintStream(out, true),
+                          ErrorReporter.printingTo(new PrintStream(err, true)));
+
+        assertEquals(0, lox.run("var a = 1;"));
+        assertEquals(Lox.EX_DATAERR, lox.run("print;"));
+        assertEquals(Lox.EX_SOFTWARE, lox.run("print -nil;"));
+        // Errors end only the run they happen in, and definitions are kept
+        assertEquals(0, lox.run("print a;"));
+        assertEquals("1\n", out.toString(StandardCharsets.UTF_8));
+        assertEquals("[line: 1] Error at ';': Expect expression.\n" +
+                     "Operand must be a number.\n[line 1]\n",
+                     err.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test void printToRedirectedSystemOut() {
+        PrintStream original = System.out;
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(out, true));
+        try {
+            assertEquals(0, new Lox().run("print \"redirected\";"));
+        } finally {
+            System.setOut(original);
+        }
+        assertEquals("redirected\n", out.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test void scanOnManyThreads() throws Exception {
+        // Every scan reports its own errors, which are on different lines
+        // for each source, and none of another
+        int sources = 8;
+        ErrorReporter ignored = ErrorReporter.printingTo(new PrintStream(OutputStream.nullOutputStream()));
+        String[] srcs = new String[sources];
+        List<List<Token>> expected = new ArrayList<>();
+        for (int i = 0; i < sources; i++) {
+            srcs[i] = "var a" + i + " = \"s\";\n".repeat(i + 1) + "@ print a" + i + ";\n\"open";
+            expected.add(new Scanner(Source.of(srcs[i]), null, ignored).scanTokens());
+        }
+
+        int[] next = {0};
+        onManyThreads(() -> {
+            int i;
+            synchronized (next) {
+                i = next[0]++ % sources;
+            }
+            ByteArrayOutputStream err = new ByteArrayOutputStream();
+            Scanner scanner = new Scanner(Source.of(srcs[i]), new SymbolTable(),
+                                          ErrorReporter.printingTo(new PrintStream(err, true)));
+            assertEquals(expected.get(i), scanner.scanTokens());
+            assertEquals("[line: " + (i + 2) + "] Error: Unexpected character.\n" +
+                         "[line: " + (i + 3) + "] Error: Unterminated string.\n",
+                         err.toString(StandardCharsets.UTF_8));
+            return null;
+        });
+    }
+
+    @Test void runOnManyThreads() throws Exception {
+        int[] next = {0};
+        onManyThreads(() -> {
+            int i;
+            synchronized (next) {
+                i = next[0]++;
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            ByteArrayOutputStream err = new ByteArrayOutputStream();
+            Lox lox = new Lox(new PrintStream(out, true),
+                              ErrorReporter.printingTo(new PrintStream(err, true)));
+            if (i % 2 == 0) {
+                assertEquals(0, lox.run("var x = " + i + ";\nprint x * 2;"));
+                assertEquals((i * 2) + "\n", out.toString(StandardCharsets.UTF_8));
+                assertEquals("", err.toString(StandardCharsets.UTF_8));
+            } else {
+                assertEquals(Lox.EX_DATAERR, lox.run("var x = " + i + ";\nreturn x;"));
+                assertEquals("", out.toString(StandardCharsets.UTF_8));
+                assertEquals("[line: 2] Error at 'return': Can't return from top-level code.\n",
+                             err.toString(StandardCharsets.UTF_8));
+            }
+            return null;
+        });
+    }
+}
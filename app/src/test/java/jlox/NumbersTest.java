@@ -0,0 +1,75 @@
+package jlox;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+class NumbersTest {
+
+    static void assertParses(String literal) {
+        // Parsed in place, surrounded by other text
+        Source source = Source.of("x " + literal + ";");
+        double expected = Double.parseDouble(literal);
+        double actual = Numbers.parse(source, 2, 2 + literal.length());
+        assertEquals(Double.doubleToRawLongBits(expected), Double.doubleToRawLongBits(actual), literal);
+    }
+
+    static String digits(Random random, int count) {
+        StringBuilder digits = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            digits.append((char) ('0' + random.nextInt(10)));
+        }
+        return digits.toString();
+    }
+
+    @Test void parseEdges() {
+        String[] literals = {
+            "0", "00", "0.0", "1", "7.5", "0.1", "0.2", "0.30000000000000004", "123.456",
+            "9007199254740991", "9007199254740992", "9007199254740993", "9999999999999999999",
+            "18446744073709551615", "12345678901234567890123", "0.000000000000000000000001",
+            "1.7976931348623157", "2.2250738585072014", "4.9406564584124654",
+            "0." + "0".repeat(307) + "1", "0." + "0".repeat(322) + "5", "0." + "0".repeat(400) + "1",
+            "1." + "0".repeat(30), "3.14159265358979323846264338327950288",
+            "1.00000000000000011102230246251565404236316680908203125",
+            "9007199254740993.0", "0.9999999999999999", "0.99999999999999999",
+        };
+        for (String literal : literals) {
+            assertParses(literal);
+        }
+    }
+
+    @Test void parseRandomLikeParseDouble() {
+        Random random = new Random(0x10C5L);
+        for (int i = 0; i < 200_000; i++) {
+            String whole = digits(random, 1 + random.nextInt(20));
+            switch (random.nextInt(4)) {
+            case 0:
+                assertParses(whole);
+                break;
+            case 1:
+                // Short fractions, mostly on the fast path
+                assertParses(whole + "." + digits(random, 1 + random.nextInt(6)));
+                break;
+            case 2:
+                // Up to 19 significant digits, mostly for Eisel-Lemire
+                String fraction = digits(random, 1 + random.nextInt(19));
+                assertParses(whole.substring(0, Math.max(1, whole.length() - fraction.length())) + "." + fraction);
+                break;
+            default:
+                // Small values far below the dot
+                assertParses("0." + "0".repeat(random.nextInt(330)) + digits(random, 1 + random.nextInt(19)));
+                break;
+            }
+        }
+    }
+
+    @Test void parseAsScanned() {
+        TokenStream tokens = new Scanner("1 2.5 0.1 12345678901234567.125 1.").scanTokenStream();
+        assertEquals(1, tokens.number(0));
+        assertEquals(2.5, tokens.number(1));
+        assertEquals(0.1, tokens.number(2));
+        assertEquals(12345678901234567.125, tokens.number(3));
+        assertEquals(1, tokens.number(4));
+    }
+}
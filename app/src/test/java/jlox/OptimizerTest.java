@@ -0,0 +1,83 @@
+package jlox;
+
+import java.io.IOException;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+class OptimizerTest {
+
+    // Resolve and optimize src, returning what is left of it
+    String optimize(String src) {
+        SymbolTable symbols = new SymbolTable();
+        TokenStream tokens = new Scanner(Source.of(src), symbols).scanTokenStream();
+        Ast ast = new Parser(tokens, symbols).parse();
+        Globals globals = new Globals();
+        assertTrue(new Resolver(ast, globals).resolve());
+        new Optimizer(ast, globals).optimize();
+        return new AstPrinter(ast).print();
+    }
+
+    @Test void foldOperators() throws IOException {
+        assertEquals("(print 7)\n", optimize("print 1 + 2 * 3;"));
+        assertEquals("(print -2)\n", optimize("print -(1 + 1);"));
+        assertEquals("(print \"ab\")\n", optimize("print \"a\" + \"b\";"));
+        assertEquals("(print false)\n", optimize("print !(1 <= 2);"));
+        assertEquals("(print true)\n", optimize("print nil == nil and \"x\" != nil;"));
+        // Errors are left for the engines to report when they run
+        assertEquals("(print (+ 1 \"a\"))\n", optimize("print 1 + \"a\";"));
+        assertEquals("(print (- nil))\n", optimize("print -nil;"));
+    }
+
+    @Test void foldLogicalOperators() throws IOException {
+        assertEquals("(print false)\n", optimize("print false and x;"));
+        assertEquals("(print x)\n", optimize("print true and x;"));
+        assertEquals("(print 1)\n", optimize("print 1 or x;"));
+        assertEquals("(print (call f))\n", optimize("print nil or f();"));
+        assertEquals("(print (and x 2))\n", optimize("print x and (1 + 1);"));
+    }
+
+    @Test void removeDeadCode() throws IOException {
+        assertEquals("(print 1)\n", optimize("if (true) print 1; else print 2;"));
+        assertEquals("(block (print 2))\n", optimize("if (nil) print 1; else { print 2; }"));
+        assertEquals("", optimize("if (false) print 1;"));
+        assertEquals("", optimize("while (false) print 1;"));
+        assertEquals("", optimize("1 + 2; \"unused\"; { }"));
+        assertEquals("(while true (print 1))\n", optimize("while (1 > 0) print 1;"));
+        assertEquals("(fun f () (return 1))\n", optimize("fun f() { return 1; print 2; }"));
+        assertEquals("(fun f () (return 1))\n",
+                     optimize("fun f() { if (true) return 1; print 2; }"));
+        assertEquals("(if x (block) (print 1))\n",
+                     optimize("if (x) { if (false) print 0; } else print 1;"));
+    }
+
+    @Test void propagateConstants() throws IOException {
+        assertEquals("(var a 2)\n(print 3)\n",
+                     optimize("var a = 2; print a + 1;"));
+        assertEquals("(block (var a \"s\") (var b \"ss\") (print \"ss\"))\n",
+                     optimize("{ var a = \"s\"; var b = a + a; print b; }"));
+        assertEquals("(var debug false)\n",
+                     optimize("var debug = false; if (debug) print \"debug\";"));
+        assertEquals("(block (var a) (print nil))\n", optimize("{ var a; print a; }"));
+        // Captured locals are as constant as any other
+        assertEquals("(block (var a 1) (fun f () (return 1)))\n",
+                     optimize("{ var a = 1; fun f() { return a; } }"));
+    }
+
+    @Test void keepVariables() throws IOException {
+        // Assigned anywhere, even after the read
+        assertEquals("(block (var a 1) (print a) (; (= a 2)))\n",
+                     optimize("{ var a = 1; print a; a = 2; }"));
+        assertEquals("(var a 1)\n(print a)\n(fun f () (; (= a 2)))\n",
+                     optimize("var a = 1; print a; fun f() { a = 2; }"));
+        // A function could run before the global is declared
+        assertEquals("(var g 1)\n(fun f () (return g))\n",
+                     optimize("var g = 1; fun f() { return g; }"));
+        // Redeclared globals and parameters
+        assertEquals("(var a 1)\n(fun a ())\n(print a)\n",
+                     optimize("var a = 1; fun a() {} print a;"));
+        assertEquals("(fun f (a) (return a))\n", optimize("fun f(a) { return a; }"));
+        assertEquals("(class A (fun m () (var x 1) (return (. this x))))\n",
+                     optimize("class A { m() { var x = 1; return this.x; } }"));
+    }
+}
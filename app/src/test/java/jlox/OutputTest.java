@@ -0,0 +1,138 @@
+package jlox;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+class OutputTest {
+
+    private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    private final Output out = new Output(bytes);
+
+    String flushed() {
+        out.flush();
+        return bytes.toString(StandardCharsets.UTF_8);
+    }
+
+    @Test void encodeText() {
+        out.print("ascii ").print("\u00e9 ").print("\u20ac ").print("\ud83d\ude00").print('\uD83D').println();
+        assertEquals("ascii \u00e9 \u20ac \ud83d\ude00?\n", flushed());
+    }
+
+    @Test void encodeSources() throws IOException {
+        String text = "a \u00e9 \u20ac \ud83d\ude00 z";
+        out.print(Source.of(text), 0, text.length()).println();
+        Path file = Files.createTempFile("jlox-output", ".lox");
+        try {
+            Files.writeString(file, text);
+            Source mapped = Source.map(file);
+            out.print(mapped, 0, mapped.length()).println();
+        } finally {
+            Files.deleteIfExists(file);
+        }
+        assertEquals(text + "\n" + text + "\n", flushed());
+    }
+
+    @Test void printNumbers() {
+        Random random = new Random(0x10C5L);
+        double[] values = {0, -0.0, 1, -1, 0.5, 1e7, 9999999, 123456789, 1e-5, 1.0 / 3,
+                           Long.MAX_VALUE, Double.NaN, Double.POSITIVE_INFINITY};
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < values.length + 1000; i++) {
+            double value = i < values.length ? values[i]
+                : i % 2 == 0 ? random.nextInt(20_000_000) - 10_000_000 : random.nextDouble() * 1e8;
+            out.printNumber(value).print(' ').printDouble(value).println();
+            expected.append(Values.stringify(value)).append(' ').append(value).append('\n');
+        }
+        out.print(Long.MIN_VALUE).print(' ').print(0L).println();
+        expected.append(Long.MIN_VALUE).append(" 0\n");
+        assertEquals(expected.toString(), flushed());
+    }
+
+    @Test void flushWhenFull() {
+        String line = "x".repeat(999) + "\n";
+        int count = 3 * Output.CAPACITY / line.length();
+        for (int i = 0; i < count; i++) {
+            out.print(line);
+        }
+        assertTrue(bytes.size() >= 2 * Output.CAPACITY);
+        assertEquals(line.repeat(count), flushed());
+    }
+
+    @Test void dropOutputAfterFailure() {
+        WritableByteChannel broken = new WritableByteChannel() {
+            @Override
+            public int write(ByteBuffer src) throws IOException {
+                throw new IOException("Broken pipe");
+            }
+
+            @Override
+            public boolean isOpen() {
+                return true;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        Output output = new Output(broken);
+        output.print("lost").println();
+        output.flush();
+        assertTrue(output.checkError());
+        output.print("also lost").flush();
+    }
+
+    // Dump the tokens of path with args, checking the dump is as if each
+    // Token were printed
+    void assertDumpsTokens(Path path, String... args) throws IOException {
+        StringBuilder expected = new StringBuilder();
+        for (Token token : new Scanner(Files.readString(path)).scanTokens()) {
+            expected.append("<\t").append(token).append('\n');
+        }
+
+        ByteArrayOutputStream dump = new ByteArrayOutputStream();
+        String[] run = Arrays.copyOf(args, args.length + 2);
+        run[args.length] = "--tokens";
+        run[args.length + 1] = path.toString();
+        new Lox(new PrintStream(dump, true), System.err).run(run);
+        assertEquals(expected.toString(), dump.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test void dumpTokensAsBefore() throws IOException {
+        Path directory = Files.createTempDirectory("jlox-output");
+        try {
+            Path numbers = Files.writeString(directory.resolve("numbers.lox"),
+                                             "var x = 1.5 + 12 * 0.25; print \"s\" + \"t\"; x.y(3, 1234567.125);");
+            Path text = Files.writeString(directory.resolve("text.lox"),
+                                          "print \"\u00e9t\u00e9 \u20ac\" + \"\ud83d\ude00\";");
+            for (String name : Fixtures.FILES) {
+                assertDumpsTokens(Paths.get(Fixtures.path(name)));
+            }
+            assertDumpsTokens(numbers);
+            // Dumped from a TokenStream rather than as scanned
+            assertDumpsTokens(numbers, "--cache", directory.resolve("cache").toString());
+            assertDumpsTokens(numbers, "--cache", directory.resolve("cache").toString());
+            assertDumpsTokens(text);
+            assertDumpsTokens(text, "--dfa");
+            assertDumpsTokens(text, "--cache", directory.resolve("cache").toString());
+            assertDumpsTokens(text, "--cache", directory.resolve("cache").toString());
+        } finally {
+            try (Stream<Path> paths = Files.walk(directory)) {
+                paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+            }
+        }
+    }
+}
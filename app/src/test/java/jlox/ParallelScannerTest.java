@@ -0,0 +1,71 @@
+package jlox;
+
+import java.io.IOException;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+class ParallelScannerTest {
+
+    private static final ForkJoinPool pool = new ForkJoinPool(4);
+
+    // Token.equals ignores positions, so compare the columns directly
+    void assertSameStream(TokenStream expected, TokenStream actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i), actual.get(i));
+            assertEquals(expected.start(i), actual.start(i), "start of token " + i);
+            assertEquals(expected.length(i), actual.length(i), "length of token " + i);
+            assertEquals(expected.line(i), actual.line(i), "line of token " + i);
+        }
+    }
+
+    // Scan with every chunk size up to the length of the source, which
+    // places a cut after every safe newline in turn
+    void assertParallelMatches(String src) {
+        TokenStream expected = new Scanner(src).scanTokenStream();
+        for (int chunkSize = 1; chunkSize <= src.length() + 1; chunkSize++) {
+            ParallelScanner scanner = new ParallelScanner(Source.of(src), pool, chunkSize);
+            assertSameStream(expected, scanner.scanTokenStream());
+        }
+    }
+
+    @Test void parallel_mt() throws IOException {
+        assertParallelMatches(Fixtures.read("mt"));
+    }
+
+    @Test void parallel_var() throws IOException {
+        assertParallelMatches(Fixtures.read("var"));
+    }
+
+    @Test void parallel_cond() throws IOException {
+        assertParallelMatches(Fixtures.read("cond"));
+    }
+
+    @Test void parallel_loop() throws IOException {
+        assertParallelMatches(Fixtures.read("loop"));
+    }
+
+    @Test void parallelMultilineStringsAndComments() throws IOException {
+        assertParallelMatches(
+            "var a = \"first\nsecond // not a comment\nthird\";\n" +
+            "// a comment with a \" quote\n" +
+            "print a; // trailing \"\n" +
+            "var b = 1.5 / 2;\n" +
+            "\n" +
+            "print \"\n\n\";\n" +
+            "b = b * 3.25;\n");
+    }
+
+    @Test void parallelLongLinesAndStringsAcrossChunks() {
+        // Lines longer than a chunk, and strings and comments holding what
+        // would start the other in chunks far from where they open
+        assertParallelMatches(
+            "var s = \"" + "x".repeat(40) + "\n// not a comment \"\n" + "y".repeat(30) + "\";\n" +
+            "// \" " + "z".repeat(40) + "\n" +
+            "print s; var t = 1 / 2; // \"\n" +
+            "\"//\n\n\"; print \"" + "w".repeat(50) + "\";");
+    }
+
+}
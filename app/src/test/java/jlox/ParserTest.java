@@ -0,0 +1,86 @@
+package jlox;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+class ParserTest {
+
+    String parse(Source src) {
+        SymbolTable symbols = new SymbolTable();
+        TokenStream tokens = new Scanner(src, symbols).scanTokenStream();
+        return new AstPrinter(new Parser(tokens, symbols).parse()).print();
+    }
+
+    String parse(String src) {
+        return parse(Source.of(src));
+    }
+
+    String parseFile(String srcPath) throws IOException {
+        return parse(Source.map(Paths.get(srcPath)));
+    }
+
+    @Test void parsePrecedence() throws IOException {
+        assertEquals("(; (= a (or b (and c (== d (< (+ e (* f (- g))) h))))))\n",
+                     parse("a = b or c and d == e + f * -g < h;"));
+        assertEquals("(print (! (group (!= 1 2.5))))\n",
+                     parse("print !(1 != 2.5);"));
+    }
+
+    @Test void parseCallsAndProperties() throws IOException {
+        assertEquals("(; (.= (call (. a b) 1 \"c\") d (call e)))\n",
+                     parse("a.b(1, \"c\").d = e();"));
+    }
+
+    @Test void parseDesugaredFor() throws IOException {
+        assertEquals("(block (var i 0) (while (< i 3) (block (print i) (; (= i (+ i 1))))))\n",
+                     parse("for (var i = 0; i < 3; i = i + 1) print i;"));
+        assertEquals("(while true (print 1))\n",
+                     parse("for (;;) print 1;"));
+    }
+
+    @Test void parseFunctionsAndClasses() throws IOException {
+        assertEquals("(fun add (a b) (return (+ a b)))\n" +
+                     "(class B < A (fun init (n) (; (.= this n n))) (fun get () (return (super get))))\n",
+                     parse("fun add(a, b) { return a + b; }\n" +
+                           "class B < A { init(n) { this.n = n; } get() { return super.get; } }"));
+    }
+
+    @Test void parse_mt() throws IOException {
+        assertEquals("", parseFile("build/resources/test/mt.lox"));
+    }
+
+    @Test void parse_var() throws IOException {
+        assertEquals("(var x true)\n", parseFile("build/resources/test/var.lox"));
+    }
+
+    @Test void parse_cond() throws IOException {
+        assertEquals("(var b true)\n" +
+                     "(if b (block (; (= b (and b b)))) (block (; (= b (or b b)))))\n" +
+                     "(if b (block (print \"true\")) (block (print \"false\")))\n",
+                     parseFile("build/resources/test/cond.lox"));
+    }
+
+    @Test void parseTokensOfAnySymbolTable() throws IOException {
+        String src = "var a = \"b\"; print a.c;";
+        String expected = "(var a \"b\")\n(print (. a c))\n";
+        // Names not interned while scanning are interned from their lexemes
+        assertEquals(expected, new AstPrinter(new Parser(new Scanner(src).scanTokenStream(),
+                                                         new SymbolTable()).parse()).print());
+
+        TokenStream tokens = new Scanner(Source.of(src), new SymbolTable()).scanTokenStream();
+        assertThrows(IllegalArgumentException.class, () -> new Parser(tokens, new SymbolTable()));
+    }
+
+    @Test void parse_loop() throws IOException {
+        assertEquals("(var b true)\n" +
+                     "(while b (block (print \"while-loop\") " +
+                     "(block (var n 0) (while (!= n 0) (block (print \"for-loop\")))) " +
+                     "(; (= b false))))\n" +
+                     "(print \"done!\")\n",
+                     parseFile("build/resources/test/loop.lox"));
+    }
+
+}
@@ -0,0 +1,152 @@
+package jlox;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+class ResolverTest {
+
+    // Resolve src, returning where each variable reference points, in the
+    // order the Resolver visits them, as depth:slot or g:index for globals
+    String resolve(String src) {
+        SymbolTable symbols = new SymbolTable();
+        TokenStream tokens = new Scanner(Source.of(src), symbols).scanTokenStream();
+        Ast ast = new Parser(tokens, symbols).parse();
+        assertTrue(new Resolver(ast, new Globals()).resolve());
+
+        StringBuilder out = new StringBuilder();
+        walkList(ast, ast.root(), out);
+        return out.toString().trim();
+    }
+
+    void walkList(Ast ast, int list, StringBuilder out) {
+        for (int i = 0; i < ast.count(list); i++) {
+            walk(ast, ast.item(list, i), out);
+        }
+    }
+
+    void walk(Ast ast, int node, StringBuilder out) {
+        if (node == Ast.NONE) {
+            return;
+        }
+        switch (ast.kind(node)) {
+        case Ast.NUMBER:
+        case Ast.STRING:
+        case Ast.TRUE:
+        case Ast.FALSE:
+        case Ast.NIL:
+            return;
+        case Ast.VARIABLE:
+        case Ast.THIS:
+        case Ast.SUPER:
+            break;
+        case Ast.ASSIGN:
+            walk(ast, ast.b(node), out);
+            break;
+        case Ast.CALL:
+            walk(ast, ast.a(node), out);
+            walkList(ast, ast.b(node), out);
+            return;
+        case Ast.GET:
+            walk(ast, ast.a(node), out);
+            return;
+        case Ast.SET:
+            walk(ast, ast.a(node), out);
+            walk(ast, ast.c(node), out);
+            return;
+        case Ast.VAR:
+            walk(ast, ast.b(node), out);
+            return;
+        case Ast.BLOCK:
+            walkList(ast, ast.a(node), out);
+            return;
+        case Ast.FUNCTION:
+            walkList(ast, ast.c(node), out);
+            return;
+        case Ast.CLASS:
+            walk(ast, ast.b(node), out);
+            walkList(ast, ast.c(node), out);
+            return;
+        case Ast.IF:
+            walk(ast, ast.a(node), out);
+            walk(ast, ast.b(node), out);
+            walk(ast, ast.c(node), out);
+            return;
+        case Ast.GROUPING:
+        case Ast.NEGATE:
+        case Ast.NOT:
+        case Ast.EXPRESSION:
+        case Ast.PRINT:
+        case Ast.RETURN:
+            walk(ast, ast.a(node), out);
+            return;
+        default:
+            // Binary operators and while
+            walk(ast, ast.a(node), out);
+            walk(ast, ast.b(node), out);
+            return;
+        }
+
+        if (ast.depth(node) == Ast.GLOBAL) {
+            out.append("g:").append(ast.slot(node)).append(' ');
+        } else {
+            out.append(ast.depth(node)).append(':').append(ast.slot(node)).append(' ');
+        }
+    }
+
+    @Test void resolveGlobals() throws IOException {
+        // clock is always global 0
+        assertEquals("g:2 g:0 g:1", resolve("var a = b; a = clock;"));
+    }
+
+    @Test void resolveLocals() throws IOException {
+        assertEquals("0:0 1:1 1:2 0:0",
+                     resolve("fun f(a, b) { var c = a; { var a = b; a = c; } }"));
+    }
+
+    @Test void resolveClasses() throws IOException {
+        // this is slot 0 of the scope around the methods, and super of the
+        // scope around that
+        assertEquals("g:1 1:0 2:0",
+                     resolve("class A {} class B < A { m() { return this; } n() { return super.m; } }"));
+    }
+
+    // What resolving src reports
+    String errors(String src) {
+        SymbolTable symbols = new SymbolTable();
+        TokenStream tokens = new Scanner(Source.of(src), symbols).scanTokenStream();
+        Ast ast = new Parser(tokens, symbols).parse();
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+        assertFalse(new Resolver(ast, new Globals(),
+                                 ErrorReporter.printingTo(new PrintStream(err, true))).resolve());
+        return err.toString(StandardCharsets.UTF_8);
+    }
+
+    @Test void reportErrorsAtNames() throws IOException {
+        assertEquals("[line: 3] Error at 'a': Already a variable with this name in this scope.\n",
+                     errors("{\n  var a = 1;\n  var a = 2;\n}"));
+        assertEquals("[line: 1] Error at 'b': Can't read local variable in its own initializer.\n",
+                     errors("{ var b = b; }"));
+        assertEquals("[line: 1] Error at 'this': Can't use 'this' outside of a class.\n",
+                     errors("print this;"));
+        assertEquals("[line: 1] Error at 'return': Can't return from top-level code.\n",
+                     errors("return 1;"));
+    }
+
+    @Test void resolveScopeSizes() throws IOException {
+        SymbolTable symbols = new SymbolTable();
+        String src = "fun f(a) { var b; { var c; var d; } }";
+        TokenStream tokens = new Scanner(Source.of(src), symbols).scanTokenStream();
+        Ast ast = new Parser(tokens, symbols).parse();
+        assertTrue(new Resolver(ast, new Globals()).resolve());
+
+        int function = ast.item(ast.root(), 0);
+        assertEquals(2, ast.locals(function));
+        int block = ast.item(ast.c(function), 1);
+        assertEquals(2, ast.locals(block));
+    }
+}
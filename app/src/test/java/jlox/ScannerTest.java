@@ -2,10 +2,10 @@ package jlox;
 
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.nio.charset.Charset;
 import java.nio.file.Files;
 import java.io.IOException;
 import java.util.List;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 
 import org.junit.jupiter.api.Test;
@@ -146,10 +146,8 @@ class ScannerTest {
         }
     }
 
-    Scanner getScanner(String srcPath) throws IOException {
-        byte[] bytes = Files.readAllBytes(Paths.get(srcPath));
-        String src = new String (bytes, Charset.defaultCharset());
-        return new Scanner(src);
+    Scanner getScanner(String name) throws IOException {
+        return new Scanner(Fixtures.read(name));
     }
 
     List<Token> getExpected(Token[] tokens) {
@@ -157,7 +155,7 @@ class ScannerTest {
     }
 
     @Test void scanSingleCharTokens() throws IOException {
-        Scanner scanner = new Scanner(new String ("(){},.-+;/*"));
+        Scanner scanner = new Scanner(Fixtures.SINGLE_CHARS);
         List<Token> actualTokens = scanner.scanTokens();
         List<Token> expectedTokens = getExpected(new Token[] {
                 Fac.lParen(),
@@ -179,7 +177,7 @@ class ScannerTest {
     }
 
     @Test void scanOneOrTwoCharTokens() throws IOException {
-        Scanner scanner = new Scanner(new String ("! != = == > >= < <="));
+        Scanner scanner = new Scanner(Fixtures.ONE_OR_TWO_CHARS);
         List<Token> actualTokens = scanner.scanTokens();
         List<Token> expectedTokens = getExpected(new Token[] {
                 Fac.bang(),
@@ -198,7 +196,7 @@ class ScannerTest {
     }
 
     @Test void scanIdTokens() throws IOException {
-        Scanner scanner = new Scanner(new String ("happy_sad poTat0 sh0rtbr3ad_"));
+        Scanner scanner = new Scanner(Fixtures.IDENTIFIERS);
         List<Token> actualTokens = scanner.scanTokens();
         List<Token> expectedTokens = getExpected(new Token[] {
                 Fac.id("happy_sad"),
@@ -212,7 +210,7 @@ class ScannerTest {
     }
 
     @Test void scanStringTokens() throws IOException {
-        Scanner scanner = new Scanner(new String ("\"happy_sad\" \"poTat0\" \"sh0rtbr3ad_\""));
+        Scanner scanner = new Scanner(Fixtures.STRINGS);
         List<Token> actualTokens = scanner.scanTokens();
         List<Token> expectedTokens = getExpected(new Token[] {
                 Fac.string("happy_sad"),
@@ -226,7 +224,7 @@ class ScannerTest {
     }
 
     @Test void scanNumberTokens() throws IOException {
-        Scanner scanner = new Scanner(new String ("1 2.0 3.1415926"));
+        Scanner scanner = new Scanner(Fixtures.NUMBERS);
         List<Token> actualTokens = scanner.scanTokens();
         List<Token> expectedTokens = getExpected(new Token[] {
                 Fac.num("1"),
@@ -240,7 +238,7 @@ class ScannerTest {
     }
 
     @Test void scanKeywardTokens() throws IOException {
-        Scanner scanner = new Scanner(new String ("and class else false fun for if nil or print return super this true var while"));
+        Scanner scanner = new Scanner(Fixtures.KEYWORDS);
         List<Token> actualTokens = scanner.scanTokens();
         List<Token> expectedTokens = getExpected(new Token[] {
                 Fac.and(),
@@ -266,8 +264,33 @@ class ScannerTest {
         assertArrayEquals(expectedTokens.toArray(), actualTokens.toArray());
     }
 
+    @Test void scanKeywordPrefixTokens() throws IOException {
+        Scanner scanner = new Scanner(Fixtures.KEYWORD_PREFIXES);
+        List<Token> actualTokens = scanner.scanTokens();
+        List<Token> expectedTokens = getExpected(new Token[] {
+                Fac.id("an"),
+                Fac.id("andy"),
+                Fac.id("f"),
+                Fac.id("fa"),
+                Fac.id("fo"),
+                Fac.id("forr"),
+                Fac.id("fun_"),
+                Fac.id("t"),
+                Fac.id("th"),
+                Fac.id("thisx"),
+                Fac.id("tru"),
+                Fac.id("v"),
+                Fac.id("whil"),
+                Fac.id("classes"),
+
+                Fac.eof(),
+            });
+
+        assertArrayEquals(expectedTokens.toArray(), actualTokens.toArray());
+    }
+
     @Test void scan_mt() throws IOException {
-        Scanner scanner = getScanner("build/resources/test/mt.lox");
+        Scanner scanner = getScanner("mt");
         List<Token> actualTokens = scanner.scanTokens();
         List<Token> expectedTokens = getExpected(new Token[] {
                 Fac.eof(),
@@ -277,7 +300,7 @@ class ScannerTest {
     }
 
     @Test void scan_var() throws IOException {
-        Scanner scanner  = getScanner("build/resources/test/var.lox");
+        Scanner scanner  = getScanner("var");
         List<Token> actualTokens = scanner.scanTokens();
         List<Token> expectedTokens = getExpected(new Token[] {
                 Fac.var(),
@@ -292,7 +315,7 @@ class ScannerTest {
     }
 
     @Test void scan_cond() throws IOException {
-        Scanner scanner  = getScanner("build/resources/test/cond.lox");
+        Scanner scanner  = getScanner("cond");
         List<Token> actualTokens = scanner.scanTokens();
         List<Token> expectedTokens = getExpected(new Token[] {
 
@@ -353,7 +376,7 @@ class ScannerTest {
     }
 
     @Test void scan_loop() throws IOException {
-        Scanner scanner  = getScanner("build/resources/test/loop.lox");
+        Scanner scanner  = getScanner("loop");
         List<Token> actualTokens = scanner.scanTokens();
         List<Token> expectedTokens = getExpected(new Token[] {
                 Fac.var(),
@@ -409,4 +432,101 @@ class ScannerTest {
         assertArrayEquals(expectedTokens.toArray(), actualTokens.toArray());
     }
 
+    @Test void pullTokens_loop() throws IOException {
+        List<Token> expectedTokens = getScanner("loop").scanTokens();
+        Scanner scanner = getScanner("loop");
+        List<Token> actualTokens = new ArrayList<Token>();
+        Token t;
+        do {
+            t = scanner.nextToken();
+            actualTokens.add(t);
+        } while (t.type != EOF);
+
+        assertArrayEquals(expectedTokens.toArray(), actualTokens.toArray());
+        // Exhausted scanners keep answering EOF
+        assertEquals(Fac.eof(), scanner.nextToken());
+    }
+
+    @Test void scanMapped_cond() throws IOException {
+        List<Token> expectedTokens = getScanner("cond").scanTokens();
+        Scanner scanner = new Scanner(Source.map(Paths.get(Fixtures.path("cond"))));
+        List<Token> actualTokens = scanner.scanTokens();
+
+        assertArrayEquals(expectedTokens.toArray(), actualTokens.toArray());
+    }
+
+    @Test void scanLinesPastCommentsAndStrings() throws IOException {
+        String src = "// one\n  \t // two \"\n\r\n\"three\nfour\" five \t\t\n" +
+                     "    // six\n\"seven\" \"\" \"eight\n\n\" end // nine";
+        Path file = Files.createTempFile("jlox-scan", ".lox");
+        try {
+            Files.writeString(file, src);
+            for (Source source : new Source[] {Source.of(src), Source.map(file)}) {
+                TokenStream tokens = new Scanner(source).scanTokenStream();
+                assertEquals(Arrays.asList(Fac.string("three\nfour"), Fac.id("five"), Fac.string("seven"),
+                                           Fac.string(""), Fac.string("eight\n\n"), Fac.id("end"), Fac.eof()),
+                             tokens.asList());
+                int[] lines = new int[tokens.size()];
+                for (int i = 0; i < lines.length; i++) {
+                    lines[i] = tokens.line(i);
+                }
+                assertArrayEquals(new int[] {5, 5, 7, 7, 9, 9, 9}, lines);
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test void scanInterned_cond() throws IOException {
+        List<Token> expectedTokens = getScanner("cond").scanTokens();
+        SymbolTable symbols = new SymbolTable();
+        Source src = Source.map(Paths.get(Fixtures.path("cond")));
+        TokenStream tokens = new Scanner(src, symbols).scanTokenStream();
+
+        assertArrayEquals(expectedTokens.toArray(), tokens.asList().toArray());
+        // Every b shares one id and one String; "true" and "false" are strings
+        assertEquals(3, symbols.size());
+        int b = symbols.intern("b");
+        for (int i = 0; i < tokens.size(); i++) {
+            if (tokens.type(i) == IDENTIFIER) {
+                assertEquals(b, tokens.symbol(i));
+                assertSame(symbols.name(b), tokens.lexeme(i));
+            }
+        }
+
+        // A second scan sharing the table reuses the ids
+        TokenStream again = new Scanner(Source.of("b; \"true\""), symbols).scanTokenStream();
+        assertEquals(b, again.symbol(0));
+        assertEquals(symbols.intern("true"), again.symbol(2));
+        assertEquals(3, symbols.size());
+    }
+
+    @Test void scanInterned_nonAscii() throws IOException {
+        String src = "\"\u00e9\" \"\u00e9\" x \"\u00e9\" \"\ud83d\ude00\" \"\ud83d\ude00\"";
+        Path file = Files.createTempFile("jlox-scan", ".lox");
+        try {
+            Files.writeString(file, src);
+            SymbolTable symbols = new SymbolTable();
+            Source mapped = Source.map(file);
+            // Scanning it again, either way, from either kind of source
+            // finds the same three symbols
+            for (int round = 0; round < 2; round++) {
+                for (TokenStream tokens : new TokenStream[] {
+                        new Scanner(mapped, symbols).scanTokenStream(),
+                        new TableScanner(mapped, symbols, ErrorReporter.standard()).scanTokenStream(),
+                        new Scanner(Source.of(src), symbols).scanTokenStream()}) {
+                    assertEquals(tokens.symbol(0), tokens.symbol(1));
+                    assertEquals(tokens.symbol(0), tokens.symbol(3));
+                    assertEquals(tokens.symbol(4), tokens.symbol(5));
+                    assertEquals("\u00e9", symbols.name(tokens.symbol(0)));
+                    assertEquals("\ud83d\ude00", symbols.name(tokens.symbol(4)));
+                    assertEquals(3, symbols.size());
+                }
+            }
+            assertEquals(symbols.intern("\u00e9"), new Scanner(mapped, symbols).scanTokenStream().symbol(0));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
 }
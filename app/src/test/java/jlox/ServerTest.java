@@ -0,0 +1,225 @@
+package jlox;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+class ServerTest {
+
+    private Path directory;
+    private Server server;
+    private Thread serving;
+
+    // What a client got back
+    static class Run {
+        final int status;
+        final String out;
+        final String err;
+
+        Run(int status, String out, String err) {
+            this.status = status;
+            this.out = out;
+            this.err = err;
+        }
+    }
+
+    @BeforeEach void startServer() throws IOException {
+        directory = Files.createTempDirectory("jlox-server");
+        server = new Server(directory.resolve("jlox.sock"), 4, System.err);
+        server.listen();
+        serving = new Thread(() -> {
+            try {
+                server.serve();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        serving.start();
+    }
+
+    @AfterEach void stopServer() throws Exception {
+        server.close();
+        serving.join();
+        try (Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    Run run(String input, String... args) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+        int status = Client.run(directory.resolve("jlox.sock"), args,
+                                new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8)), out, err);
+        return new Run(status, out.toString(StandardCharsets.UTF_8), err.toString(StandardCharsets.UTF_8));
+    }
+
+    Path write(String name, String src) throws IOException {
+        return Files.writeString(directory.resolve(name), src);
+    }
+
+    @Test void runLikeLox() throws IOException {
+        // Relative paths are taken from the client's working directory
+        for (String name : Fixtures.FILES) {
+            String path = Fixtures.path(name);
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            new Lox(new PrintStream(out, true), System.err).run(new String[] {path});
+
+            Run run = run("", "--vm", path);
+            assertEquals(0, run.status);
+            assertEquals(out.toString(StandardCharsets.UTF_8), run.out);
+        }
+    }
+
+    @Test void returnErrorsAndStatus() throws IOException {
+        Path file = write("fail.lox", "print 1;\nprint -nil;\nprint 2;");
+        Run run = run("", file.toString());
+        assertEquals(Lox.EX_SOFTWARE, run.status);
+        assertEquals("1\n", run.out);
+        assertEquals("Operand must be a number.\n[line 2]\n", run.err);
+
+        run = run("", directory.resolve("missing.lox").toString());
+        assertEquals(Lox.EX_NOINPUT, run.status);
+        assertTrue(run.err.startsWith("Can't read: "), run.err);
+
+        run = run("", "--bogus");
+        assertEquals(Lox.EX_USAGE, run.status);
+        assertTrue(run.out.startsWith("Usage: "));
+    }
+
+    @Test void rejectServerOptions() throws IOException {
+        Path file = write("ok.lox", "print 1;");
+        String[][] requests = {
+            {"--serve", directory.resolve("nested.sock").toString()},
+            {"--batch", file.toString()},
+            {"--vm", "--jobs", "2", "--batch", file.toString()},
+        };
+        for (String[] args : requests) {
+            Run run = run("", args);
+            assertEquals(Lox.EX_USAGE, run.status);
+            assertEquals(Lox.USAGE + "\n", run.out);
+        }
+        assertFalse(Files.exists(directory.resolve("nested.sock")));
+        assertEquals(0, run("", "--vm", file.toString()).status);
+    }
+
+    @Test void runPrompt() throws IOException {
+        Run run = run("var a = 1;\nprint a + 1;\nprint;\nprint a;\n");
+        assertEquals(0, run.status);
+        assertEquals("> > 2\n> > 1\n> ", run.out);
+        assertEquals("[line: 1] Error at ';': Expect expression.\n", run.err);
+    }
+
+    // Start a run of args at socket, and return once the server checks on
+    // it, leaving it running
+    static SocketChannel start(Path socket, String... args) throws IOException {
+        SocketChannel channel = SocketChannel.open(UnixDomainSocketAddress.of(socket));
+        DataOutputStream request = new DataOutputStream(Channels.newOutputStream(channel));
+        request.writeInt(Client.VERSION);
+        Client.writeString(request, Path.of("").toAbsolutePath().toString());
+        request.writeInt(args.length);
+        for (String arg : args) {
+            Client.writeString(request, arg);
+        }
+        request.flush();
+
+        DataInputStream response = new DataInputStream(Channels.newInputStream(channel));
+        assertEquals(Client.OUT, response.readByte());
+        assertEquals(0, response.readInt());
+        return channel;
+    }
+
+    @Test void cancelRunsOfClientsThatLeft() throws IOException {
+        // As many endless runs as the server has threads, whose clients go
+        Path file = write("endless.lox", "print 1;\nwhile (true) {}");
+        Path calls = write("calls.lox", "fun f() { return 1; }\nprint f();\nwhile (true) f();");
+        String[][] requests = {
+            {file.toString()}, {"--vm", file.toString()}, {calls.toString()}, {"--vm", calls.toString()},
+        };
+        for (String[] args : requests) {
+            start(directory.resolve("jlox.sock"), args).close();
+        }
+
+        // Which only leaves threads for later clients once cancelled
+        Path ok = write("ok.lox", "print 2;");
+        Run run = assertTimeoutPreemptively(Duration.ofSeconds(10), () -> run("", ok.toString()));
+        assertEquals(0, run.status);
+        assertEquals("2\n", run.out);
+    }
+
+    @Test void limitRunTime() throws Exception {
+        Path socket = directory.resolve("limited.sock");
+        Server limited = new Server(socket, 1, Duration.ofSeconds(1), System.err);
+        limited.listen();
+        Thread thread = new Thread(() -> {
+            try {
+                limited.serve();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        thread.start();
+        try {
+            Path file = write("endless.lox", "print 1;\nwhile (true) {}");
+            for (String[] args : new String[][] {{file.toString()}, {"--vm", file.toString()}}) {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                ByteArrayOutputStream err = new ByteArrayOutputStream();
+                int status = assertTimeoutPreemptively(Duration.ofSeconds(10), () ->
+                    Client.run(socket, args, new ByteArrayInputStream(new byte[0]), out, err));
+                assertEquals(Lox.EX_SOFTWARE, status);
+                assertEquals("1\n", out.toString(StandardCharsets.UTF_8));
+                assertEquals("Run took longer than the server's time limit.\n[line 2]\n",
+                             err.toString(StandardCharsets.UTF_8));
+            }
+        } finally {
+            limited.close();
+            thread.join();
+        }
+    }
+
+    @Test void serveClientsAtOnce() throws Exception {
+        int clients = 64;
+        List<Path> files = new ArrayList<>();
+        for (int i = 0; i < clients; i++) {
+            files.add(write("f" + i + ".lox",
+                            "var n = " + i + ";\nfor (var i = 0; i < 1000; i = i + 1) n = n + 1;\nprint n;"));
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Run>> runs = new ArrayList<>();
+            for (Path file : files) {
+                runs.add(pool.submit(() -> run("", file.toString())));
+            }
+            for (int i = 0; i < clients; i++) {
+                Run run = runs.get(i).get();
+                assertEquals(0, run.status);
+                assertEquals((1000 + i) + "\n", run.out);
+                assertEquals("", run.err);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+}
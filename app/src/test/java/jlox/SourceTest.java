@@ -0,0 +1,71 @@
+package jlox;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+class SourceTest {
+
+    // Searches done a char at a time, as Source does them by default
+    static long indexOf(String text, char c, int from, int to) {
+        while (from < to && text.charAt(from) != c) {
+            from++;
+        }
+        return from;
+    }
+
+    static int count(String text, char c, int from, int to) {
+        int n = 0;
+        for (int i = from; i < to; i++) {
+            n += text.charAt(i) == c ? 1 : 0;
+        }
+        return n;
+    }
+
+    static long skipBlanks(String text, int from, int to) {
+        while (from < to && Source.isBlank(text.charAt(from))) {
+            from++;
+        }
+        return from;
+    }
+
+    @Test void searchLikeCharLoops() throws IOException {
+        Random random = new Random(0x10C5L);
+        // Mostly blanks, with some of what is searched for and bytes of
+        // every kind, including ones with the high bit set
+        String alphabet = "    \t\r\n\"/ax~\u0080\u00ff";
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 4096; i++) {
+            int run = random.nextInt(24);
+            char c = alphabet.charAt(random.nextInt(alphabet.length()));
+            for (int j = 0; j < run; j++) {
+                text.append(random.nextInt(4) == 0 ? c : ' ');
+            }
+        }
+        String chars = text.toString();
+        byte[] bytes = chars.getBytes(StandardCharsets.ISO_8859_1);
+        Path file = Files.createTempFile("jlox-source", ".lox");
+        try {
+            Files.write(file, bytes);
+            Source[] sources = {Source.of(chars), Source.map(file)};
+            for (int i = 0; i < 2000; i++) {
+                int from = random.nextInt(chars.length());
+                int to = from + random.nextInt(Math.min(200, chars.length() - from + 1));
+                for (Source source : sources) {
+                    for (char c : new char[] {'\n', '"', '~', '\u00ff'}) {
+                        assertEquals(indexOf(chars, c, from, to), source.indexOf(c, from, to));
+                        assertEquals(count(chars, c, from, to), source.count(c, from, to));
+                    }
+                    assertEquals(skipBlanks(chars, from, to), source.skipBlanks(from, to));
+                }
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package jlox;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+class TableScannerTest {
+
+    // Scan [from, to) of source with both scanners, checking they agree on
+    // every token, line, symbol and error
+    void assertScansAlike(Source source, long from, long to, int line) {
+        SymbolTable symbols = new SymbolTable();
+        List<String> errors = new ArrayList<>();
+        TokenStream expected = new Scanner(source, symbols, Fixtures.recording(errors), from, to, line).scanTokenStream();
+
+        SymbolTable tableSymbols = new SymbolTable();
+        List<String> tableErrors = new ArrayList<>();
+        TokenStream actual = new TableScanner(source, tableSymbols, Fixtures.recording(tableErrors), from, to, line)
+            .scanTokenStream();
+
+        assertSameTokens(expected, actual);
+        assertEquals(errors, tableErrors);
+        assertEquals(symbols.size(), tableSymbols.size());
+
+        // And with their errors collected, as ERROR tokens
+        Diagnostics diagnostics = new Diagnostics(source);
+        Diagnostics tableDiagnostics = new Diagnostics(source);
+        assertSameTokens(new Scanner(source, null, diagnostics, from, to, line).scanTokenStream(),
+                         new TableScanner(source, null, tableDiagnostics, from, to, line).scanTokenStream());
+        assertEquals(diagnostics.list().toString(), tableDiagnostics.list().toString());
+    }
+
+    static void assertSameTokens(TokenStream expected, TokenStream actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.type(i), actual.type(i));
+            assertEquals(expected.start(i), actual.start(i));
+            assertEquals(expected.length(i), actual.length(i));
+            assertEquals(expected.line(i), actual.line(i));
+            assertEquals(expected.literal(i), actual.literal(i));
+            assertEquals(expected.symbol(i), actual.symbol(i));
+        }
+    }
+
+    void assertScansAlike(String text) {
+        assertScansAlike(Source.of(text), 0, text.length(), 1);
+    }
+
+    @Test void scanFixturesAlike() throws IOException {
+        for (String source : Fixtures.SOURCES) {
+            assertScansAlike(source);
+        }
+        for (String name : Fixtures.FILES) {
+            Path path = Paths.get(Fixtures.path(name));
+            assertScansAlike(Files.readString(path));
+            Source mapped = Source.map(path);
+            assertScansAlike(mapped, 0, mapped.length(), 1);
+        }
+    }
+
+    @Test void scanEdgesAlike() {
+        String[] sources = {
+            "", " ", "\n", "1.", "1.x", "1..2", ".5", "12.", "a.b", "\"", "\"abc", "\"a\nb\n", "//", "/",
+            "/ /", "// x\ny", "!===<=>=<>", "@", "a@b#c", "\u00e9", "x\u0100\"\u0100\"", "and_ ORfor classy cla",
+            "fun\tf(){return nil;}", "\r\n\r\n", "0123 00.50", "i if ifs f fo fa fals falsey t th tr",
+        };
+        for (String source : sources) {
+            assertScansAlike(source);
+        }
+        // Tokens, strings and comments across windows
+        assertScansAlike("x".repeat(5000) + " \"" + "s\n".repeat(3000) + "\" // " + "c".repeat(9000) + "\n1.5");
+        assertScansAlike(" ".repeat(4095) + "1.5 " + " ".repeat(4094) + "\"" + " ".repeat(5000));
+    }
+
+    // What running jlox with args prints
+    static String run(String... args) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        PrintStream print = new PrintStream(out, true);
+        new Lox(print, print).run(args);
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
+    @Test void runWithTableScanner() throws IOException {
+        for (String name : Fixtures.FILES) {
+            String path = Fixtures.path(name);
+            assertEquals(run("--tokens", path), run("--dfa", "--tokens", path));
+            assertEquals(run(path), run("--dfa", path));
+            assertEquals(run("--vm", path), run("--dfa", "--vm", path));
+        }
+    }
+
+    @Test void scanFuzzAlike() throws IOException {
+        Random random = new Random(0x10C5L);
+        String[] pieces = {
+            " ", " ", "\t", "\r", "\n", "\"", "//", "/", ".", "0", "7", "12.5", "_", "a", "Z", "x1",
+            "and", "class", "else", "false", "for", "fun", "if", "nil", "or", "print", "return",
+            "super", "this", "true", "var", "while", "(", ")", "{", "}", ",", "-", "+", ";", "*",
+            "!", "=", "<", ">", "@", "~", "\u00e9", "\u20ac", "\0",
+        };
+        Path file = Files.createTempFile("jlox-fuzz", ".lox");
+        try {
+            for (int n = 0; n < 3000; n++) {
+                StringBuilder text = new StringBuilder();
+                int count = random.nextInt(40);
+                for (int i = 0; i < count; i++) {
+                    text.append(pieces[random.nextInt(pieces.length)]);
+                }
+                String source = text.toString();
+                assertScansAlike(source);
+
+                // A range of it, and the bytes of it mapped
+                int from = random.nextInt(source.length() + 1);
+                int to = from + random.nextInt(source.length() - from + 1);
+                assertScansAlike(Source.of(source), from, to, 1 + random.nextInt(9));
+                if (n % 10 == 0) {
+                    Files.write(file, source.getBytes(StandardCharsets.UTF_8));
+                    Source mapped = Source.map(file);
+                    assertScansAlike(mapped, 0, mapped.length(), 1);
+                }
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+}
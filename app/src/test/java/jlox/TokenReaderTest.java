@@ -0,0 +1,96 @@
+package jlox;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+class TokenReaderTest {
+
+    // Read tokens back from what they were written to, checking every
+    // token matches, line and offsets included
+    void assertReadsBack(TokenStream tokens, TokenReader reader) {
+        assertEquals(tokens.size(), reader.size());
+        for (int i = 0; i < tokens.size(); i++) {
+            assertTrue(reader.next());
+            assertEquals(tokens.type(i), reader.type());
+            assertEquals(tokens.start(i), reader.start());
+            assertEquals(tokens.length(i), reader.length());
+            assertEquals(tokens.line(i), reader.line());
+            assertEquals(tokens.get(i), reader.token());
+            assertEquals(tokens.line(i), reader.token().line);
+        }
+        assertFalse(reader.next());
+    }
+
+    void assertRoundTrips(Source source) {
+        TokenStream tokens = new Scanner(source, new SymbolTable()).scanTokenStream();
+        assertReadsBack(tokens, new TokenReader(TokenWriter.write(tokens, false), source));
+        assertReadsBack(tokens, new TokenReader(TokenWriter.write(tokens, true), source));
+        // A pooled stream carries all the text it needs
+        assertReadsBack(tokens, new TokenReader(TokenWriter.write(tokens, true), null));
+    }
+
+    @Test void roundTripScannerFixtures() throws IOException {
+        for (String source : Fixtures.SOURCES) {
+            assertRoundTrips(Source.of(source));
+        }
+        for (String name : Fixtures.FILES) {
+            assertRoundTrips(Source.of(Fixtures.read(name)));
+        }
+        assertRoundTrips(Source.of(""));
+    }
+
+    @Test void roundTripNumbersAndText() {
+        assertRoundTrips(Source.of("0 007 12 3.25 123456789012345678 1234567890123456789\n"
+                                   + "99999999999999999999 0.1 100.000 x = \"\u00e9t\u00e9\" + \"\ud83d\ude00\";\n\n"
+                                   + "// comment\n\"multi\nline\" x x \"x\" 12 12"));
+    }
+
+    @Test void readMapped() throws IOException {
+        Path file = Files.createTempFile("jlox-tokens", ".jloxt");
+        try {
+            Source source = Source.map(Paths.get(Fixtures.path("loop")));
+            TokenStream tokens = new Scanner(source, new SymbolTable()).scanTokenStream();
+            TokenWriter.write(tokens, true, file);
+            assertReadsBack(tokens, TokenReader.map(file, null));
+            TokenWriter.write(tokens, false, file);
+            assertReadsBack(tokens, TokenReader.map(file, source));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test void poolSharesText() {
+        Source source = Source.of("a \"a\" a b 1.5 1.5 1");
+        TokenStream tokens = new Scanner(source, new SymbolTable()).scanTokenStream();
+        TokenReader reader = new TokenReader(TokenWriter.write(tokens, true), null);
+        int[] indexes = new int[tokens.size()];
+        for (int i = 0; reader.next(); i++) {
+            indexes[i] = reader.poolIndex();
+        }
+        assertArrayEquals(new int[] {0, 0, 0, 1, 2, 2, -1, -1}, indexes);
+    }
+
+    @Test void smallerThanColumns() throws IOException {
+        Source source = Source.of(Fixtures.read("loop"));
+        TokenStream tokens = new Scanner(source, new SymbolTable()).scanTokenStream();
+        assertTrue(TokenWriter.write(tokens, false).remaining() * 4 < tokens.byteSize());
+    }
+
+    @Test void rejectOtherData() {
+        ByteBuffer junk = ByteBuffer.wrap("not tokens".getBytes());
+        assertThrows(IllegalArgumentException.class, () -> new TokenReader(junk, null));
+
+        // Text written without a pool needs the source
+        TokenStream tokens = new Scanner(Source.of("x"), new SymbolTable()).scanTokenStream();
+        TokenReader reader = new TokenReader(TokenWriter.write(tokens, false), null);
+        assertTrue(reader.next());
+        assertEquals(TokenType.IDENTIFIER, reader.type());
+        assertThrows(IllegalStateException.class, reader::lexeme);
+    }
+}